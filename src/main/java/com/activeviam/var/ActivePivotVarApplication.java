@@ -19,6 +19,7 @@
 package com.activeviam.var;
 
 import com.activeviam.var.cfg.ActivePivotVaRConfig;
+import com.activeviam.var.cfg.ChunkAllocatorSettings;
 import javax.servlet.MultipartConfigElement;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
@@ -42,7 +43,11 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 public class ActivePivotVarApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(ActivePivotVarApplication.class, args);
+		final SpringApplication application =
+				new SpringApplication(ActivePivotVarApplication.class);
+		// The chunk allocator is chosen before the datastore allocates anything
+		application.addListeners(new ChunkAllocatorSettings());
+		application.run(args);
 	}
 
 	/**
@@ -7,14 +7,15 @@
 package com.activeviam.var.cfg;
 
 import com.activeviam.copper.CopperRegistrations;
+import com.activeviam.var.cfg.datastore.EpochRetention;
 import com.activeviam.var.cfg.pivot.ActivePivotManagerConfig;
 import com.activeviam.var.cfg.security.SecurityConfig;
+import com.qfs.multiversion.IEpochManagementPolicy;
 import com.qfs.server.cfg.IDatastoreConfig;
 import com.qfs.server.cfg.impl.ActivePivotConfig;
 import com.qfs.server.cfg.impl.ActivePivotServicesConfig;
 import com.qfs.server.cfg.impl.ActiveViamRestServicesConfig;
 import com.qfs.server.cfg.impl.ActiveViamWebSocketServicesConfig;
-import com.qfs.server.cfg.impl.DatastoreConfig;
 import com.qfs.server.cfg.impl.FullAccessBranchPermissionsManagerConfig;
 import com.qfs.server.cfg.impl.JwtConfig;
 import com.qfs.service.store.impl.NoSecurityDatastoreServiceConfig;
@@ -27,6 +28,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
 /**
@@ -40,7 +42,7 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 @Configuration
 @Import(value = {
 		ActivePivotConfig.class,
-		DatastoreConfig.class,
+		VaRDatastoreConfig.class,
 		NoSecurityDatastoreServiceConfig.class,
 		FullAccessBranchPermissionsManagerConfig.class,
 		DataLoadingConfig.class,
@@ -83,6 +85,43 @@ public class ActivePivotVaRConfig {
 	@Autowired
 	protected ActivePivotServicesConfig apServiceConfig;
 
+	/**
+	 * The policy releasing the versions of the datastore, after the epochs.retention property:
+	 * immediate releases a version once no query reads it, count and duration keep the versions
+	 * for the {@link #epochRetention(Environment) retention} to release them.
+	 *
+	 * @param env the environment
+	 * @return the epoch management policy of the datastore
+	 */
+	@Bean
+	public static IEpochManagementPolicy epochManagementPolicy(final Environment env) {
+		return EpochRetention.createPolicy(env);
+	}
+
+	/**
+	 * Releases the versions of the datastore beyond the epochs.count last ones, or older than
+	 * epochs.duration-seconds, and measures the versions it retains.
+	 *
+	 * @param env the environment
+	 * @return the retention of the versions
+	 */
+	@Bean(destroyMethod = "close")
+	@DependsOn(value = "startManager")
+	public EpochRetention epochRetention(final Environment env) {
+		return new EpochRetention(datastoreConfig.datastore(), env);
+	}
+
+	/**
+	 * Exposes the retained versions and their release as an actuator endpoint.
+	 *
+	 * @param retention the retention of the versions
+	 * @return the endpoint
+	 */
+	@Bean
+	public EpochRetentionEndpoint epochRetentionEndpoint(final EpochRetention retention) {
+		return new EpochRetentionEndpoint(retention);
+	}
+
 	/** Enable JMX monitoring */
 
 	/**
@@ -108,12 +147,14 @@ public class ActivePivotVaRConfig {
 
 
 	/**
-	 * Initialize and start the ActivePivot Manager
+	 * Initialize and start the ActivePivot Manager, once the aggregation functions of the memory
+	 * mapped vectors are registered
 	 *
 	 * @return void
 	 * @throws Exception
 	 */
 	@Bean
+	@DependsOn(value = "registerMappedVectorSum")
 	public Void startManager() throws Exception {
 		apConfig.activePivotManager().init(null);
 		apConfig.activePivotManager().start();
@@ -0,0 +1,129 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+/**
+ * Applies the memory.* properties choosing how the datastore allocates its chunks, as the system
+ * properties ActivePivot reads when it allocates its first chunk: registered on the application
+ * before it starts, they are set once the environment is prepared, before the datastore exists.
+ * <p>
+ * The transparent huge pages cannot be requested from Java for a mapping: memory.huge-pages
+ * checks that the JVM or the kernel gives them to the chosen allocator, and fails the start
+ * otherwise rather than silently running on 4 kB pages.
+ *
+ * @author ActiveViam
+ */
+public class ChunkAllocatorSettings
+		implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ChunkAllocatorSettings.class.getSimpleName());
+
+	/** System property of the class of the chunk allocator */
+	public static final String CHUNK_ALLOCATOR_PROPERTY = "qfs.chunkAllocatorClass";
+	/** System property of the number of elements of the blocks of the vectors */
+	public static final String VECTOR_BLOCK_SIZE_PROPERTY = "qfs.vectors.defaultBlockSize";
+
+	/** The chunk allocators, by name */
+	public static final Map<String, String> ALLOCATORS = Map.of(
+			"heap", "com.qfs.chunk.heap.impl.HeapChunkAllocator",
+			"slab", "com.qfs.chunk.direct.allocator.impl.SlabDirectChunkAllocator",
+			"mmap", "com.qfs.chunk.direct.allocator.impl.MmapDirectChunkAllocator");
+
+	/** The transparent huge pages setting of the kernel */
+	protected static final String TRANSPARENT_HUGE_PAGES =
+			"/sys/kernel/mm/transparent_hugepage/enabled";
+
+	@Override
+	public void onApplicationEvent(final ApplicationEnvironmentPreparedEvent event) {
+		apply(event.getEnvironment());
+	}
+
+	/**
+	 * Sets the system properties of the chunk allocator and of the vector blocks.
+	 *
+	 * @param env the environment
+	 * @throws IllegalArgumentException if the allocator is unknown, or if the huge pages are
+	 * 		requested but not available to the allocator
+	 */
+	public static void apply(final Environment env) {
+		final String allocator = env.getProperty("memory.chunk-allocator", "default");
+		if (!"default".equals(allocator)) {
+			final String allocatorClass = ALLOCATORS.getOrDefault(allocator, allocator);
+			if (allocatorClass.indexOf('.') < 0) {
+				throw new IllegalArgumentException("Unknown chunk allocator " + allocator
+						+ ", expected default, " + String.join(", ", ALLOCATORS.keySet())
+						+ " or the name of a class");
+			}
+			System.setProperty(CHUNK_ALLOCATOR_PROPERTY, allocatorClass);
+		}
+
+		// The blocks hold a whole number of vectors, without a partial vector at their end
+		final int vectorsPerBlock = env.getProperty("memory.vectors-per-block", Integer.class, 0);
+		if (vectorsPerBlock > 0) {
+			final int vectorLength =
+					env.getProperty("tradeSource.vectorLength", Integer.class, 260);
+			System.setProperty(
+					VECTOR_BLOCK_SIZE_PROPERTY,
+					Long.toString((long) vectorsPerBlock * vectorLength));
+		}
+
+		final boolean hugePages = env.getProperty("memory.huge-pages", Boolean.class, false);
+		if (hugePages) {
+			checkHugePages(allocator);
+		}
+		LOGGER.info("Chunk allocator " + System.getProperty(CHUNK_ALLOCATOR_PROPERTY, "default")
+				+ ", vector blocks of "
+				+ System.getProperty(VECTOR_BLOCK_SIZE_PROPERTY, "default") + " elements"
+				+ (hugePages ? ", on transparent huge pages" : ""));
+	}
+
+	/**
+	 * Checks that the chunks of an allocator can be backed by transparent huge pages: the heap by
+	 * the -XX:+UseTransparentHugePages or -XX:+UseLargePages options of the JVM, the off-heap
+	 * allocators by the kernel setting being always, madvise only applying to the mappings that
+	 * ask for them.
+	 */
+	private static void checkHugePages(final String allocator) {
+		if ("heap".equals(allocator)) {
+			final HotSpotDiagnosticMXBean options =
+					ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			if (!Boolean.parseBoolean(options.getVMOption("UseTransparentHugePages").getValue())
+					&& !Boolean.parseBoolean(options.getVMOption("UseLargePages").getValue())) {
+				throw new IllegalArgumentException("The huge pages of the heap chunks require the"
+						+ " -XX:+UseTransparentHugePages or -XX:+UseLargePages JVM option");
+			}
+			return;
+		}
+		final Path setting = Paths.get(TRANSPARENT_HUGE_PAGES);
+		String mode;
+		try {
+			mode = new String(Files.readAllBytes(setting), StandardCharsets.US_ASCII).trim();
+		} catch (IOException e) {
+			mode = "unavailable";
+		}
+		if (!mode.contains("[always]")) {
+			throw new IllegalArgumentException("The huge pages of the off-heap chunks require "
+					+ TRANSPARENT_HUGE_PAGES + " to be [always], not " + mode);
+		}
+	}
+
+}
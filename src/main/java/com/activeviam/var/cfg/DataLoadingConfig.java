@@ -6,62 +6,59 @@
  */
 package com.activeviam.var.cfg;
 
-import com.activeviam.cloud.azure.storage.entity.impl.AzureCloudDirectory;
-import com.activeviam.cloud.azure.storage.fetch.impl.AzureBlobChannel;
-import com.activeviam.cloud.azure.storage.impl.BlobUtil;
-import com.activeviam.cloud.entity.ICloudDirectory;
-import com.activeviam.cloud.entity.ICloudEntityPath;
-import com.activeviam.cloud.fetch.impl.AConcurrentlyFetchingChannel;
-import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
-import com.activeviam.parquet.IStoreToParquetMapping;
-import com.activeviam.parquet.impl.ParquetParser;
-import com.activeviam.parquet.impl.StoreToParquetMappingBuilder;
-import com.activeviam.parquet.policy.impl.NoRestrictionParquetPolicy;
 import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
-import com.activeviam.var.generator.CounterPartyRepository;
-import com.activeviam.var.generator.ProductRepository;
-import com.activeviam.var.generator.Risk;
-import com.activeviam.var.generator.RiskCalculator;
-import com.activeviam.var.generator.Trade;
-import com.activeviam.var.generator.TradeGenerator;
-import com.activeviam.var.generator.VaRCsvDataGenerator;
-import com.microsoft.azure.storage.blob.CloudBlob;
-import com.microsoft.azure.storage.blob.CloudBlobClient;
-import com.qfs.msg.IMessage;
-import com.qfs.msg.IMessageChunk;
-import com.qfs.msg.csv.ICSVParserConfiguration;
-import com.qfs.msg.csv.ICSVSourceConfiguration;
-import com.qfs.msg.csv.filesystem.impl.FileSystemCSVTopicFactory;
-import com.qfs.msg.csv.impl.CSVSource;
-import com.qfs.source.IStoreMessageChannel;
-import com.qfs.source.impl.CSVMessageChannelFactory;
-import com.qfs.source.impl.POJOMessageChannelFactory;
+import com.activeviam.var.cfg.load.CloudSources;
+import com.activeviam.var.cfg.load.ContinuousIngestion;
+import com.activeviam.var.cfg.load.CsvDataLoader;
+import com.activeviam.var.cfg.load.DatasetLoader;
+import com.activeviam.var.cfg.load.DateReloader;
+import com.activeviam.var.cfg.load.GeneratedDataLoader;
+import com.activeviam.var.cfg.load.HistoryWindow;
+import com.activeviam.var.cfg.load.LazyVectorLoader;
+import com.activeviam.var.cfg.load.LoadSettings;
+import com.activeviam.var.cfg.load.LoadTransactions;
+import com.activeviam.var.cfg.load.ParquetDataLoader;
+import com.activeviam.var.cfg.load.RiskJoin;
+import com.activeviam.var.cfg.load.SnapshotManager;
+import com.activeviam.var.cfg.load.StoreReports;
+import com.activeviam.var.cfg.pivot.ActivePivotManagerConfig;
+import com.activeviam.var.cfg.pivot.MappedVectorSumFunction;
+import com.activeviam.var.cfg.pivot.ScenarioMatrix;
+import com.activeviam.var.cfg.pivot.VectorLoadingStatus;
+import com.activeviam.var.cfg.security.SecurityConfig;
+import com.activeviam.var.generator.FactorScenarios;
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.qfs.condition.impl.BaseConditions;
 import com.qfs.store.IDatastore;
-import com.qfs.store.impl.SchemaPrinter;
-import com.qfs.store.transaction.ITransactionManager;
-import com.qfs.util.timing.impl.StopWatch;
+import com.quartetfs.biz.pivot.IActivePivotManager;
+import com.quartetfs.biz.pivot.query.impl.MDXQuery;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Function;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.core.env.Environment;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * Spring configuration for data sources
+ * <p>
+ * The loads are made of components: the settings of the loads, checked once for compatibility,
+ * the loaders of the generated, CSV and Parquet data, the transactions they share, the snapshot,
+ * the reload of another date and the continuous ingestion.
  *
  * @author ActiveViam
  */
+@Configuration
 public class DataLoadingConfig {
 
 	private static final Logger LOGGER = Logger.getLogger(DataLoadingConfig.class.getSimpleName());
@@ -72,20 +69,17 @@ public class DataLoadingConfig {
 	@Autowired
 	protected IDatastore datastore;
 
-	@Value("${csvSource.mode:generate}")
-	private String mode;
+	@Autowired
+	protected DatastoreDescriptionConfig schema;
+
+	@Autowired
+	protected VectorLoadingStatus vectorStatus;
 
-	@Value("${cloud-source.date-folder}")
-	private String dateFolder;
-	@Value("${cloud-source.connection-string}")
-	private String connectionString;
-	@Value("${cloud-source.parallel-files}")
-	private int parallelFiles;
-	@Value("${cloud-source.parallel-parts}")
-	private int parallelParts;
+	@Autowired
+	protected IActivePivotManager manager;
 
-	@Value("${csvSource.data-dir}")
-	private String dataPath;
+	/** The memory mapped file of the pnl vectors, whose field holds the offsets, or {@code null} */
+	private MappedVectorFile vectorFile;
 
 	/*
 	 * **************************** Data loading *********************************
@@ -93,346 +87,305 @@ public class DataLoadingConfig {
 	@Bean
 	@DependsOn(value = "startManager")
 	public Void loadData() throws Exception {
-		switch (this.mode) {
-			case "generate":
-				generateAndLoadData();
-				break;
-			case "csv":
-				loadDataFromCSV();
-				break;
-			case "parquet-local":
-				loadDataFromParquet(false);
-				break;
-			case "parquet-cloud":
-				loadDataFromParquet(true);
-				break;
-			default:
-				throw new IllegalArgumentException(this.mode);
+		storeReports().logManifest();
+		final LoadSettings settings = loadSettings();
+		settings.checkCompatibility(this.schema);
+		if (this.schema.getVectorModel() == VectorModel.FACTOR) {
+			loadScenarios();
+		}
+		final DatasetLoader loader = datasetLoader();
+		if (settings.isWatching()) {
+			continuousIngestion().start(loader.getFolders());
+			return null;
+		}
+		if (loader.restore()) {
+			logTimeToFirstQuery();
+			return null;
+		}
+		if (getVectorFile() != null) {
+			// The snapshot did not match the vectors of the file
+			getVectorFile().clear();
 		}
+		loader.load();
+		logTimeToFirstQuery();
 		return null;
 	}
 
-
 	/**
-	 * Generate data on the fly and load it.
-	 *
-	 * @throws Exception
+	 * Loads the scenario matrix of the factor model into its store, in its own transaction, and
+	 * makes it the one the vector measures expand the factor loadings with. The matrix is
+	 * generated from the same settings as in the generators: the loads and the reloads of the
+	 * other stores leave it in place.
 	 */
-	public void generateAndLoadData() throws Exception {
-
-		Integer productCount = env.getProperty("tradeSource.productCount", Integer.class, 100);
-		Integer tradeCount = env.getProperty("tradeSource.tradeCount", Integer.class, 1000);
-		Integer vectorLength = env.getProperty("tradeSource.vectorLength", Integer.class, 260);
-		Integer batchSize = env.getProperty("tradeSource.batchSize", Integer.class, 1000);
-
-		POJOMessageChannelFactory channelFactory = new POJOMessageChannelFactory(datastore);
-		IStoreMessageChannel<String, Object> productChannel = channelFactory.createChannel("Products");
-		IStoreMessageChannel<String, Object> tradeChannel = channelFactory.createChannel("Trades");
-		IStoreMessageChannel<String, Object> riskChannel = channelFactory.createChannel("Risks");
-
-		ProductRepository productRepository = new ProductRepository(productCount);
-		CounterPartyRepository counterpartyRepository = new CounterPartyRepository();
-
-		final ITransactionManager tm = datastore.getTransactionManager();
-
-		// Open ActivePivot transaction
-		final long before = System.nanoTime();
-		tm.startTransaction();
-
-		// Generate and load products
-		IMessage<String, Object> productMessage = productChannel.newMessage("Products");
-		IMessageChunk<Object> productChunk = productMessage.newChunk();
-		for (int p = 0; p < productRepository.getProductCount(); p++) {
-			productChunk.append(productRepository.getProduct(p));
+	private void loadScenarios() {
+		final FactorScenarios scenarios = FactorScenarios.generate(
+				this.schema.getFactorCount(),
+				env.getProperty("tradeSource.vectorLength", Integer.class, 260),
+				this.schema.getFactorSeed());
+		final List<Object[]> rows = new ArrayList<>(scenarios.getFactorCount());
+		for (int factor = 0; factor < scenarios.getFactorCount(); factor++) {
+			rows.add(new Object[] {factor, scenarios.getScenarios(factor)});
 		}
-		productMessage.append(productChunk);
-		productChannel.send(productMessage);
-
-		// Generate and load trades and risks
-		// Generate the trades and the risk entries, write them into a CSV file
-		TradeGenerator tradeGenerator = new TradeGenerator();
-		RiskCalculator riskCalculator = new RiskCalculator(vectorLength);
-		final int counterPartyCount = counterpartyRepository.getCounterPartyCount();
+		this.datastore.edit(tm -> {
+			tm.removeWhere(DatastoreDescriptionConfig.SCENARIO_STORE, BaseConditions.TRUE);
+			tm.addAll(DatastoreDescriptionConfig.SCENARIO_STORE, rows);
+			tm.forceCommit();
+		});
+		ScenarioMatrix.setCurrent(scenarios);
+		LOGGER.info("Scenario matrix of " + scenarios.getFactorCount() + " factors and "
+				+ scenarios.getScenarioCount() + " scenarios loaded");
+	}
 
-		IMessage<String, Object> tradeMessage = tradeChannel.newMessage("Trades");
-		IMessage<String, Object> riskMessage = riskChannel.newMessage("Risks");
+	/**
+	 * Runs the total VaR query on the cube, as the administrator, and logs its duration and the
+	 * time since the start of the JVM.
+	 */
+	private void logTimeToFirstQuery() {
+		final String mdx = "SELECT [Measures].[VaR 95] ON COLUMNS"
+				+ " FROM [" + ActivePivotManagerConfig.CUBE + "]";
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(
+						"admin",
+						null,
+						List.of(
+								new SimpleGrantedAuthority(SecurityConfig.ROLE_USER),
+								new SimpleGrantedAuthority(SecurityConfig.ROLE_ADMIN))));
+		try {
+			final long before = System.nanoTime();
+			this.manager.getActivePivots().get(ActivePivotManagerConfig.CUBE)
+					.execute(new MDXQuery(mdx));
+			LOGGER.info("First query answered in " + (System.nanoTime() - before) / 1000000L
+					+ "ms, " + ManagementFactory.getRuntimeMXBean().getUptime()
+					+ "ms after the start of the JVM");
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "First query failed: " + mdx, e);
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
 
-		// Chunk the range of trades to generate into batches
-		// and perform the generation of the batches in parallel.
-		IntStream.range(0, tradeCount / batchSize).parallel().forEach(batch -> {
+	/*
+	 * ***************************** Components **********************************
+	 */
 
-			IMessageChunk<Object> tradeChunk = tradeMessage.newChunk();
-			IMessageChunk<Object> riskChunk = riskMessage.newChunk();
+	/**
+	 * @return the settings of the loads
+	 */
+	@Bean
+	public LoadSettings loadSettings() {
+		return new LoadSettings(this.env);
+	}
 
-			for (int tradeId = batch * batchSize; tradeId < Math.min(tradeCount, (batch + 1) * batchSize);
-					tradeId++) {
+	/**
+	 * @return what the loads read the cloud and the local files with
+	 */
+	@Bean
+	public CloudSources cloudSources() {
+		return new CloudSources(loadSettings());
+	}
 
-				int productId = (int) (tradeId % productCount);
-				int counterPartyId = (int) (tradeId % counterPartyCount);
-				Trade trade = tradeGenerator.generate(
-						tradeId,
-						productRepository.getProduct(productId),
-						counterpartyRepository.getCounterParty(counterPartyId));
+	/**
+	 * @return the dates held by the history
+	 */
+	@Bean
+	public HistoryWindow historyWindow() {
+		return new HistoryWindow(env.getProperty("history.window", Integer.class, 20));
+	}
 
-				Risk risk = riskCalculator.execute(trade, productRepository.getProduct(productId));
+	/**
+	 * @return the loader of the vectors, when loaded after the other stores
+	 */
+	@Bean
+	public LazyVectorLoader lazyVectorLoader() {
+		return new LazyVectorLoader(
+				this.datastore,
+				this.schema.isVectorLoadingLazy(),
+				this.vectorStatus);
+	}
 
-				tradeChunk.append(trade);
-				riskChunk.append(risk);
-			}
+	/**
+	 * @return the transactions of the loads
+	 */
+	@Bean
+	public LoadTransactions loadTransactions() {
+		return new LoadTransactions(this.schema, new RiskJoin(this.schema), lazyVectorLoader());
+	}
 
-			tradeMessage.append(tradeChunk);
-			riskMessage.append(riskChunk);
+	/**
+	 * @return the reports on the stores
+	 */
+	@Bean
+	public StoreReports storeReports() {
+		return new StoreReports(
+				this.datastore,
+				this.schema,
+				getVectorFile(),
+				env.getProperty("memory.breakdown-after-load", Boolean.class, false));
+	}
 
-		});
+	/**
+	 * @return the loader of the generated data
+	 */
+	@Bean
+	public GeneratedDataLoader generatedDataLoader() {
+		return new GeneratedDataLoader(
+				this.env,
+				this.datastore,
+				this.schema,
+				getVectorFile(),
+				storeReports());
+	}
 
-		tradeChannel.send(tradeMessage);
-		riskChannel.send(riskMessage);
+	/**
+	 * @return the loader of the CSV files
+	 */
+	@Bean
+	public CsvDataLoader csvDataLoader() {
+		return new CsvDataLoader(
+				loadSettings(),
+				this.datastore,
+				this.schema,
+				getVectorFile(),
+				loadTransactions(),
+				lazyVectorLoader(),
+				storeReports());
+	}
 
-		// Commit ActivePivot transaction
-		tm.commitTransaction();
+	/**
+	 * @return the loader of the Parquet files
+	 */
+	@Bean
+	public ParquetDataLoader parquetDataLoader() {
+		return new ParquetDataLoader(
+				loadSettings(),
+				cloudSources(),
+				this.datastore,
+				this.schema,
+				getVectorFile(),
+				loadTransactions(),
+				lazyVectorLoader(),
+				historyWindow(),
+				storeReports(),
+				snapshotManager());
+	}
 
-		final long elapsed = System.nanoTime() - before;
-		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+	/**
+	 * @return the snapshot of the stores
+	 */
+	@Bean
+	public SnapshotManager snapshotManager() {
+		return new SnapshotManager(
+				this.datastore,
+				this.schema,
+				loadSettings(),
+				cloudSources(),
+				historyWindow(),
+				storeReports(),
+				getVectorFile());
+	}
 
-		printStoreSizes();
+	/**
+	 * @return the loader of the dataset of the configured mode
+	 */
+	@Bean
+	public DatasetLoader datasetLoader() {
+		return new DatasetLoader(
+				loadSettings(),
+				loadSettings().getInitialFolders(this.schema.isHistoryEnabled()),
+				generatedDataLoader(),
+				csvDataLoader(),
+				parquetDataLoader(),
+				snapshotManager(),
+				lazyVectorLoader());
 	}
 
+	/**
+	 * @return the reload of another date
+	 */
+	@Bean
+	public DateReloader dateReloader() {
+		return new DateReloader(
+				loadSettings(),
+				datasetLoader(),
+				loadTransactions(),
+				historyWindow());
+	}
 
 	/**
-	 * Load CSV files.
-	 *
-	 * @throws Exception
+	 * @return the continuous ingestion of the new files, stopped with the context
 	 */
-	public void loadDataFromCSV() throws Exception {
-
-		CSVSource<Path> source = new CSVSource<>();
-		final Properties sourceProps = new Properties();
-		final String parserThreads = env.getProperty("csvSource.parserThreads", "4");
-		sourceProps.setProperty(ICSVSourceConfiguration.PARSER_THREAD_PROPERTY, parserThreads);
-		source.configure(sourceProps);
-
-		ICSVParserConfiguration tradeConfig = source.createParserConfiguration(Arrays.asList(
-				"Id",
-				"ProductId",
-				"ProductQtyMultiplier",
-				"Desk",
-				"Book",
-				"Trader",
-				"Counterparty",
-				"Date",
-				"Status",
-				"IsSimulated"));
-		tradeConfig.setSeparator(VaRCsvDataGenerator.CSV_SEPARATOR);
-		tradeConfig.setNumberSkippedLines(1);
-
-		ICSVParserConfiguration productConfig = source.createParserConfiguration(Arrays.asList(
-				"Id",
-				"ProductName",
-				"ProductType",
-				"UnderlierCode",
-				"UnderlierCurrency",
-				"UnderlierType",
-				"UnderlierValue",
-				"ProductBaseMtm",
-				"BumpedMtmUp",
-				"BumpedMtmDown",
-				"Theta",
-				"Rho"));
-		productConfig.setSeparator(VaRCsvDataGenerator.CSV_SEPARATOR);
-		productConfig.setNumberSkippedLines(1);
-
-		ICSVParserConfiguration riskConfig = source.createParserConfiguration(Arrays.asList(
-				"TradeId",
-				"Delta",
-				"Gamma",
-				"Vega",
-				"Pnl",
-				"PnlVector"));
-		riskConfig.setSeparator(VaRCsvDataGenerator.CSV_SEPARATOR);
-		riskConfig.setNumberSkippedLines(1);
-
-		FileSystemCSVTopicFactory topicFactory = new FileSystemCSVTopicFactory(false);
-		source.addTopic(topicFactory.createDirectoryTopic(
-				"Trades", this.dataPath, "glob:*trades*.csv", tradeConfig));
-		source.addTopic(topicFactory.createDirectoryTopic(
-				"Products", this.dataPath, "glob:*products*.csv", productConfig));
-		source.addTopic(topicFactory.createDirectoryTopic(
-				"Risks", this.dataPath, "glob:*risks*.csv", riskConfig));
-
-		CSVMessageChannelFactory<Path> factory = new CSVMessageChannelFactory<Path>(source, datastore);
-
-		final ITransactionManager tm = datastore.getTransactionManager();
-
-		// Load data into ActivePivot
-		final long before = System.nanoTime();
-
-		// Transaction for TV data
-		tm.startTransaction();
-
-		source.fetch(Arrays.asList(
-				factory.createChannel("Trades"),
-				factory.createChannel("Products"),
-				factory.createChannel("Risks")));
-
-		tm.commitTransaction();
-
-		final long elapsed = System.nanoTime() - before;
-		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
-
-		printStoreSizes();
-
-		topicFactory.close();
-		source.close();
+	@Bean
+	public ContinuousIngestion continuousIngestion() {
+		return new ContinuousIngestion(
+				loadSettings(),
+				cloudSources(),
+				this.datastore,
+				csvDataLoader(),
+				parquetDataLoader());
 	}
 
-	private void loadDataFromParquet(final boolean cloud) {
-		final var tradeMapping = new StoreToParquetMappingBuilder()
-				.onStore(DatastoreDescriptionConfig.TRADE_STORE)
-				.feedStoreField("Date")
-				.withColumnCalculator()
-				.mapToObject((schema) -> {
-					final int index = IStoreToParquetMapping.getIndexOfFieldNamed("Date", schema);
-					return (record, def) -> Trade.decodeLocalDate(record.getInt(index));
-				})
-				.build();
-
-		final var productMapping = new StoreToParquetMappingBuilder()
-				.onStore(DatastoreDescriptionConfig.PRODUCT_STORE)
-				.build();
-
-		final var riskMapping = new StoreToParquetMappingBuilder()
-				.onStore(DatastoreDescriptionConfig.RISK_STORE)
-				.build();
-
-		final var executor = Executors.newFixedThreadPool(this.parallelFiles);
-		try {
-			if (cloud) {
-				parseCloudDirectories(
-						executor,
-						riskMapping,
-						productMapping,
-						tradeMapping);
-			} else {
-				parseLocalDirectories(
-						executor,
-						riskMapping,
-						productMapping,
-						tradeMapping);
-			}
-
-			printStoreSizes();
-		} catch (Exception e) {
-			throw new RuntimeException("Cannot load from Parquet", e);
-		} finally {
-			executor.shutdown();
+	/**
+	 * Opens the memory mapped file of the pnl vectors, and registers the function summing them,
+	 * before the cubes are built.
+	 */
+	@Bean
+	public Void registerMappedVectorSum() {
+		if (getVectorFile() != null) {
+			MappedVectorSumFunction.register(getVectorFile());
 		}
+		return null;
 	}
 
-	private void parseCloudDirectories(
-			final ExecutorService executorService,
-			final IStoreToParquetMapping riskMapping,
-			final IStoreToParquetMapping productMapping,
-			final IStoreToParquetMapping tradeMapping) {
-		final CloudBlobClient client = getStorageClient();
-		final AzureCloudDirectory container = new AzureCloudDirectory(client, "test-var");
-		final ICloudDirectory<CloudBlob> dateDir = container.getSubDirectory(this.dateFolder);
-		final ICloudDirectory<CloudBlob> riskDir = dateDir.getSubDirectory("risks");
-		final ICloudDirectory<CloudBlob> productDir = dateDir.getSubDirectory("products");
-		final ICloudDirectory<CloudBlob> tradeDir = dateDir.getSubDirectory("trades");
-
-		final var partLength = 8 * 1024 * 1024; // 8 MB of slices
-		final var config = new CloudFetchingConfig(
-				this.parallelParts,
-				Math.min(this.parallelParts * 3, 64), // At most 500MB of transient parts
-				partLength);
-		final var downloadExecutor = Executors.newCachedThreadPool();
-		final Function<ICloudEntityPath<CloudBlob>, AConcurrentlyFetchingChannel<CloudBlob>>
-				factory = (path) -> new AzureBlobChannel(path, config, downloadExecutor);
-
-		// Load data into ActivePivot
-		final long before = System.nanoTime();
-		datastore.edit(tm -> {
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(riskDir, factory, null, riskMapping);
-			}
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(productDir, factory, null, productMapping);
-			}
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(tradeDir, factory, null, tradeMapping);
-			}
-			tm.forceCommit();
-		});
+	/**
+	 * Gets the memory mapped file of the pnl vectors, opened on the first call.
+	 *
+	 * @return the file, {@code null} unless the vectors are memory mapped
+	 */
+	private synchronized MappedVectorFile getVectorFile() {
+		if (this.vectorFile == null && this.schema.isVectorStorageMapped()) {
+			this.vectorFile = MappedVectorFile.open(
+					this.schema.getVectorFile(),
+					this.schema.getVectorPrecision());
+		}
+		return this.vectorFile;
+	}
 
-		final long elapsed = System.nanoTime() - before;
-		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+	/**
+	 * Closes the memory mapped file of the pnl vectors.
+	 */
+	@PreDestroy
+	public void closeVectorFile() throws IOException {
+		if (this.vectorFile != null) {
+			this.vectorFile.close();
+		}
 	}
 
-	private void parseLocalDirectories(
-			final ExecutorService executorService,
-			final IStoreToParquetMapping riskMapping,
-			final IStoreToParquetMapping productMapping,
-			final IStoreToParquetMapping tradeMapping) {
-		final Path dataDir = Paths.get(this.dataPath);
-		final String riskDir = dataDir.resolve("risks").toAbsolutePath().toString();
-		final String productDir = dataDir.resolve("products").toAbsolutePath().toString();
-		final String tradeDir = dataDir.resolve("trades").toAbsolutePath().toString();
-
-		// Load data into ActivePivot
-		final long before = System.nanoTime();
-		datastore.edit(tm -> {
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(riskDir, riskMapping);
-			} catch (IOException e) {
-				throw new RuntimeException("Cannot load folder " + riskDir, e);
-			}
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(productDir, productMapping);
-			} catch (IOException e) {
-				throw new RuntimeException("Cannot load folder " + productDir, e);
-			}
-			try (final var parser = new ParquetParser(
-					this.datastore,
-					executorService,
-					new NoRestrictionParquetPolicy())) {
-				parser.parse(tradeDir, tradeMapping);
-			} catch (IOException e) {
-				throw new RuntimeException("Cannot load folder " + tradeDir, e);
-			}
-			tm.forceCommit();
-		});
+	/*
+	 * ****************************** Endpoints **********************************
+	 */
 
-		final long elapsed = System.nanoTime() - before;
-		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+	/**
+	 * Exposes the reload of another date as an actuator endpoint.
+	 */
+	@Bean
+	public DateReloadEndpoint dateReloadEndpoint() {
+		return new DateReloadEndpoint(dateReloader());
 	}
 
-	private void printStoreSizes() {
-		// Print stop watch profiling
-		StopWatch.get().printTimings();
-		StopWatch.get().printTimingLegend();
-
-		// print sizes
-		SchemaPrinter.printStoresSizes(datastore.getHead().getSchema());
+	/**
+	 * Exposes the memory breakdown of the stores as an actuator endpoint.
+	 */
+	@Bean
+	public MemoryBreakdownEndpoint memoryBreakdownEndpoint() {
+		return new MemoryBreakdownEndpoint(storeReports());
 	}
 
-	private CloudBlobClient getStorageClient() {
-		return BlobUtil.getCloudBlobClient(
-				Objects.requireNonNull(this.connectionString, "No connection string"));
+	/**
+	 * Exposes the statistics of the partitions of the stores as an actuator endpoint.
+	 */
+	@Bean
+	public PartitionStatsEndpoint partitionStatsEndpoint() {
+		return new PartitionStatsEndpoint(this.datastore, this.schema);
 	}
 
 }
@@ -0,0 +1,61 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.activeviam.var.cfg.load.DateReloader;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+/**
+ * Actuator endpoint reloading the data of another business date, while the queries keep reading
+ * the loaded date.
+ * <p>
+ * {@code POST /actuator/reload/<date>} loads the date folder and switches to it, returning the
+ * report of the reload. {@code GET /actuator/reload} returns the report of the last reload.
+ * Reloading requires the {@code ROLE_ADMIN} authority.
+ *
+ * @author ActiveViam
+ */
+@Endpoint(id = "reload")
+public class DateReloadEndpoint {
+
+	/** The reload of another date */
+	protected final DateReloader reloader;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reloader the reload of another date
+	 */
+	public DateReloadEndpoint(final DateReloader reloader) {
+		this.reloader = reloader;
+	}
+
+	/**
+	 * @return the report of the last reload, empty if none
+	 */
+	@ReadOperation
+	public Map<String, Object> lastReload() {
+		return this.reloader.getLastReload();
+	}
+
+	/**
+	 * Reloads the data of a date.
+	 *
+	 * @param date the date folder to load
+	 * @return the report of the reload
+	 */
+	@WriteOperation
+	public Map<String, Object> reload(@Selector final String date) {
+		return this.reloader.reloadDate(date);
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.activeviam.var.cfg.datastore.EpochRetention;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint giving the versions of the datastore retained besides the head one, and
+ * releasing them.
+ * <p>
+ * {@code GET /actuator/epochs} returns the retained versions and the memory they pin, {@code
+ * DELETE /actuator/epochs} releases them all but the head one, even those queries are reading.
+ * Releasing them requires the {@code ROLE_ADMIN} authority.
+ *
+ * @author ActiveViam
+ */
+@Endpoint(id = "epochs")
+public class EpochRetentionEndpoint {
+
+	/** The retention of the versions */
+	protected final EpochRetention retention;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param retention the retention of the versions
+	 */
+	public EpochRetentionEndpoint(final EpochRetention retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * @return the metrics of the retained versions
+	 */
+	@ReadOperation
+	public Map<String, Object> epochs() {
+		return this.retention.getMetrics();
+	}
+
+	/**
+	 * Releases the retained versions.
+	 *
+	 * @return the metrics after the release
+	 */
+	@DeleteOperation
+	public Map<String, Object> release() {
+		return this.retention.release();
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.activeviam.var.cfg.load.StoreReports;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint giving the memory of the stores, field by field, and of the process.
+ * <p>
+ * {@code GET /actuator/memory} reads the committed records of the stores on each call, which
+ * takes a pass over the stores.
+ *
+ * @author ActiveViam
+ */
+@Endpoint(id = "memory")
+public class MemoryBreakdownEndpoint {
+
+	/** The reports on the stores */
+	protected final StoreReports reports;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reports the reports on the stores
+	 */
+	public MemoryBreakdownEndpoint(final StoreReports reports) {
+		this.reports = reports;
+	}
+
+	/**
+	 * @return the memory breakdown of the stores and of the process
+	 */
+	@ReadOperation
+	public Map<String, Object> memory() {
+		return this.reports.getMemoryBreakdown().toMap();
+	}
+
+}
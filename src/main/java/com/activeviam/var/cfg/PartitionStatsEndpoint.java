@@ -0,0 +1,83 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.monitoring.PartitionStatistics;
+import com.qfs.store.IDatastore;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+/**
+ * Actuator endpoint giving the rows of the partitions of the partitioned stores, and their skew.
+ * <p>
+ * {@code GET /actuator/partitions} returns the statistics of the trades and risks, and
+ * {@code GET /actuator/partitions/<store>} those of a store. The rows are counted from the
+ * committed records on each call.
+ *
+ * @author ActiveViam
+ */
+@Endpoint(id = "partitions")
+public class PartitionStatsEndpoint {
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The description of the stores */
+	protected final DatastoreDescriptionConfig schema;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 * @param schema the description of the stores
+	 */
+	public PartitionStatsEndpoint(
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema) {
+		this.datastore = datastore;
+		this.schema = schema;
+	}
+
+	/**
+	 * @return the statistics of the partitions of the partitioned stores, by store
+	 */
+	@ReadOperation
+	public Map<String, Object> partitions() {
+		final List<String> stores = new ArrayList<>(List.of(
+				DatastoreDescriptionConfig.TRADE_STORE,
+				DatastoreDescriptionConfig.RISK_STORE));
+		if (this.schema.hasVectorStore()) {
+			stores.add(DatastoreDescriptionConfig.VECTOR_STORE);
+		}
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		for (final String store : stores) {
+			statistics.put(store, partitions(store));
+		}
+		return statistics;
+	}
+
+	/**
+	 * @param store the name of a partitioned store
+	 * @return the statistics of the partitions of the store
+	 */
+	@ReadOperation
+	public Map<String, Object> partitions(@Selector final String store) {
+		return new PartitionStatistics(
+				store,
+				this.schema.getPartitioning(store),
+				this.schema.getPartitionCount())
+				.count(this.datastore)
+				.toMap();
+	}
+
+}
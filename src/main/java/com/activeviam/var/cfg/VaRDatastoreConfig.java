@@ -0,0 +1,49 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg;
+
+import com.activeviam.builders.StartBuilding;
+import com.qfs.multiversion.IEpochManagementPolicy;
+import com.qfs.server.cfg.IActivePivotManagerDescriptionConfig;
+import com.qfs.server.cfg.IDatastoreConfig;
+import com.qfs.store.IDatastore;
+import com.quartetfs.biz.pivot.definitions.impl.ActivePivotDatastorePostProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration of the datastore, built as by the default datastore configuration, with
+ * the epoch management policy of the {@link ActivePivotVaRConfig#epochManagementPolicy
+ * retention of the versions}.
+ *
+ * @author ActiveViam
+ */
+@Configuration
+public class VaRDatastoreConfig implements IDatastoreConfig {
+
+	/** The description of the stores and of the cube */
+	@Autowired
+	protected IActivePivotManagerDescriptionConfig apManagerConfig;
+
+	/** The policy releasing the versions of the datastore */
+	@Autowired
+	protected IEpochManagementPolicy epochManagementPolicy;
+
+	@Bean
+	@Override
+	public IDatastore datastore() {
+		return StartBuilding.datastore()
+				.setSchemaDescription(this.apManagerConfig.userSchemaDescription())
+				.addSchemaDescriptionPostProcessors(ActivePivotDatastorePostProcessor
+						.createFrom(this.apManagerConfig.managerDescription()))
+				.setEpochManagementPolicy(this.epochManagementPolicy)
+				.build();
+	}
+
+}
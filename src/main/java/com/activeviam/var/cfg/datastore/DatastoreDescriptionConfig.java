@@ -12,14 +12,28 @@ import static com.qfs.literal.ILiteralType.LOCAL_DATE;
 import static com.qfs.literal.ILiteralType.LONG;
 import static com.qfs.literal.ILiteralType.STRING;
 
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.generator.VectorPrecision;
+import com.activeviam.var.source.manifest.LoadManifest;
 import com.qfs.desc.IDatastoreSchemaDescription;
 import com.qfs.desc.IReferenceDescription;
 import com.qfs.desc.IStoreDescription;
 import com.qfs.desc.impl.DatastoreSchemaDescription;
 import com.qfs.desc.impl.ReferenceDescription;
 import com.qfs.desc.impl.StoreDescriptionBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import org.springframework.core.env.Environment;
 
 /**
@@ -35,49 +49,519 @@ public class DatastoreDescriptionConfig {
 	public static final String TRADE_STORE = "Trades";
 	public static final String PRODUCT_STORE = "Products";
 	public static final String RISK_STORE = "Risks";
+	/** Store of the pnl vectors, when they are kept apart from the risks */
+	public static final String VECTOR_STORE = "PnlVectors";
+	/** Store of the scenario matrix of the factor model, a row per factor */
+	public static final String SCENARIO_STORE = "Scenarios";
+	/** Key field of the business date of the trades and risks, when keeping a history */
+	public static final String AS_OF_DATE = "AsOfDate";
+
+	/** Fields that cannot be excluded: the keys, the references and the fields of the levels */
+	private static final Set<String> REQUIRED_FIELDS = Set.of(
+			"Products.Id",
+			"Products.ProductName",
+			"Products.ProductType",
+			"Products.UnderlierCode",
+			"Products.UnderlierCurrency",
+			"Products.UnderlierType",
+			"Trades.Id",
+			"Trades.ProductId",
+			"Trades.Desk",
+			"Trades.Book",
+			"Trades.Trader",
+			"Trades.Counterparty",
+			"Trades.Date",
+			"Trades.AsOfDate",
+			"Risks.TradeId",
+			"Risks.AsOfDate");
+
+	/** Fields of the trades copied into the denormalized risks, by name */
+	private static final List<String> JOINED_TRADE_FIELDS =
+			List.of("ProductId", "Desk", "Book", "Trader", "Counterparty", "Date");
+	/** Fields of the products copied into the denormalized risks, by name */
+	private static final List<String> JOINED_PRODUCT_FIELDS = List.of(
+			"ProductName",
+			"ProductType",
+			"UnderlierCode",
+			"UnderlierCurrency",
+			"UnderlierType");
+
+	/**
+	 * Fields the partitioning of the stores can use, by store: the trades only by the Id that
+	 * Risk_To_Trade maps, the denormalized risks also by the {@link #JOINED_TRADE_FIELDS}
+	 */
+	private static final Map<String, Set<String>> PARTITIONING_FIELDS = Map.of(
+			TRADE_STORE, Set.of("Id"),
+			RISK_STORE, Set.of("TradeId"),
+			VECTOR_STORE, Set.of("TradeId"));
+
+	/** Bounds of the chunk sizes computed from the manifest */
+	private static final int MIN_CHUNK_SIZE = 1 << 10;
+	private static final int MAX_CHUNK_SIZE = 1 << 20;
 
 	protected Environment env;
 
+	/** The manifest of the loaded data, or {@code null} */
+	protected final LoadManifest manifest;
+
+	/** The fields excluded from the stores, as {@code <Store>.<Field>} */
+	protected final Set<String> excludedFields;
+
 	public DatastoreDescriptionConfig(final Environment env) {
 		this.env = env;
+		this.excludedFields = Arrays
+				.stream(env.getProperty("datastore.excluded-fields", String[].class, new String[0]))
+				.map(String::trim)
+				.filter(field -> !field.isEmpty())
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+		for (final String field : this.excludedFields) {
+			final String store = field.substring(0, Math.max(0, field.indexOf('.')));
+			if (!List.of(PRODUCT_STORE, TRADE_STORE, RISK_STORE).contains(store)) {
+				throw new IllegalArgumentException("Expected <Store>.<Field> to exclude: " + field);
+			}
+			if (REQUIRED_FIELDS.contains(field)) {
+				throw new IllegalArgumentException("The field " + field + " cannot be excluded");
+			}
+		}
+		this.manifest = readManifest(env);
+		if (isVectorLoadingLazy() && !hasVectorStore()) {
+			throw new IllegalArgumentException(
+					"The lazy loading of the vectors requires datastore.separate-vectors");
+		}
+		if (isVectorStorageMapped() && isHistoryEnabled()) {
+			throw new IllegalArgumentException(
+					"The memory mapped vectors cannot be used with the history");
+		}
+		if (getVectorModel() == VectorModel.PRODUCT) {
+			if (hasVectorStore() || isVectorStorageMapped()) {
+				throw new IllegalArgumentException(
+						"The pnl vectors per product are kept in memory, in the product store");
+			}
+			if (getVectorPrecision() == VectorPrecision.SCALED_INT) {
+				throw new IllegalArgumentException(
+						"The unit pnl vectors cannot be scaled integers");
+			}
+			if (!isIncluded(TRADE_STORE, "ProductQtyMultiplier")) {
+				throw new IllegalArgumentException(
+						"The pnl vectors per product are scaled by Trades.ProductQtyMultiplier");
+			}
+		}
+		if (getVectorModel() == VectorModel.FACTOR
+				&& (hasVectorStore() || isVectorStorageMapped())) {
+			throw new IllegalArgumentException(
+					"The factor loadings are kept in memory, in the risk store");
+		}
+		if (isRiskStoreDenormalized() && getVectorModel() == VectorModel.PRODUCT) {
+			throw new IllegalArgumentException(
+					"The pnl vectors per product are read through the references of the risks");
+		}
+		checkReferencedPartitionings();
+	}
+
+	/**
+	 * Checks that each partition of the risks references a single partition of the trades through
+	 * Risk_To_Trade, and of the vectors through Risk_To_PnlVector.
+	 *
+	 * @throws IllegalArgumentException if the partitioning of the trades or of the vectors cannot
+	 * 		be followed from the partitions of the risks
+	 */
+	private void checkReferencedPartitionings() {
+		final PartitioningStrategy risks = getPartitioning(RISK_STORE);
+		final PartitioningStrategy trades = getPartitioning(TRADE_STORE);
+		if (!risks.canReference(trades, Map.of("TradeId", "Id", AS_OF_DATE, AS_OF_DATE))) {
+			throw new IllegalArgumentException("The trades partitioned by " + trades
+					+ " cannot be referenced from the risks partitioned by " + risks
+					+ ": partition the risks by the same functions of TradeId");
+		}
+		if (hasVectorStore()) {
+			final PartitioningStrategy vectors = getPartitioning(VECTOR_STORE);
+			if (!risks.canReference(
+					vectors,
+					Map.of("TradeId", "TradeId", AS_OF_DATE, AS_OF_DATE))) {
+				throw new IllegalArgumentException("The vectors partitioned by " + vectors
+						+ " cannot be referenced from the risks partitioned by " + risks
+						+ ": partition the risks by a function of TradeId as well");
+			}
+		}
+	}
+
+	/**
+	 * Reads the manifest of the loaded data: the datastore.manifest file when set, otherwise the
+	 * first manifest found in the csvSource.data-dir directory, in its parquet sub-directory where
+	 * the Parquet generator writes its files, or in the date folder of the simulated cloud.
+	 *
+	 * @return the manifest, {@code null} if there is none
+	 */
+	private static LoadManifest readManifest(final Environment env) {
+		final String location = env.getProperty("datastore.manifest", "");
+		if (!location.isEmpty()) {
+			final Path file = Paths.get(location);
+			return Files.isRegularFile(file) ? LoadManifest.read(file) : null;
+		}
+		final Path dataDir = Paths.get(env.getProperty("csvSource.data-dir", "data"));
+		final List<Path> candidates = new LinkedList<>(List.of(
+				dataDir.resolve(LoadManifest.FILE_NAME),
+				dataDir.resolve("parquet").resolve(LoadManifest.FILE_NAME)));
+		if ("parquet-cloud".equals(env.getProperty("csvSource.mode"))
+				&& "local".equals(env.getProperty("cloud-source.provider"))) {
+			candidates.add(Paths.get(
+					env.getProperty("cloud-source.simulation.root", "data/cloud"),
+					env.getProperty("cloud-source.date-folder", ""),
+					LoadManifest.FILE_NAME));
+		}
+		for (final Path file : candidates) {
+			if (Files.isRegularFile(file)) {
+				return LoadManifest.read(file);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the manifest of the loaded data, {@code null} if there is none
+	 */
+	public LoadManifest getManifest() {
+		return this.manifest;
+	}
+
+	/**
+	 * Computes the chunk size of a store: the datastore.chunk-size property when set, otherwise
+	 * from the rows of its largest partition in the manifest, so that the chunks of each partition
+	 * are allocated once instead of growing during the load.
+	 * <p>
+	 * The counts of the partitions of the manifest are only used when they were counted with the
+	 * partitioning and the number of partitions of the store. Otherwise the rows of the store are
+	 * assumed to be evenly spread over its partitions.
+	 *
+	 * @param store the name of the store
+	 * @param partitions the number of partitions of the store
+	 * @return the chunk size, a power of two, or 0 to keep the default one
+	 * @throws IllegalArgumentException if the datastore.chunk-size property is not a power of two
+	 */
+	public int getChunkSize(final String store, final int partitions) {
+		final int chunkSize = env.getProperty("datastore.chunk-size", Integer.class, 0);
+		if (chunkSize != 0) {
+			if (chunkSize < 0 || Integer.bitCount(chunkSize) != 1) {
+				throw new IllegalArgumentException(
+						"The chunk size must be a power of two, not " + chunkSize);
+			}
+			return chunkSize;
+		}
+		if (this.manifest == null || this.manifest.getRows(store) == 0) {
+			return 0;
+		}
+		final long[] rows = this.manifest.getPartitionRows(store);
+		final long partitionRows = rows.length == partitions && isPartitionedAsManifest(store)
+				? Arrays.stream(rows).max().orElse(0)
+				: (this.manifest.getRows(store) + partitions - 1) / partitions;
+		final long size = Long.highestOneBit(Math.max(1, partitionRows - 1)) << 1;
+		return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+	}
+
+	/**
+	 * Checks whether a store is partitioned as the rows of the manifest were counted.
+	 */
+	private boolean isPartitionedAsManifest(final String store) {
+		final String counted = this.manifest.getPartitioning(store);
+		if (counted == null) {
+			return false;
+		}
+		if (!PARTITIONING_FIELDS.containsKey(store)) {
+			// Not partitioned, the manifest holding a single count
+			return true;
+		}
+		return getPartitioning(store).toString()
+				.equals(PartitioningStrategy.parse(counted).toString());
 	}
 
+	/**
+	 * @return the number of partitions of the modulo and hash partitionings, by the
+	 * 		datastore.partitionCount property, the number of cores by default
+	 */
 	public int getPartitionCount() {
-		return env.getProperty("datastore.partitionCount", Integer.class, 8);
+		return env.getProperty(
+				"datastore.partitionCount",
+				Integer.class,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Gets the partitioning of a store, by the datastore.partitioning.trades and
+	 * datastore.partitioning.risks properties, the store of the vectors following the risks when
+	 * it can. Without them, the stores are partitioned by the modulo of their key.
+	 * <p>
+	 * With the history, the stores are first partitioned by {@value #AS_OF_DATE}, so that the
+	 * removal of an evicted date only deletes rows in the partitions of that date, then by the hash
+	 * of their key by default.
+	 * <p>
+	 * The trades can only be partitioned by their Id, the only field Risk_To_Trade maps. The
+	 * denormalized risks can also be partitioned by the fields of their trade they hold, such as
+	 * {@code value(Desk)|modulo(TradeId)}, for the queries filtered by desk to only read the
+	 * partitions of that desk.
+	 *
+	 * @param store the name of the store
+	 * @return the partitioning
+	 * @throws IllegalArgumentException if the store is not partitioned, or if the partitioning
+	 * 		uses a field the store cannot be partitioned by
+	 */
+	public PartitioningStrategy getPartitioning(final String store) {
+		if (!PARTITIONING_FIELDS.containsKey(store)) {
+			throw new IllegalArgumentException("Not a partitioned store: " + store);
+		}
+		final String keyField = TRADE_STORE.equals(store) ? "Id" : "TradeId";
+		final String defaultPartitioning =
+				(isHistoryEnabled() ? "hash(" : "modulo(") + keyField + ")";
+		final String property = "datastore.partitioning."
+				+ (TRADE_STORE.equals(store) ? "trades" : "risks");
+		PartitioningStrategy partitioning =
+				PartitioningStrategy.parse(env.getProperty(property, defaultPartitioning));
+		final Set<String> fields = new TreeSet<>(PARTITIONING_FIELDS.get(store));
+		if (RISK_STORE.equals(store) && isRiskStoreDenormalized()) {
+			fields.addAll(JOINED_TRADE_FIELDS);
+		}
+		for (final String field : partitioning.getFields()) {
+			if (!fields.contains(field) || !isIncluded(store, field)) {
+				if (VECTOR_STORE.equals(store)) {
+					partitioning = PartitioningStrategy.parse(defaultPartitioning);
+					break;
+				}
+				throw new IllegalArgumentException(
+						"The store " + store + " cannot be partitioned by " + field + ", expected "
+								+ fields);
+			}
+		}
+		return isHistoryEnabled()
+				? PartitioningStrategy.parse("value(" + AS_OF_DATE + ")|" + partitioning)
+				: partitioning;
+	}
+
+	/**
+	 * Checks whether the risks are partitioned by a field of their trade, which the denormalized
+	 * risks must then hold as they are added.
+	 *
+	 * @return {@code true} if the partitioning of the risks uses a field copied from the trades
+	 */
+	public boolean isRiskPartitionedByTradeFields() {
+		return getPartitioning(RISK_STORE).getFields().stream()
+				.anyMatch(JOINED_TRADE_FIELDS::contains);
+	}
+
+	/**
+	 * Checks whether the trades and risks of several business dates are kept, by the
+	 * history.enabled property: they are then keyed by {@value #AS_OF_DATE} as well.
+	 *
+	 * @return {@code true} if the stores keep a history of dates
+	 */
+	public boolean isHistoryEnabled() {
+		return env.getProperty("history.enabled", Boolean.class, false);
+	}
+
+	/**
+	 * @return the precision of the pnl vectors, by the datastore.vector-precision property
+	 */
+	public VectorPrecision getVectorPrecision() {
+		return VectorPrecision.of(env.getProperty("datastore.vector-precision", "double"));
+	}
+
+	/**
+	 * @return the value of a unit of the {@link VectorPrecision#SCALED_INT scaled} pnl vectors, by
+	 * 		the datastore.vector-scale property
+	 */
+	public double getVectorScale() {
+		return env.getProperty("datastore.vector-scale", Double.class, 0.01);
+	}
+
+	/**
+	 * @return where the pnl vectors are held, by the datastore.vector-model property: a vector per
+	 * 		risk, or a unit vector per product scaled by the quantities of its trades at query
+	 * 		time
+	 */
+	public VectorModel getVectorModel() {
+		return VectorModel.of(env.getProperty("datastore.vector-model", "trade"));
+	}
+
+	/**
+	 * @return the number of factors of the factor model, by the datastore.factor-count property
+	 */
+	public int getFactorCount() {
+		return env.getProperty("datastore.factor-count", Integer.class, 8);
+	}
+
+	/**
+	 * @return the seed of the scenario matrix of the factor model, by the datastore.factor-seed
+	 * 		property
+	 */
+	public long getFactorSeed() {
+		return env.getProperty("datastore.factor-seed", Long.class, 1L);
+	}
+
+	/**
+	 * Checks whether the pnl vectors are kept in their own store, {@value #VECTOR_STORE}, by the
+	 * datastore.separate-vectors property: the risks then reference their vector by TradeId.
+	 *
+	 * @return {@code true} if there is a store of the pnl vectors
+	 */
+	public boolean hasVectorStore() {
+		return env.getProperty("datastore.separate-vectors", Boolean.class, false)
+				&& isIncluded(RISK_STORE, "PnlVector");
+	}
+
+	/**
+	 * Checks whether the pnl vectors are loaded in their own transaction, once the other stores are
+	 * committed, by the datastore.lazy-vectors property.
+	 *
+	 * @return {@code true} if the vectors are loaded after the other stores
+	 */
+	public boolean isVectorLoadingLazy() {
+		return env.getProperty("datastore.lazy-vectors", Boolean.class, false);
+	}
+
+	/**
+	 * Checks whether the pnl vectors are kept in a memory mapped file, the datastore.vector-storage
+	 * property being mmap instead of memory: their field then holds their offset in the file.
+	 *
+	 * @return {@code true} if the vectors are memory mapped
+	 */
+	public boolean isVectorStorageMapped() {
+		final String storage = env.getProperty("datastore.vector-storage", "memory");
+		switch (storage) {
+			case "memory":
+				return false;
+			case "mmap":
+				return true;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown vector storage " + storage + ", expected memory or mmap");
+		}
+	}
+
+	/**
+	 * Checks whether the risks hold the fields of the levels of their trade and product, by the
+	 * datastore.schema property being denormalized instead of normalized. The loads then copy
+	 * them from the trades and products into the risks before committing, and the cube only reads
+	 * the risk store.
+	 *
+	 * @return {@code true} if the risk store is denormalized
+	 */
+	public boolean isRiskStoreDenormalized() {
+		final String schema = env.getProperty("datastore.schema", "normalized");
+		switch (schema) {
+			case "normalized":
+				return false;
+			case "denormalized":
+				return true;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown schema " + schema + ", expected normalized or denormalized");
+		}
+	}
+
+	/**
+	 * @return the fields of the trades and products copied into the denormalized risks, by name,
+	 * 		with their path from the risk store through the references
+	 */
+	public Map<String, String> getJoinedRiskFields() {
+		final Map<String, String> fields = new LinkedHashMap<>();
+		for (final String field : JOINED_TRADE_FIELDS) {
+			fields.put(field, "Risk_To_Trade/" + field);
+		}
+		for (final String field : JOINED_PRODUCT_FIELDS) {
+			fields.put(field, "Risk_To_Trade/Trade_To_Product/" + field);
+		}
+		return fields;
+	}
+
+	/**
+	 * @return the memory mapped file of the vectors, by the datastore.vector-file property
+	 */
+	public Path getVectorFile() {
+		return Paths.get(env.getProperty("datastore.vector-file", "vectors/pnl-vectors.bin"));
+	}
+
+	/**
+	 * @return the type of the PnlVector field: the vectors in their precision, or their offset
+	 * 		when memory mapped
+	 */
+	public String getPnlVectorDataType() {
+		return isVectorStorageMapped() ? LONG : getVectorPrecision().getDataType();
+	}
+
+	/**
+	 * Checks whether a field is kept in its store, by the datastore.excluded-fields property.
+	 *
+	 * @param store the name of the store
+	 * @param field the name of the field
+	 * @return {@code false} if the field is excluded from the store
+	 */
+	public boolean isIncluded(final String store, final String field) {
+		return !this.excludedFields.contains(store + "." + field);
+	}
+
+	/**
+	 * @return the fields excluded from the stores, as {@code <Store>.<Field>}
+	 */
+	public Set<String> getExcludedFields() {
+		return this.excludedFields;
 	}
 
 	public IStoreDescription products() {
 
-		return new StoreDescriptionBuilder().withStoreName(PRODUCT_STORE)
+		var builder = new StoreDescriptionBuilder().withStoreName(PRODUCT_STORE)
 				.withField("Id", INT).asKeyField()
 				.withField("ProductName", STRING)
 				.withField("ProductType", STRING)
 				.withField("UnderlierCode", STRING)
 				.withField("UnderlierCurrency", STRING)
-				.withField("UnderlierType", STRING)
-				.withField("UnderlierValue", DOUBLE)
-				.withField("ProductBaseMtm", DOUBLE)
-				.withField("BumpedMtmUp", DOUBLE)
-				.withField("BumpedMtmDown", DOUBLE)
-				.withField("Theta", DOUBLE)
-				.withField("Rho", DOUBLE)
-				.build();
+				.withField("UnderlierType", STRING);
+		for (final String field : List.of(
+				"UnderlierValue",
+				"ProductBaseMtm",
+				"BumpedMtmUp",
+				"BumpedMtmDown",
+				"Theta",
+				"Rho")) {
+			if (isIncluded(PRODUCT_STORE, field)) {
+				builder = builder.withField(field, DOUBLE);
+			}
+		}
+		if (getVectorModel() == VectorModel.PRODUCT && isIncluded(RISK_STORE, "PnlVector")) {
+			builder = builder.withNullableField("UnitPnlVector", getPnlVectorDataType());
+		}
+		final int chunkSize = getChunkSize(PRODUCT_STORE, 1);
+		if (chunkSize > 0) {
+			builder = builder.withChunkSize(chunkSize);
+		}
+		return builder.build();
 	}
 
 	public IStoreDescription trades() {
 
-		return new StoreDescriptionBuilder().withStoreName(TRADE_STORE)
-				.withField("Id", LONG).asKeyField()
-				.withField("ProductId", INT)
-				.withField("ProductQtyMultiplier", DOUBLE)
+		var builder = new StoreDescriptionBuilder().withStoreName(TRADE_STORE)
+				.withField("Id", LONG).asKeyField();
+		if (isHistoryEnabled()) {
+			builder = builder.withField(AS_OF_DATE, LOCAL_DATE).asKeyField();
+		}
+		builder = builder.withField("ProductId", INT);
+		if (isIncluded(TRADE_STORE, "ProductQtyMultiplier")) {
+			builder = builder.withField("ProductQtyMultiplier", DOUBLE);
+		}
+		builder = builder
 				.withField("Desk", STRING)
 				.withField("Book", INT)
 				.withField("Trader", STRING)
 				.withField("Counterparty", STRING)
-				.withField("Date", LOCAL_DATE)
-				.withField("Status", STRING)
-				.withField("IsSimulated", STRING)
-				.withModuloPartitioning("Id", getPartitionCount())
+				.withField("Date", LOCAL_DATE);
+		for (final String field : List.of("Status", "IsSimulated")) {
+			if (isIncluded(TRADE_STORE, field)) {
+				builder = builder.withField(field, STRING);
+			}
+		}
+		final int chunkSize = getChunkSize(TRADE_STORE, getPartitionCount());
+		if (chunkSize > 0) {
+			builder = builder.withChunkSize(chunkSize);
+		}
+		return builder
+				.withPartitioning(getPartitioning(TRADE_STORE).toDescriptor(getPartitionCount()))
 				.build();
 	}
 
@@ -85,14 +569,78 @@ public class DatastoreDescriptionConfig {
 	 * @return the description of the risk store
 	 */
 	public IStoreDescription risks() {
-		return new StoreDescriptionBuilder().withStoreName(RISK_STORE)
-				.withField("TradeId", LONG).asKeyField()
-				.withField("Pnl", DOUBLE)
-				.withField("Delta", DOUBLE)
-				.withField("Gamma", DOUBLE)
-				.withField("Vega", DOUBLE)
-				.withNullableField("PnlVector", "double[]")
-				.withModuloPartitioning("TradeId", getPartitionCount())
+		var builder = new StoreDescriptionBuilder().withStoreName(RISK_STORE)
+				.withField("TradeId", LONG).asKeyField();
+		if (isHistoryEnabled()) {
+			builder = builder.withField(AS_OF_DATE, LOCAL_DATE).asKeyField();
+		}
+		if (isRiskStoreDenormalized()) {
+			// Filled from the trades and products before each commit
+			builder = builder
+					.withField("ProductId", INT)
+					.withField("Desk", STRING)
+					.withField("Book", INT)
+					.withField("Trader", STRING)
+					.withField("Counterparty", STRING)
+					.withField("Date", LOCAL_DATE);
+			for (final String field : JOINED_PRODUCT_FIELDS) {
+				builder = builder.withField(field, STRING);
+			}
+		}
+		for (final String field : List.of("Pnl", "Delta", "Gamma", "Vega")) {
+			if (isIncluded(RISK_STORE, field)) {
+				builder = builder.withField(field, DOUBLE);
+			}
+		}
+		if (isIncluded(RISK_STORE, "PnlVector") && !hasVectorStore()) {
+			switch (getVectorModel()) {
+				case TRADE:
+					builder = builder.withNullableField("PnlVector", getPnlVectorDataType());
+					break;
+				case FACTOR:
+					builder = builder.withNullableField("FactorLoadings", getPnlVectorDataType());
+					break;
+				default:
+					break;
+			}
+		}
+		final int chunkSize = getChunkSize(RISK_STORE, getPartitionCount());
+		if (chunkSize > 0) {
+			builder = builder.withChunkSize(chunkSize);
+		}
+		return builder
+				.withPartitioning(getPartitioning(RISK_STORE).toDescriptor(getPartitionCount()))
+				.build();
+	}
+
+	/**
+	 * @return the description of the store of the pnl vectors, partitioned as the risks, which have
+	 * 		as many rows
+	 */
+	public IStoreDescription pnlVectors() {
+		var builder = new StoreDescriptionBuilder().withStoreName(VECTOR_STORE)
+				.withField("TradeId", LONG).asKeyField();
+		if (isHistoryEnabled()) {
+			builder = builder.withField(AS_OF_DATE, LOCAL_DATE).asKeyField();
+		}
+		builder = builder.withNullableField("PnlVector", getPnlVectorDataType());
+		final int chunkSize = getChunkSize(RISK_STORE, getPartitionCount());
+		if (chunkSize > 0) {
+			builder = builder.withChunkSize(chunkSize);
+		}
+		return builder
+				.withPartitioning(getPartitioning(VECTOR_STORE).toDescriptor(getPartitionCount()))
+				.build();
+	}
+
+	/**
+	 * @return the description of the store of the scenario matrix of the factor model: the pnl of
+	 * 		the scenarios for a unit loading on each factor
+	 */
+	public IStoreDescription scenarios() {
+		return new StoreDescriptionBuilder().withStoreName(SCENARIO_STORE)
+				.withField("Factor", INT).asKeyField()
+				.withField("Scenarios", VectorPrecision.DOUBLE.getDataType())
 				.build();
 	}
 
@@ -104,12 +652,40 @@ public class DatastoreDescriptionConfig {
 				.withName("Trade_To_Product")
 				.withMapping("ProductId", "Id")
 				.build());
+		if (isHistoryEnabled()) {
+			references.add(ReferenceDescription.builder()
+					.fromStore("Risks")
+					.toStore("Trades")
+					.withName("Risk_To_Trade")
+					.withMapping("TradeId", "Id")
+					.withMapping(AS_OF_DATE, AS_OF_DATE)
+					.build());
+			if (hasVectorStore()) {
+				references.add(ReferenceDescription.builder()
+						.fromStore(RISK_STORE)
+						.toStore(VECTOR_STORE)
+						.withName("Risk_To_PnlVector")
+						.withMapping("TradeId", "TradeId")
+						.withMapping(AS_OF_DATE, AS_OF_DATE)
+						.build());
+			}
+			return references;
+		}
 		references.add(ReferenceDescription.builder()
 				.fromStore("Risks")
 				.toStore("Trades")
 				.withName("Risk_To_Trade")
 				.withMapping("TradeId", "Id")
 				.build());
+		if (hasVectorStore()) {
+			// The risks without a vector yet read a null vector, until it is added
+			references.add(ReferenceDescription.builder()
+					.fromStore(RISK_STORE)
+					.toStore(VECTOR_STORE)
+					.withName("Risk_To_PnlVector")
+					.withMapping("TradeId", "TradeId")
+					.build());
+		}
 		return references;
 	}
 
@@ -126,6 +702,12 @@ public class DatastoreDescriptionConfig {
 		stores.add(products());
 		stores.add(trades());
 		stores.add(risks());
+		if (hasVectorStore()) {
+			stores.add(pnlVectors());
+		}
+		if (getVectorModel() == VectorModel.FACTOR) {
+			stores.add(scenarios());
+		}
 		return new DatastoreSchemaDescription(stores, references());
 	}
 
@@ -0,0 +1,282 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.datastore;
+
+import com.qfs.multiversion.IEpochManagementPolicy;
+import com.qfs.multiversion.impl.KeepAllEpochPolicy;
+import com.qfs.multiversion.impl.KeepLastEpochPolicy;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionInformation;
+import com.qfs.store.transaction.ITransactionListener;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.springframework.core.env.Environment;
+
+/**
+ * Retention of the versions (epochs) of the datastore, by the epochs.* properties:
+ * <ul>
+ * <li>immediate: a version is released as soon as no query reads it anymore</li>
+ * <li>count: the last epochs.count versions are kept, even if no query reads them</li>
+ * <li>duration: the versions of the last epochs.duration-seconds are kept</li>
+ * </ul>
+ * With count and duration, the datastore keeps all the versions, and the versions beyond the
+ * bound are released by force, the queries still reading them failing: the updates cannot pile up
+ * versions until the memory is exhausted. The retention records each version when its transaction
+ * commits, releases the versions beyond the count bound right away, and checks the duration bound
+ * every epochs.check-interval-ms. Only the versions beyond the bound are released, so the last
+ * epochs.count versions, or those of the last epochs.duration-seconds, stay readable.
+ * <p>
+ * The memory the versions pin cannot be told apart from the memory of the head version: it is
+ * estimated by the growth of the resident memory since the versions were last released, and
+ * measured by the resident memory a release frees.
+ *
+ * @author ActiveViam
+ */
+public class EpochRetention implements AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(EpochRetention.class.getSimpleName());
+
+	/** The status file of the process, on Linux */
+	protected static final String STATUS_FILE = "/proc/self/status";
+
+	/** The retention modes */
+	public enum Mode {
+		IMMEDIATE, COUNT, DURATION
+	}
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The retention mode */
+	protected final Mode mode;
+	/** The number of versions kept in count mode */
+	protected final int count;
+	/** How long the versions are kept in duration mode */
+	protected final Duration duration;
+
+	private final ScheduledExecutorService scheduler;
+	/** The ids and creation times of the versions created since the last release, the head last */
+	private final Deque<Map.Entry<Long, Instant>> epochs = new ArrayDeque<>();
+	/** The resident memory after the last release */
+	private long releasedResidentBytes;
+	/** The number of releases, forced or by the bounds */
+	private long releases;
+	/** The resident memory freed by the last release */
+	private long lastReleasedBytes = -1;
+
+	/**
+	 * Reads the retention mode from the epochs.retention property.
+	 *
+	 * @param env the environment
+	 * @return the retention mode
+	 * @throws IllegalArgumentException if the mode is unknown
+	 */
+	public static Mode getMode(final Environment env) {
+		final String retention = env.getProperty("epochs.retention", "immediate");
+		switch (retention) {
+			case "immediate":
+				return Mode.IMMEDIATE;
+			case "count":
+				return Mode.COUNT;
+			case "duration":
+				return Mode.DURATION;
+			default:
+				throw new IllegalArgumentException("Unknown epoch retention " + retention
+						+ ", expected immediate, count or duration");
+		}
+	}
+
+	/**
+	 * Creates the epoch management policy of the datastore.
+	 *
+	 * @param env the environment
+	 * @return the policy releasing the versions no query reads for the immediate retention, the
+	 * 		policy keeping them all otherwise, the retention releasing them
+	 */
+	public static IEpochManagementPolicy createPolicy(final Environment env) {
+		return getMode(env) == Mode.IMMEDIATE
+				? new KeepLastEpochPolicy()
+				: new KeepAllEpochPolicy();
+	}
+
+	/**
+	 * Constructor, starting the recording of the versions.
+	 *
+	 * @param datastore the datastore
+	 * @param env the environment
+	 */
+	public EpochRetention(final IDatastore datastore, final Environment env) {
+		this.datastore = datastore;
+		this.mode = getMode(env);
+		this.count = env.getProperty("epochs.count", Integer.class, 10);
+		this.duration = Duration.ofSeconds(
+				env.getProperty("epochs.duration-seconds", Long.class, 600L));
+		if (this.count < 1) {
+			throw new IllegalArgumentException("At least one version is kept, not " + this.count);
+		}
+		this.releasedResidentBytes = readResidentBytes();
+		this.epochs.addLast(Map.entry(datastore.getHead().getEpochId(), Instant.now()));
+		datastore.getTransactionManager().addTransactionListener(new ITransactionListener() {
+
+			@Override
+			public void transactionStarted(final ITransactionInformation information) {}
+
+			@Override
+			public void transactionCommitted(final ITransactionInformation information) {
+				committed();
+			}
+
+			@Override
+			public void transactionRolledBack(final ITransactionInformation information) {}
+
+		});
+		final long period = env.getProperty("epochs.check-interval-ms", Long.class, 1000L);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "epoch-retention");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Records the version created by a committed transaction, and releases the versions beyond the
+	 * count bound.
+	 */
+	protected synchronized void committed() {
+		final long head = this.datastore.getHead().getEpochId();
+		if (this.epochs.isEmpty() || this.epochs.peekLast().getKey() < head) {
+			this.epochs.addLast(Map.entry(head, Instant.now()));
+		}
+		if (this.mode == Mode.IMMEDIATE) {
+			// The datastore releases the versions once no query reads them
+			while (this.epochs.size() > 1) {
+				this.epochs.removeFirst();
+			}
+		} else if (this.mode == Mode.COUNT && this.epochs.size() > this.count) {
+			releaseBefore(this.epochs.stream()
+					.skip(this.epochs.size() - this.count)
+					.findFirst()
+					.get()
+					.getKey());
+		}
+	}
+
+	/**
+	 * Releases the versions beyond the duration bound.
+	 */
+	public synchronized void check() {
+		if (this.mode != Mode.DURATION || this.epochs.isEmpty()) {
+			return;
+		}
+		// A version is retained from the time the next one replaced it
+		final Instant bound = Instant.now().minus(this.duration);
+		long oldestKept = this.epochs.peekLast().getKey();
+		Map.Entry<Long, Instant> previous = null;
+		for (final Map.Entry<Long, Instant> epoch : this.epochs) {
+			if (previous != null && epoch.getValue().isAfter(bound)) {
+				oldestKept = previous.getKey();
+				break;
+			}
+			previous = epoch;
+		}
+		if (oldestKept > this.epochs.peekFirst().getKey()) {
+			releaseBefore(oldestKept);
+		}
+	}
+
+	/**
+	 * Releases all the versions but the head one, even those queries are reading.
+	 *
+	 * @return the metrics after the release
+	 */
+	public synchronized Map<String, Object> release() {
+		releaseBefore(this.datastore.getHead().getEpochId());
+		return getMetrics();
+	}
+
+	/**
+	 * Releases the versions older than a version, even those queries are reading.
+	 *
+	 * @param oldestKept the id of the oldest version to keep
+	 */
+	protected void releaseBefore(final long oldestKept) {
+		LOGGER.info("Releasing the versions before " + oldestKept + ", beyond the "
+				+ this.mode.name().toLowerCase(Locale.ROOT) + " bound");
+		final long before = readResidentBytes();
+		this.datastore.getEpochManager().forceDiscardEpochs(
+				epoch -> epoch.getId() < oldestKept);
+		this.releasedResidentBytes = readResidentBytes();
+		this.lastReleasedBytes = before < 0 ? -1 : before - this.releasedResidentBytes;
+		this.releases += 1;
+		while (!this.epochs.isEmpty() && this.epochs.peekFirst().getKey() < oldestKept) {
+			this.epochs.removeFirst();
+		}
+	}
+
+	/**
+	 * @return the metrics of the retained versions
+	 */
+	public synchronized Map<String, Object> getMetrics() {
+		final Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("retention", this.mode.name().toLowerCase(Locale.ROOT));
+		metrics.put("headEpoch", this.epochs.isEmpty() ? null : this.epochs.peekLast().getKey());
+		metrics.put("retainedEpochs", Math.max(0, this.epochs.size() - 1));
+		metrics.put("oldestRetainedEpoch",
+				this.epochs.size() > 1 ? this.epochs.peekFirst().getKey() : null);
+		final long resident = readResidentBytes();
+		metrics.put("residentBytes", resident);
+		metrics.put("heapUsedBytes",
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		metrics.put("pinnedBytesEstimate", resident < 0 || this.releasedResidentBytes < 0
+				? -1
+				: Math.max(0, resident - this.releasedResidentBytes));
+		metrics.put("releases", this.releases);
+		metrics.put("lastReleasedBytes", this.lastReleasedBytes);
+		return metrics;
+	}
+
+	/**
+	 * Reads the resident memory of the process.
+	 *
+	 * @return the resident memory, in bytes, or -1 if unknown
+	 */
+	private static long readResidentBytes() {
+		try {
+			for (final String line
+					: Files.readAllLines(Paths.get(STATUS_FILE), StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmRSS:")) {
+					final String[] fields = line.trim().split("\\s+");
+					return Long.parseLong(fields[1]) * 1024;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Not on Linux
+		}
+		return -1;
+	}
+
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+	}
+
+}
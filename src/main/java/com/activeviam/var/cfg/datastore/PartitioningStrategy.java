@@ -0,0 +1,178 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.datastore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Partitioning of a store, written as terms separated by {@code |}, each partitioning the
+ * partitions of the previous ones:
+ * <ul>
+ * <li>{@code modulo(<Field>)}: the integer field modulo the partition count</li>
+ * <li>{@code hash(<Field>)}: the hash of the field modulo the partition count</li>
+ * <li>{@code value(<Field>)}: a partition per value of the field</li>
+ * </ul>
+ * For example {@code value(Desk)|modulo(TradeId)} splits each desk in as many partitions as the
+ * partition count, so that the queries filtered on a desk only read its partitions.
+ *
+ * @author ActiveViam
+ */
+public class PartitioningStrategy {
+
+	private static final Pattern TERM = Pattern.compile("\\s*(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)\\s*");
+
+	/** The partitioning functions */
+	public enum Function {
+		MODULO, HASH, VALUE
+	}
+
+	/** The functions of the terms */
+	protected final List<Function> functions;
+	/** The fields of the terms */
+	protected final List<String> fields;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param functions the functions of the terms
+	 * @param fields the fields of the terms
+	 */
+	public PartitioningStrategy(final List<Function> functions, final List<String> fields) {
+		this.functions = Collections.unmodifiableList(new ArrayList<>(functions));
+		this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+	}
+
+	/**
+	 * Parses a partitioning.
+	 *
+	 * @param text the terms, separated by {@code |}
+	 * @return the partitioning
+	 * @throws IllegalArgumentException if a term is not {@code <function>(<Field>)}
+	 */
+	public static PartitioningStrategy parse(final String text) {
+		final List<Function> functions = new ArrayList<>();
+		final List<String> fields = new ArrayList<>();
+		for (final String term : text.split("\\|")) {
+			final Matcher matcher = TERM.matcher(term);
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException(
+						"Expected modulo(<Field>), hash(<Field>) or value(<Field>): " + term);
+			}
+			final Function function;
+			try {
+				function = Function.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown partitioning function: " + term, e);
+			}
+			functions.add(function);
+			fields.add(matcher.group(2));
+		}
+		return new PartitioningStrategy(functions, fields);
+	}
+
+	/**
+	 * @return the fields the partitions depend on, in the order of the terms
+	 */
+	public List<String> getFields() {
+		return this.fields;
+	}
+
+	/**
+	 * Checks whether a reference from a store partitioned this way can follow the partitioning of
+	 * its target store: each partition of the store must reference a single partition of the
+	 * target. Every term of the target must therefore be a term of the same function on a field
+	 * of the store mapped by the reference onto the field of the term.
+	 *
+	 * @param target the partitioning of the target store of the reference
+	 * @param mapping the fields of the target store mapped by the reference, by field of the store
+	 * @return {@code true} if each partition of the store references a single partition of the
+	 * 		target store
+	 */
+	public boolean canReference(
+			final PartitioningStrategy target,
+			final Map<String, String> mapping) {
+		for (int i = 0; i < target.fields.size(); ++i) {
+			boolean found = false;
+			for (int j = 0; j < this.fields.size() && !found; ++j) {
+				found = this.functions.get(j) == target.functions.get(i)
+						&& target.fields.get(i).equals(mapping.get(this.fields.get(j)));
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the partitioning as expected by the datastore description.
+	 *
+	 * @param partitionCount the number of partitions of the modulo and hash terms
+	 * @return the partitioning, such as {@code value(Desk)|modulo8(Id)}
+	 */
+	public String toDescriptor(final int partitionCount) {
+		final List<String> terms = new ArrayList<>();
+		for (int i = 0; i < this.fields.size(); ++i) {
+			final Function function = this.functions.get(i);
+			final String name = function.name().toLowerCase(Locale.ROOT);
+			terms.add(function == Function.VALUE
+					? name + "(" + this.fields.get(i) + ")"
+					: name + partitionCount + "(" + this.fields.get(i) + ")");
+		}
+		return String.join("|", terms);
+	}
+
+	/**
+	 * Names the partition of a record, for the statistics of the partitions.
+	 * <p>
+	 * The hash partitions are estimated from the hash codes of the values, the datastore
+	 * possibly hashing them otherwise: their sizes show the skew, not the exact partitions.
+	 *
+	 * @param values the values of the {@link #getFields() fields}
+	 * @param partitionCount the number of partitions of the modulo and hash terms
+	 * @return the name of the partition
+	 */
+	public String partitionOf(final Object[] values, final int partitionCount) {
+		final List<String> parts = new ArrayList<>(values.length);
+		for (int i = 0; i < values.length; ++i) {
+			switch (this.functions.get(i)) {
+				case MODULO: {
+					final long value = ((Number) values[i]).longValue();
+					parts.add(Long.toString(Math.floorMod(value, (long) partitionCount)));
+					break;
+				}
+				case HASH:
+					parts.add(Integer.toString(
+							Math.floorMod(Objects.hashCode(values[i]), partitionCount)));
+					break;
+				default:
+					parts.add(String.valueOf(values[i]));
+					break;
+			}
+		}
+		return String.join("|", parts);
+	}
+
+	@Override
+	public String toString() {
+		final List<String> terms = new ArrayList<>();
+		for (int i = 0; i < this.fields.size(); ++i) {
+			terms.add(this.functions.get(i).name().toLowerCase(Locale.ROOT)
+					+ "(" + this.fields.get(i) + ")");
+		}
+		return String.join("|", terms);
+	}
+
+}
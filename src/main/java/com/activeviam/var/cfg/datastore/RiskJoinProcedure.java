@@ -0,0 +1,64 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.datastore;
+
+import com.qfs.store.record.IRecordFormat;
+import com.qfs.store.transaction.IUpdateWhereProcedure;
+import com.quartetfs.fwk.IArrayReader;
+import com.quartetfs.fwk.IArrayWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the fields of the trades and products of the risks, read through Risk_To_Trade and
+ * Trade_To_Product, into the fields of the same names of the risk store, when the risks are
+ * {@link DatastoreDescriptionConfig#isRiskStoreDenormalized() denormalized}.
+ * <p>
+ * Run as an update of the risk store within the load transaction, the datastore executing it on
+ * each partition of the risks in parallel: the risks loaded without their trade fields are
+ * completed before the commit, and the cube then aggregates the risks without following the
+ * references.
+ *
+ * @author ActiveViam
+ */
+public class RiskJoinProcedure implements IUpdateWhereProcedure {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The written fields of the risk store, in the order of the selected fields */
+	protected final List<String> fields;
+
+	/** The indexes of the written fields in the records of the risk store */
+	private int[] fieldIndexes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param fields the written fields of the risk store, in the order of the fields selected
+	 * 		through the references
+	 */
+	public RiskJoinProcedure(final List<String> fields) {
+		this.fields = new ArrayList<>(fields);
+	}
+
+	@Override
+	public void init(final IRecordFormat selectionFormat, final IRecordFormat storeFormat) {
+		this.fieldIndexes = new int[this.fields.size()];
+		for (int i = 0; i < this.fieldIndexes.length; ++i) {
+			this.fieldIndexes[i] = storeFormat.getFieldIndex(this.fields.get(i));
+		}
+	}
+
+	@Override
+	public void execute(final IArrayReader selectedRecord, final IArrayWriter recordWriter) {
+		for (int i = 0; i < this.fieldIndexes.length; ++i) {
+			recordWriter.write(this.fieldIndexes[i], selectedRecord.read(i));
+		}
+	}
+
+}
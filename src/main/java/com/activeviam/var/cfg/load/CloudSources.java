@@ -0,0 +1,305 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.cloud.azure.storage.entity.impl.AzureCloudDirectory;
+import com.activeviam.cloud.azure.storage.impl.BlobUtil;
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import com.activeviam.var.source.cloud.CloudSimulation;
+import com.activeviam.var.source.cloud.FetchRetries;
+import com.activeviam.var.source.cloud.LocalCloudDirectory;
+import com.activeviam.var.source.cloud.PartDiskCache;
+import com.activeviam.var.source.watch.LoadJournal;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.springframework.core.env.Environment;
+
+/**
+ * Creates what the loads read the cloud and the local files with: the fetching configurations,
+ * the interceptors of the fetches, the containers, and the versions of the files.
+ *
+ * @author ActiveViam
+ */
+public class CloudSources {
+
+	private static final Logger LOGGER = Logger.getLogger(CloudSources.class.getSimpleName());
+
+	/** Maximum size of the parts held in memory by a cloud channel */
+	public static final long MAX_TRANSIENT_BYTES = 512L * 1024 * 1024;
+
+	/** Name of the container of the Azure storage account */
+	private static final String CONTAINER = "test-var";
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/**
+	 * Identifies the content of the datastore for the load journal: a new id for the empty
+	 * datastore of the process, whose files the journals of the previous processes do not record,
+	 * or the id of the journal of the snapshot it was restored from
+	 */
+	protected volatile String datastoreId = UUID.randomUUID().toString();
+	/** Length of the journal whose files the datastore holds, until the journal is reopened */
+	protected volatile long journalCheckpoint = Long.MAX_VALUE;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 */
+	public CloudSources(final LoadSettings settings) {
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+	}
+
+	/**
+	 * @return the fetching configuration of the channels, holding at most
+	 * 		{@link #MAX_TRANSIENT_BYTES} of parts
+	 */
+	public CloudFetchingConfig createFetchingConfig() {
+		final int parallelParts = this.settings.getParallelParts();
+		final int partLength = this.settings.getPartLength();
+		return new CloudFetchingConfig(
+				parallelParts,
+				Math.max(
+						parallelParts,
+						Math.min(parallelParts * 3, (int) (MAX_TRANSIENT_BYTES / partLength))),
+				partLength);
+	}
+
+	/**
+	 * @return the retries of the failed fetches, the innermost interceptor of the cloud loads
+	 */
+	public FetchRetries createFetchRetries() {
+		return new FetchRetries(
+				this.env.getProperty("cloud-source.retries", Integer.class, 3),
+				this.env.getProperty("cloud-source.retry-backoff-ms", Long.class, 100L),
+				this.env.getProperty("cloud-source.retry-max-backoff-ms", Long.class, 30000L));
+	}
+
+	/**
+	 * @return the network conditions simulated by the local cloud provider
+	 */
+	public CloudSimulation createCloudSimulation() {
+		return new CloudSimulation(
+				this.env.getProperty("cloud-source.simulation.latency-ms", Long.class, 50L),
+				this.env.getProperty("cloud-source.simulation.jitter", Double.class, 0.2),
+				this.env.getProperty(
+						"cloud-source.simulation.connection-bandwidth-mb", Double.class, 60d) * 1e6,
+				this.env.getProperty(
+						"cloud-source.simulation.total-bandwidth-mb", Double.class, 1000d) * 1e6,
+				this.env.getProperty("cloud-source.simulation.error-rate", Double.class, 0d));
+	}
+
+	/**
+	 * Creates the local disk cache of the cloud parts, if enabled.
+	 *
+	 * @return the cache, {@code null} if disabled
+	 */
+	public PartDiskCache createPartCache() {
+		if (!this.env.getProperty("cloud-source.cache.enabled", Boolean.class, false)) {
+			return null;
+		}
+		final double maxSizeGb =
+				this.env.getProperty("cloud-source.cache.max-size-gb", Double.class, 20d);
+		return new PartDiskCache(
+				Paths.get(this.env.getProperty("cloud-source.cache.dir", "data/cache")),
+				(long) (maxSizeGb * 1024 * 1024 * 1024),
+				CloudSources::getVersion);
+	}
+
+	/**
+	 * Creates the journal of the committed files, if enabled, resuming the journal of the same
+	 * datastore.
+	 *
+	 * @return the journal, {@code null} if disabled
+	 */
+	public synchronized LoadJournal createLoadJournal() {
+		if (!this.settings.isJournaled()) {
+			return null;
+		}
+		final LoadJournal journal = new LoadJournal(
+				getLoadJournalFile(),
+				this.datastoreId,
+				this.journalCheckpoint,
+				CloudSources::getChecksum);
+		// The files recorded from now on are committed into the datastore
+		this.journalCheckpoint = Long.MAX_VALUE;
+		return journal;
+	}
+
+	/**
+	 * Makes the next journal resume the journal of the snapshot the datastore was restored from.
+	 *
+	 * @param datastore the id of the datastore the journal of the snapshot was written for
+	 * @param checkpoint the length of that journal when the snapshot was taken
+	 */
+	public synchronized void resumeLoadJournal(final String datastore, final long checkpoint) {
+		this.datastoreId = datastore;
+		this.journalCheckpoint = checkpoint;
+	}
+
+	/**
+	 * @return the id of the datastore the next journal records the files of
+	 */
+	public String getLoadJournalDatastore() {
+		return this.datastoreId;
+	}
+
+	/**
+	 * @return the file of the load journal
+	 */
+	public Path getLoadJournalFile() {
+		return Paths.get(this.env.getProperty("load-journal.file", "data/load-journal.tsv"));
+	}
+
+	/**
+	 * @return the container of the Azure storage account
+	 */
+	public AzureCloudDirectory getAzureContainer() {
+		final CloudBlobClient client = BlobUtil.getCloudBlobClient(Objects.requireNonNull(
+				this.settings.getConnectionString(),
+				"No connection string"));
+		return new AzureCloudDirectory(client, CONTAINER);
+	}
+
+	/**
+	 * @return the local folder standing in for the container with the local provider
+	 */
+	public LocalCloudDirectory getSimulatedContainer() {
+		return new LocalCloudDirectory(Paths.get(this.settings.getSimulatedCloudRoot()));
+	}
+
+	/**
+	 * @return the container of the configured cloud provider
+	 */
+	public ICloudDirectory<?> getContainer() {
+		switch (this.settings.getCloudProvider()) {
+			case "azure":
+				return getAzureContainer();
+			case "local":
+				return getSimulatedContainer();
+			default:
+				throw new IllegalArgumentException(
+						"Unknown cloud provider: " + this.settings.getCloudProvider());
+		}
+	}
+
+	/**
+	 * Downloads in the background the date folder following the loaded one into the cache, so that
+	 * the next business date loads from the local disk.
+	 *
+	 * @param cache the cache of the parts, {@code null} if disabled
+	 * @param container the container of the date folders
+	 * @param dateFolder the loaded date folder
+	 */
+	public void prefetchNextDate(
+			final PartDiskCache cache,
+			final ICloudDirectory<?> container,
+			final String dateFolder) {
+		if (cache == null
+				|| !this.env.getProperty(
+						"cloud-source.cache.prefetch-next-date", Boolean.class, false)) {
+			return;
+		}
+		final String nextDateFolder;
+		try {
+			nextDateFolder = findNextDateFolder(container, LocalDate.parse(dateFolder));
+		} catch (DateTimeParseException e) {
+			LOGGER.warning("Cannot prefetch the date following " + dateFolder);
+			return;
+		}
+		if (nextDateFolder == null) {
+			LOGGER.info("No date folder after " + dateFolder + " to prefetch");
+			return;
+		}
+		cache.prefetch(container.getSubDirectory(nextDateFolder));
+	}
+
+	/**
+	 * Finds the first date folder of the container after a date, skipping the dates without a
+	 * folder such as the week-ends and the holidays.
+	 *
+	 * @param container the container of the date folders
+	 * @param date the date to start after
+	 * @return the name of the next date folder, or {@code null} if there is none
+	 */
+	private static String findNextDateFolder(
+			final ICloudDirectory<?> container,
+			final LocalDate date) {
+		final String prefix = container.getPath().isEmpty() ? "" : container.getPath() + "/";
+		LocalDate next = null;
+		for (final ICloudEntityPath<?> path : container.listEntityPaths(true)) {
+			final String key = path.getKey();
+			final int end = key.indexOf('/', prefix.length());
+			if (!key.startsWith(prefix) || end < 0) {
+				continue;
+			}
+			try {
+				final LocalDate folderDate = LocalDate.parse(key.substring(prefix.length(), end));
+				if (folderDate.isAfter(date) && (next == null || folderDate.isBefore(next))) {
+					next = folderDate;
+				}
+			} catch (DateTimeParseException e) {
+				// Not a date folder
+			}
+		}
+		return next == null ? null : next.toString();
+	}
+
+	/**
+	 * Gets the version of a file: the ETag of the Azure blobs, the date and length of the others.
+	 *
+	 * @param entity the file
+	 * @return the version of the file
+	 */
+	public static String getVersion(final ICloudEntity<?> entity) {
+		if (entity.getInner() instanceof CloudBlob) {
+			final CloudBlob blob = (CloudBlob) entity.getInner();
+			if (blob.getProperties().getEtag() == null) {
+				// The properties of a blob are only filled by a listing or by its attributes
+				try {
+					blob.downloadAttributes();
+				} catch (StorageException e) {
+					LOGGER.log(Level.WARNING, "Cannot read the ETag of " + entity.getKey(), e);
+				}
+			}
+			if (blob.getProperties().getEtag() != null) {
+				return blob.getProperties().getEtag();
+			}
+		}
+		return entity.getLastModified().getTime() + "-" + entity.getLength();
+	}
+
+	/**
+	 * Gets the checksum of a file: the CRC32C of the local files, the version of the others.
+	 *
+	 * @param entity the file
+	 * @return the checksum of the file
+	 */
+	public static String getChecksum(final ICloudEntity<?> entity) {
+		if (entity.getInner() instanceof Path) {
+			return LoadJournal.crc32c((Path) entity.getInner());
+		}
+		return getVersion(entity);
+	}
+
+}
@@ -0,0 +1,309 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.AConcurrentlyFetchingChannel;
+import com.activeviam.parquet.IStoreToParquetMapping;
+import com.activeviam.parquet.impl.ParquetParser;
+import com.activeviam.parquet.policy.impl.NoRestrictionParquetPolicy;
+import com.activeviam.var.source.cloud.CloudSimulation;
+import com.activeviam.var.source.cloud.DownloadExecutors;
+import com.activeviam.var.source.cloud.IFetchInterceptor;
+import com.activeviam.var.source.cloud.InFlightBytesLimiter;
+import com.activeviam.var.source.cloud.InterceptedAzureBlobChannel;
+import com.activeviam.var.source.cloud.LocalCloudDirectory;
+import com.activeviam.var.source.cloud.LocalFileChannel;
+import com.activeviam.var.source.cloud.SimulatedCloudChannel;
+import com.activeviam.var.source.csv.SplitCsvFileTopic;
+import com.activeviam.var.source.watch.EntitySubsetDirectory;
+import com.activeviam.var.source.watch.IncrementalLoader;
+import com.activeviam.var.source.watch.LoadJournal;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionManager;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import org.springframework.core.env.Environment;
+
+/**
+ * Loads the files of the data source, then keeps loading its new complete files, each one in its
+ * own transaction, until closed.
+ *
+ * @author ActiveViam
+ */
+public class ContinuousIngestion implements Closeable {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ContinuousIngestion.class.getSimpleName());
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/** What the files are read with */
+	protected final CloudSources sources;
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The loader of the CSV files, creating their topics */
+	protected final CsvDataLoader csvLoader;
+	/** The loader of the Parquet files, creating their mappings */
+	protected final ParquetDataLoader parquetLoader;
+
+	/** The journal of the committed files, if enabled */
+	protected LoadJournal journal;
+	/** The loader of the new files */
+	protected IncrementalLoader<?> incrementalLoader;
+	/** The executors of the ingestion */
+	protected final List<ExecutorService> executors = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 * @param sources what the files are read with
+	 * @param datastore the datastore
+	 * @param csvLoader the loader of the CSV files, creating their topics
+	 * @param parquetLoader the loader of the Parquet files, creating their mappings
+	 */
+	public ContinuousIngestion(
+			final LoadSettings settings,
+			final CloudSources sources,
+			final IDatastore datastore,
+			final CsvDataLoader csvLoader,
+			final ParquetDataLoader parquetLoader) {
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+		this.sources = sources;
+		this.datastore = datastore;
+		this.csvLoader = csvLoader;
+		this.parquetLoader = parquetLoader;
+	}
+
+	/**
+	 * Starts watching the folders for new files, after loading their files.
+	 *
+	 * @param folders the folders of the files
+	 */
+	public synchronized void start(final SourceFolders folders) {
+		this.journal = this.sources.createLoadJournal();
+		final boolean requireMarker =
+				env.getProperty("ingestion.require-success-marker", Boolean.class, true);
+		final long quietPeriod = env.getProperty("ingestion.quiet-period-ms", Long.class, 5000L);
+		final long pollInterval = env.getProperty("ingestion.poll-interval-ms", Long.class, 10000L);
+		final String mode = this.settings.getMode();
+		switch (mode) {
+			case "csv": {
+				final LocalCloudDirectory dataDir =
+						new LocalCloudDirectory(folders.getDataDirectory());
+				final IncrementalLoader<Path> loader = createCsvIncrementalLoader(
+						dataDir, requireMarker, quietPeriod);
+				this.incrementalLoader = loader;
+				loader.startWatching(dataDir.getDirectory());
+				break;
+			}
+			case "parquet-local": {
+				final LocalCloudDirectory dataDir =
+						new LocalCloudDirectory(folders.getDataDirectory());
+				final var config = this.sources.createFetchingConfig();
+				final var fetchExecutor = newIngestionExecutor(
+						DownloadExecutors.newDownloadExecutor(this.settings.isVirtualThreads()));
+				final IncrementalLoader<Path> loader = createParquetIncrementalLoader(
+						dataDir,
+						(path) -> new LocalFileChannel(
+								path, config, fetchExecutor, IFetchInterceptor.NONE),
+						requireMarker,
+						quietPeriod);
+				this.incrementalLoader = loader;
+				loader.startWatching(dataDir.getDirectory());
+				break;
+			}
+			case "parquet-cloud": {
+				final var downloadExecutor = newIngestionExecutor(
+						DownloadExecutors.newDownloadExecutor(this.settings.isVirtualThreads()));
+				final long maxInFlightMb = this.settings.getMaxInFlightMb();
+				final IFetchInterceptor interceptor = IFetchInterceptor.chain(Arrays.asList(
+						this.sources.createPartCache(),
+						maxInFlightMb > 0
+								? new InFlightBytesLimiter(maxInFlightMb << 20)
+								: null,
+						this.sources.createFetchRetries()));
+				switch (this.settings.getCloudProvider()) {
+					case "azure": {
+						final ICloudDirectory<CloudBlob> dateDir = this.sources.getAzureContainer()
+								.getSubDirectory(folders.getDateFolder());
+						final IncrementalLoader<CloudBlob> loader = createParquetIncrementalLoader(
+								dateDir,
+								(path) -> new InterceptedAzureBlobChannel(
+										path,
+										this.sources.createFetchingConfig(),
+										downloadExecutor,
+										interceptor),
+								requireMarker,
+								quietPeriod);
+						this.incrementalLoader = loader;
+						loader.startPolling(pollInterval);
+						break;
+					}
+					case "local": {
+						final CloudSimulation simulation = this.sources.createCloudSimulation();
+						final ICloudDirectory<Path> dateDir = this.sources.getSimulatedContainer()
+								.getSubDirectory(folders.getDateFolder());
+						final IncrementalLoader<Path> loader = createParquetIncrementalLoader(
+								dateDir,
+								(path) -> new SimulatedCloudChannel(
+										path,
+										this.sources.createFetchingConfig(),
+										downloadExecutor,
+										simulation,
+										interceptor),
+								requireMarker,
+								quietPeriod);
+						this.incrementalLoader = loader;
+						loader.startPolling(pollInterval);
+						break;
+					}
+					default:
+						throw new IllegalArgumentException(
+								"Unknown cloud provider: " + this.settings.getCloudProvider());
+				}
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("No continuous ingestion in mode " + mode);
+		}
+		LOGGER.info("Watching " + mode + " data for new files");
+	}
+
+	/**
+	 * Creates the loader of the new CSV files of the data directory, read by parallel byte ranges.
+	 */
+	private IncrementalLoader<Path> createCsvIncrementalLoader(
+			final LocalCloudDirectory dataDir,
+			final boolean requireMarker,
+			final long quietPeriod) {
+		final ExecutorService decompressionExecutor =
+				newIngestionExecutor(this.csvLoader.newDecompressionExecutor());
+		final ExecutorService fileExecutor = newIngestionExecutor(
+				Executors.newFixedThreadPool(
+						env.getProperty("csvSource.parserThreads", Integer.class, 4)));
+		final Map<PathMatcher, SplitCsvFileTopic> topics = new LinkedHashMap<>();
+		for (final Map.Entry<String, SplitCsvFileTopic> entry
+				: this.csvLoader.createFileTopics(decompressionExecutor).entrySet()) {
+			topics.put(FileSystems.getDefault().getPathMatcher(entry.getKey()), entry.getValue());
+		}
+		final Function<String, SplitCsvFileTopic> topicOf = (key) -> key.contains("/")
+				? null
+				: topics.entrySet().stream()
+						.filter(entry -> entry.getKey().matches(Paths.get(key)))
+						.map(Map.Entry::getValue)
+						.findFirst()
+						.orElse(null);
+
+		final ITransactionManager tm = datastore.getTransactionManager();
+		return new IncrementalLoader<>(
+				"csv",
+				dataDir,
+				(key) -> topicOf.apply(key) != null,
+				(file) -> {
+					tm.startTransaction();
+					try {
+						topicOf.apply(file.getKey()).load(file.getInner(), tm, fileExecutor);
+						tm.commitTransaction();
+					} catch (Exception e) {
+						tm.rollbackTransaction();
+						throw e;
+					}
+				},
+				requireMarker,
+				quietPeriod,
+				this.journal);
+	}
+
+	/**
+	 * Creates the loader of the new Parquet files of the risks, products and trades sub-directories
+	 * of a directory.
+	 */
+	private <E> IncrementalLoader<E> createParquetIncrementalLoader(
+			final ICloudDirectory<E> baseDir,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final boolean requireMarker,
+			final long quietPeriod) {
+		final Map<String, IStoreToParquetMapping> mappings =
+				this.parquetLoader.createParquetMappings();
+		final ExecutorService executor = newIngestionExecutor(
+				Executors.newFixedThreadPool(this.settings.getParallelFiles()));
+		// The files are in <base>/<folder>/<file>.parquet
+		final Function<String, String> folderOf = (key) -> {
+			final String folder = key.substring(0, Math.max(0, key.lastIndexOf('/')));
+			return folder.substring(folder.lastIndexOf('/') + 1);
+		};
+		return new IncrementalLoader<>(
+				"parquet",
+				baseDir,
+				(key) -> key.endsWith(".parquet") && mappings.containsKey(folderOf.apply(key)),
+				(file) -> {
+					final String folder = folderOf.apply(file.getKey());
+					final ICloudDirectory<E> fileDir = new EntitySubsetDirectory<>(
+							baseDir.getSubDirectory(folder),
+							Collections.singleton(file.getKey()));
+					datastore.edit(tm -> {
+						try (final var parser = new ParquetParser(
+								this.datastore,
+								executor,
+								new NoRestrictionParquetPolicy())) {
+							parser.parse(fileDir, factory, null, mappings.get(folder));
+						}
+						tm.forceCommit();
+					});
+				},
+				requireMarker,
+				quietPeriod,
+				this.journal);
+	}
+
+	private ExecutorService newIngestionExecutor(final ExecutorService executor) {
+		this.executors.add(executor);
+		return executor;
+	}
+
+	/**
+	 * Stops the ingestion.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.incrementalLoader != null) {
+			this.incrementalLoader.close();
+			LOGGER.info("Stopped the continuous ingestion after "
+					+ this.incrementalLoader.getLoadedFiles().size() + " files");
+			this.incrementalLoader = null;
+		}
+		this.executors.forEach(ExecutorService::shutdown);
+		this.executors.clear();
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
+		}
+	}
+
+}
@@ -0,0 +1,468 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.VaRCsvDataGenerator;
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.generator.VectorPrecision;
+import com.activeviam.var.source.csv.CompressedCsvFileTopic;
+import com.activeviam.var.source.csv.FastDoubleVectorParser;
+import com.activeviam.var.source.csv.FastVectorParser;
+import com.activeviam.var.source.csv.MappedVectorParser;
+import com.activeviam.var.source.csv.SplitCsvFileTopic;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.msg.csv.ICSVParserConfiguration;
+import com.qfs.msg.csv.ICSVSourceConfiguration;
+import com.qfs.msg.csv.filesystem.impl.FileSystemCSVTopicFactory;
+import com.qfs.msg.csv.impl.CSVSource;
+import com.qfs.source.impl.CSVMessageChannelFactory;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionManager;
+import com.quartetfs.fwk.format.IParser;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.core.env.Environment;
+
+/**
+ * Loads the CSV files of a data directory, through the CSV source or by parallel byte ranges.
+ *
+ * @author ActiveViam
+ */
+public class CsvDataLoader {
+
+	private static final Logger LOGGER = Logger.getLogger(CsvDataLoader.class.getSimpleName());
+
+	/** Columns of the trade CSV files */
+	private static final List<String> TRADE_COLUMNS = Arrays.asList(
+			"Id",
+			"ProductId",
+			"ProductQtyMultiplier",
+			"Desk",
+			"Book",
+			"Trader",
+			"Counterparty",
+			"Date",
+			"Status",
+			"IsSimulated");
+
+	/** Columns of the product CSV files */
+	private static final List<String> PRODUCT_COLUMNS = Arrays.asList(
+			"Id",
+			"ProductName",
+			"ProductType",
+			"UnderlierCode",
+			"UnderlierCurrency",
+			"UnderlierType",
+			"UnderlierValue",
+			"ProductBaseMtm",
+			"BumpedMtmUp",
+			"BumpedMtmDown",
+			"Theta",
+			"Rho");
+
+	/** Columns of the risk CSV files */
+	private static final List<String> RISK_COLUMNS = Arrays.asList(
+			"TradeId",
+			"Delta",
+			"Gamma",
+			"Vega",
+			"Pnl",
+			"PnlVector");
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The schema of the datastore */
+	protected final DatastoreDescriptionConfig schema;
+	/** The memory mapped file of the pnl vectors, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+	/** The transactions of the loads */
+	protected final LoadTransactions transactions;
+	/** The loader of the vectors, when loaded after the other stores */
+	protected final LazyVectorLoader vectorLoader;
+	/** The reports on the stores */
+	protected final StoreReports reports;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 * @param datastore the datastore
+	 * @param schema the schema of the datastore
+	 * @param vectorFile the memory mapped file of the pnl vectors, or {@code null}
+	 * @param transactions the transactions of the loads
+	 * @param vectorLoader the loader of the vectors, when loaded after the other stores
+	 * @param reports the reports on the stores
+	 */
+	public CsvDataLoader(
+			final LoadSettings settings,
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema,
+			final MappedVectorFile vectorFile,
+			final LoadTransactions transactions,
+			final LazyVectorLoader vectorLoader,
+			final StoreReports reports) {
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+		this.datastore = datastore;
+		this.schema = schema;
+		this.vectorFile = vectorFile;
+		this.transactions = transactions;
+		this.vectorLoader = vectorLoader;
+		this.reports = reports;
+	}
+
+	/**
+	 * Loads the CSV files of a directory in a single transaction, rolled back if the load fails.
+	 *
+	 * @param dataDir the directory of the files
+	 * @throws Exception if the load fails
+	 */
+	public void load(final Path dataDir) throws Exception {
+
+		CSVSource<Path> source = new CSVSource<>();
+		final Properties sourceProps = new Properties();
+		final String parserThreads = env.getProperty("csvSource.parserThreads", "4");
+		sourceProps.setProperty(ICSVSourceConfiguration.PARSER_THREAD_PROPERTY, parserThreads);
+		source.configure(sourceProps);
+
+		ICSVParserConfiguration tradeConfig = createParserConfiguration(source, TRADE_COLUMNS);
+
+		final List<String> productColumns = getProductColumns(this.schema);
+		ICSVParserConfiguration productConfig = createParserConfiguration(source, productColumns);
+		if (productColumns.contains("UnitPnlVector")) {
+			productConfig.setParserOverride("UnitPnlVector", createVectorParser());
+		}
+
+		final List<String> riskColumns = getRiskColumns(this.schema);
+		ICSVParserConfiguration riskConfig = createParserConfiguration(source, riskColumns);
+		// Parse the pnl vectors in a single pass instead of splitting them into substrings
+		if (this.schema.isIncluded(DatastoreDescriptionConfig.RISK_STORE, "PnlVector")
+				&& !this.schema.hasVectorStore()
+				&& this.schema.getVectorModel() == VectorModel.TRADE) {
+			if (this.vectorFile != null) {
+				riskConfig.setParserOverride(
+						"PnlVector",
+						new MappedVectorParser(
+								VaRCsvDataGenerator.CSV_VECTOR_SEPARATOR,
+								this.settings.getVectorLength(),
+								this.vectorFile));
+			} else {
+				riskConfig.setParserOverride("PnlVector", createVectorParser());
+			}
+		}
+		if (riskColumns.contains("FactorLoadings")) {
+			riskConfig.setParserOverride("FactorLoadings", createVectorParser());
+		}
+
+		// Topics listed in csvSource.split-topics read each of their files in parallel byte ranges
+		// instead of going through the CSV source. Compressed files (*.csv.gz, *.csv.zst) of every
+		// topic are read that way too, decompressing them on their own executor.
+		final Set<String> splitTopics = new HashSet<>(Arrays.asList(
+				env.getProperty("csvSource.split-topics", String[].class, new String[0])));
+		final Map<String, SplitCsvFileTopic> fileTopicsByGlob = new LinkedHashMap<>();
+		final ExecutorService decompressionExecutor = newDecompressionExecutor();
+
+		FileSystemCSVTopicFactory topicFactory = new FileSystemCSVTopicFactory(false);
+		final List<String> sourceTopics = new ArrayList<>();
+		final String dataPath = dataDir.toString();
+		final SplitCsvFileTopic tradeFileTopic =
+				createFileTopic(
+						this.schema.trades(),
+						TRADE_COLUMNS,
+						tradeConfig,
+						decompressionExecutor);
+		if (splitTopics.contains("Trades")) {
+			fileTopicsByGlob.put("glob:*trades*.{csv,csv.gz,csv.zst}", tradeFileTopic);
+		} else {
+			source.addTopic(topicFactory.createDirectoryTopic(
+					"Trades", dataPath, "glob:*trades*.csv", tradeConfig));
+			sourceTopics.add("Trades");
+			fileTopicsByGlob.put("glob:*trades*.csv.{gz,zst}", tradeFileTopic);
+		}
+		final SplitCsvFileTopic productFileTopic =
+				createFileTopic(
+						this.schema.products(),
+						productColumns,
+						productConfig,
+						decompressionExecutor);
+		if (splitTopics.contains("Products")) {
+			fileTopicsByGlob.put("glob:*products*.{csv,csv.gz,csv.zst}", productFileTopic);
+		} else {
+			source.addTopic(topicFactory.createDirectoryTopic(
+					"Products", dataPath, "glob:*products*.csv", productConfig));
+			sourceTopics.add("Products");
+			fileTopicsByGlob.put("glob:*products*.csv.{gz,zst}", productFileTopic);
+		}
+		final SplitCsvFileTopic riskFileTopic =
+				createFileTopic(
+						this.schema.risks(),
+						riskColumns,
+						riskConfig,
+						decompressionExecutor);
+		if (splitTopics.contains("Risks")) {
+			fileTopicsByGlob.put("glob:*risks*.{csv,csv.gz,csv.zst}", riskFileTopic);
+		} else {
+			source.addTopic(topicFactory.createDirectoryTopic(
+					"Risks", dataPath, "glob:*risks*.csv", riskConfig));
+			sourceTopics.add("Risks");
+			fileTopicsByGlob.put("glob:*risks*.csv.{gz,zst}", riskFileTopic);
+		}
+
+		// The separate vectors are read from the risk files by their own topic
+		final SplitCsvFileTopic vectorFileTopic =
+				this.schema.hasVectorStore() && !this.vectorLoader.isLazy()
+						? createFileTopic(
+								this.schema.pnlVectors(),
+								RISK_COLUMNS,
+								riskConfig,
+								decompressionExecutor)
+						: null;
+
+		CSVMessageChannelFactory<Path> factory = new CSVMessageChannelFactory<Path>(source, datastore);
+
+		final ITransactionManager tm = datastore.getTransactionManager();
+
+		// Load data into ActivePivot
+		final long before = System.nanoTime();
+
+		final ExecutorService fileExecutor =
+				Executors.newFixedThreadPool(Integer.parseInt(parserThreads));
+		// Transaction for TV data
+		tm.startTransaction();
+		try {
+			this.transactions.start(tm);
+			if (!sourceTopics.isEmpty()) {
+				source.fetch(sourceTopics.stream()
+						.map(factory::createChannel)
+						.collect(Collectors.toList()));
+			}
+			for (final Map.Entry<String, SplitCsvFileTopic> entry : fileTopicsByGlob.entrySet()) {
+				for (final Path file : listFiles(dataDir, entry.getKey())) {
+					entry.getValue().load(file, tm, fileExecutor);
+				}
+			}
+			if (vectorFileTopic != null) {
+				loadVectorFiles(dataDir, vectorFileTopic, tm, fileExecutor);
+			}
+			this.transactions.commit(tm);
+		} catch (Exception e) {
+			tm.rollbackTransaction();
+			throw e;
+		} finally {
+			fileExecutor.shutdown();
+			decompressionExecutor.shutdown();
+		}
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+
+		if (this.vectorLoader.isLazy()) {
+			this.vectorLoader.load(Integer.parseInt(parserThreads), (vectorTm, executor) -> {
+				final ExecutorService vectorDecompressionExecutor = newDecompressionExecutor();
+				try {
+					loadVectorFiles(
+							dataDir,
+							createFileTopic(
+									this.schema.pnlVectors(),
+									RISK_COLUMNS,
+									riskConfig,
+									vectorDecompressionExecutor),
+							vectorTm,
+							executor);
+				} finally {
+					vectorDecompressionExecutor.shutdown();
+				}
+			});
+		}
+
+		this.reports.printStoreSizes();
+
+		topicFactory.close();
+		source.close();
+	}
+
+	/**
+	 * Creates the topics reading the CSV files of the stores by parallel byte ranges, by the glob
+	 * of their files.
+	 *
+	 * @param decompressionExecutor the executor decompressing the compressed files
+	 * @return the topics, by glob of their files
+	 */
+	public Map<String, SplitCsvFileTopic> createFileTopics(
+			final ExecutorService decompressionExecutor) {
+		// The source, never started, only creates the configurations of the topics
+		final CSVSource<Path> source = new CSVSource<>();
+		final List<String> productColumns = getProductColumns(this.schema);
+		final List<String> riskColumns = getRiskColumns(this.schema);
+		final Map<String, SplitCsvFileTopic> topics = new LinkedHashMap<>();
+		topics.put(
+				"glob:*trades*.{csv,csv.gz,csv.zst}",
+				createFileTopic(
+						this.schema.trades(),
+						TRADE_COLUMNS,
+						createParserConfiguration(source, TRADE_COLUMNS),
+						decompressionExecutor));
+		topics.put(
+				"glob:*products*.{csv,csv.gz,csv.zst}",
+				createFileTopic(
+						this.schema.products(),
+						productColumns,
+						createParserConfiguration(source, productColumns),
+						decompressionExecutor));
+		topics.put(
+				"glob:*risks*.{csv,csv.gz,csv.zst}",
+				createFileTopic(
+						this.schema.risks(),
+						riskColumns,
+						createParserConfiguration(source, riskColumns),
+						decompressionExecutor));
+		return topics;
+	}
+
+	/**
+	 * @return a new executor decompressing the compressed files
+	 */
+	public ExecutorService newDecompressionExecutor() {
+		return Executors.newFixedThreadPool(
+				env.getProperty("csvSource.decompression-threads", Integer.class, 4));
+	}
+
+	/**
+	 * Loads the pnl vectors of the risk files into their store, within the current transaction.
+	 */
+	private void loadVectorFiles(
+			final Path dataDir,
+			final SplitCsvFileTopic vectorFileTopic,
+			final ITransactionManager tm,
+			final ExecutorService fileExecutor) {
+		try {
+			for (final Path file : listFiles(dataDir, "glob:*risks*.{csv,csv.gz,csv.zst}")) {
+				vectorFileTopic.load(file, tm, fileExecutor);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot list the risk files of " + dataDir, e);
+		}
+	}
+
+	/**
+	 * @return the columns of the product CSV files, with the unit pnl vectors when the vectors are
+	 * 		per product
+	 */
+	private static List<String> getProductColumns(final DatastoreDescriptionConfig schema) {
+		if (schema.products().getFields().stream()
+				.noneMatch(field -> field.getName().equals("UnitPnlVector"))) {
+			return PRODUCT_COLUMNS;
+		}
+		final List<String> columns = new ArrayList<>(PRODUCT_COLUMNS);
+		columns.add("UnitPnlVector");
+		return columns;
+	}
+
+	/**
+	 * @return the columns of the risk CSV files, whose vectors are the factor loadings with the
+	 * 		factor model
+	 */
+	private static List<String> getRiskColumns(final DatastoreDescriptionConfig schema) {
+		if (schema.getVectorModel() != VectorModel.FACTOR) {
+			return RISK_COLUMNS;
+		}
+		final List<String> columns = new ArrayList<>(RISK_COLUMNS);
+		columns.set(columns.indexOf("PnlVector"), "FactorLoadings");
+		return columns;
+	}
+
+	/**
+	 * @return the parser of the CSV pnl vectors in the precision of the stored vectors
+	 */
+	private IParser<?> createVectorParser() {
+		final VectorPrecision precision = this.schema.getVectorPrecision();
+		final int vectorLength = this.settings.getVectorLength();
+		final char separator = VaRCsvDataGenerator.CSV_VECTOR_SEPARATOR;
+		return precision == VectorPrecision.DOUBLE
+				? new FastDoubleVectorParser(separator, vectorLength)
+				: new FastVectorParser(separator, vectorLength, precision);
+	}
+
+	/**
+	 * Creates the configuration of the parser of the CSV files with the given columns, written by
+	 * the {@link VaRCsvDataGenerator}: its separator and its header.
+	 */
+	private static ICSVParserConfiguration createParserConfiguration(
+			final CSVSource<Path> source,
+			final List<String> columns) {
+		final ICSVParserConfiguration config = source.createParserConfiguration(columns);
+		config.setSeparator(VaRCsvDataGenerator.CSV_SEPARATOR);
+		config.setNumberSkippedLines(VaRCsvDataGenerator.CSV_HEADER_LINES);
+		return config;
+	}
+
+	/**
+	 * Creates the topic reading the CSV files of a store by parallel byte ranges, skipping the
+	 * header lines of the configuration of the same files in the CSV source.
+	 */
+	private SplitCsvFileTopic createFileTopic(
+			final IStoreDescription store,
+			final List<String> columns,
+			final ICSVParserConfiguration config,
+			final ExecutorService decompressionExecutor) {
+		final SplitCsvFileTopic topic = new CompressedCsvFileTopic(
+				store,
+				columns,
+				VaRCsvDataGenerator.CSV_SEPARATOR,
+				VaRCsvDataGenerator.CSV_VECTOR_SEPARATOR,
+				this.settings.getVectorLength(),
+				config.getNumberSkippedLines(),
+				env.getProperty("csvSource.split-part-size", Long.class, 64L * 1024 * 1024),
+				decompressionExecutor,
+				env.getProperty("csvSource.decompression-chunks", Integer.class, 16));
+		if (this.vectorFile != null && store.getFields().stream()
+				.anyMatch(field -> field.getName().equals("PnlVector"))) {
+			final MappedVectorParser vectorParser = new MappedVectorParser(
+					VaRCsvDataGenerator.CSV_VECTOR_SEPARATOR,
+					this.settings.getVectorLength(),
+					this.vectorFile);
+			topic.overrideParser("PnlVector", vectorParser::parse);
+		}
+		return topic;
+	}
+
+	private static List<Path> listFiles(final Path directory, final String pattern)
+			throws IOException {
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(pattern);
+		try (final Stream<Path> files = Files.list(directory)) {
+			return files
+					.filter(file -> matcher.matches(file.getFileName()))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+/**
+ * Loads the dataset of the configured mode, from the generator, the CSV files or the Parquet
+ * files, or restores it from the snapshot, and writes the snapshot of the loaded dataset.
+ *
+ * @author ActiveViam
+ */
+public class DatasetLoader {
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The loader of the generated data */
+	protected final GeneratedDataLoader generatedLoader;
+	/** The loader of the CSV files */
+	protected final CsvDataLoader csvLoader;
+	/** The loader of the Parquet files */
+	protected final ParquetDataLoader parquetLoader;
+	/** The snapshot of the stores */
+	protected final SnapshotManager snapshots;
+	/** The loader of the vectors, when loaded after the other stores */
+	protected final LazyVectorLoader vectorLoader;
+
+	/** The folders of the loaded files */
+	protected volatile SourceFolders folders;
+	/** Duration of the bulk load at start, in nanoseconds, -1 if restored or loaded continuously */
+	protected volatile long lastLoadNanos = -1;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 * @param folders the folders of the files loaded at start
+	 * @param generatedLoader the loader of the generated data
+	 * @param csvLoader the loader of the CSV files
+	 * @param parquetLoader the loader of the Parquet files
+	 * @param snapshots the snapshot of the stores
+	 * @param vectorLoader the loader of the vectors, when loaded after the other stores
+	 */
+	public DatasetLoader(
+			final LoadSettings settings,
+			final SourceFolders folders,
+			final GeneratedDataLoader generatedLoader,
+			final CsvDataLoader csvLoader,
+			final ParquetDataLoader parquetLoader,
+			final SnapshotManager snapshots,
+			final LazyVectorLoader vectorLoader) {
+		this.settings = settings;
+		this.folders = folders;
+		this.generatedLoader = generatedLoader;
+		this.csvLoader = csvLoader;
+		this.parquetLoader = parquetLoader;
+		this.snapshots = snapshots;
+		this.vectorLoader = vectorLoader;
+	}
+
+	/**
+	 * Restores the stores from the snapshot, if enabled and taken from the configured dataset.
+	 *
+	 * @return {@code true} if the stores were restored with the whole dataset, {@code false} if
+	 * 		they are to be loaded, the journaled loads resuming after the files of the snapshot
+	 */
+	public boolean restore() {
+		return this.snapshots.restore(this.folders);
+	}
+
+	/**
+	 * Loads the dataset at start, then writes its snapshot once the vectors are loaded.
+	 *
+	 * @throws Exception if the load fails
+	 */
+	public void load() throws Exception {
+		final long loadStart = System.nanoTime();
+		if ("generate".equals(this.settings.getMode())) {
+			this.generatedLoader.load();
+		} else {
+			loadFiles(this.folders);
+		}
+		this.lastLoadNanos = System.nanoTime() - loadStart;
+		writeSnapshot(this.folders);
+	}
+
+	/**
+	 * Loads the files of other folders, which replace the loaded folders once loaded, then writes
+	 * the snapshot once the vectors are loaded.
+	 *
+	 * @param folders the folders of the files
+	 * @throws Exception if the load fails, the loaded folders staying in place
+	 */
+	public void reload(final SourceFolders folders) throws Exception {
+		loadFiles(folders);
+		this.folders = folders;
+		writeSnapshot(folders);
+	}
+
+	private void loadFiles(final SourceFolders folders) throws Exception {
+		switch (this.settings.getMode()) {
+			case "csv":
+				this.csvLoader.load(folders.getDataDirectory());
+				break;
+			case "parquet-local":
+			case "parquet-cloud":
+				this.parquetLoader.load(folders);
+				break;
+			default:
+				throw new IllegalArgumentException(this.settings.getMode());
+		}
+	}
+
+	/**
+	 * Writes the snapshot of the loaded folders once the lazily loaded vectors are committed, so
+	 * that it holds them.
+	 */
+	private void writeSnapshot(final SourceFolders folders) {
+		this.vectorLoader.whenLoaded(() -> this.snapshots.write(folders));
+	}
+
+	/**
+	 * @return the folders of the loaded files
+	 */
+	public SourceFolders getFolders() {
+		return this.folders;
+	}
+
+	/**
+	 * @return the duration of the bulk load at start, from the source files or the generator,
+	 * 		in nanoseconds, -1 if the stores were restored from a snapshot or loaded continuously
+	 */
+	public long getLastLoadNanos() {
+		return this.lastLoadNanos;
+	}
+
+}
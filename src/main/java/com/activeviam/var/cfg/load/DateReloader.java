@@ -0,0 +1,132 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.monitoring.PeakMemorySampler;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.springframework.core.env.Environment;
+
+/**
+ * Loads the data of another date in place of the loaded data, without interrupting the queries.
+ * <p>
+ * The date is loaded in a single transaction, which starts by emptying the stores: the queries
+ * keep reading the previous version of the stores until the transaction is committed, and the
+ * commit switches them to the new date at once. The previous version is released once the
+ * queries still reading it are done. When the load fails, the transaction is rolled back and the
+ * loaded date stays in place.
+ * <p>
+ * With the history, the date is loaded besides the dates of the history, in place of its previous
+ * version if any, and the dates out of the window are evicted in the same transaction.
+ *
+ * @author ActiveViam
+ */
+public class DateReloader {
+
+	private static final Logger LOGGER = Logger.getLogger(DateReloader.class.getSimpleName());
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/** The loader of the dataset */
+	protected final DatasetLoader loader;
+	/** The transactions of the loads */
+	protected final LoadTransactions transactions;
+	/** The dates held by the history */
+	protected final HistoryWindow history;
+
+	/** The report of the last reload */
+	protected volatile Map<String, Object> lastReload = Collections.emptyMap();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 * @param loader the loader of the dataset
+	 * @param transactions the transactions of the loads
+	 * @param history the dates held by the history
+	 */
+	public DateReloader(
+			final LoadSettings settings,
+			final DatasetLoader loader,
+			final LoadTransactions transactions,
+			final HistoryWindow history) {
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+		this.loader = loader;
+		this.transactions = transactions;
+		this.history = history;
+	}
+
+	/**
+	 * Loads the data of another date in place of the loaded data.
+	 * <p>
+	 * Both dates are in memory during the load: the report of the reload gives the peaks of the
+	 * used heap and of the resident memory of the process, which counts the off-heap chunks, along
+	 * with the durations of the load and of the switch, the commit of the transaction.
+	 *
+	 * @param date the date folder to load: a folder of the container in parquet-cloud mode, of
+	 * 		{@code reload.local-root} in the csv and parquet-local modes
+	 * @return the report of the reload
+	 */
+	public synchronized Map<String, Object> reloadDate(final String date) {
+		if (this.settings.isWatching()) {
+			throw new IllegalStateException("Cannot reload a date during the continuous ingestion");
+		}
+		if (this.settings.isJournaled()) {
+			// The journaled loads commit the files by groups, which would expose a partial date
+			throw new IllegalStateException("Cannot reload a date with the load journal");
+		}
+		final String mode = this.settings.getMode();
+		final SourceFolders loaded = this.loader.getFolders();
+		final SourceFolders folders = loaded.forDate(date, mode);
+		final String previous = loaded.isHistory()
+				? this.history.getDates().toString()
+				: loaded.describe(mode);
+		LOGGER.info("Reloading " + date + " in place of " + previous);
+
+		// The history adds the date to the loaded ones instead of replacing them
+		this.transactions.setReplacingStores(!loaded.isHistory());
+		final long before = System.nanoTime();
+		final PeakMemorySampler memory =
+				new PeakMemorySampler(env.getProperty("reload.memory-sample-ms", Long.class, 100L));
+		try {
+			this.loader.reload(folders);
+		} catch (Exception e) {
+			throw new RuntimeException("Cannot reload " + date + ", still serving " + previous, e);
+		} finally {
+			this.transactions.setReplacingStores(false);
+			memory.close();
+		}
+		final long elapsed = System.nanoTime() - before;
+
+		final Map<String, Object> report = new LinkedHashMap<>();
+		report.put("date", date);
+		report.put("previous", previous);
+		report.put("loadMillis", elapsed / 1000000L);
+		report.put("switchMillis", this.transactions.getLastCommitNanos() / 1e6);
+		report.put("initialHeapBytes", memory.getInitialHeapBytes());
+		report.put("peakHeapBytes", memory.getPeakHeapBytes());
+		report.put("initialResidentBytes", memory.getInitialResidentBytes());
+		report.put("peakResidentBytes", memory.getPeakResidentBytes());
+		LOGGER.info("Reload completed: " + report);
+		this.lastReload = Collections.unmodifiableMap(report);
+		return this.lastReload;
+	}
+
+	/**
+	 * @return the report of the last reload, empty if none
+	 */
+	public Map<String, Object> getLastReload() {
+		return this.lastReload;
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.CounterPartyRepository;
+import com.activeviam.var.generator.Product;
+import com.activeviam.var.generator.ProductRepository;
+import com.activeviam.var.generator.Risk;
+import com.activeviam.var.generator.RiskCalculator;
+import com.activeviam.var.generator.Trade;
+import com.activeviam.var.generator.TradeGenerator;
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.generator.VectorPrecision;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.msg.IMessage;
+import com.qfs.msg.IMessageChunk;
+import com.qfs.source.IStoreMessageChannel;
+import com.qfs.source.impl.POJOMessageChannelFactory;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.springframework.core.env.Environment;
+
+/**
+ * Loads data generated on the fly, from the tradeSource settings.
+ *
+ * @author ActiveViam
+ */
+public class GeneratedDataLoader {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(GeneratedDataLoader.class.getSimpleName());
+
+	/** The environment */
+	protected final Environment env;
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The schema of the datastore */
+	protected final DatastoreDescriptionConfig schema;
+	/** The memory mapped file of the pnl vectors, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+	/** The reports on the stores */
+	protected final StoreReports reports;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param env the environment
+	 * @param datastore the datastore
+	 * @param schema the schema of the datastore
+	 * @param vectorFile the memory mapped file of the pnl vectors, or {@code null}
+	 * @param reports the reports on the stores
+	 */
+	public GeneratedDataLoader(
+			final Environment env,
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema,
+			final MappedVectorFile vectorFile,
+			final StoreReports reports) {
+		this.env = env;
+		this.datastore = datastore;
+		this.schema = schema;
+		this.vectorFile = vectorFile;
+		this.reports = reports;
+	}
+
+	/**
+	 * Generate data on the fly and load it.
+	 *
+	 * @throws Exception
+	 */
+	public void load() throws Exception {
+
+		Integer productCount = env.getProperty("tradeSource.productCount", Integer.class, 100);
+		Integer tradeCount = env.getProperty("tradeSource.tradeCount", Integer.class, 1000);
+		Integer vectorLength = env.getProperty("tradeSource.vectorLength", Integer.class, 260);
+		Integer batchSize = env.getProperty("tradeSource.batchSize", Integer.class, 1000);
+
+		POJOMessageChannelFactory channelFactory = new POJOMessageChannelFactory(datastore);
+		IStoreMessageChannel<String, Object> productChannel = channelFactory.createChannel("Products");
+		IStoreMessageChannel<String, Object> tradeChannel = channelFactory.createChannel("Trades");
+		// The risks are added as tuples, their pnl vectors converted to the precision of the field
+		final String[] riskFields = this.schema.risks().getFields().stream()
+				.map(IFieldDescription::getName)
+				.toArray(String[]::new);
+		final VectorPrecision precision = this.schema.getVectorPrecision();
+		final double scale = this.schema.getVectorScale();
+		final boolean vectorStore = this.schema.hasVectorStore();
+		final boolean productVectors = this.schema.getVectorModel() == VectorModel.PRODUCT
+				&& this.schema.isIncluded(DatastoreDescriptionConfig.RISK_STORE, "PnlVector");
+
+		ProductRepository productRepository = new ProductRepository(productCount);
+		CounterPartyRepository counterpartyRepository = new CounterPartyRepository();
+
+		final ITransactionManager tm = datastore.getTransactionManager();
+
+		// Open ActivePivot transaction
+		final long before = System.nanoTime();
+		tm.startTransaction();
+
+		// Generate and load products
+		if (productVectors) {
+			// Added as tuples, their unit pnl vectors converted to the precision of the field
+			final String[] productFields = this.schema.products().getFields().stream()
+					.map(IFieldDescription::getName)
+					.toArray(String[]::new);
+			final RiskCalculator unitCalculator =
+					new RiskCalculator(vectorLength, precision, scale);
+			final List<Object[]> products = new ArrayList<>(productRepository.getProductCount());
+			for (int p = 0; p < productRepository.getProductCount(); p++) {
+				final Product product = productRepository.getProduct(p);
+				product.setUnitPnlVector(unitCalculator.unitPnlVector(product));
+				products.add(toProductTuple(product, productFields, precision, scale));
+			}
+			tm.addAll(DatastoreDescriptionConfig.PRODUCT_STORE, products);
+		} else {
+			IMessage<String, Object> productMessage = productChannel.newMessage("Products");
+			IMessageChunk<Object> productChunk = productMessage.newChunk();
+			for (int p = 0; p < productRepository.getProductCount(); p++) {
+				productChunk.append(productRepository.getProduct(p));
+			}
+			productMessage.append(productChunk);
+			productChannel.send(productMessage);
+		}
+
+		// Generate and load trades and risks
+		// Generate the trades and the risk entries, write them into a CSV file
+		TradeGenerator tradeGenerator = new TradeGenerator();
+		// The risks have no pnl vector when the vectors are per product
+		// With the factor model, the vectors of the risks are their factor loadings
+		final int riskVectorLength = productVectors
+				? 0
+				: this.schema.getVectorModel() == VectorModel.FACTOR
+						? this.schema.getFactorCount()
+						: vectorLength;
+		RiskCalculator riskCalculator = new RiskCalculator(riskVectorLength, precision, scale);
+		final int counterPartyCount = counterpartyRepository.getCounterPartyCount();
+
+		IMessage<String, Object> tradeMessage = tradeChannel.newMessage("Trades");
+
+		// Chunk the range of trades to generate into batches
+		// and perform the generation of the batches in parallel.
+		IntStream.range(0, tradeCount / batchSize).parallel().forEach(batch -> {
+
+			IMessageChunk<Object> tradeChunk = tradeMessage.newChunk();
+			final List<Object[]> risks = new ArrayList<>(batchSize);
+			final List<Object[]> vectors = new ArrayList<>(vectorStore ? batchSize : 0);
+
+			for (int tradeId = batch * batchSize; tradeId < Math.min(tradeCount, (batch + 1) * batchSize);
+					tradeId++) {
+
+				int productId = (int) (tradeId % productCount);
+				int counterPartyId = (int) (tradeId % counterPartyCount);
+				Trade trade = tradeGenerator.generate(
+						tradeId,
+						productRepository.getProduct(productId),
+						counterpartyRepository.getCounterParty(counterPartyId));
+
+				Risk risk = riskCalculator.execute(trade, productRepository.getProduct(productId));
+
+				tradeChunk.append(trade);
+				risks.add(toRiskTuple(
+						risk,
+						trade,
+						productRepository.getProduct(productId),
+						riskFields,
+						precision,
+						scale));
+				if (vectorStore) {
+					vectors.add(new Object[] {
+							risk.getTradeId(),
+							toStoredVector(precision.encode(risk.getPnlVector(), scale))});
+				}
+			}
+
+			tradeMessage.append(tradeChunk);
+			tm.addAll(DatastoreDescriptionConfig.RISK_STORE, risks);
+			if (vectorStore) {
+				tm.addAll(DatastoreDescriptionConfig.VECTOR_STORE, vectors);
+			}
+
+		});
+
+		tradeChannel.send(tradeMessage);
+
+		// Commit ActivePivot transaction
+		tm.commitTransaction();
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+
+		this.reports.printStoreSizes();
+	}
+
+	/**
+	 * Converts a generated risk into a tuple of the risk store, with the fields of its trade and
+	 * product when the store is denormalized.
+	 *
+	 * @param risk the risk
+	 * @param trade the trade of the risk
+	 * @param product the product of the trade
+	 * @param fields the fields of the risk store
+	 * @param precision the precision of the pnl vectors
+	 * @param scale the value of a unit of the scaled pnl vectors
+	 * @return the tuple
+	 */
+	private Object[] toRiskTuple(
+			final Risk risk,
+			final Trade trade,
+			final Product product,
+			final String[] fields,
+			final VectorPrecision precision,
+			final double scale) {
+		final Object[] tuple = new Object[fields.length];
+		for (int i = 0; i < fields.length; ++i) {
+			switch (fields[i]) {
+				case "TradeId":
+					tuple[i] = risk.getTradeId();
+					break;
+				case "Delta":
+					tuple[i] = risk.getDelta();
+					break;
+				case "Gamma":
+					tuple[i] = risk.getGamma();
+					break;
+				case "Vega":
+					tuple[i] = risk.getVega();
+					break;
+				case "Pnl":
+					tuple[i] = risk.getPnl();
+					break;
+				case "PnlVector":
+					tuple[i] = toStoredVector(precision.encode(risk.getPnlVector(), scale));
+					break;
+				case "FactorLoadings":
+					tuple[i] = precision.encode(risk.getPnlVector(), scale);
+					break;
+				case "ProductId":
+					tuple[i] = trade.getProductId();
+					break;
+				case "Desk":
+					tuple[i] = trade.getDesk();
+					break;
+				case "Book":
+					tuple[i] = trade.getBook();
+					break;
+				case "Trader":
+					tuple[i] = trade.getTrader();
+					break;
+				case "Counterparty":
+					tuple[i] = trade.getCounterparty();
+					break;
+				case "Date":
+					tuple[i] = trade.getDate();
+					break;
+				case "ProductName":
+					tuple[i] = product.getProductName();
+					break;
+				case "ProductType":
+					tuple[i] = product.getProductType();
+					break;
+				case "UnderlierCode":
+					tuple[i] = product.getUnderlierCode();
+					break;
+				case "UnderlierCurrency":
+					tuple[i] = product.getUnderlierCurrency();
+					break;
+				case "UnderlierType":
+					tuple[i] = product.getUnderlierType();
+					break;
+				default:
+					throw new IllegalStateException("Cannot generate the risk field " + fields[i]);
+			}
+		}
+		return tuple;
+	}
+
+	/**
+	 * Converts a generated product into a tuple of the product store.
+	 *
+	 * @param product the product, with its unit pnl vector
+	 * @param fields the fields of the product store
+	 * @param precision the precision of the pnl vectors
+	 * @param scale the value of a unit of the scaled pnl vectors
+	 * @return the tuple
+	 */
+	private static Object[] toProductTuple(
+			final Product product,
+			final String[] fields,
+			final VectorPrecision precision,
+			final double scale) {
+		final Object[] tuple = new Object[fields.length];
+		for (int i = 0; i < fields.length; ++i) {
+			switch (fields[i]) {
+				case "Id":
+					tuple[i] = product.getId();
+					break;
+				case "ProductName":
+					tuple[i] = product.getProductName();
+					break;
+				case "ProductType":
+					tuple[i] = product.getProductType();
+					break;
+				case "UnderlierCode":
+					tuple[i] = product.getUnderlierCode();
+					break;
+				case "UnderlierCurrency":
+					tuple[i] = product.getUnderlierCurrency();
+					break;
+				case "UnderlierType":
+					tuple[i] = product.getUnderlierType();
+					break;
+				case "UnderlierValue":
+					tuple[i] = product.getUnderlierValue();
+					break;
+				case "ProductBaseMtm":
+					tuple[i] = product.getProductBaseMtm();
+					break;
+				case "BumpedMtmUp":
+					tuple[i] = product.getBumpedMtmUp();
+					break;
+				case "BumpedMtmDown":
+					tuple[i] = product.getBumpedMtmDown();
+					break;
+				case "Theta":
+					tuple[i] = product.getTheta();
+					break;
+				case "Rho":
+					tuple[i] = product.getRho();
+					break;
+				case "UnitPnlVector":
+					tuple[i] = precision.encode(product.getUnitPnlVector(), scale);
+					break;
+				default:
+					throw new IllegalStateException(
+							"Cannot generate the product field " + fields[i]);
+			}
+		}
+		return tuple;
+	}
+
+	/**
+	 * @return the vector to store in the PnlVector field: the vector, or its offset once written
+	 * 		into the memory mapped file
+	 */
+	private Object toStoredVector(final Object vector) {
+		return this.vectorFile == null ? vector : this.vectorFile.write(vector);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The business dates held by the history, keeping the {@link #window} latest ones: loading new
+ * dates evicts the oldest ones.
+ *
+ * @author ActiveViam
+ */
+public class HistoryWindow {
+
+	/** Number of dates kept */
+	protected final int window;
+	/** The business dates held by the history */
+	protected final NavigableSet<LocalDate> dates = new TreeSet<>();
+
+	/**
+	 * The dates a load adds to the history and those it removes.
+	 */
+	public static class Update {
+
+		/** The date folders to load, by business date */
+		protected final NavigableMap<LocalDate, String> loaded;
+		/** The dates to remove, out of the window or loaded again */
+		protected final List<LocalDate> removed;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param loaded the date folders to load, by business date
+		 * @param removed the dates to remove, out of the window or loaded again
+		 */
+		public Update(final NavigableMap<LocalDate, String> loaded, final List<LocalDate> removed) {
+			this.loaded = loaded;
+			this.removed = removed;
+		}
+
+		/**
+		 * @return the date folders to load, by business date
+		 */
+		public NavigableMap<LocalDate, String> getLoaded() {
+			return this.loaded;
+		}
+
+		/**
+		 * @return the dates to remove, out of the window or loaded again
+		 */
+		public List<LocalDate> getRemoved() {
+			return this.removed;
+		}
+
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param window the number of dates kept
+	 */
+	public HistoryWindow(final int window) {
+		this.window = window;
+	}
+
+	/**
+	 * Plans the load of date folders: only the {@link #window} latest dates are kept, the older
+	 * ones being removed along with the previous version of the loaded dates.
+	 *
+	 * @param folders the date folders to load
+	 * @return the dates to load and to remove
+	 */
+	public synchronized Update plan(final List<String> folders) {
+		final NavigableMap<LocalDate, String> loaded = new TreeMap<>();
+		for (final String folder : folders) {
+			loaded.put(parseAsOfDate(folder), folder);
+		}
+		final NavigableSet<LocalDate> kept = new TreeSet<>(this.dates);
+		kept.addAll(loaded.keySet());
+		while (kept.size() > this.window) {
+			kept.pollFirst();
+		}
+		final List<LocalDate> removed = new ArrayList<>();
+		for (final LocalDate date : this.dates) {
+			if (!kept.contains(date) || loaded.containsKey(date)) {
+				removed.add(date);
+			}
+		}
+		loaded.keySet().retainAll(kept);
+		return new Update(loaded, removed);
+	}
+
+	/**
+	 * Records a committed load.
+	 *
+	 * @param update the dates loaded and removed by the load
+	 */
+	public synchronized void apply(final Update update) {
+		this.dates.removeAll(update.getRemoved());
+		this.dates.addAll(update.getLoaded().keySet());
+	}
+
+	/**
+	 * Records the dates restored from a snapshot: the latest dates of the date folders.
+	 *
+	 * @param folders the date folders of the snapshot
+	 */
+	public synchronized void restore(final List<String> folders) {
+		for (final String folder : folders) {
+			this.dates.add(parseAsOfDate(folder));
+		}
+		while (this.dates.size() > this.window) {
+			this.dates.pollFirst();
+		}
+	}
+
+	/**
+	 * @return the business dates held by the history
+	 */
+	public synchronized NavigableSet<LocalDate> getDates() {
+		return Collections.unmodifiableNavigableSet(new TreeSet<>(this.dates));
+	}
+
+	/**
+	 * Parses the business date of a date folder of the history.
+	 *
+	 * @param folder the name of the date folder
+	 * @return the business date
+	 */
+	public static LocalDate parseAsOfDate(final String folder) {
+		try {
+			return LocalDate.parse(folder);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException(
+					"The date folders of the history must be named yyyy-MM-dd: " + folder, e);
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.pivot.VectorLoadingStatus;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionManager;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the pnl vectors in their own transaction, in the background once the other stores are
+ * committed, so that the application starts serving the queries: the vector measures report the
+ * loading until the vectors are committed, or the failure of their loading. The actions needing
+ * the complete data, such as the snapshot, wait for the commit of the vectors.
+ *
+ * @author ActiveViam
+ */
+public class LazyVectorLoader {
+
+	private static final Logger LOGGER = Logger.getLogger(LazyVectorLoader.class.getSimpleName());
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** Whether the vectors are loaded after the other stores */
+	protected final boolean lazy;
+	/** The status of the vectors, reported by the vector measures */
+	protected final VectorLoadingStatus status;
+
+	/** Whether vectors are being loaded */
+	protected boolean inProgress;
+	/** The actions to run once the vectors being loaded are committed */
+	protected final List<Runnable> pending = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 * @param lazy whether the vectors are loaded after the other stores
+	 * @param status the status of the vectors, reported by the vector measures
+	 */
+	public LazyVectorLoader(
+			final IDatastore datastore,
+			final boolean lazy,
+			final VectorLoadingStatus status) {
+		this.datastore = datastore;
+		this.lazy = lazy;
+		this.status = status;
+	}
+
+	/**
+	 * @return {@code true} if the vectors are loaded after the other stores
+	 */
+	public boolean isLazy() {
+		return this.lazy;
+	}
+
+	/**
+	 * Marks the vectors as loading, before the commit of the other stores.
+	 */
+	public void markLoading() {
+		if (this.lazy) {
+			this.status.markLoading();
+		}
+	}
+
+	/**
+	 * Loads the vectors in the background, in their own transaction.
+	 *
+	 * @param threads the number of threads of the executor given to the loader
+	 * @param loader loads the vectors within the transaction, with the given executor
+	 */
+	public synchronized void load(
+			final int threads,
+			final BiConsumer<ITransactionManager, ExecutorService> loader) {
+		this.inProgress = true;
+		LOGGER.info("Stores committed " + ManagementFactory.getRuntimeMXBean().getUptime()
+				+ "ms after the start of the JVM, loading the pnl vectors");
+		final Thread vectorLoader = new Thread(() -> {
+			final long before = System.nanoTime();
+			final ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				this.datastore.edit(tm -> {
+					loader.accept(tm, executor);
+					tm.forceCommit();
+				});
+				// Only once committed, the queries then reading the vectors
+				this.status.markLoaded();
+				LOGGER.info("Pnl vectors loaded in " + (System.nanoTime() - before) / 1000000L
+						+ "ms, " + ManagementFactory.getRuntimeMXBean().getUptime()
+						+ "ms after the start of the JVM");
+				loaded(true);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Cannot load the pnl vectors", e);
+				this.status.markFailed();
+				loaded(false);
+			} finally {
+				executor.shutdown();
+			}
+		}, "pnl-vector-loader");
+		vectorLoader.setDaemon(true);
+		vectorLoader.start();
+	}
+
+	/**
+	 * Runs an action needing the complete data: at once if no vectors are being loaded, otherwise
+	 * once they are committed. The action is dropped if their load fails.
+	 *
+	 * @param action the action
+	 */
+	public void whenLoaded(final Runnable action) {
+		synchronized (this) {
+			if (this.inProgress) {
+				this.pending.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	/**
+	 * Ends the load of the vectors, running the pending actions if it succeeded.
+	 */
+	private void loaded(final boolean success) {
+		final List<Runnable> actions;
+		synchronized (this) {
+			this.inProgress = false;
+			actions = new ArrayList<>(this.pending);
+			this.pending.clear();
+		}
+		if (!success) {
+			if (!actions.isEmpty()) {
+				LOGGER.warning(actions.size() + " actions dropped, the vectors are incomplete");
+			}
+			return;
+		}
+		for (final Runnable action : actions) {
+			try {
+				action.run();
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Cannot run " + action + " after the vectors", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.source.parquet.LoadFilter;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+/**
+ * Settings of the loads of the data: the loading mode, the source of the files and how they are
+ * fetched, and the incremental modes.
+ *
+ * @author ActiveViam
+ */
+public class LoadSettings {
+
+	/** The environment, for the settings specific to a loader */
+	protected final Environment env;
+
+	/** The loading mode: generate, csv, parquet-local or parquet-cloud */
+	protected final String mode;
+	/** The folder of the date in the container, in parquet-cloud mode */
+	protected final String dateFolder;
+	/** The directory of the files, in the csv and parquet-local modes */
+	protected final String dataPath;
+	/** The provider of the cloud: azure, or local to simulate it */
+	protected final String cloudProvider;
+	/** The connection string of the Azure storage account */
+	protected final String connectionString;
+	/** The folder standing in for the cloud container with the local provider */
+	protected final String simulatedCloudRoot;
+	/** Number of files parsed in parallel */
+	protected final int parallelFiles;
+	/** Number of parts of a file fetched in parallel */
+	protected final int parallelParts;
+	/** Length of the fetched parts, in bytes */
+	protected final int partLength;
+	/** Whether the fetches are tuned during the load */
+	protected final boolean autoTune;
+	/** Whether the parts are fetched on virtual threads */
+	protected final boolean virtualThreads;
+	/** Maximum size of the parts being fetched at once, in MB, 0 for no bound */
+	protected final long maxInFlightMb;
+	/** How the local files are read by parts: plain or positional */
+	protected final String localChannel;
+	/** Whether the new files of the source are loaded continuously */
+	protected final boolean watch;
+	/** Whether the committed files are recorded in a journal */
+	protected final boolean journal;
+	/** The load filters of the Parquet loads, by store */
+	protected final Map<String, List<LoadFilter>> loadFilters;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param env the environment
+	 */
+	public LoadSettings(final Environment env) {
+		this.env = env;
+		this.mode = env.getProperty("csvSource.mode", "generate");
+		this.dateFolder = env.getRequiredProperty("cloud-source.date-folder");
+		this.dataPath = env.getRequiredProperty("csvSource.data-dir");
+		this.cloudProvider = env.getProperty("cloud-source.provider", "azure");
+		this.connectionString = env.getRequiredProperty("cloud-source.connection-string");
+		this.simulatedCloudRoot = env.getProperty("cloud-source.simulation.root", "data/cloud");
+		this.parallelFiles = env.getRequiredProperty("cloud-source.parallel-files", Integer.class);
+		this.parallelParts = env.getRequiredProperty("cloud-source.parallel-parts", Integer.class);
+		this.partLength = env.getProperty("cloud-source.part-length", Integer.class, 8388608);
+		this.autoTune = env.getProperty("cloud-source.auto-tune", Boolean.class, false);
+		this.virtualThreads = env.getProperty("cloud-source.virtual-threads", Boolean.class, false);
+		this.maxInFlightMb = env.getProperty("cloud-source.max-in-flight-mb", Long.class, 0L);
+		this.localChannel = env.getProperty("local-source.channel", "plain");
+		this.watch = env.getProperty("ingestion.watch", Boolean.class, false);
+		this.journal = env.getProperty("load-journal.enabled", Boolean.class, false);
+		this.loadFilters = Binder.get(env)
+				.bind("load-filters", Bindable.listOf(String.class))
+				.orElse(Collections.emptyList())
+				.stream()
+				.map(LoadFilter::parse)
+				.collect(Collectors.groupingBy(
+						LoadFilter::getStore,
+						LinkedHashMap::new,
+						Collectors.toList()));
+	}
+
+	/**
+	 * Checks that the settings of the loads can be used together and with the schema.
+	 * <p>
+	 * The denormalized risks, the separate store of the vectors, their memory mapped file, the
+	 * history and the load filters are only applied by the bulk loads, which commit all the files
+	 * of a date at once: they cannot be used with the continuous ingestion nor with the load
+	 * journal, which commit the files by groups. The risks partitioned by the fields of their
+	 * trade are only loaded by the generator.
+	 *
+	 * @param schema the schema of the datastore
+	 * @throws IllegalArgumentException if some settings cannot be used together
+	 */
+	public void checkCompatibility(final DatastoreDescriptionConfig schema) {
+		if (!"plain".equals(this.localChannel) && !"positional".equals(this.localChannel)) {
+			throw new IllegalArgumentException("Unknown local-source.channel " + this.localChannel
+					+ ", use plain or positional");
+		}
+		final Map<String, Boolean> bulkFeatures = new LinkedHashMap<>();
+		bulkFeatures.put("datastore.schema: denormalized", schema.isRiskStoreDenormalized());
+		bulkFeatures.put("datastore.separate-vectors", schema.hasVectorStore());
+		bulkFeatures.put("datastore.vector-storage: mmap", schema.isVectorStorageMapped());
+		bulkFeatures.put("history.enabled", schema.isHistoryEnabled());
+		bulkFeatures.put("load-filters", !this.loadFilters.isEmpty());
+		final String incremental = this.watch
+				? "ingestion.watch"
+				: this.journal ? "load-journal.enabled" : null;
+		for (final Map.Entry<String, Boolean> feature : bulkFeatures.entrySet()) {
+			if (feature.getValue() && incremental != null) {
+				throw new IllegalArgumentException(feature.getKey()
+						+ " is only applied by the bulk loads, not with " + incremental);
+			}
+		}
+		if (schema.isHistoryEnabled() && !isParquet()) {
+			throw new IllegalArgumentException(
+					"The history of dates is only loaded by the bulk Parquet loads");
+		}
+		if (!this.loadFilters.isEmpty() && !isParquet()) {
+			throw new IllegalArgumentException("The load filters only apply to the Parquet loads");
+		}
+		if (schema.isRiskPartitionedByTradeFields() && !"generate".equals(this.mode)) {
+			// The file loads copy them into the risks by an update, which cannot move a risk to
+			// the partition of its new values
+			throw new IllegalArgumentException("The risks are only partitioned by the fields of"
+					+ " their trade in generate mode, which adds the risks with them");
+		}
+		if (schema.isVectorLoadingLazy() && "generate".equals(this.mode)) {
+			throw new IllegalArgumentException("The vectors are only loaded lazily from files");
+		}
+	}
+
+	/**
+	 * Gets the folders of the data loaded at start: history.dates with the history, by default the
+	 * date folder, or the data directory in parquet-local mode.
+	 *
+	 * @param history whether the stores keep a history of dates
+	 * @return the folders
+	 */
+	public SourceFolders getInitialFolders(final boolean history) {
+		final String root = this.env.getProperty("reload.local-root", "");
+		final SourceFolders folders = new SourceFolders(
+				this.dateFolder,
+				this.dataPath,
+				root.isEmpty()
+						? Paths.get(this.dataPath).toAbsolutePath().getParent()
+						: Paths.get(root),
+				null);
+		if (!history) {
+			return folders;
+		}
+		final List<String> dates = Arrays
+				.stream(this.env.getProperty("history.dates", String[].class, new String[0]))
+				.map(String::trim)
+				.filter(date -> !date.isEmpty())
+				.collect(Collectors.toList());
+		return folders.withHistoryFolders(!dates.isEmpty()
+				? dates
+				: Collections.singletonList("parquet-cloud".equals(this.mode)
+						? this.dateFolder
+						: Paths.get(this.dataPath).toAbsolutePath().getFileName().toString()));
+	}
+
+	/**
+	 * @return the environment, for the settings specific to a loader
+	 */
+	public Environment getEnvironment() {
+		return this.env;
+	}
+
+	/**
+	 * @return the loading mode: generate, csv, parquet-local or parquet-cloud
+	 */
+	public String getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * @return {@code true} in the parquet-local and parquet-cloud modes
+	 */
+	public boolean isParquet() {
+		return this.mode.startsWith("parquet-");
+	}
+
+	/**
+	 * @return the provider of the cloud: azure, or local to simulate it
+	 */
+	public String getCloudProvider() {
+		return this.cloudProvider;
+	}
+
+	/**
+	 * @return the connection string of the Azure storage account
+	 */
+	public String getConnectionString() {
+		return this.connectionString;
+	}
+
+	/**
+	 * @return the folder standing in for the cloud container with the local provider
+	 */
+	public String getSimulatedCloudRoot() {
+		return this.simulatedCloudRoot;
+	}
+
+	/**
+	 * @return the number of files parsed in parallel
+	 */
+	public int getParallelFiles() {
+		return this.parallelFiles;
+	}
+
+	/**
+	 * @return the number of parts of a file fetched in parallel
+	 */
+	public int getParallelParts() {
+		return this.parallelParts;
+	}
+
+	/**
+	 * @return the length of the fetched parts, in bytes
+	 */
+	public int getPartLength() {
+		return this.partLength;
+	}
+
+	/**
+	 * @return {@code true} if the fetches are tuned during the load
+	 */
+	public boolean isAutoTuned() {
+		return this.autoTune;
+	}
+
+	/**
+	 * @return {@code true} if the parts are fetched on virtual threads
+	 */
+	public boolean isVirtualThreads() {
+		return this.virtualThreads;
+	}
+
+	/**
+	 * @return the maximum size of the parts being fetched at once, in MB, 0 for no bound
+	 */
+	public long getMaxInFlightMb() {
+		return this.maxInFlightMb;
+	}
+
+	/**
+	 * @return {@code true} if the local files are read by their plain channel
+	 */
+	public boolean isPlainLocalChannel() {
+		return "plain".equals(this.localChannel);
+	}
+
+	/**
+	 * @return {@code true} if the new files of the source are loaded continuously
+	 */
+	public boolean isWatching() {
+		return this.watch;
+	}
+
+	/**
+	 * @return {@code true} if the committed files are recorded in a journal
+	 */
+	public boolean isJournaled() {
+		return this.journal;
+	}
+
+	/**
+	 * @return the load filters of the Parquet loads, by store
+	 */
+	public Map<String, List<LoadFilter>> getLoadFilters() {
+		return this.loadFilters;
+	}
+
+	/**
+	 * @return the length of the pnl vectors
+	 */
+	public int getVectorLength() {
+		return this.env.getProperty("tradeSource.vectorLength", Integer.class, 260);
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.qfs.condition.ICondition;
+import com.qfs.condition.impl.BaseConditions;
+import com.qfs.store.transaction.ITransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts and commits the transactions of the bulk loads: a reload first empties the stores, and
+ * the denormalized risks are joined before the commit, whose duration is measured.
+ *
+ * @author ActiveViam
+ */
+public class LoadTransactions {
+
+	/** The stores emptied by a reload, in the order of their removal */
+	protected final List<String> reloadedStores = new ArrayList<>(List.of(
+			DatastoreDescriptionConfig.RISK_STORE,
+			DatastoreDescriptionConfig.TRADE_STORE,
+			DatastoreDescriptionConfig.PRODUCT_STORE));
+	/** The join of the denormalized risks */
+	protected final RiskJoin riskJoin;
+	/** The loader of the vectors, when loaded after the other stores */
+	protected final LazyVectorLoader vectorLoader;
+
+	/** Whether the load transactions replace the content of the stores, during a reload */
+	protected volatile boolean replaceStores;
+	/** Duration of the commit of the last load transaction, in nanoseconds, -1 if none */
+	protected volatile long lastCommitNanos = -1;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param schema the schema of the datastore
+	 * @param riskJoin the join of the denormalized risks
+	 * @param vectorLoader the loader of the vectors, when loaded after the other stores
+	 */
+	public LoadTransactions(
+			final DatastoreDescriptionConfig schema,
+			final RiskJoin riskJoin,
+			final LazyVectorLoader vectorLoader) {
+		if (schema.hasVectorStore()) {
+			this.reloadedStores.add(DatastoreDescriptionConfig.VECTOR_STORE);
+		}
+		this.riskJoin = riskJoin;
+		this.vectorLoader = vectorLoader;
+	}
+
+	/**
+	 * Starts a load transaction: during a reload, first empties the stores, the queries reading
+	 * their previous version until the transaction is committed.
+	 *
+	 * @param tm the transaction manager, within the transaction of the load
+	 */
+	public void start(final ITransactionManager tm) {
+		if (this.replaceStores) {
+			for (final String store : this.reloadedStores) {
+				tm.removeWhere(store, BaseConditions.TRUE);
+			}
+		}
+	}
+
+	/**
+	 * Commits a load transaction filling the whole stores, as the loads without the history do.
+	 *
+	 * @param tm the transaction manager, within the transaction of the load
+	 * @see #commit(ITransactionManager, ICondition)
+	 */
+	public void commit(final ITransactionManager tm) {
+		commit(tm, BaseConditions.TRUE);
+	}
+
+	/**
+	 * Commits a load transaction, measuring the time the commit takes to publish the new version.
+	 * When the vectors are loaded lazily, the vector measures report the loading from this commit.
+	 * The loaded denormalized risks are first joined with their trades and products.
+	 *
+	 * @param tm the transaction manager, within the transaction of the load
+	 * @param loadedRisks the condition on the risks of the load, the only ones joined
+	 */
+	public void commit(final ITransactionManager tm, final ICondition loadedRisks) {
+		this.riskJoin.join(tm, loadedRisks);
+		final long before = System.nanoTime();
+		this.vectorLoader.markLoading();
+		tm.forceCommit();
+		this.lastCommitNanos = System.nanoTime() - before;
+	}
+
+	/**
+	 * @param replaceStores {@code true} for the next loads to replace the content of the stores,
+	 * 		during a reload
+	 */
+	public void setReplacingStores(final boolean replaceStores) {
+		this.replaceStores = replaceStores;
+	}
+
+	/**
+	 * @return the duration of the commit of the last load transaction, in nanoseconds, -1 if none
+	 */
+	public long getLastCommitNanos() {
+		return this.lastCommitNanos;
+	}
+
+}
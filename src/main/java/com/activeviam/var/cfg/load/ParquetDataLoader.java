@@ -0,0 +1,977 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.cloud.azure.storage.entity.impl.AzureCloudDirectory;
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.AConcurrentlyFetchingChannel;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import com.activeviam.parquet.IStoreToParquetMapping;
+import com.activeviam.parquet.impl.ParquetParser;
+import com.activeviam.parquet.impl.StoreToParquetMappingBuilder;
+import com.activeviam.parquet.policy.impl.NoRestrictionParquetPolicy;
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.Trade;
+import com.activeviam.var.source.cloud.CloudSimulation;
+import com.activeviam.var.source.cloud.DownloadExecutors;
+import com.activeviam.var.source.cloud.FetchAutoTuner;
+import com.activeviam.var.source.cloud.FetchRetries;
+import com.activeviam.var.source.cloud.IFetchInterceptor;
+import com.activeviam.var.source.cloud.InFlightBytesLimiter;
+import com.activeviam.var.source.cloud.InterceptedAzureBlobChannel;
+import com.activeviam.var.source.cloud.LocalCloudDirectory;
+import com.activeviam.var.source.cloud.LocalFileChannel;
+import com.activeviam.var.source.cloud.PartDiskCache;
+import com.activeviam.var.source.cloud.SimulatedCloudChannel;
+import com.activeviam.var.source.manifest.LoadManifest;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.activeviam.var.source.parquet.FilteredParquetLoader;
+import com.activeviam.var.source.parquet.KeyCollector;
+import com.activeviam.var.source.parquet.KeySetPredicate;
+import com.activeviam.var.source.parquet.LoadFilter;
+import com.activeviam.var.source.watch.EntitySubsetDirectory;
+import com.activeviam.var.source.watch.LoadJournal;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.qfs.condition.impl.BaseConditions;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.IDatastore;
+import com.qfs.store.transaction.ITransactionManager;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.springframework.core.env.Environment;
+
+/**
+ * Loads the Parquet files of the risks, products and trades sub-directories of a date folder, from
+ * the local disk or from the cloud.
+ * <p>
+ * The files are parsed as a whole by default. They are read through concurrently fetching
+ * channels, by parts, to commit them by groups recorded in the load journal, to only load the
+ * rows matching the load filters and the columns of the fields kept in the stores, to load the
+ * vectors into their own store or file, or to load several dates into the history.
+ *
+ * @author ActiveViam
+ */
+public class ParquetDataLoader {
+
+	private static final Logger LOGGER = Logger.getLogger(ParquetDataLoader.class.getSimpleName());
+
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/** What the files are read with */
+	protected final CloudSources sources;
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The schema of the datastore */
+	protected final DatastoreDescriptionConfig schema;
+	/** The memory mapped file of the pnl vectors, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+	/** The transactions of the loads */
+	protected final LoadTransactions transactions;
+	/** The loader of the vectors, when loaded after the other stores */
+	protected final LazyVectorLoader vectorLoader;
+	/** The dates held by the history */
+	protected final HistoryWindow history;
+	/** The reports on the stores */
+	protected final StoreReports reports;
+	/** The snapshot of the stores, written at the checkpoints of the journaled loads */
+	protected final SnapshotManager snapshots;
+
+	/** Whether the pnl vectors are kept in their own store */
+	protected final boolean vectorStore;
+	/** The load filters, by store */
+	protected final Map<String, List<LoadFilter>> loadFilters;
+	/** The fields excluded from the stores, as {@code <Store>.<Field>} */
+	protected final Set<String> excludedFields;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings the settings of the loads
+	 * @param sources what the files are read with
+	 * @param datastore the datastore
+	 * @param schema the schema of the datastore
+	 * @param vectorFile the memory mapped file of the pnl vectors, or {@code null}
+	 * @param transactions the transactions of the loads
+	 * @param vectorLoader the loader of the vectors, when loaded after the other stores
+	 * @param history the dates held by the history
+	 * @param reports the reports on the stores
+	 * @param snapshots the snapshot of the stores, written at the checkpoints of the journaled
+	 * 		loads
+	 */
+	public ParquetDataLoader(
+			final LoadSettings settings,
+			final CloudSources sources,
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema,
+			final MappedVectorFile vectorFile,
+			final LoadTransactions transactions,
+			final LazyVectorLoader vectorLoader,
+			final HistoryWindow history,
+			final StoreReports reports,
+			final SnapshotManager snapshots) {
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+		this.sources = sources;
+		this.datastore = datastore;
+		this.schema = schema;
+		this.vectorFile = vectorFile;
+		this.transactions = transactions;
+		this.vectorLoader = vectorLoader;
+		this.history = history;
+		this.reports = reports;
+		this.snapshots = snapshots;
+		this.vectorStore = schema.hasVectorStore();
+		this.loadFilters = settings.getLoadFilters();
+		this.excludedFields = schema.getExcludedFields();
+	}
+
+	/**
+	 * Creates the mappings of the Parquet files to the stores, by folder of the files.
+	 *
+	 * @return the mappings, by folder
+	 */
+	public Map<String, IStoreToParquetMapping> createParquetMappings() {
+		return createParquetMappings(null);
+	}
+
+	/**
+	 * Creates the mappings of the Parquet files of a business date to the stores, by folder of the
+	 * files.
+	 *
+	 * @param asOfDate the business date of the files, set as the AsOfDate of the trades and risks,
+	 * 		or {@code null} without history
+	 */
+	private Map<String, IStoreToParquetMapping> createParquetMappings(final LocalDate asOfDate) {
+		final IStoreToParquetMapping tradeMapping =
+				createMapping(DatastoreDescriptionConfig.TRADE_STORE, true, asOfDate);
+		final IStoreToParquetMapping riskMapping =
+				createMapping(DatastoreDescriptionConfig.RISK_STORE, false, asOfDate);
+
+		final var productMapping = new StoreToParquetMappingBuilder()
+				.onStore(DatastoreDescriptionConfig.PRODUCT_STORE)
+				.build();
+
+		final Map<String, IStoreToParquetMapping> mappings = new LinkedHashMap<>();
+		mappings.put("risks", riskMapping);
+		mappings.put("products", productMapping);
+		mappings.put("trades", tradeMapping);
+		return mappings;
+	}
+
+	/**
+	 * Creates the mapping of the Parquet files of a store.
+	 *
+	 * @param store the store
+	 * @param decodeDate whether the Date column holds encoded dates to decode
+	 * @param asOfDate the business date of the files set as the AsOfDate of the records, or {@code
+	 * 		null} without history
+	 */
+	private static IStoreToParquetMapping createMapping(
+			final String store,
+			final boolean decodeDate,
+			final LocalDate asOfDate) {
+		var builder = new StoreToParquetMappingBuilder().onStore(store);
+		if (decodeDate) {
+			builder = builder
+					.feedStoreField("Date")
+					.withColumnCalculator()
+					.mapToObject((schema) -> {
+						final int index =
+								IStoreToParquetMapping.getIndexOfFieldNamed("Date", schema);
+						return (record, def) -> Trade.decodeLocalDate(record.getInt(index));
+					});
+		}
+		if (asOfDate != null) {
+			builder = builder
+					.feedStoreField(DatastoreDescriptionConfig.AS_OF_DATE)
+					.withColumnCalculator()
+					.mapToObject((schema) -> (record, def) -> asOfDate);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Loads the Parquet files of the folders, from the cloud in parquet-cloud mode, from the local
+	 * disk in parquet-local mode. With the load journal, a failed load resumes after the last
+	 * committed files, up to load-journal.max-attempts times.
+	 *
+	 * @param folders the folders of the files
+	 */
+	public void load(final SourceFolders folders) {
+		final boolean cloud = "parquet-cloud".equals(this.settings.getMode());
+		final Map<String, IStoreToParquetMapping> mappings = createParquetMappings();
+		final var riskMapping = mappings.get("risks");
+		final var productMapping = mappings.get("products");
+		final var tradeMapping = mappings.get("trades");
+
+		final LoadJournal journal = this.sources.createLoadJournal();
+		final int maxAttempts = journal != null
+				? env.getProperty("load-journal.max-attempts", Integer.class, 3)
+				: 1;
+		final var executor = Executors.newFixedThreadPool(this.settings.getParallelFiles());
+		try {
+			for (int attempt = 1; ; ++attempt) {
+				try {
+					if (cloud) {
+						parseCloudDirectories(
+								executor,
+								folders,
+								journal,
+								riskMapping,
+								productMapping,
+								tradeMapping);
+					} else {
+						parseLocalDirectories(
+								executor,
+								folders,
+								journal,
+								riskMapping,
+								productMapping,
+								tradeMapping);
+					}
+					break;
+				} catch (RuntimeException e) {
+					if (attempt >= maxAttempts) {
+						throw e;
+					}
+					LOGGER.log(
+							Level.WARNING,
+							"Load attempt " + attempt + " failed, resuming after the "
+									+ journal.size() + " committed files",
+							e);
+				}
+			}
+
+			this.reports.printStoreSizes();
+		} catch (Exception e) {
+			throw new RuntimeException("Cannot load from Parquet", e);
+		} finally {
+			executor.shutdown();
+			if (journal != null) {
+				try {
+					journal.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Cannot close " + journal, e);
+				}
+			}
+		}
+	}
+
+	private void parseCloudDirectories(
+			final ExecutorService executorService,
+			final SourceFolders folders,
+			final LoadJournal journal,
+			final IStoreToParquetMapping riskMapping,
+			final IStoreToParquetMapping productMapping,
+			final IStoreToParquetMapping tradeMapping) {
+		final var downloadExecutor =
+				DownloadExecutors.newDownloadExecutor(this.settings.isVirtualThreads());
+		try {
+			parseCloudDirectories(
+					executorService,
+					downloadExecutor,
+					folders,
+					journal,
+					riskMapping,
+					productMapping,
+					tradeMapping);
+		} finally {
+			downloadExecutor.shutdown();
+		}
+	}
+
+	private void parseCloudDirectories(
+			final ExecutorService executorService,
+			final ExecutorService downloadExecutor,
+			final SourceFolders folders,
+			final LoadJournal journal,
+			final IStoreToParquetMapping riskMapping,
+			final IStoreToParquetMapping productMapping,
+			final IStoreToParquetMapping tradeMapping) {
+		final FetchAutoTuner tuner = this.settings.isAutoTuned()
+				? new FetchAutoTuner(
+						this.settings.getParallelParts(),
+						this.settings.getPartLength(),
+						CloudSources.MAX_TRANSIENT_BYTES)
+				: null;
+		final Function<ICloudEntityPath<?>, CloudFetchingConfig> config = tuner != null
+				? tuner::configFor
+				: (path) -> this.sources.createFetchingConfig();
+
+		final PartDiskCache cache = this.sources.createPartCache();
+		final FetchRetries retries = this.sources.createFetchRetries();
+		final long maxInFlightMb = this.settings.getMaxInFlightMb();
+		final IFetchInterceptor interceptor = IFetchInterceptor.chain(Arrays.asList(
+				cache,
+				tuner,
+				maxInFlightMb > 0 ? new InFlightBytesLimiter(maxInFlightMb << 20) : null,
+				retries));
+
+		switch (this.settings.getCloudProvider()) {
+			case "azure":
+				final AzureCloudDirectory container = this.sources.getAzureContainer();
+				// With the history, the date folders are those of the container
+				final ICloudDirectory<CloudBlob> baseDir = folders.isHistory()
+						? container
+						: container.getSubDirectory(folders.getDateFolder());
+				final Function<ICloudEntityPath<CloudBlob>, AConcurrentlyFetchingChannel<CloudBlob>>
+						factory = (path) -> new InterceptedAzureBlobChannel(
+								path, config.apply(path), downloadExecutor, interceptor);
+				parseFetchedDirectories(
+						executorService,
+						baseDir,
+						factory,
+						folders,
+						journal,
+						riskMapping,
+						productMapping,
+						tradeMapping);
+				this.sources.prefetchNextDate(cache, container, folders.getDateFolder());
+				break;
+			case "local":
+				// Local folder standing in for the cloud container, with simulated network conditions
+				final CloudSimulation simulation = this.sources.createCloudSimulation();
+				LOGGER.info("Simulating the cloud from " + this.settings.getSimulatedCloudRoot()
+						+ " with " + simulation);
+				final LocalCloudDirectory simulatedContainer = this.sources.getSimulatedContainer();
+				final Function<ICloudEntityPath<Path>, AConcurrentlyFetchingChannel<Path>>
+						simulatedFactory = (path) -> new SimulatedCloudChannel(
+								path, config.apply(path), downloadExecutor, simulation, interceptor);
+				parseFetchedDirectories(
+						executorService,
+						folders.isHistory()
+								? simulatedContainer
+								: simulatedContainer.getSubDirectory(folders.getDateFolder()),
+						simulatedFactory,
+						folders,
+						journal,
+						riskMapping,
+						productMapping,
+						tradeMapping);
+				LOGGER.info(simulation.getInjectedErrors()
+						+ " failures injected by the cloud simulation");
+				this.sources.prefetchNextDate(cache, simulatedContainer, folders.getDateFolder());
+				break;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown cloud provider: " + this.settings.getCloudProvider());
+		}
+		LOGGER.info("Fetch retries: " + retries);
+		if (tuner != null) {
+			LOGGER.info("Fetch tuning: " + tuner);
+		}
+		if (cache != null) {
+			LOGGER.info("Fetch cache: " + cache);
+		}
+	}
+
+	private void parseLocalDirectories(
+			final ExecutorService executorService,
+			final SourceFolders folders,
+			final LoadJournal journal,
+			final IStoreToParquetMapping riskMapping,
+			final IStoreToParquetMapping productMapping,
+			final IStoreToParquetMapping tradeMapping) {
+		final Path dataDir = folders.getDataDirectory();
+		if (!this.settings.isPlainLocalChannel()
+				|| folders.isHistory()
+				|| journal != null
+				|| !this.loadFilters.isEmpty()
+				|| !this.excludedFields.isEmpty()
+				|| this.vectorStore
+				|| this.vectorFile != null) {
+			// Read the local files by parts fetched concurrently, as for the cloud, which also allows
+			// to commit them by groups, to filter them and to only read some of their columns
+			final var config = this.sources.createFetchingConfig();
+			final var fetchExecutor =
+					DownloadExecutors.newDownloadExecutor(this.settings.isVirtualThreads());
+			final Function<ICloudEntityPath<Path>, AConcurrentlyFetchingChannel<Path>>
+					factory = (path) -> new LocalFileChannel(
+							path, config, fetchExecutor, IFetchInterceptor.NONE);
+			try {
+				parseFetchedDirectories(
+						executorService,
+						new LocalCloudDirectory(
+								folders.isHistory() ? folders.getLocalRoot() : dataDir),
+						factory,
+						folders,
+						journal,
+						riskMapping,
+						productMapping,
+						tradeMapping);
+			} finally {
+				fetchExecutor.shutdown();
+			}
+			return;
+		}
+
+		final String riskDir = dataDir.resolve("risks").toAbsolutePath().toString();
+		final String productDir = dataDir.resolve("products").toAbsolutePath().toString();
+		final String tradeDir = dataDir.resolve("trades").toAbsolutePath().toString();
+
+		// Load data into ActivePivot
+		final long before = System.nanoTime();
+		datastore.edit(tm -> {
+			this.transactions.start(tm);
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(riskDir, riskMapping);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot load folder " + riskDir, e);
+			}
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(productDir, productMapping);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot load folder " + productDir, e);
+			}
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(tradeDir, tradeMapping);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot load folder " + tradeDir, e);
+			}
+			this.transactions.commit(tm);
+		});
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms");
+	}
+
+	/**
+	 * Parses the risks, products and trades sub-directories of a directory, reading their files
+	 * through concurrently fetching channels.
+	 */
+	private <E> void parseFetchedDirectories(
+			final ExecutorService executorService,
+			final ICloudDirectory<E> baseDir,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final SourceFolders folders,
+			final LoadJournal journal,
+			final IStoreToParquetMapping riskMapping,
+			final IStoreToParquetMapping productMapping,
+			final IStoreToParquetMapping tradeMapping) {
+		if (folders.isHistory()) {
+			parseHistoryDirectories(executorService, baseDir, factory, folders.getHistoryFolders());
+			return;
+		}
+		if (journal != null) {
+			final Map<String, IStoreToParquetMapping> mappings = new LinkedHashMap<>();
+			mappings.put("risks", riskMapping);
+			mappings.put("products", productMapping);
+			mappings.put("trades", tradeMapping);
+			parseJournaledDirectories(
+					executorService,
+					baseDir,
+					factory,
+					mappings,
+					folders,
+					journal);
+			return;
+		}
+		if (!this.loadFilters.isEmpty()
+				|| !this.excludedFields.isEmpty()
+				|| this.vectorStore
+				|| this.vectorFile != null) {
+			final Map<String, IStoreToParquetMapping> mappings = new LinkedHashMap<>();
+			mappings.put("risks", riskMapping);
+			mappings.put("products", productMapping);
+			mappings.put("trades", tradeMapping);
+			parseFilteredDirectories(executorService, baseDir, factory, mappings);
+			return;
+		}
+
+		final ICloudDirectory<E> riskDir = baseDir.getSubDirectory("risks");
+		final ICloudDirectory<E> productDir = baseDir.getSubDirectory("products");
+		final ICloudDirectory<E> tradeDir = baseDir.getSubDirectory("trades");
+
+		// Load data into ActivePivot
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+		final long before = System.nanoTime();
+		datastore.edit(tm -> {
+			this.transactions.start(tm);
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(riskDir, factory, null, riskMapping);
+			}
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(productDir, factory, null, productMapping);
+			}
+			try (final var parser = new ParquetParser(
+					this.datastore,
+					executorService,
+					new NoRestrictionParquetPolicy())) {
+				parser.parse(tradeDir, factory, null, tradeMapping);
+			}
+			this.transactions.commit(tm);
+		});
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms with at most "
+				+ threads.getPeakThreadCount() + " platform threads");
+	}
+
+	/**
+	 * Parses directories by groups of files, each group in its own load transaction recorded in the
+	 * journal, skipping the files the journal records as committed. The files of the stores with
+	 * excluded fields are read without the columns of those fields.
+	 * <p>
+	 * Every load-journal.checkpoint-groups committed groups, the snapshot of the stores is written
+	 * with the length of the journal, so that a restarted process restores it and resumes the load
+	 * after its files.
+	 */
+	private <E> void parseJournaledDirectories(
+			final ExecutorService executorService,
+			final ICloudDirectory<E> baseDir,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final Map<String, IStoreToParquetMapping> mappings,
+			final SourceFolders folders,
+			final LoadJournal journal) {
+		final Map<String, IStoreDescription> stores = getStoresByFolder();
+		final int filesPerCommit =
+				env.getProperty("load-journal.files-per-commit", Integer.class, 16);
+		final int checkpointGroups =
+				env.getProperty("load-journal.checkpoint-groups", Integer.class, 0);
+		final long before = System.nanoTime();
+		int committedFiles = 0;
+		int committedGroups = 0;
+		int skippedFiles = 0;
+		for (final Map.Entry<String, IStoreToParquetMapping> entry : mappings.entrySet()) {
+			final ICloudDirectory<E> directory = baseDir.getSubDirectory(entry.getKey());
+			final IStoreDescription store = stores.get(entry.getKey());
+			final List<ICloudEntity<E>> files = new ArrayList<>();
+			for (final ICloudEntity<E> file : listDataFiles(directory)) {
+				if (journal.isCommitted(file)) {
+					skippedFiles += 1;
+				} else {
+					files.add(file);
+				}
+			}
+
+			for (int start = 0; start < files.size(); start += filesPerCommit) {
+				final List<ICloudEntity<E>> group =
+						files.subList(start, Math.min(files.size(), start + filesPerCommit));
+				datastore.edit(tm -> {
+					this.transactions.start(tm);
+					if (hasExcludedFields(store)) {
+						new FilteredParquetLoader(store, null, null, null)
+								.load(tm, group, executorService);
+					} else {
+						try (final var parser = new ParquetParser(
+								this.datastore,
+								executorService,
+								new NoRestrictionParquetPolicy())) {
+							parser.parse(
+									new EntitySubsetDirectory<>(
+											directory,
+											group.stream()
+													.map(ICloudEntity::getKey)
+													.collect(Collectors.toList())),
+									factory,
+									null,
+									entry.getValue());
+						}
+					}
+					this.transactions.commit(tm);
+				});
+				journal.recordCommitted(group);
+				committedFiles += group.size();
+				committedGroups += 1;
+				if (checkpointGroups > 0 && committedGroups % checkpointGroups == 0) {
+					this.snapshots.writeCheckpoint(folders, journal);
+				}
+			}
+		}
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Data load completed in " + elapsed / 1000000L + "ms: " + committedFiles
+				+ " files committed, " + skippedFiles + " files already committed");
+	}
+
+	/**
+	 * @param store the description of a store
+	 * @return {@code true} if fields of the store are excluded, their columns not to be read
+	 */
+	private boolean hasExcludedFields(final IStoreDescription store) {
+		return this.excludedFields.stream()
+				.anyMatch(field -> field.startsWith(store.getName() + "."));
+	}
+
+	/**
+	 * Parses the trades, products and risks sub-directories of a directory, only loading the rows
+	 * matching the load filters and the columns of the fields kept in the stores.
+	 * <p>
+	 * When the trades are filtered, the risks follow the loaded trades through Risk_To_Trade: only
+	 * the risks of the loaded trades are loaded, skipping the row groups whose TradeId range holds
+	 * none of them. The directories of the stores without filters nor excluded fields are parsed as
+	 * usual.
+	 */
+	private <E> void parseFilteredDirectories(
+			final ExecutorService executorService,
+			final ICloudDirectory<E> baseDir,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final Map<String, IStoreToParquetMapping> mappings) {
+		final Map<String, IStoreDescription> stores = getStoresByFolder();
+		final Map<String, FilterPredicate> predicates = toPredicates(stores);
+		LOGGER.info("Loading the rows matching " + this.loadFilters.values());
+
+		final KeyCollector tradeIds = createTradeIdCollector(predicates);
+		final long before = System.nanoTime();
+		datastore.edit(tm -> {
+			this.transactions.start(tm);
+			loadDirectories(
+					tm,
+					executorService,
+					baseDir,
+					factory,
+					mappings,
+					stores,
+					predicates,
+					tradeIds,
+					Collections.emptyMap());
+			if (this.vectorStore && !this.vectorLoader.isLazy()) {
+				loadVectorDirectory(
+						tm,
+						executorService,
+						baseDir.getSubDirectory("risks"),
+						tradeIds,
+						Collections.emptyMap());
+			}
+			this.transactions.commit(tm);
+		});
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("Filtered data load completed in " + elapsed / 1000000L + "ms");
+		if (!this.excludedFields.isEmpty()) {
+			LOGGER.info("Fields excluded from the stores: " + this.excludedFields);
+		}
+		if (this.vectorStore && this.vectorLoader.isLazy()) {
+			this.vectorLoader.load(
+					this.settings.getParallelFiles(),
+					(tm, executor) -> loadVectorDirectory(
+							tm,
+							executor,
+							baseDir.getSubDirectory("risks"),
+							tradeIds,
+							Collections.emptyMap()));
+		}
+	}
+
+	/**
+	 * Gets the descriptions of the stores by folder of their files, the trades first to collect the
+	 * ids the risks follow.
+	 */
+	private Map<String, IStoreDescription> getStoresByFolder() {
+		final Map<String, IStoreDescription> stores = new LinkedHashMap<>();
+		stores.put("trades", this.schema.trades());
+		stores.put("products", this.schema.products());
+		stores.put("risks", this.schema.risks());
+		return stores;
+	}
+
+	/**
+	 * Converts the load filters into Parquet predicates, by folder of the files.
+	 */
+	private Map<String, FilterPredicate> toPredicates(final Map<String, IStoreDescription> stores) {
+		final Map<String, FilterPredicate> predicates = new LinkedHashMap<>();
+		for (final Map.Entry<String, IStoreDescription> entry : stores.entrySet()) {
+			predicates.put(entry.getKey(), toPredicate(
+					entry.getValue(),
+					this.loadFilters.getOrDefault(
+							entry.getValue().getName(),
+							Collections.emptyList())));
+		}
+		for (final String store : this.loadFilters.keySet()) {
+			if (stores.values().stream()
+					.noneMatch(description -> description.getName().equals(store))) {
+				throw new IllegalArgumentException("Cannot filter the unknown store " + store);
+			}
+		}
+		return predicates;
+	}
+
+	/**
+	 * Converts the load filters of a store into a Parquet predicate.
+	 *
+	 * @return the predicate, {@code null} without filters
+	 */
+	private static FilterPredicate toPredicate(
+			final IStoreDescription store,
+			final List<LoadFilter> filters) {
+		FilterPredicate predicate = null;
+		for (final LoadFilter filter : filters) {
+			final IFieldDescription field = store.getFields().stream()
+					.filter(description -> description.getName().equals(filter.getField()))
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException(
+							"No field " + filter.getField() + " in store " + store.getName()));
+			final FilterPredicate condition = filter.toPredicate(field.getDataType());
+			predicate = predicate == null ? condition : FilterApi.and(predicate, condition);
+		}
+		return predicate;
+	}
+
+	/**
+	 * Creates the collector of the ids of the loaded trades, sized from the manifest.
+	 *
+	 * @return the collector, {@code null} when the trades are not filtered
+	 */
+	private KeyCollector createTradeIdCollector(final Map<String, FilterPredicate> predicates) {
+		if (predicates.get("trades") == null) {
+			return null;
+		}
+		final LoadManifest manifest = this.schema.getManifest();
+		return manifest != null
+				? new KeyCollector((int) Math.min(
+						Integer.MAX_VALUE - 8,
+						manifest.getRows(DatastoreDescriptionConfig.TRADE_STORE)))
+				: new KeyCollector();
+	}
+
+	/**
+	 * Loads the sub-directories of a directory within the current transaction, the risks only
+	 * following the collected trade ids if any. With a separate store of the vectors, only the
+	 * scalar columns of the risk files are read.
+	 */
+	private <E> void loadDirectories(
+			final ITransactionManager tm,
+			final ExecutorService executorService,
+			final ICloudDirectory<E> baseDir,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final Map<String, IStoreToParquetMapping> mappings,
+			final Map<String, IStoreDescription> stores,
+			final Map<String, FilterPredicate> predicates,
+			final KeyCollector tradeIds,
+			final Map<String, Object> constantFields) {
+		for (final Map.Entry<String, IStoreDescription> entry : stores.entrySet()) {
+			final String folder = entry.getKey();
+			final ICloudDirectory<E> directory = baseDir.getSubDirectory(folder);
+			FilterPredicate predicate = predicates.get(folder);
+			if (folder.equals("risks") && tradeIds != null) {
+				final FilterPredicate ofTrades = toTradeIdPredicate(tradeIds);
+				predicate = predicate == null ? ofTrades : FilterApi.and(predicate, ofTrades);
+			}
+
+			if (predicate == null
+					&& !(folder.equals("risks") && (this.vectorStore || this.vectorFile != null))
+					&& !hasExcludedFields(entry.getValue())) {
+				try (final var parser = new ParquetParser(
+						this.datastore,
+						executorService,
+						new NoRestrictionParquetPolicy())) {
+					parser.parse(directory, factory, null, mappings.get(folder));
+				}
+			} else {
+				new FilteredParquetLoader(
+						entry.getValue(),
+						predicate,
+						folder.equals("trades") ? "Id" : null,
+						folder.equals("trades") ? tradeIds : null,
+						constantFields,
+						this.vectorFile)
+						.load(tm, listDataFiles(directory), executorService);
+			}
+		}
+	}
+
+	/**
+	 * Loads the pnl vectors of the risk files of a directory into their store within the current
+	 * transaction, only reading their TradeId and PnlVector columns.
+	 *
+	 * @param tradeIds the ids of the loaded trades the vectors follow, {@code null} for all
+	 */
+	private <E> void loadVectorDirectory(
+			final ITransactionManager tm,
+			final ExecutorService executorService,
+			final ICloudDirectory<E> riskDir,
+			final KeyCollector tradeIds,
+			final Map<String, Object> constantFields) {
+		new FilteredParquetLoader(
+				this.schema.pnlVectors(),
+				tradeIds == null ? null : toTradeIdPredicate(tradeIds),
+				null,
+				null,
+				constantFields,
+				this.vectorFile)
+				.load(tm, listDataFiles(riskDir), executorService);
+	}
+
+	private static FilterPredicate toTradeIdPredicate(final KeyCollector tradeIds) {
+		return FilterApi.userDefined(
+				FilterApi.longColumn("TradeId"),
+				new KeySetPredicate(tradeIds.toSortedKeys()));
+	}
+
+	private static <E> List<ICloudEntity<E>> listDataFiles(final ICloudDirectory<E> directory) {
+		return directory.listEntities(false).stream()
+				.filter(file -> {
+					final String key = file.getKey();
+					final String name = key.substring(key.lastIndexOf('/') + 1);
+					return !name.startsWith("_") && !name.startsWith(".");
+				})
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Loads the date folders of the history into the trades and risks of their AsOfDate, within a
+	 * single transaction which also evicts the dates out of the window.
+	 * <p>
+	 * The dates are loaded in parallel, up to history.parallel-dates at once. Only the
+	 * history.window latest dates are kept: the older ones are removed, along with the previous
+	 * version of the loaded dates, by one removeWhere on AsOfDate per store. That is a conditional
+	 * delete of the rows of those dates within the transaction, not a drop of their partitions: its
+	 * cost grows with the rows removed, and it is logged apart from the load.
+	 *
+	 * @param container the directory of the date folders
+	 * @param dateFolders the date folders to load
+	 */
+	private <E> void parseHistoryDirectories(
+			final ExecutorService executorService,
+			final ICloudDirectory<E> container,
+			final Function<ICloudEntityPath<E>, AConcurrentlyFetchingChannel<E>> factory,
+			final List<String> dateFolders) {
+		final HistoryWindow.Update update = this.history.plan(dateFolders);
+		final Map<LocalDate, String> folders = update.getLoaded();
+		final List<LocalDate> removed = update.getRemoved();
+
+		final Map<String, IStoreDescription> stores = getStoresByFolder();
+		final Map<String, FilterPredicate> predicates = toPredicates(stores);
+		final ExecutorService dateExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(
+				folders.size(),
+				env.getProperty("history.parallel-dates", Integer.class, 2))));
+		final Map<LocalDate, KeyCollector> tradeIds = new HashMap<>();
+		for (final LocalDate date : folders.keySet()) {
+			tradeIds.put(date, createTradeIdCollector(predicates));
+		}
+		final List<String> removedStores = new ArrayList<>(Arrays.asList(
+				DatastoreDescriptionConfig.RISK_STORE,
+				DatastoreDescriptionConfig.TRADE_STORE));
+		if (this.vectorStore) {
+			removedStores.add(DatastoreDescriptionConfig.VECTOR_STORE);
+		}
+		final long before = System.nanoTime();
+		try {
+			datastore.edit(tm -> {
+				if (!removed.isEmpty()) {
+					final long removal = System.nanoTime();
+					for (final String store : removedStores) {
+						tm.removeWhere(store, BaseConditions.In(
+								DatastoreDescriptionConfig.AS_OF_DATE,
+								removed.toArray()));
+					}
+					LOGGER.info("Removed the rows of " + removed + " from " + removedStores + " in "
+							+ (System.nanoTime() - removal) / 1000000L + "ms");
+				}
+				final List<Future<?>> futures = new ArrayList<>();
+				for (final Map.Entry<LocalDate, String> entry : folders.entrySet()) {
+					final ICloudDirectory<E> dateDir = container.getSubDirectory(entry.getValue());
+					final Map<String, Object> asOfDate = Collections.singletonMap(
+							DatastoreDescriptionConfig.AS_OF_DATE,
+							entry.getKey());
+					futures.add(dateExecutor.submit(() -> {
+						loadDirectories(
+								tm,
+								executorService,
+								dateDir,
+								factory,
+								createParquetMappings(entry.getKey()),
+								stores,
+								predicates,
+								tradeIds.get(entry.getKey()),
+								asOfDate);
+						if (this.vectorStore && !this.vectorLoader.isLazy()) {
+							loadVectorDirectory(
+									tm,
+									executorService,
+									dateDir.getSubDirectory("risks"),
+									tradeIds.get(entry.getKey()),
+									asOfDate);
+						}
+						return null;
+					}));
+				}
+				try {
+					for (final Future<?> future : futures) {
+						future.get();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while loading " + folders.values(), e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Cannot load " + folders.values(), e.getCause());
+				}
+				// The risks of the dates kept from the previous loads are already joined
+				this.transactions.commit(tm, BaseConditions.In(
+						DatastoreDescriptionConfig.AS_OF_DATE,
+						folders.keySet().toArray()));
+			});
+		} finally {
+			dateExecutor.shutdown();
+		}
+		this.history.apply(update);
+
+		final long elapsed = System.nanoTime() - before;
+		LOGGER.info("History load completed in " + elapsed / 1000000L + "ms: loaded "
+				+ folders.keySet() + ", removed " + removed
+				+ ", holding " + this.history.getDates());
+
+		if (this.vectorStore && this.vectorLoader.isLazy()) {
+			this.vectorLoader.load(this.settings.getParallelFiles(), (tm, executor) -> {
+				for (final Map.Entry<LocalDate, String> entry : folders.entrySet()) {
+					loadVectorDirectory(
+							tm,
+							executor,
+							container.getSubDirectory(entry.getValue()).getSubDirectory("risks"),
+							tradeIds.get(entry.getKey()),
+							Collections.singletonMap(
+									DatastoreDescriptionConfig.AS_OF_DATE,
+									entry.getKey()));
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.cfg.datastore.RiskJoinProcedure;
+import com.qfs.condition.ICondition;
+import com.qfs.store.selection.impl.Selection;
+import com.qfs.store.transaction.ITransactionManager;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Copies the fields of the trades and products of the risks into the denormalized risk store,
+ * before the commit of the loads.
+ *
+ * @author ActiveViam
+ */
+public class RiskJoin {
+
+	private static final Logger LOGGER = Logger.getLogger(RiskJoin.class.getSimpleName());
+
+	/** Whether the risk store is denormalized */
+	protected final boolean enabled;
+	/** The joined fields, with their path from the risk store */
+	protected final Map<String, String> fields;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param schema the schema of the datastore
+	 */
+	public RiskJoin(final DatastoreDescriptionConfig schema) {
+		this.enabled = schema.isRiskStoreDenormalized();
+		this.fields = schema.getJoinedRiskFields();
+	}
+
+	/**
+	 * Copies the fields of the trades and products into the loaded risks within the current
+	 * transaction: the datastore reads them through Risk_To_Trade and Trade_To_Product and updates
+	 * the partitions of the risks in parallel. Does nothing when the risk store is normalized.
+	 *
+	 * @param tm the transaction manager, within the transaction of the load
+	 * @param loadedRisks the condition on the risks of the load, such as their AsOfDate, the risks
+	 * 		already joined by the previous loads being left as they are
+	 */
+	public void join(final ITransactionManager tm, final ICondition loadedRisks) {
+		if (!this.enabled) {
+			return;
+		}
+		final long before = System.nanoTime();
+		tm.updateWhere(
+				new Selection(
+						DatastoreDescriptionConfig.RISK_STORE,
+						this.fields.values().toArray(new String[0])),
+				loadedRisks,
+				new RiskJoinProcedure(new ArrayList<>(this.fields.keySet())));
+		LOGGER.info("Risks joined with their trades and products in "
+				+ (System.nanoTime() - before) / 1000000L + "ms");
+	}
+
+}
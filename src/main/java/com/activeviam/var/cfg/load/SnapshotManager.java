@@ -0,0 +1,355 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.source.cloud.LocalCloudDirectory;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.activeviam.var.source.snapshot.DatastoreSnapshot;
+import com.activeviam.var.source.watch.LoadJournal;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.IDatastore;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.springframework.core.env.Environment;
+
+/**
+ * Restores the stores from a snapshot taken from the configured dataset, and writes the snapshot
+ * of the loaded stores.
+ * <p>
+ * With the load journal, the snapshot is written with a checkpoint of the journal: the id of the
+ * datastore the journal records the files of, and its length when the snapshot was taken. The
+ * journaled loads also write checkpoints while loading. Restoring the snapshot of a checkpoint
+ * makes the next journal resume after the files of the snapshot, and the load goes on from there.
+ *
+ * @author ActiveViam
+ */
+public class SnapshotManager {
+
+	private static final Logger LOGGER = Logger.getLogger(SnapshotManager.class.getSimpleName());
+
+	/** Name of the file of the journal checkpoint, in the directory of the snapshot */
+	protected static final String CHECKPOINT_FILE = "load-journal.checkpoint";
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The schema of the datastore */
+	protected final DatastoreDescriptionConfig schema;
+	/** The settings of the loads */
+	protected final LoadSettings settings;
+	/** The environment */
+	protected final Environment env;
+	/** What the source files are read with */
+	protected final CloudSources sources;
+	/** The dates held by the history */
+	protected final HistoryWindow history;
+	/** The reports on the stores */
+	protected final StoreReports reports;
+	/** The memory mapped file of the pnl vectors, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+
+	/** The folders of the last checkpoint, whose dataset fingerprint is kept */
+	protected SourceFolders checkpointFolders;
+	/** The dataset fingerprint of the last checkpoint */
+	protected String checkpointFingerprint;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 * @param schema the schema of the datastore
+	 * @param settings the settings of the loads
+	 * @param sources what the source files are read with
+	 * @param history the dates held by the history
+	 * @param reports the reports on the stores
+	 * @param vectorFile the memory mapped file of the pnl vectors, or {@code null}
+	 */
+	public SnapshotManager(
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema,
+			final LoadSettings settings,
+			final CloudSources sources,
+			final HistoryWindow history,
+			final StoreReports reports,
+			final MappedVectorFile vectorFile) {
+		this.datastore = datastore;
+		this.schema = schema;
+		this.settings = settings;
+		this.env = settings.getEnvironment();
+		this.sources = sources;
+		this.history = history;
+		this.reports = reports;
+		this.vectorFile = vectorFile;
+	}
+
+	/**
+	 * Restores the stores from the snapshot, if enabled and taken from the configured dataset.
+	 *
+	 * @param folders the folders of the source files
+	 * @return {@code true} if the stores were restored with the whole dataset, {@code false} if
+	 * 		they are to be loaded, possibly resuming after the files of a journal checkpoint
+	 */
+	public boolean restore(final SourceFolders folders) {
+		if (!env.getProperty("snapshot.restore", Boolean.class, false)) {
+			return false;
+		}
+		final Collection<IStoreDescription> stores = getSnapshotStores();
+		final DatastoreSnapshot snapshot = createSnapshot();
+		final String[] checkpoint = this.settings.isJournaled() ? readCheckpoint() : null;
+		if ((this.settings.isJournaled() && checkpoint == null)
+				|| !snapshot.matches(stores, computeDatasetFingerprint(stores, folders))) {
+			LOGGER.info("Loading the data from the source instead of the snapshot");
+			return false;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				env.getProperty("snapshot.restore-threads", Integer.class, 4));
+		try {
+			snapshot.restore(stores, executor);
+		} finally {
+			executor.shutdown();
+		}
+		if (folders.isHistory()) {
+			// The snapshot holds the latest dates of the history folders
+			this.history.restore(folders.getHistoryFolders());
+		}
+		this.reports.printStoreSizes();
+		if (checkpoint != null) {
+			this.sources.resumeLoadJournal(checkpoint[0], Long.parseLong(checkpoint[1]));
+			if (!Boolean.parseBoolean(checkpoint[2])) {
+				LOGGER.info("Resuming the load after the " + checkpoint[1]
+						+ " bytes of the journal of the snapshot");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the snapshot of the stores, if enabled.
+	 *
+	 * @param folders the folders of the loaded source files
+	 */
+	public void write(final SourceFolders folders) {
+		if (!env.getProperty("snapshot.write", Boolean.class, false)) {
+			return;
+		}
+		if (this.vectorFile != null) {
+			// The header of the file then ends where the offsets of the snapshot do
+			this.vectorFile.force();
+		}
+		final Collection<IStoreDescription> stores = getSnapshotStores();
+		final String fingerprint = computeDatasetFingerprint(stores, folders);
+		if (!this.settings.isJournaled()) {
+			createSnapshot().write(stores, fingerprint);
+			return;
+		}
+		try {
+			writeWithCheckpoint(
+					fingerprint,
+					this.sources.getLoadJournalDatastore(),
+					Files.size(this.sources.getLoadJournalFile()),
+					true);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the load journal", e);
+		}
+	}
+
+	/**
+	 * Writes the snapshot of the stores during a journaled load, with the checkpoint of the journal
+	 * the restarted process resumes the load from.
+	 *
+	 * @param folders the folders of the loaded source files
+	 * @param journal the journal of the load, holding the files committed so far
+	 */
+	public synchronized void writeCheckpoint(
+			final SourceFolders folders,
+			final LoadJournal journal) {
+		final Collection<IStoreDescription> stores = getSnapshotStores();
+		if (folders != this.checkpointFolders) {
+			// The dataset, fingerprinted with the checksums of all its files, is the same until the
+			// end of the load
+			this.checkpointFingerprint = computeDatasetFingerprint(stores, folders);
+			this.checkpointFolders = folders;
+		}
+		writeWithCheckpoint(
+				this.checkpointFingerprint,
+				journal.getDatastore(),
+				journal.getLength(),
+				false);
+	}
+
+	/**
+	 * Writes the snapshot of the stores, then its checkpoint: a snapshot interrupted while written
+	 * has no checkpoint, and is not restored with the journal.
+	 */
+	private void writeWithCheckpoint(
+			final String fingerprint,
+			final String datastore,
+			final long length,
+			final boolean complete) {
+		final Path file = getCheckpointFile();
+		try {
+			Files.deleteIfExists(file);
+			createSnapshot().write(getSnapshotStores(), fingerprint);
+			final Path temporary = file.resolveSibling(CHECKPOINT_FILE + ".tmp");
+			Files.write(
+					temporary,
+					(datastore + '\t' + length + '\t' + complete + '\n')
+							.getBytes(StandardCharsets.UTF_8));
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the journal checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * @return the id of the datastore of the journal, its length and whether the snapshot holds
+	 * 		the whole dataset, {@code null} if the snapshot has no checkpoint
+	 */
+	private String[] readCheckpoint() {
+		final Path file = getCheckpointFile();
+		try {
+			if (!Files.isRegularFile(file)) {
+				LOGGER.info("No journal checkpoint " + file);
+				return null;
+			}
+			final String[] fields = new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+					.trim()
+					.split("\t");
+			return fields.length == 3 ? fields : null;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot read the journal checkpoint " + file, e);
+			return null;
+		}
+	}
+
+	private Path getCheckpointFile() {
+		return Paths.get(env.getProperty("snapshot.dir", "snapshot")).resolve(CHECKPOINT_FILE);
+	}
+
+	private DatastoreSnapshot createSnapshot() {
+		return new DatastoreSnapshot(
+				this.datastore,
+				Paths.get(env.getProperty("snapshot.dir", "snapshot")));
+	}
+
+	private Collection<IStoreDescription> getSnapshotStores() {
+		final List<IStoreDescription> stores = new ArrayList<>(
+				Arrays.asList(this.schema.products(), this.schema.trades(), this.schema.risks()));
+		if (this.schema.hasVectorStore()) {
+			stores.add(this.schema.pnlVectors());
+		}
+		return stores;
+	}
+
+	/**
+	 * Computes the fingerprint of the configured dataset: the loading mode, the schema of the
+	 * stores, the load filters and the source files with their version, or the generator settings.
+	 * With the load journal, the version of the files is the checksum the journal records.
+	 */
+	private String computeDatasetFingerprint(
+			final Collection<IStoreDescription> stores,
+			final SourceFolders folders) {
+		final String mode = this.settings.getMode();
+		final StringBuilder dataset = new StringBuilder(mode).append('\n');
+		for (final IStoreDescription store : stores) {
+			dataset.append(store.getName());
+			for (final IFieldDescription field : store.getFields()) {
+				dataset.append(' ').append(field.getName()).append(':').append(field.getDataType());
+			}
+			dataset.append('\n');
+		}
+		dataset.append(this.settings.getLoadFilters()).append('\n');
+		if (this.vectorFile != null) {
+			// The snapshot holds the offsets of the vectors written to the file
+			dataset.append(this.vectorFile).append('\n');
+		}
+		if ("generate".equals(mode)) {
+			for (final String property : Arrays.asList(
+					"tradeSource.productCount",
+					"tradeSource.tradeCount",
+					"tradeSource.vectorLength")) {
+				dataset.append(property).append('=').append(env.getProperty(property)).append('\n');
+			}
+		} else {
+			final boolean csv = "csv".equals(mode);
+			// The journaled loads skip the files whose checksum they recorded: the snapshot is
+			// taken from the same versions of the files
+			final boolean journaled = this.settings.isJournaled();
+			dataset.append("journaled=").append(journaled).append('\n');
+			for (final ICloudDirectory<?> directory : getSourceDirectories(folders)) {
+				final List<ICloudEntity<?>> files = new ArrayList<>(directory.listEntities(!csv));
+				files.sort(Comparator.comparing(ICloudEntity::getKey));
+				for (final ICloudEntity<?> file : files) {
+					final String key = file.getKey();
+					if (csv ? key.matches(".*\\.csv(\\.gz|\\.zst)?") : key.endsWith(".parquet")) {
+						dataset.append(key)
+								.append(' ')
+								.append(journaled
+										? CloudSources.getChecksum(file)
+										: CloudSources.getVersion(file))
+								.append('\n');
+					}
+				}
+			}
+		}
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256")
+					.digest(dataset.toString().getBytes(StandardCharsets.UTF_8));
+			final StringBuilder hex = new StringBuilder();
+			for (final byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the directories of the source files of the loaded dates.
+	 */
+	private List<ICloudDirectory<?>> getSourceDirectories(final SourceFolders folders) {
+		final List<String> dateFolders = folders.isHistory()
+				? folders.getHistoryFolders()
+				: Collections.singletonList(null);
+		final List<ICloudDirectory<?>> directories = new ArrayList<>();
+		for (final String folder : dateFolders) {
+			if ("parquet-cloud".equals(this.settings.getMode())) {
+				directories.add(this.sources.getContainer()
+						.getSubDirectory(folder != null ? folder : folders.getDateFolder()));
+			} else {
+				directories.add(new LocalCloudDirectory(folder != null
+						? folders.getLocalRoot().resolve(folder)
+						: folders.getDataDirectory()));
+			}
+		}
+		return directories;
+	}
+
+}
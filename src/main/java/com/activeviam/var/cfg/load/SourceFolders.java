@@ -0,0 +1,147 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The folders of the files of a load: the date folder of the container in parquet-cloud mode, the
+ * data directory in the csv and parquet-local modes, and the date folders of the history.
+ * <p>
+ * The folders are immutable: a reload loads the folders of another date, which only replace the
+ * loaded ones once the reload succeeded.
+ *
+ * @author ActiveViam
+ */
+public class SourceFolders {
+
+	/** Valid names of the date folders to reload */
+	private static final Pattern DATE_FOLDER = Pattern.compile("[\\w-][\\w.-]*");
+
+	/** The folder of the date in the container */
+	protected final String dateFolder;
+	/** The directory of the local files */
+	protected final String dataPath;
+	/** The folder of the local date folders */
+	protected final Path localRoot;
+	/** The date folders of the history, {@code null} without history */
+	protected final List<String> historyFolders;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dateFolder the folder of the date in the container
+	 * @param dataPath the directory of the local files
+	 * @param localRoot the folder of the local date folders
+	 * @param historyFolders the date folders of the history, {@code null} without history
+	 */
+	public SourceFolders(
+			final String dateFolder,
+			final String dataPath,
+			final Path localRoot,
+			final List<String> historyFolders) {
+		this.dateFolder = dateFolder;
+		this.dataPath = dataPath;
+		this.localRoot = localRoot;
+		this.historyFolders = historyFolders;
+	}
+
+	/**
+	 * @param historyFolders the date folders of the history
+	 * @return these folders, loading the given date folders into the history
+	 */
+	public SourceFolders withHistoryFolders(final List<String> historyFolders) {
+		return new SourceFolders(
+				this.dateFolder,
+				this.dataPath,
+				this.localRoot,
+				Collections.unmodifiableList(historyFolders));
+	}
+
+	/**
+	 * Gets the folders of another date: the date folder of the container in parquet-cloud mode, of
+	 * the local root in the csv and parquet-local modes, or the date folder added to the history.
+	 *
+	 * @param date the name of the date folder
+	 * @param mode the loading mode
+	 * @return the folders of the date
+	 */
+	public SourceFolders forDate(final String date, final String mode) {
+		if (!DATE_FOLDER.matcher(date).matches()) {
+			throw new IllegalArgumentException("Invalid date folder: " + date);
+		}
+		if (this.historyFolders != null) {
+			return withHistoryFolders(Collections.singletonList(date));
+		}
+		switch (mode) {
+			case "parquet-cloud":
+				return new SourceFolders(date, this.dataPath, this.localRoot, null);
+			case "csv":
+			case "parquet-local":
+				return new SourceFolders(
+						this.dateFolder,
+						this.localRoot.resolve(date).toString(),
+						this.localRoot,
+						null);
+			default:
+				throw new IllegalStateException("Cannot reload a date in mode " + mode);
+		}
+	}
+
+	/**
+	 * @return the folder of the date in the container
+	 */
+	public String getDateFolder() {
+		return this.dateFolder;
+	}
+
+	/**
+	 * @return the directory of the local files
+	 */
+	public Path getDataDirectory() {
+		return Paths.get(this.dataPath);
+	}
+
+	/**
+	 * @return the folder of the local date folders: {@code reload.local-root}, by default the
+	 * 		parent of the data directory
+	 */
+	public Path getLocalRoot() {
+		return this.localRoot;
+	}
+
+	/**
+	 * @return {@code true} if the files are loaded into the history of dates
+	 */
+	public boolean isHistory() {
+		return this.historyFolders != null;
+	}
+
+	/**
+	 * @return the date folders of the history, {@code null} without history
+	 */
+	public List<String> getHistoryFolders() {
+		return this.historyFolders;
+	}
+
+	/**
+	 * @param mode the loading mode
+	 * @return the folder loaded in the given mode, for the logs
+	 */
+	public String describe(final String mode) {
+		if (this.historyFolders != null) {
+			return this.historyFolders.toString();
+		}
+		return "parquet-cloud".equals(mode) ? this.dateFolder : this.dataPath;
+	}
+
+}
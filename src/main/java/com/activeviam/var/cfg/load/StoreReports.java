@@ -0,0 +1,151 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.load;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.monitoring.MemoryBreakdown;
+import com.activeviam.var.source.manifest.LoadManifest;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.IDatastore;
+import com.qfs.store.impl.SchemaPrinter;
+import com.qfs.util.timing.impl.StopWatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Reports on the stores: the sizing announced by the manifest before the load, the sizes of the
+ * stores after it, and the breakdown of their memory.
+ *
+ * @author ActiveViam
+ */
+public class StoreReports {
+
+	private static final Logger LOGGER = Logger.getLogger(StoreReports.class.getSimpleName());
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The schema of the datastore */
+	protected final DatastoreDescriptionConfig schema;
+	/** The memory mapped file of the pnl vectors, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+	/** Whether the memory breakdown is logged after each load */
+	protected final boolean breakdownAfterLoad;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 * @param schema the schema of the datastore
+	 * @param vectorFile the memory mapped file of the pnl vectors, or {@code null}
+	 * @param breakdownAfterLoad whether the memory breakdown is logged after each load
+	 */
+	public StoreReports(
+			final IDatastore datastore,
+			final DatastoreDescriptionConfig schema,
+			final MappedVectorFile vectorFile,
+			final boolean breakdownAfterLoad) {
+		this.datastore = datastore;
+		this.schema = schema;
+		this.vectorFile = vectorFile;
+		this.breakdownAfterLoad = breakdownAfterLoad;
+	}
+
+	/**
+	 * Logs the rows and distinct values announced by the manifest of the data, from which the
+	 * stores are sized.
+	 */
+	public void logManifest() {
+		final LoadManifest manifest = this.schema.getManifest();
+		if (manifest == null) {
+			LOGGER.info("No manifest of the data, the stores grow during the load");
+			return;
+		}
+		final StringBuilder message = new StringBuilder("Sizing the stores from ").append(manifest);
+		message.append(", chunk sizes: ")
+				.append(DatastoreDescriptionConfig.PRODUCT_STORE).append('=')
+				.append(this.schema.getChunkSize(DatastoreDescriptionConfig.PRODUCT_STORE, 1))
+				.append(' ')
+				.append(DatastoreDescriptionConfig.TRADE_STORE).append('=')
+				.append(this.schema.getChunkSize(
+						DatastoreDescriptionConfig.TRADE_STORE,
+						this.schema.getPartitionCount()))
+				.append(' ')
+				.append(DatastoreDescriptionConfig.RISK_STORE).append('=')
+				.append(this.schema.getChunkSize(
+						DatastoreDescriptionConfig.RISK_STORE,
+						this.schema.getPartitionCount()));
+		for (final String field : Arrays.asList("Desk", "Book", "Trader", "Counterparty", "Date")) {
+			final long distinct =
+					manifest.getDistinctCount(DatastoreDescriptionConfig.TRADE_STORE, field);
+			if (distinct >= 0) {
+				message.append(", ~").append(distinct).append(" distinct ").append(field);
+			}
+		}
+		LOGGER.info(message.toString());
+	}
+
+	/**
+	 * Prints the timings of the load and the sizes of the stores, with their memory breakdown if
+	 * enabled.
+	 */
+	public void printStoreSizes() {
+		// Print stop watch profiling
+		StopWatch.get().printTimings();
+		StopWatch.get().printTimingLegend();
+
+		// print sizes
+		SchemaPrinter.printStoresSizes(this.datastore.getHead().getSchema());
+		if (this.breakdownAfterLoad) {
+			LOGGER.info(getMemoryBreakdown().toString());
+		}
+	}
+
+	/**
+	 * Estimates the memory of the stores field by field, from their committed records, with the
+	 * memory of the process and the size of the memory mapped vectors.
+	 *
+	 * @return the memory breakdown
+	 */
+	public MemoryBreakdown getMemoryBreakdown() {
+		final int partitionCount = this.schema.getPartitionCount();
+		final MemoryBreakdown breakdown = new MemoryBreakdown(this.datastore)
+				.addStore(
+						this.schema.products(),
+						null,
+						1,
+						this.schema.getChunkSize(DatastoreDescriptionConfig.PRODUCT_STORE, 1));
+		final List<IStoreDescription> partitionedStores =
+				new ArrayList<>(List.of(this.schema.trades(), this.schema.risks()));
+		if (this.schema.hasVectorStore()) {
+			partitionedStores.add(this.schema.pnlVectors());
+		}
+		for (final IStoreDescription store : partitionedStores) {
+			// The vectors have as many rows as the risks, their chunks being sized alike
+			final String rowsStore = DatastoreDescriptionConfig.VECTOR_STORE.equals(store.getName())
+					? DatastoreDescriptionConfig.RISK_STORE
+					: store.getName();
+			breakdown.addStore(
+					store,
+					this.schema.getPartitioning(store.getName()),
+					partitionCount,
+					this.schema.getChunkSize(rowsStore, partitionCount));
+		}
+		if (this.schema.getVectorModel() == VectorModel.FACTOR) {
+			breakdown.addStore(this.schema.scenarios(), null, 1, 0);
+		}
+		if (this.vectorFile != null) {
+			breakdown.addFile(this.schema.getVectorFile().toString(), this.vectorFile.getSize());
+		}
+		return breakdown;
+	}
+
+}
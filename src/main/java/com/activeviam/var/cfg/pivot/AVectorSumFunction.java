@@ -0,0 +1,67 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+import com.qfs.literal.ILiteralType;
+import com.quartetfs.biz.pivot.aggfun.impl.AGenericAggregationFunction;
+
+/**
+ * Sums pnl vectors into {@code double[]} aggregates, whatever the precision of the stored vectors:
+ * the sums of the {@code int[]} and {@code float[]} vectors do not overflow nor lose their
+ * precision.
+ *
+ * @param <I> the type of the source values
+ *
+ * @author ActiveViam
+ */
+public abstract class AVectorSumFunction<I> extends AGenericAggregationFunction<I, double[]> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pluginKey the plugin key of the function
+	 */
+	protected AVectorSumFunction(final String pluginKey) {
+		super(pluginKey);
+	}
+
+	@Override
+	public String getAggregatedType(final String sourceType) {
+		return ILiteralType.OBJECT;
+	}
+
+	@Override
+	protected double[] merge(
+			final boolean removal,
+			final double[] aggregate,
+			final double[] inputAggregate) {
+		if (inputAggregate == null) {
+			return aggregate;
+		}
+		final double[] sums = aggregate == null ? new double[inputAggregate.length] : aggregate;
+		final int length = Math.min(sums.length, inputAggregate.length);
+		if (removal) {
+			for (int i = 0; i < length; ++i) {
+				sums[i] -= inputAggregate[i];
+			}
+		} else {
+			for (int i = 0; i < length; ++i) {
+				sums[i] += inputAggregate[i];
+			}
+		}
+		return sums;
+	}
+
+	@Override
+	protected double[] cloneAggregate(final double[] aggregate) {
+		return aggregate == null ? null : aggregate.clone();
+	}
+
+}
@@ -9,19 +9,26 @@ package com.activeviam.var.cfg.pivot;
 import com.activeviam.builders.StartBuilding;
 import com.activeviam.copper.ICopperContext;
 import com.activeviam.copper.api.Copper;
+import com.activeviam.copper.api.CopperMeasure;
 import com.activeviam.desc.build.ICanBuildCubeDescription;
 import com.activeviam.desc.build.ICubeDescriptionBuilder.INamedCubeDescriptionBuilder;
 import com.activeviam.desc.build.dimensions.ICanStartBuildingDimensions;
 import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.VectorModel;
+import com.qfs.chunk.IArrayReader;
 import com.qfs.desc.IDatastoreSchemaDescription;
+import com.qfs.literal.ILiteralType;
 import com.qfs.server.cfg.IActivePivotManagerDescriptionConfig;
 import com.qfs.vector.IVector;
+import com.qfs.vector.array.impl.ArrayDoubleVector;
 import com.quartetfs.biz.pivot.cube.hierarchy.ILevelInfo.LevelType;
 import com.quartetfs.biz.pivot.definitions.IActivePivotInstanceDescription;
 import com.quartetfs.biz.pivot.definitions.IActivePivotManagerDescription;
 import com.quartetfs.biz.pivot.definitions.ISelectionDescription;
+import com.quartetfs.fwk.ordering.impl.ReverseOrderComparator;
 import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
@@ -38,57 +45,96 @@ public class ActivePivotManagerConfig implements IActivePivotManagerDescriptionC
 	/* ********** */
 	public static final String DOUBLE_FORMAT = "DOUBLE[##.00]";
 
+	/** The name of the cube */
+	public static final String CUBE = "ActivePivot VaR";
+
 	@Autowired
 	private Environment env;
 
 	/**
-	 * Creates the {@link ISelectionDescription} for NanoPivot Schema.
+	 * Creates the {@link ISelectionDescription} for NanoPivot Schema, only reading the risk store
+	 * when it is denormalized.
 	 *
 	 * @param datastoreDescription : The datastore description
+	 * @param settings the settings of the datastore
 	 * @return The created selection description
 	 */
 	public static ISelectionDescription createNanoPivotSchemaSelectionDescription(
-			final IDatastoreSchemaDescription datastoreDescription) {
+			final IDatastoreSchemaDescription datastoreDescription,
+			final CubeSettings settings) {
+		if (!settings.isRiskStoreDenormalized()) {
+			return StartBuilding.selection(datastoreDescription)
+					.fromBaseStore("Risks")
+					.withAllReachableFields()
+					.build();
+		}
 		return StartBuilding.selection(datastoreDescription)
 				.fromBaseStore("Risks")
-				.withAllReachableFields()
+				.withAllFields()
 				.build();
 	}
 
 	/**
-	 * Creates the cube description.
+	 * Creates the cube description, without the measures of the fields excluded from the risk
+	 * store, with the AsOfDate hierarchy if the risk store has the field.
 	 *
+	 * @param settings the settings of the datastore
 	 * @return The created cube description
 	 */
-	public static IActivePivotInstanceDescription createCubeDescription() {
-		return configureCubeBuilder(StartBuilding.cube("ActivePivot VaR")).build();
+	public static IActivePivotInstanceDescription createCubeDescription(
+			final CubeSettings settings) {
+		return configureCubeBuilder(StartBuilding.cube(CUBE), settings).build();
 	}
 
 	/**
 	 * Configures the given builder in order to created the cube description.
 	 *
 	 * @param builder The builder to configure
+	 * @param settings the settings of the datastore
 	 * @return The configured builder
 	 */
 	public static ICanBuildCubeDescription<IActivePivotInstanceDescription> configureCubeBuilder(
-			final INamedCubeDescriptionBuilder builder) {
+			final INamedCubeDescriptionBuilder builder,
+			final CubeSettings settings) {
 
 		return builder
 				.withContributorsCount().withAlias("Trade Count")
-				.withCalculations(ActivePivotManagerConfig::coPPerCalculations)
+				.withCalculations(context -> coPPerCalculations(context, settings))
 
 				// Define hierarchies of the cube
-				.withDimensions(ActivePivotManagerConfig::dimensions);
+				.withDimensions(dimensions -> dimensions(dimensions, settings));
 	}
 
 	/**
 	 * Adds the dimensions descriptions to the input builder.
+	 * <p>
+	 * When the cube holds several business dates, it starts with the AsOfDate dimension. Its
+	 * hierarchy is slicing, the values of different dates not adding up, with the latest date first
+	 * so that it is the default member. When the pnl vectors are held per product, it starts with
+	 * the ProductId dimension: the level their unit vectors are scaled at.
 	 *
 	 * @param builder The cube builder
+	 * @param settings the settings of the datastore
 	 * @return The builder for chained calls
 	 */
 	public static ICanBuildCubeDescription<IActivePivotInstanceDescription> dimensions(
-			ICanStartBuildingDimensions builder) {
+			ICanStartBuildingDimensions builder,
+			final CubeSettings settings) {
+		if (settings.getVectorModel() == VectorModel.PRODUCT) {
+			builder = builder
+					.withDimension("ProductId")
+					.withHierarchyOfSameName()
+					.withLevel("ProductId");
+		}
+		if (settings.isHistoryEnabled()) {
+			builder = builder
+					.withDimension(DatastoreDescriptionConfig.AS_OF_DATE)
+					.withHierarchyOfSameName().slicing()
+					.withLevel(DatastoreDescriptionConfig.AS_OF_DATE)
+					.withType(LevelType.TIME)
+					.withFormatter("DATE[yyyy-MM-dd]")
+					.withComparator(ReverseOrderComparator.type);
+		}
 
 		return builder
 				.withDimension("Products")
@@ -115,12 +161,15 @@ public class ActivePivotManagerConfig implements IActivePivotManagerDescriptionC
 	}
 
 	/**
-	 * The CoPPer calculations to add to the cube
+	 * The CoPPer calculations to add to the cube, on the fields of the risk store
 	 *
 	 * @param context The context with which to build the calculations.
+	 * @param settings the settings of the datastore
 	 */
-	public static void coPPerCalculations(final ICopperContext context) {
-		ActivePivotManagerConfig.someAggregatedMeasures(context);
+	public static void coPPerCalculations(
+			final ICopperContext context,
+			final CubeSettings settings) {
+		ActivePivotManagerConfig.someAggregatedMeasures(context, settings);
 	}
 
 	/* ******************* */
@@ -130,17 +179,64 @@ public class ActivePivotManagerConfig implements IActivePivotManagerDescriptionC
 	/**
 	 * Define some calculations using the COPPER API.
 	 *
+	 * The measures of the fields missing from the risk store are skipped. The PnlVector and
+	 * quantile measures are in values, the scaled vectors being converted from their units once
+	 * summed. With the lazy loading of the vectors, the
+	 * PnlVector and quantile measures are {@value VectorLoadingStatus#LOADING} until the vectors
+	 * are committed, {@value VectorLoadingStatus#FAILED} if their loading failed. Per
+	 * product, the unit vector of each product is scaled by the summed quantity of its trades, then
+	 * summed over the products; with factors, the summed loadings are expanded by the scenario
+	 * matrix.
+	 *
 	 * @param context The CoPPer build context.
+	 * @param settings the settings of the datastore
 	 * @return The Dataset of the aggregated measures.
 	 */
-	protected static void someAggregatedMeasures(final ICopperContext context) {
-		Stream.of("Pnl", "Delta", "Vega").forEach(field -> {
+	protected static void someAggregatedMeasures(
+			final ICopperContext context,
+			final CubeSettings settings) {
+		Stream.of("Pnl", "Delta", "Vega").filter(settings::hasRiskField).forEach(field -> {
 			Copper.sum(field)
 					.withFormatter(DOUBLE_FORMAT)
 					.withName(field)
 					.publish(context);
 		});
-		final var vector = Copper.sum("PnlVector").as("PnlVector").publish(context);
+		if (!settings.hasRiskField("PnlVector")) {
+			return;
+		}
+		// Float vectors are summed as floats, and scaled integers as doubles, in their units
+		if (settings.isVectorLoadingLazy()) {
+			final VectorLoadingStatus status = settings.getVectorStatus();
+			final var vector = pnlVector(settings);
+			// Combined with the count of the risks, so that the cells with no vector yet also
+			// report the loading. The measures are then objects, not formatted as doubles
+			Copper.combine(Copper.count(), vector)
+					.map((IArrayReader values) -> status.isLoaded()
+							? values.read(1)
+							: status.describe())
+					.withType(ILiteralType.OBJECT)
+					.withName("PnlVector")
+					.publish(context);
+			Stream.of(95, 99).forEach(quantile -> {
+				Copper.combine(Copper.count(), vector)
+						.map((IArrayReader values) -> {
+							if (!status.isLoaded()) {
+								return status.describe();
+							}
+							if (values.isNull(1)) {
+								return null;
+							}
+							final IVector pnl = (IVector) values.read(1);
+							return pnl.quantileDouble(quantile / 100d);
+						})
+						.withType(ILiteralType.OBJECT)
+						.withName("VaR " + quantile)
+						.publish(context);
+			});
+			return;
+		}
+
+		final var vector = pnlVector(settings).as("PnlVector").publish(context);
 
 		// Value at Risk calculation
 		Stream.of(95, 99).forEach(quantile -> {
@@ -151,19 +247,139 @@ public class ActivePivotManagerConfig implements IActivePivotManagerDescriptionC
 		});
 	}
 
+	/**
+	 * Defines the aggregated pnl vectors, after where they are held, in values.
+	 *
+	 * @param settings the settings of the datastore
+	 * @return the measure of the pnl vectors
+	 */
+	private static CopperMeasure pnlVector(final CubeSettings settings) {
+		final double vectorUnit = settings.getVectorUnit();
+		switch (settings.getVectorModel()) {
+			case PRODUCT:
+				return productPnlVector();
+			case FACTOR:
+				return factorPnlVector(settings);
+			default:
+				if (settings.isVectorStorageMapped()) {
+					return Copper.agg("PnlVector", settings.getMappedVectorSum())
+							.map((double[] sums) -> toValues(sums, vectorUnit))
+							.withType(ILiteralType.OBJECT);
+				}
+				if (settings.isVectorScaled()) {
+					return Copper.agg("PnlVector", ScaledVectorSumFunction.PLUGIN_KEY)
+							.map((double[] sums) -> toValues(sums, vectorUnit))
+							.withType(ILiteralType.OBJECT);
+				}
+				return Copper.sum("PnlVector");
+		}
+	}
+
+	/**
+	 * Converts summed vectors from the units of the stored vectors into values.
+	 *
+	 * @param sums the summed vectors, left unchanged as they are the cached aggregates
+	 * @param vectorUnit the value of a unit of the stored vectors
+	 * @return the vector of the values
+	 */
+	private static Object toValues(final double[] sums, final double vectorUnit) {
+		if (sums == null) {
+			return null;
+		}
+		if (vectorUnit == 1d) {
+			return new ArrayDoubleVector(sums);
+		}
+		final double[] values = new double[sums.length];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = sums[i] * vectorUnit;
+		}
+		return new ArrayDoubleVector(values);
+	}
+
+	/**
+	 * Defines the pnl vectors of the trades from the unit pnl vectors of their products: on each
+	 * product, the sum of the ProductQtyMultiplier of its trades times its UnitPnlVector, summed
+	 * above the ProductId level. A single vector per product is read, whatever its trade count.
+	 *
+	 * @return the measure of the pnl vectors
+	 */
+	private static CopperMeasure productPnlVector() {
+		return Copper
+				.combine(
+						Copper.sum("ProductQtyMultiplier"),
+						Copper.agg("UnitPnlVector", "SINGLE_VALUE_NULLABLE"))
+				.map((IArrayReader values) -> {
+					if (values.isNull(0) || values.isNull(1)) {
+						return null;
+					}
+					final double quantity = values.readDouble(0);
+					final double[] pnl = ((IVector) values.read(1)).toDoubleArray();
+					for (int i = 0; i < pnl.length; ++i) {
+						pnl[i] *= quantity;
+					}
+					return (Object) new ArrayDoubleVector(pnl);
+				})
+				.withType(ILiteralType.OBJECT)
+				.per(Copper.level("ProductId"))
+				.sum();
+	}
+
+	/**
+	 * Defines the pnl vectors of the factor model: the FactorLoadings of the risks are summed as
+	 * K-length vectors, then expanded into N-length pnl vectors by the {@link ScenarioMatrix}, with
+	 * one matrix-vector product per cell. The scaled loadings are summed as doubles, then
+	 * converted into values before their expansion.
+	 *
+	 * @param settings the settings of the datastore
+	 * @return the measure of the pnl vectors
+	 */
+	private static CopperMeasure factorPnlVector(final CubeSettings settings) {
+		if (settings.isVectorScaled()) {
+			final double vectorUnit = settings.getVectorUnit();
+			return Copper.agg("FactorLoadings", ScaledVectorSumFunction.PLUGIN_KEY)
+					.map((double[] sums) -> (Object) ScenarioMatrix.expand(
+							(IVector) toValues(sums, vectorUnit)))
+					.withType(ILiteralType.OBJECT);
+		}
+		return Copper.sum("FactorLoadings")
+				.map((IVector loadings) -> (Object) ScenarioMatrix.expand(loadings))
+				.withType(ILiteralType.OBJECT);
+	}
+
+	/**
+	 * @return the status of the lazily loaded vectors, shared by their loader and the measures
+	 */
+	@Bean
+	public VectorLoadingStatus vectorLoadingStatus() {
+		return new VectorLoadingStatus();
+	}
+
+	/**
+	 * @return the schema of the datastore, shared by the cube and the loads
+	 */
+	@Bean
+	public DatastoreDescriptionConfig datastoreDescriptionConfig() {
+		return new DatastoreDescriptionConfig(this.env);
+	}
+
 	@Override
 	public IDatastoreSchemaDescription userSchemaDescription() {
-		return new DatastoreDescriptionConfig(this.env).schemaDescription();
+		return datastoreDescriptionConfig().schemaDescription();
 	}
 
 	@Override
 	public IActivePivotManagerDescription userManagerDescription() {
+		final CubeSettings settings = CubeSettings.of(
+				datastoreDescriptionConfig(),
+				vectorLoadingStatus());
 		return StartBuilding.managerDescription("VarManager")
 				.withCatalog("ActivePivot Catalog")
 				.containingAllCubes()
 				.withSchema("ActivePivot Schema")
-				.withSelection(createNanoPivotSchemaSelectionDescription(userSchemaDescription()))
-				.withCube(createCubeDescription())
+				.withSelection(createNanoPivotSchemaSelectionDescription(
+						userSchemaDescription(),
+						settings))
+				.withCube(createCubeDescription(settings))
 				.build();
 	}
 
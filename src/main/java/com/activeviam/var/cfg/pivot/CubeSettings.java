@@ -0,0 +1,198 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.generator.VectorModel;
+import com.activeviam.var.generator.VectorPrecision;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import java.util.function.Predicate;
+
+/**
+ * Settings of the datastore the cube is built on: the fields of the risk store, and how the pnl
+ * vectors are held and loaded.
+ *
+ * @author ActiveViam
+ */
+public class CubeSettings {
+
+	/** Settings of the default schema: all the risk fields but AsOfDate, vectors per trade */
+	public static final CubeSettings DEFAULT = new CubeSettings(
+			field -> !DatastoreDescriptionConfig.AS_OF_DATE.equals(field),
+			VectorPrecision.DOUBLE,
+			1d,
+			false,
+			null,
+			VectorModel.TRADE,
+			false,
+			new VectorLoadingStatus());
+
+	/** Tells whether the risk store has a field, AsOfDate with the history */
+	protected final Predicate<String> riskFields;
+	/** The precision of the stored pnl vectors */
+	protected final VectorPrecision vectorPrecision;
+	/** The value of a unit of the stored pnl vectors */
+	protected final double vectorUnit;
+	/** Whether the vectors are loaded after the other stores */
+	protected final boolean lazyVectors;
+	/**
+	 * The plugin key of the function summing the vectors of their {@link MappedVectorFile}, when
+	 * the store holds their offsets
+	 */
+	protected final String mappedVectorSum;
+	/** Where the pnl vectors are held */
+	protected final VectorModel vectorModel;
+	/** Whether the risks hold the fields of the levels of their trade and product */
+	protected final boolean denormalizedRisks;
+	/** The status of the lazily loaded vectors */
+	protected final VectorLoadingStatus vectorStatus;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param riskFields tells whether the risk store has a field, AsOfDate with the history
+	 * @param vectorPrecision the precision of the stored pnl vectors
+	 * @param vectorUnit the value of a unit of the stored pnl vectors, other than 1 when they are
+	 * 		{@link VectorPrecision#SCALED_INT scaled}
+	 * @param lazyVectors whether the vectors are loaded after the other stores
+	 * @param mappedVectorSum the plugin key of the function summing the vectors of their
+	 * 		{@link MappedVectorFile} when the store holds their offsets, {@code null} otherwise
+	 * @param vectorModel where the pnl vectors are held
+	 * @param denormalizedRisks whether the risks hold the fields of the levels of their trade and
+	 * 		product
+	 * @param vectorStatus the status of the lazily loaded vectors
+	 */
+	public CubeSettings(
+			final Predicate<String> riskFields,
+			final VectorPrecision vectorPrecision,
+			final double vectorUnit,
+			final boolean lazyVectors,
+			final String mappedVectorSum,
+			final VectorModel vectorModel,
+			final boolean denormalizedRisks,
+			final VectorLoadingStatus vectorStatus) {
+		this.riskFields = riskFields;
+		this.vectorPrecision = vectorPrecision;
+		this.vectorUnit = vectorUnit;
+		this.lazyVectors = lazyVectors;
+		this.mappedVectorSum = mappedVectorSum;
+		this.vectorModel = vectorModel;
+		this.denormalizedRisks = denormalizedRisks;
+		this.vectorStatus = vectorStatus;
+	}
+
+	/**
+	 * Reads the settings of the cube from the schema of the datastore.
+	 *
+	 * @param schema the schema of the datastore
+	 * @param vectorStatus the status of the lazily loaded vectors, shared with their loader
+	 * @return the settings
+	 */
+	public static CubeSettings of(
+			final DatastoreDescriptionConfig schema,
+			final VectorLoadingStatus vectorStatus) {
+		return new CubeSettings(
+				field -> DatastoreDescriptionConfig.AS_OF_DATE.equals(field)
+						? schema.isHistoryEnabled()
+						: schema.isIncluded(DatastoreDescriptionConfig.RISK_STORE, field),
+				schema.getVectorPrecision(),
+				schema.getVectorPrecision().decode(1d, schema.getVectorScale()),
+				schema.isVectorLoadingLazy(),
+				schema.isVectorStorageMapped()
+						? MappedVectorSumFunction.pluginKey(schema.getVectorFile())
+						: null,
+				schema.getVectorModel(),
+				schema.isRiskStoreDenormalized(),
+				vectorStatus);
+	}
+
+	/**
+	 * @param field the name of the field
+	 * @return {@code true} if the risk store has the field, the measures of the missing fields
+	 * 		being skipped
+	 */
+	public boolean hasRiskField(final String field) {
+		return this.riskFields.test(field);
+	}
+
+	/**
+	 * @return {@code true} if the cube holds several business dates
+	 */
+	public boolean isHistoryEnabled() {
+		return hasRiskField(DatastoreDescriptionConfig.AS_OF_DATE);
+	}
+
+	/**
+	 * @return the precision of the stored pnl vectors
+	 */
+	public VectorPrecision getVectorPrecision() {
+		return this.vectorPrecision;
+	}
+
+	/**
+	 * @return {@code true} if the stored pnl vectors are {@link VectorPrecision#SCALED_INT scaled}
+	 * 		integers, summed as doubles then converted into values by the measures
+	 */
+	public boolean isVectorScaled() {
+		return this.vectorPrecision == VectorPrecision.SCALED_INT;
+	}
+
+	/**
+	 * @return the value of a unit of the stored pnl vectors
+	 */
+	public double getVectorUnit() {
+		return this.vectorUnit;
+	}
+
+	/**
+	 * @return {@code true} if the vectors are loaded after the other stores, the vector measures
+	 * 		reporting the loading meanwhile
+	 */
+	public boolean isVectorLoadingLazy() {
+		return this.lazyVectors;
+	}
+
+	/**
+	 * @return {@code true} if the store holds the offsets of the vectors in a
+	 * 		{@link MappedVectorFile}, the vectors being summed through the mapping of the file
+	 */
+	public boolean isVectorStorageMapped() {
+		return this.mappedVectorSum != null;
+	}
+
+	/**
+	 * @return the plugin key of the function summing the vectors of their
+	 * 		{@link MappedVectorFile}, {@code null} unless the store holds their offsets
+	 */
+	public String getMappedVectorSum() {
+		return this.mappedVectorSum;
+	}
+
+	/**
+	 * @return where the pnl vectors are held
+	 */
+	public VectorModel getVectorModel() {
+		return this.vectorModel;
+	}
+
+	/**
+	 * @return {@code true} if the risks hold the fields of the levels of their trade and product,
+	 * 		the references then not being followed by the aggregations
+	 */
+	public boolean isRiskStoreDenormalized() {
+		return this.denormalizedRisks;
+	}
+
+	/**
+	 * @return the status of the lazily loaded vectors, reported by the vector measures
+	 */
+	public VectorLoadingStatus getVectorStatus() {
+		return this.vectorStatus;
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.quartetfs.biz.pivot.aggfun.IAggregationFunction;
+import com.quartetfs.fwk.Registry;
+import java.nio.file.Path;
+
+/**
+ * Sums the pnl vectors of a {@link MappedVectorFile}, from their offsets held by the store.
+ * <p>
+ * The vectors are read through the mapping of the file, and summed into {@code double[]}
+ * aggregates, in the units of the stored vectors.
+ * <p>
+ * The function holds the file it reads: it is {@link #register(MappedVectorFile) registered} once
+ * the file is opened, before the cubes are built, under a {@link #pluginKey(Path) key} of its own
+ * file.
+ *
+ * @author ActiveViam
+ */
+public class MappedVectorSumFunction extends AVectorSumFunction<Long> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Prefix of the plugin keys of the aggregation functions, followed by their file */
+	public static final String PLUGIN_KEY = "MAPPED_VECTOR_SUM";
+
+	/** The file of the vectors */
+	protected final transient MappedVectorFile vectors;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param vectors the file of the vectors
+	 */
+	public MappedVectorSumFunction(final MappedVectorFile vectors) {
+		super(pluginKey(vectors.getFile()));
+		this.vectors = vectors;
+	}
+
+	/**
+	 * @param file the file of the vectors
+	 * @return the plugin key of the function summing the vectors of the file
+	 */
+	public static String pluginKey(final Path file) {
+		return PLUGIN_KEY + "[" + file.toAbsolutePath().normalize() + "]";
+	}
+
+	/**
+	 * Registers the function summing the vectors of a file, in place of the one of a previously
+	 * opened file with the same path.
+	 *
+	 * @param vectors the file of the vectors
+	 * @return the plugin key of the function
+	 */
+	public static String register(final MappedVectorFile vectors) {
+		final MappedVectorSumFunction function = new MappedVectorSumFunction(vectors);
+		Registry.getPlugin(IAggregationFunction.class).add(function);
+		return function.getType();
+	}
+
+	@Override
+	public String getType() {
+		return pluginKey(this.vectors.getFile());
+	}
+
+	@Override
+	protected double[] aggregate(
+			final boolean removal,
+			final double[] aggregate,
+			final Long offset) {
+		if (offset == null) {
+			return aggregate;
+		}
+		final double[] sums =
+				aggregate == null ? new double[this.vectors.getLength(offset)] : aggregate;
+		this.vectors.addTo(offset, sums, removal);
+		return sums;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+import com.activeviam.var.generator.VectorPrecision;
+import com.qfs.vector.IVector;
+import com.quartetfs.biz.pivot.aggfun.IAggregationFunction;
+import com.quartetfs.fwk.QuartetExtendedPluginValue;
+
+/**
+ * Sums the {@link VectorPrecision#SCALED_INT scaled} pnl vectors held by the store into
+ * {@code double[]} aggregates, in their units: the sums of many risks exceed the 32 bits integers
+ * the vectors are stored with.
+ *
+ * @author ActiveViam
+ */
+@QuartetExtendedPluginValue(
+		intf = IAggregationFunction.class,
+		key = ScaledVectorSumFunction.PLUGIN_KEY)
+public class ScaledVectorSumFunction extends AVectorSumFunction<IVector> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Plugin key of the aggregation function */
+	public static final String PLUGIN_KEY = "SCALED_VECTOR_SUM";
+
+	/**
+	 * Constructor.
+	 */
+	public ScaledVectorSumFunction() {
+		super(PLUGIN_KEY);
+	}
+
+	@Override
+	public String getType() {
+		return PLUGIN_KEY;
+	}
+
+	@Override
+	protected double[] aggregate(
+			final boolean removal,
+			final double[] aggregate,
+			final IVector vector) {
+		if (vector == null) {
+			return aggregate;
+		}
+		final double[] sums = aggregate == null ? new double[vector.size()] : aggregate;
+		final int length = Math.min(sums.length, vector.size());
+		if (removal) {
+			for (int i = 0; i < length; ++i) {
+				sums[i] -= vector.readInt(i);
+			}
+		} else {
+			for (int i = 0; i < length; ++i) {
+				sums[i] += vector.readInt(i);
+			}
+		}
+		return sums;
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+import com.activeviam.var.generator.FactorScenarios;
+import com.qfs.vector.IVector;
+import com.qfs.vector.array.impl.ArrayDoubleVector;
+
+/**
+ * Holds the scenario matrix of the factor model loaded in the Scenarios store, for the vector
+ * measures to expand the aggregated factor loadings into pnl vectors.
+ *
+ * @author ActiveViam
+ */
+public final class ScenarioMatrix {
+
+	private static volatile FactorScenarios current;
+
+	private ScenarioMatrix() {}
+
+	/**
+	 * @return the scenario matrix, {@code null} until loaded
+	 */
+	public static FactorScenarios getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Sets the scenario matrix, once committed in its store.
+	 *
+	 * @param scenarios the scenario matrix
+	 */
+	public static void setCurrent(final FactorScenarios scenarios) {
+		ScenarioMatrix.current = scenarios;
+	}
+
+	/**
+	 * Expands aggregated factor loadings into a pnl vector, with one matrix-vector product.
+	 *
+	 * @param loadings the summed loadings, in values
+	 * @return the pnl vector, in values, or {@code null} before the matrix is loaded
+	 */
+	public static IVector expand(final IVector loadings) {
+		final FactorScenarios scenarios = current;
+		if (scenarios == null || loadings == null) {
+			return null;
+		}
+		return new ArrayDoubleVector(scenarios.expand(loadings.toDoubleArray()));
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.pivot;
+
+/**
+ * Tells the vector measures whether the pnl vectors are complete, when they are loaded lazily
+ * after the other stores: still loading, or failed to load.
+ * <p>
+ * A single status is shared by the loader of the vectors, which marks their loading, and by the
+ * measures of the cube, which report it instead of the incomplete vectors.
+ *
+ * @author ActiveViam
+ */
+public class VectorLoadingStatus {
+
+	/** Value of the vector measures while the vectors are loading */
+	public static final String LOADING = "loading";
+	/** Value of the vector measures once the loading of the vectors failed */
+	public static final String FAILED = "failed";
+
+	/** The states of the vectors */
+	public enum State {
+		/** The vectors are committed */
+		LOADED,
+		/** The other stores are committed, not the vectors yet */
+		LOADING,
+		/** The loading of the vectors failed, the store of the vectors is incomplete */
+		FAILED
+	}
+
+	/** The state of the vectors */
+	protected volatile State state = State.LOADED;
+
+	/**
+	 * @return the state of the vectors
+	 */
+	public State getState() {
+		return this.state;
+	}
+
+	/**
+	 * @return {@code true} if the vectors are committed
+	 */
+	public boolean isLoaded() {
+		return this.state == State.LOADED;
+	}
+
+	/**
+	 * @return the value the vector measures report instead of the vectors:
+	 * 		{@value #LOADING} or {@value #FAILED}, {@code null} once the vectors are loaded
+	 */
+	public String describe() {
+		switch (this.state) {
+			case LOADING:
+				return LOADING;
+			case FAILED:
+				return FAILED;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Marks the start of the loading of the vectors, before the commit of the other stores.
+	 */
+	public void markLoading() {
+		this.state = State.LOADING;
+	}
+
+	/**
+	 * Marks the vectors as loaded, once their transaction is committed.
+	 */
+	public void markLoaded() {
+		this.state = State.LOADED;
+	}
+
+	/**
+	 * Marks the loading of the vectors as failed, their transaction being rolled back.
+	 */
+	public void markFailed() {
+		this.state = State.FAILED;
+	}
+
+}
@@ -450,6 +450,12 @@ public abstract class SecurityConfig implements ICorsConfig {
 					// REST services
 					.antMatchers(REST_API_URL_PREFIX + "/**")
 					.hasAnyAuthority(ROLE_USER)
+					// Reloading another date through the actuator is an administration task
+					.antMatchers(HttpMethod.POST, "/actuator/**")
+					.hasAuthority(ROLE_ADMIN)
+					// So is releasing the versions of the datastore that queries may be reading
+					.antMatchers(HttpMethod.DELETE, "/actuator/**")
+					.hasAuthority(ROLE_ADMIN)
 					// One has to be a user for all the other URLs
 					.antMatchers("/**")
 					.hasAuthority(ROLE_USER)
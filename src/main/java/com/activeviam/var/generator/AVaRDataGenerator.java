@@ -6,6 +6,8 @@
  */
 package com.activeviam.var.generator;
 
+import com.activeviam.var.source.manifest.LoadManifest;
+import java.nio.file.Path;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -23,6 +25,16 @@ abstract class AVaRDataGenerator implements CommandLineRunner {
     protected int productCount;
     @Value("${tradeSource.vectorLength:260}")
     protected int vectorLength;
+    @Value("${datastore.partitionCount:8}")
+    protected int partitionCount;
+    @Value("${datastore.vector-precision:double}")
+    protected String vectorPrecision;
+    @Value("${datastore.vector-scale:0.01}")
+    protected double vectorScale;
+    @Value("${datastore.vector-model:trade}")
+    protected String vectorModel;
+    @Value("${datastore.factor-count:8}")
+    protected int factorCount;
 
     protected static void runApplication(
             final Class<? extends AVaRDataGenerator> klass,
@@ -36,16 +48,42 @@ abstract class AVaRDataGenerator implements CommandLineRunner {
     public void run(String... args) throws Exception {
         startProcess();
 
+        // Count the rows and distinct values for the loader to size the stores
+        final LoadManifest manifest = new LoadManifest();
+        manifest.declare(
+                "Products", 1, "Id", "ProductType", "UnderlierCode", "UnderlierCurrency");
+        manifest.declare(
+                "Trades", partitionCount, "Id", "Desk", "Book", "Trader", "Counterparty", "Date");
+        manifest.declare("Risks", partitionCount, "TradeId");
+
         final ProductRepository products = new ProductRepository(productCount);
+        // With the vectors per product, the risks have empty pnl vectors
+        final boolean productVectors = getVectorModel() == VectorModel.PRODUCT;
+        final RiskCalculator unitCalculator =
+                new RiskCalculator(vectorLength, getVectorPrecision(), vectorScale);
 
         // Write the product file
         for (int p = 0; p < products.getProductCount(); p++) {
-            addProduct(products.getProduct(p));
+            final Product product = products.getProduct(p);
+            if (productVectors) {
+                product.setUnitPnlVector(unitCalculator.unitPnlVector(product));
+            }
+            addProduct(product);
+            manifest.addRow(
+                    "Products",
+                    product.getId(),
+                    product.getProductType(),
+                    product.getUnderlierCode(),
+                    product.getUnderlierCurrency());
         }
 
         // Generate the trades and the risk entries, write them into a CSV file
+        // With the factor model, the vectors of the risks are their factor loadings
         TradeGenerator tradeGenerator = new TradeGenerator();
-        RiskCalculator riskCalculator = new RiskCalculator(vectorLength);
+        RiskCalculator riskCalculator = new RiskCalculator(
+                productVectors ? 0 : getRiskVectorLength(),
+                getVectorPrecision(),
+                vectorScale);
         CounterPartyRepository counterparties = new CounterPartyRepository();
         final int counterPartyCount = counterparties.getCounterPartyCount();
 
@@ -57,12 +95,67 @@ abstract class AVaRDataGenerator implements CommandLineRunner {
                     products.getProduct(productId),
                     counterparties.getCounterParty(counterPartyId));
             addTrade(trade);
+            manifest.addRow(
+                    "Trades",
+                    trade.getId(),
+                    trade.getDesk(),
+                    trade.getBook(),
+                    trade.getTrader(),
+                    trade.getCounterparty(),
+                    trade.getDate());
 
             Risk risk = riskCalculator.execute(trade, products.getProduct(productId));
             addRisk(risk);
+            manifest.addRow("Risks", risk.getTradeId());
         }
 
         completeProcess();
+
+        final Path manifestDirectory = getManifestDirectory();
+        if (manifestDirectory != null) {
+            final Path manifestFile = manifestDirectory.resolve(LoadManifest.FILE_NAME);
+            manifest.write(manifestFile);
+            System.out.println("Manifest written into " + manifestFile.toAbsolutePath());
+        }
+    }
+
+    /**
+     * @return the directory of the manifest of the generated files, {@code null} to write none
+     */
+    protected Path getManifestDirectory() {
+        return null;
+    }
+
+    /**
+     * @return the precision of the generated pnl vectors
+     */
+    protected VectorPrecision getVectorPrecision() {
+        return VectorPrecision.of(vectorPrecision);
+    }
+
+    /**
+     * @return where the generated pnl vectors are held
+     */
+    protected VectorModel getVectorModel() {
+        final VectorModel model = VectorModel.of(vectorModel);
+        if (model == VectorModel.PRODUCT && getVectorPrecision() == VectorPrecision.SCALED_INT) {
+            throw new IllegalArgumentException("The unit pnl vectors cannot be scaled integers");
+        }
+        return model;
+    }
+
+    /**
+     * @return the length of the vectors of the risks: the pnl vectors, or the factor loadings
+     */
+    protected int getRiskVectorLength() {
+        return getVectorModel() == VectorModel.FACTOR ? factorCount : vectorLength;
+    }
+
+    /**
+     * @return the name of the vector column of the risk files
+     */
+    protected String getRiskVectorColumn() {
+        return getVectorModel() == VectorModel.FACTOR ? "FactorLoadings" : "PnlVector";
     }
 
     protected void startProcess() {}
@@ -0,0 +1,105 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.generator;
+
+import java.util.Random;
+
+/**
+ * Scenario matrix of the {@link VectorModel#FACTOR factor} model: the pnl of each scenario for a
+ * unit loading on each factor.
+ * <p>
+ * The pnl vector of a position is the product of its K factor loadings by the K x N matrix, so that
+ * the risks only hold their loadings and the loadings of several positions add up. The matrix is
+ * generated from a seed, the generators and the server getting the same one from the same
+ * settings.
+ *
+ * @author ActiveViam
+ */
+public class FactorScenarios {
+
+	/** The pnl of the scenarios, by factor */
+	protected final double[][] scenarios;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scenarios the pnl of the scenarios, by factor, all of the same length
+	 */
+	public FactorScenarios(final double[][] scenarios) {
+		this.scenarios = scenarios;
+	}
+
+	/**
+	 * Generates a scenario matrix with gaussian entries, scaled so that a vector of gaussian
+	 * loadings expands into a vector of the same deviation whatever the number of factors.
+	 *
+	 * @param factorCount the number of factors, K
+	 * @param scenarioCount the number of scenarios, N
+	 * @param seed the seed of the random entries
+	 * @return the scenario matrix
+	 */
+	public static FactorScenarios generate(
+			final int factorCount,
+			final int scenarioCount,
+			final long seed) {
+		final Random random = new Random(seed);
+		final double norm = 1d / Math.sqrt(factorCount);
+		final double[][] scenarios = new double[factorCount][scenarioCount];
+		for (final double[] factor : scenarios) {
+			for (int i = 0; i < scenarioCount; i++) {
+				factor[i] = norm * random.nextGaussian();
+			}
+		}
+		return new FactorScenarios(scenarios);
+	}
+
+	/**
+	 * @return the number of factors
+	 */
+	public int getFactorCount() {
+		return this.scenarios.length;
+	}
+
+	/**
+	 * @return the number of scenarios
+	 */
+	public int getScenarioCount() {
+		return this.scenarios.length == 0 ? 0 : this.scenarios[0].length;
+	}
+
+	/**
+	 * @param factor the index of a factor
+	 * @return the pnl of the scenarios for a unit loading on the factor
+	 */
+	public double[] getScenarios(final int factor) {
+		return this.scenarios[factor];
+	}
+
+	/**
+	 * Expands factor loadings into a pnl vector.
+	 *
+	 * @param loadings the loadings, of at most {@link #getFactorCount()} factors
+	 * @return the pnl of each scenario
+	 */
+	public double[] expand(final double[] loadings) {
+		final double[] pnl = new double[getScenarioCount()];
+		final int factors = Math.min(loadings.length, this.scenarios.length);
+		for (int k = 0; k < factors; k++) {
+			final double loading = loadings[k];
+			if (loading == 0d) {
+				continue;
+			}
+			final double[] factor = this.scenarios[k];
+			for (int i = 0; i < pnl.length; i++) {
+				pnl[i] += loading * factor[i];
+			}
+		}
+		return pnl;
+	}
+
+}
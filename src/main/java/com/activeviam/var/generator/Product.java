@@ -40,6 +40,8 @@ public class Product implements IClone<Product>, Serializable {
 	protected double bumpedMtmDown;
 	protected double theta;
 	protected double rho;
+	/** Pnl vector of a unit of the product, {@code null} unless the vectors are per product */
+	protected double[] unitPnlVector;
 
 	public Product(int id) {
 		this.id = id;
@@ -56,6 +58,13 @@ public class Product implements IClone<Product>, Serializable {
 	}
 
 	public static void appendCsvHeader(PrintWriter sb) {
+		appendCsvHeader(sb, false);
+	}
+
+	/**
+	 * Appends the CSV header row, with the UnitPnlVector column if the vectors are per product.
+	 */
+	public static void appendCsvHeader(PrintWriter sb, boolean unitPnlVector) {
 		sb.append("Id");
 		sb.append(CSV_SEPARATOR).append("ProductName");
 		sb.append(CSV_SEPARATOR).append("ProductType");
@@ -68,6 +77,9 @@ public class Product implements IClone<Product>, Serializable {
 		sb.append(CSV_SEPARATOR).append("BumpedMtmDown");
 		sb.append(CSV_SEPARATOR).append("Theta");
 		sb.append(CSV_SEPARATOR).append("Rho");
+		if (unitPnlVector) {
+			sb.append(CSV_SEPARATOR).append("UnitPnlVector");
+		}
 	}
 
 	@Override
@@ -192,6 +204,14 @@ public class Product implements IClone<Product>, Serializable {
 		this.rho = rho;
 	}
 
+	public double[] getUnitPnlVector() {
+		return this.unitPnlVector;
+	}
+
+	public void setUnitPnlVector(double[] unitPnlVector) {
+		this.unitPnlVector = unitPnlVector;
+	}
+
 	@Override
 	public int hashCode() {
 		return id;
@@ -234,6 +254,14 @@ public class Product implements IClone<Product>, Serializable {
 	 * @return A CSV String representing this object.
 	 */
 	public void appendCsvRow(PrintWriter pw) {
+		appendCsvRow(pw, VectorPrecision.DOUBLE, 1d);
+	}
+
+	/**
+	 * Append a CSV representation of this object into a writer, followed by the unit pnl vector in
+	 * the given precision if the product has one.
+	 */
+	public void appendCsvRow(PrintWriter pw, VectorPrecision precision, double scale) {
 		pw.print(getId());
 		pw.append(CSV_SEPARATOR).print(getProductName());
 		pw.append(CSV_SEPARATOR).print(getProductType());
@@ -246,6 +274,10 @@ public class Product implements IClone<Product>, Serializable {
 		pw.append(CSV_SEPARATOR).print(getBumpedMtmDown());
 		pw.append(CSV_SEPARATOR).print(getTheta());
 		pw.append(CSV_SEPARATOR).print(getRho());
+		if (getUnitPnlVector() != null) {
+			pw.append(CSV_SEPARATOR);
+			Risk.printVector(pw, getUnitPnlVector(), precision, scale);
+		}
 	}
 
 }
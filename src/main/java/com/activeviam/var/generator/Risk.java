@@ -40,21 +40,39 @@ public class Risk {
 	}
 
 	public static void appendCsvHeader(PrintWriter w) {
+		appendCsvHeader(w, "PnlVector");
+	}
+
+	/**
+	 * Appends the CSV header row, naming the vector column.
+	 */
+	public static void appendCsvHeader(PrintWriter w, String vectorColumn) {
 		w.append("TradeId");
 		w.append(CSV_SEPARATOR).append("Delta");
 		w.append(CSV_SEPARATOR).append("Gamma");
 		w.append(CSV_SEPARATOR).append("Vega");
 		w.append(CSV_SEPARATOR).append("Pnl");
-		w.append(CSV_SEPARATOR).append("PnlVector");
+		w.append(CSV_SEPARATOR).append(vectorColumn);
 	}
 
-	private static void printVector(PrintWriter pw, double[] vector) {
+	static void printVector(
+			PrintWriter pw,
+			double[] vector,
+			VectorPrecision precision,
+			double scale) {
 		if (vector != null && vector.length != 0) {
+			final Object encoded = precision.encode(vector, scale);
 			for (int i = 0; i < vector.length; i++) {
 				if (i > 0) {
 					pw.append(CSV_VECTOR_SEPARATOR);
 				}
-				pw.print(vector[i]);
+				if (encoded instanceof float[]) {
+					pw.print(((float[]) encoded)[i]);
+				} else if (encoded instanceof int[]) {
+					pw.print(((int[]) encoded)[i]);
+				} else {
+					pw.print(vector[i]);
+				}
 			}
 		}
 	}
@@ -87,13 +105,21 @@ public class Risk {
 	 * Append a CSV representation of this object into a writer.
 	 */
 	public void appendCsvRow(PrintWriter pw) {
+		appendCsvRow(pw, VectorPrecision.DOUBLE, 1d);
+	}
+
+	/**
+	 * Append a CSV representation of this object into a writer, the pnl vector in the given
+	 * precision.
+	 */
+	public void appendCsvRow(PrintWriter pw, VectorPrecision precision, double scale) {
 		pw.print(getTradeId());
 		pw.append(CSV_SEPARATOR).print(getDelta());
 		pw.append(CSV_SEPARATOR).print(getGamma());
 		pw.append(CSV_SEPARATOR).print(getVega());
 		pw.append(CSV_SEPARATOR).print(getPnl());
 		pw.append(CSV_SEPARATOR);
-		printVector(pw, getPnlVector());
+		printVector(pw, getPnlVector(), precision, scale);
 	}
 
 
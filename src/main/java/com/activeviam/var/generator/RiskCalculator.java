@@ -35,13 +35,29 @@ public class RiskCalculator {
 	 */
 	protected final int vectorLength;
 
+	/**
+	 * Precision of the pnl vectors, the generated values being rounded to it
+	 */
+	protected final VectorPrecision precision;
+
+	/**
+	 * Value of a unit of the {@link VectorPrecision#SCALED_INT scaled} pnl vectors
+	 */
+	protected final double scale;
+
 
 	public RiskCalculator() {
 		this(DEFAULT_VECTOR_LENGTH);
 	}
 
 	public RiskCalculator(int vectorLength) {
+		this(vectorLength, VectorPrecision.DOUBLE, 1d);
+	}
+
+	public RiskCalculator(int vectorLength, VectorPrecision precision, double scale) {
 		this.vectorLength = vectorLength;
+		this.precision = precision;
+		this.scale = scale;
 	}
 
 	/**
@@ -127,9 +143,34 @@ public class RiskCalculator {
 		for (int i = 0; i < vectorLength; i++) {
 			pnlVector[i] = 0.2 * pnl * random.nextGaussian();
 		}
+		// keep the values the files and the datastore can hold
+		precision.round(pnlVector, scale);
 
 		Risk riskEntry = new Risk(trade.getId(), delta, gamma, vega, pnl, pnlVector);
 		return riskEntry;
 	}
 
+	/**
+	 * Generate the pnl vector of a unit of the given product, with a gaussian distribution around
+	 * the pnl of the delta of a unit, for the {@link VectorModel#PRODUCT product} vectors.
+	 *
+	 * @param product the product
+	 * @return the unit pnl vector
+	 */
+	public double[] unitPnlVector(Product product) {
+
+		final Random random = ThreadLocalRandom.current();
+
+		double underlierValue = product.getUnderlierValue();
+		double rateChange = (underlierValue * SHIFT_OPERAND - underlierValue) / underlierValue;
+		double unitDelta = (product.getBumpedMtmUp() - product.getBumpedMtmDown()) / BUMP_SIZE_50;
+		double unitPnl = rateChange * unitDelta;
+
+		double[] unitPnlVector = new double[vectorLength];
+		for (int i = 0; i < vectorLength; i++) {
+			unitPnlVector[i] = 0.2 * unitPnl * random.nextGaussian();
+		}
+		return precision.round(unitPnlVector, scale);
+	}
+
 }
@@ -6,11 +6,13 @@
  */
 package com.activeviam.var.generator;
 
+import com.activeviam.var.source.watch.IncrementalLoader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringBootConfiguration;
 
 /**
@@ -31,10 +33,16 @@ public class VaRCsvDataGenerator extends AVaRDataGenerator {
 	 */
 	public static final char CSV_VECTOR_SEPARATOR = ';';
 
+	/**
+	 * Lines of the header of the CSV files, naming their columns
+	 */
+	public static final int CSV_HEADER_LINES = 1;
+
 	/**
 	 * Base directory to output files, working dir by default
 	 */
-	static final String BASEDIR = ".";
+	@Value("${generator.base-dir:.}")
+	protected String baseDir;
 
 
 	public static void main(String[] args) {
@@ -47,15 +55,15 @@ public class VaRCsvDataGenerator extends AVaRDataGenerator {
 
 	@Override
 	protected void startProcess() {
-		Path productFile = Paths.get(BASEDIR, "data", "products.csv");
+		Path productFile = Paths.get(this.baseDir, "data", "products.csv");
 		System.out.println("Creating products into " + productFile.toAbsolutePath());
-		Path tradeFile = Paths.get(BASEDIR, "data", "trades.csv");
+		Path tradeFile = Paths.get(this.baseDir, "data", "trades.csv");
 		System.out.println("Creating trades into " + tradeFile.toAbsolutePath());
-		Path riskFile = Paths.get(BASEDIR, "data", "risks.csv");
+		Path riskFile = Paths.get(this.baseDir, "data", "risks.csv");
 		System.out.println("Creating risks into " + riskFile.toAbsolutePath());
 
 		// Create the data base directory if it does not exist
-		Path dataDir = Paths.get(BASEDIR, "data");
+		Path dataDir = Paths.get(this.baseDir, "data");
 		if (!Files.isDirectory(dataDir)) {
 			try {
 				Files.createDirectory(dataDir);
@@ -67,24 +75,26 @@ public class VaRCsvDataGenerator extends AVaRDataGenerator {
 		}
 
 		try {
+			// The folder is incomplete until the files are written
+			Files.deleteIfExists(dataDir.resolve(IncrementalLoader.SUCCESS_MARKER));
 			this.productWriter = new PrintWriter(Files.newBufferedWriter(productFile));
 			this.riskWriter = new PrintWriter(Files.newBufferedWriter(tradeFile));
 			this.tradeWriter = new PrintWriter(Files.newBufferedWriter(riskFile));
 		} catch (IOException e) {
 			throw new RuntimeException("Cannot create one of the writers", e);
 		}
-		Product.appendCsvHeader(this.productWriter);
+		Product.appendCsvHeader(this.productWriter, getVectorModel() == VectorModel.PRODUCT);
 		this.productWriter.println();
 		Trade.appendCsvHeader(this.tradeWriter);
 		this.tradeWriter.println();
-		Risk.appendCsvHeader(this.riskWriter);
+		Risk.appendCsvHeader(this.riskWriter, getRiskVectorColumn());
 		this.riskWriter.println();
 
 	}
 
 	@Override
 	protected void addProduct(final Product product) {
-		product.appendCsvRow(this.productWriter);
+		product.appendCsvRow(this.productWriter, getVectorPrecision(), this.vectorScale);
 		this.productWriter.println();
 	}
 
@@ -96,16 +106,29 @@ public class VaRCsvDataGenerator extends AVaRDataGenerator {
 
 	@Override
 	protected void addRisk(final Risk risk) {
-		risk.appendCsvRow(this.riskWriter);
+		risk.appendCsvRow(this.riskWriter, getVectorPrecision(), this.vectorScale);
 		this.riskWriter.println();
 	}
 
+	@Override
+	protected Path getManifestDirectory() {
+		return Paths.get(this.baseDir, "data");
+	}
+
 	@Override
 	protected void completeProcess() {
 		this.riskWriter.close();
 		this.tradeWriter.close();
 		this.productWriter.close();
 
+		// Mark the folder as complete for the continuous ingestion
+		final Path marker = Paths.get(this.baseDir, "data", IncrementalLoader.SUCCESS_MARKER);
+		try {
+			Files.write(marker, new byte[0]);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot create success file " + marker, e);
+		}
+
 		System.out.println(this.productCount + " products generated");
 		System.out.println(this.tradeCount + " trades generated");
 		System.out.println(this.tradeCount + " risk entries generated");
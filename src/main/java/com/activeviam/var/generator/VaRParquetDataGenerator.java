@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -47,7 +48,8 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 	/**
 	 * Base directory to output files, working dir by default.
 	 */
-	static final String BASEDIR = ".";
+	@Value("${generator.base-dir:.}")
+	protected String baseDir;
 
 
 	public static void main(String[] args) {
@@ -61,13 +63,13 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 
 	@Override
 	protected void startProcess() {
-		var productFolder = Paths.get(BASEDIR, "data", "parquet", "products");
+		var productFolder = Paths.get(this.baseDir, "data", "parquet", "products");
 		createFolder(productFolder);
 		System.out.println("Creating products into " + productFolder.toAbsolutePath());
-		var tradeFolder = Paths.get(BASEDIR, "data", "parquet", "trades");
+		var tradeFolder = Paths.get(this.baseDir, "data", "parquet", "trades");
 		createFolder(tradeFolder);
 		System.out.println("Creating trades into " + tradeFolder.toAbsolutePath());
-		var riskFolder = Paths.get(BASEDIR, "data", "parquet", "risks");
+		var riskFolder = Paths.get(this.baseDir, "data", "parquet", "risks");
 		createFolder(riskFolder);
 		System.out.println("Creating risks into " + riskFolder.toAbsolutePath());
 
@@ -119,6 +121,11 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 			record.put("BumpedMtmDown", product.getBumpedMtmDown());
 			record.put("Theta", product.getTheta());
 			record.put("Rho", product.getRho());
+			if (product.getUnitPnlVector() != null) {
+				record.put(
+						"UnitPnlVector",
+						getVectorPrecision().encode(product.getUnitPnlVector(), this.vectorScale));
+			}
 		});
 	}
 
@@ -146,10 +153,17 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 			record.put("Delta", risk.getDelta());
 			record.put("Gamma", risk.getGamma());
 			record.put("Vega", risk.getVega());
-			record.put("PnlVector", risk.getPnlVector());
+			record.put(
+					getRiskVectorColumn(),
+					getVectorPrecision().encode(risk.getPnlVector(), this.vectorScale));
 		});
 	}
 
+	@Override
+	protected Path getManifestDirectory() {
+		return Paths.get(this.baseDir, "data", "parquet");
+	}
+
 	@Override
 	protected void completeProcess() {
 		this.riskWriter.flush();
@@ -178,7 +192,7 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 		final var intS = Schema.create(Type.INT);
 		final var doubleS = Schema.create(Type.DOUBLE);
 		final var strS = Schema.create(Type.STRING);
-		final var list = List.of(
+		final var list = new ArrayList<>(List.of(
 				field("Id", intS),
 				field("ProductName", strS),
 				field("ProductType", strS),
@@ -190,7 +204,11 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 				field("BumpedMtmUp", doubleS),
 				field("BumpedMtmDown", doubleS),
 				field("Theta", doubleS),
-				field("Rho", doubleS));
+				field("Rho", doubleS)));
+		if (getVectorModel() == VectorModel.PRODUCT) {
+			final var vectorS = Schema.createArray(Schema.create(getVectorElementType()));
+			list.add(field("UnitPnlVector", vectorS));
+		}
 		return Schema.createRecord("products", "", "", false, list);
 	}
 
@@ -217,17 +235,31 @@ public class VaRParquetDataGenerator extends AVaRDataGenerator {
 	private Schema createRiskSchema() {
 		final var longS = Schema.create(Type.LONG);
 		final var doubleS = Schema.create(Type.DOUBLE);
-		final var doubleArrayS = Schema.createArray(doubleS);
+		final var vectorS = Schema.createArray(Schema.create(getVectorElementType()));
 		final var list = List.of(
 				field("TradeId", longS),
 				field("Pnl", doubleS),
 				field("Delta", doubleS),
 				field("Gamma", doubleS),
 				field("Vega", doubleS),
-				field("PnlVector", doubleArrayS));
+				field(getRiskVectorColumn(), vectorS));
 		return Schema.createRecord("risks", "", "", false, list);
 	}
 
+	/**
+	 * @return the type of the elements of the pnl vectors, after their precision
+	 */
+	private Type getVectorElementType() {
+		switch (getVectorPrecision()) {
+			case FLOAT:
+				return Type.FLOAT;
+			case SCALED_INT:
+				return Type.INT;
+			default:
+				return Type.DOUBLE;
+		}
+	}
+
 	private static Field field(final String name, final Schema schema) {
 		return new Schema.Field(name, schema, "Field " + name, (Object) null);
 	}
@@ -0,0 +1,47 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.generator;
+
+/**
+ * Where the pnl vectors are held, shared by the generators, the datastore and the loaders through
+ * the datastore.vector-model property.
+ *
+ * @author ActiveViam
+ */
+public enum VectorModel {
+
+	/** A pnl vector per trade, in the risks */
+	TRADE,
+	/**
+	 * A unit pnl vector per product, in the products: the pnl vector of a trade is the unit vector
+	 * of its product times its ProductQtyMultiplier
+	 */
+	PRODUCT,
+	/**
+	 * Factor loadings per trade, in the risks: the pnl vector of a trade is its loadings times the
+	 * shared {@link FactorScenarios scenario matrix}
+	 */
+	FACTOR;
+
+	/**
+	 * Gets a model from its name in the configuration: trade, product or factor.
+	 *
+	 * @param name the name of the model
+	 * @return the model
+	 */
+	public static VectorModel of(final String name) {
+		for (final VectorModel model : values()) {
+			if (model.name().equalsIgnoreCase(name.trim())) {
+				return model;
+			}
+		}
+		throw new IllegalArgumentException(
+				"Unknown vector model " + name + ", expected trade, product or factor");
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.generator;
+
+import java.util.List;
+
+/**
+ * Precision of the elements of the pnl vectors, shared by the generators, the datastore and the
+ * loaders through the datastore.vector-precision property.
+ * <p>
+ * The files hold the vectors as they are stored: doubles, floats, or for {@link #SCALED_INT} the
+ * number of units of the datastore.vector-scale property, rounded to the nearest integer. The
+ * vectors of {@link #SCALED_INT} are summed as doubles, in units, then converted back into values
+ * by the measures.
+ *
+ * @author ActiveViam
+ */
+public enum VectorPrecision {
+
+	/** 8 bytes per element */
+	DOUBLE("double[]", Double.BYTES),
+	/** 4 bytes per element, about 7 significant digits */
+	FLOAT("float[]", Float.BYTES),
+	/** 4 bytes per element, fixed point with the given scale */
+	SCALED_INT("int[]", Integer.BYTES);
+
+	/** The type of the datastore field */
+	private final String dataType;
+	/** The size of an element */
+	private final int elementBytes;
+
+	VectorPrecision(final String dataType, final int elementBytes) {
+		this.dataType = dataType;
+		this.elementBytes = elementBytes;
+	}
+
+	/**
+	 * Gets a precision from its name in the configuration: double, float or scaled-int.
+	 *
+	 * @param name the name of the precision
+	 * @return the precision
+	 */
+	public static VectorPrecision of(final String name) {
+		for (final VectorPrecision precision : values()) {
+			if (precision.name().replace('_', '-').equalsIgnoreCase(name.trim())) {
+				return precision;
+			}
+		}
+		throw new IllegalArgumentException(
+				"Unknown vector precision " + name + ", expected double, float or scaled-int");
+	}
+
+	/**
+	 * Gets the precision of a datastore field type.
+	 *
+	 * @param dataType the type of the field
+	 * @return the precision, {@code null} if the type is not a vector of numbers
+	 */
+	public static VectorPrecision ofDataType(final String dataType) {
+		for (final VectorPrecision precision : values()) {
+			if (precision.dataType.equals(dataType)) {
+				return precision;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the type of the datastore field of the vectors
+	 */
+	public String getDataType() {
+		return this.dataType;
+	}
+
+	/**
+	 * @return the size of an element of the vectors, in bytes
+	 */
+	public int getElementBytes() {
+		return this.elementBytes;
+	}
+
+	/**
+	 * Rounds values to the ones the precision keeps.
+	 *
+	 * @param values the values, rounded in place
+	 * @param scale the value of a unit of {@link #SCALED_INT}
+	 * @return the values
+	 */
+	public double[] round(final double[] values, final double scale) {
+		switch (this) {
+			case FLOAT:
+				for (int i = 0; i < values.length; ++i) {
+					values[i] = (float) values[i];
+				}
+				break;
+			case SCALED_INT:
+				for (int i = 0; i < values.length; ++i) {
+					values[i] = toUnits(values[i], scale) * scale;
+				}
+				break;
+			default:
+				break;
+		}
+		return values;
+	}
+
+	/**
+	 * Converts values into the vector stored by the precision.
+	 *
+	 * @param values the values
+	 * @param scale the value of a unit of {@link #SCALED_INT}
+	 * @return the {@code double[]}, {@code float[]} or {@code int[]} vector
+	 */
+	public Object encode(final double[] values, final double scale) {
+		switch (this) {
+			case FLOAT: {
+				final float[] vector = new float[values.length];
+				for (int i = 0; i < vector.length; ++i) {
+					vector[i] = (float) values[i];
+				}
+				return vector;
+			}
+			case SCALED_INT: {
+				final int[] vector = new int[values.length];
+				for (int i = 0; i < vector.length; ++i) {
+					vector[i] = toUnits(values[i], scale);
+				}
+				return vector;
+			}
+			default:
+				return values;
+		}
+	}
+
+	/**
+	 * Converts the elements read from a file, already in the precision, into the stored vector.
+	 *
+	 * @param elements the elements, as parsed
+	 * @return the {@code double[]}, {@code float[]} or {@code int[]} vector
+	 */
+	public Object fromElements(final double[] elements) {
+		return elements == null ? null : encode(elements, 1d);
+	}
+
+	/**
+	 * Converts the elements read from a Parquet list, already in the precision, into the stored
+	 * vector.
+	 *
+	 * @param elements the elements
+	 * @return the {@code double[]}, {@code float[]} or {@code int[]} vector
+	 */
+	public Object fromElements(final List<?> elements) {
+		switch (this) {
+			case FLOAT: {
+				final float[] vector = new float[elements.size()];
+				for (int i = 0; i < vector.length; ++i) {
+					vector[i] = ((Number) elements.get(i)).floatValue();
+				}
+				return vector;
+			}
+			case SCALED_INT: {
+				final int[] vector = new int[elements.size()];
+				for (int i = 0; i < vector.length; ++i) {
+					vector[i] = ((Number) elements.get(i)).intValue();
+				}
+				return vector;
+			}
+			default: {
+				final double[] vector = new double[elements.size()];
+				for (int i = 0; i < vector.length; ++i) {
+					vector[i] = ((Number) elements.get(i)).doubleValue();
+				}
+				return vector;
+			}
+		}
+	}
+
+	/**
+	 * Converts an element of a stored or aggregated vector into its value.
+	 *
+	 * @param element the element
+	 * @param scale the value of a unit of {@link #SCALED_INT}
+	 * @return the value
+	 */
+	public double decode(final double element, final double scale) {
+		return this == SCALED_INT ? element * scale : element;
+	}
+
+	private static int toUnits(final double value, final double scale) {
+		final long units = Math.round(value / scale);
+		if (units > Integer.MAX_VALUE || units < Integer.MIN_VALUE) {
+			throw new IllegalArgumentException(
+					"The value " + value + " exceeds the 32 bits integers with the scale " + scale);
+		}
+		return (int) units;
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.monitoring;
+
+import static com.qfs.literal.ILiteralType.DOUBLE;
+import static com.qfs.literal.ILiteralType.FLOAT;
+import static com.qfs.literal.ILiteralType.INT;
+import static com.qfs.literal.ILiteralType.LONG;
+
+import com.activeviam.var.cfg.datastore.PartitioningStrategy;
+import com.activeviam.var.generator.VectorPrecision;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.IDatastore;
+import com.qfs.store.query.ICursor;
+import com.qfs.store.record.IRecordReader;
+import com.qfs.vector.IVector;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the memory of the stores, field by field, from their committed records, next to the
+ * memory the process actually uses.
+ * <p>
+ * The fields of fixed width take their width per row. The other scalar fields are dictionarized:
+ * an index of 4 bytes per row, plus their distinct values. The vectors take their elements, in
+ * blocks apart from the chunks of the records. The chunks of each partition are allocated
+ * {@code chunkSize} rows at a time: the rows allocated but not used are the fragmentation of the
+ * store. The figures are estimates of the layout, to compare settings; the heap, the buffer pools,
+ * the resident memory and the anonymous huge pages of the process are measured.
+ *
+ * @author ActiveViam
+ */
+public class MemoryBreakdown {
+
+	/** Above this number of distinct values, the dictionary of a field is no more counted */
+	protected static final int MAX_COUNTED_VALUES = 1 << 20;
+	/** Estimated bytes of a dictionary entry besides its value: the hash table and the index */
+	protected static final int DICTIONARY_ENTRY_BYTES = 16;
+	/** Estimated bytes of a value object besides its content */
+	protected static final int OBJECT_BYTES = 24;
+
+	/** The memory status of the process, on Linux */
+	protected static final String STATUS_FILE = "/proc/self/status";
+	/** The memory of the mappings of the process, on Linux */
+	protected static final String SMAPS_ROLLUP_FILE = "/proc/self/smaps_rollup";
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The breakdowns of the stores, by name */
+	protected final Map<String, Map<String, Object>> stores = new LinkedHashMap<>();
+	/** The bytes of the memory mapped files, by name */
+	protected final Map<String, Long> files = new LinkedHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 */
+	public MemoryBreakdown(final IDatastore datastore) {
+		this.datastore = datastore;
+	}
+
+	/**
+	 * Reads the committed records of a store and estimates the memory of its fields.
+	 *
+	 * @param store the description of the store
+	 * @param partitioning the partitioning of the store, {@code null} for a single partition
+	 * @param partitionCount the number of partitions of the modulo and hash terms
+	 * @param chunkSize the rows of the chunks of the store, 0 if not known
+	 * @return this breakdown
+	 */
+	public MemoryBreakdown addStore(
+			final IStoreDescription store,
+			final PartitioningStrategy partitioning,
+			final int partitionCount,
+			final int chunkSize) {
+		final List<? extends IFieldDescription> fields = store.getFields();
+		final String[] names =
+				fields.stream().map(IFieldDescription::getName).toArray(String[]::new);
+		final List<String> partitionFieldNames =
+				partitioning == null ? List.of() : partitioning.getFields();
+		final int[] partitionFields = new int[partitionFieldNames.size()];
+		for (int i = 0; i < partitionFields.length; ++i) {
+			partitionFields[i] = List.of(names).indexOf(partitionFieldNames.get(i));
+		}
+
+		final long[] vectorElements = new long[names.length];
+		final long[] valueBytes = new long[names.length];
+		final List<Set<Object>> values = new ArrayList<>(names.length);
+		for (int f = 0; f < names.length; ++f) {
+			values.add(isDictionarized(fields.get(f)) ? new HashSet<>() : null);
+		}
+		final Map<String, Long> partitionRows = new HashMap<>();
+		final Object[] partitionValues = new Object[partitionFields.length];
+		long rows = 0;
+
+		final ICursor cursor = this.datastore.getHead().getQueryRunner()
+				.forStore(store.getName())
+				.withoutCondition()
+				.selecting(names)
+				.onCurrentThread()
+				.run();
+		for (final IRecordReader record : cursor) {
+			++rows;
+			for (int f = 0; f < names.length; ++f) {
+				final Set<Object> distinct = values.get(f);
+				if (distinct != null) {
+					final Object value = record.read(f);
+					if (distinct.size() < MAX_COUNTED_VALUES && distinct.add(value)) {
+						valueBytes[f] += estimateBytes(value);
+					}
+				} else if (VectorPrecision.ofDataType(fields.get(f).getDataType()) != null) {
+					final Object vector = record.read(f);
+					if (vector != null) {
+						vectorElements[f] += ((IVector) vector).size();
+					}
+				}
+			}
+			if (partitioning != null) {
+				for (int i = 0; i < partitionFields.length; ++i) {
+					partitionValues[i] = record.read(partitionFields[i]);
+				}
+				partitionRows.merge(
+						partitioning.partitionOf(partitionValues, partitionCount),
+						1L,
+						Long::sum);
+			}
+		}
+
+		// The chunks of each partition are allocated whole
+		long allocatedRows = rows;
+		if (chunkSize > 0) {
+			allocatedRows = 0;
+			final Collection<Long> partitions =
+					partitioning == null ? List.of(rows) : partitionRows.values();
+			for (final long partition : partitions) {
+				allocatedRows += (partition + chunkSize - 1) / chunkSize * chunkSize;
+			}
+		}
+
+		final Map<String, Object> fieldBreakdowns = new LinkedHashMap<>();
+		long storeBytes = 0;
+		for (int f = 0; f < names.length; ++f) {
+			final IFieldDescription field = fields.get(f);
+			final VectorPrecision precision = VectorPrecision.ofDataType(field.getDataType());
+			final Map<String, Object> breakdown = new LinkedHashMap<>();
+			breakdown.put("type", field.getDataType());
+			final long chunkBytes = allocatedRows * getRowBytes(field);
+			breakdown.put("chunkBytes", chunkBytes);
+			long fieldBytes = chunkBytes;
+			if (values.get(f) != null) {
+				final long dictionaryBytes =
+						valueBytes[f] + (long) values.get(f).size() * DICTIONARY_ENTRY_BYTES;
+				breakdown.put("distinctValues", values.get(f).size() < MAX_COUNTED_VALUES
+						? values.get(f).size()
+						: ">= " + MAX_COUNTED_VALUES);
+				breakdown.put("dictionaryBytes", dictionaryBytes);
+				fieldBytes += dictionaryBytes;
+			} else if (precision != null) {
+				final long vectorBytes = vectorElements[f] * precision.getElementBytes();
+				breakdown.put("vectorElements", vectorElements[f]);
+				breakdown.put("vectorBytes", vectorBytes);
+				fieldBytes += vectorBytes;
+			}
+			breakdown.put("bytes", fieldBytes);
+			storeBytes += fieldBytes;
+			fieldBreakdowns.put(field.getName(), breakdown);
+		}
+
+		final Map<String, Object> breakdown = new LinkedHashMap<>();
+		breakdown.put("rows", rows);
+		breakdown.put("partitions", partitioning == null ? 1 : partitionRows.size());
+		breakdown.put("chunkSize", chunkSize > 0 ? chunkSize : "default");
+		breakdown.put("allocatedRows", allocatedRows);
+		breakdown.put("unusedRowRatio",
+				allocatedRows == 0 ? 0d : 1d - (double) rows / allocatedRows);
+		breakdown.put("bytes", storeBytes);
+		breakdown.put("fields", fieldBreakdowns);
+		this.stores.put(store.getName(), breakdown);
+		return this;
+	}
+
+	/**
+	 * Adds a memory mapped file, whose pages the OS keeps resident or not.
+	 *
+	 * @param name the name of the file
+	 * @param bytes the size of the file
+	 * @return this breakdown
+	 */
+	public MemoryBreakdown addFile(final String name, final long bytes) {
+		this.files.put(name, bytes);
+		return this;
+	}
+
+	/**
+	 * @return the breakdowns of the stores by name, their estimated total, the memory mapped
+	 * 		files and the memory of the process
+	 */
+	public Map<String, Object> toMap() {
+		final Map<String, Object> breakdown = new LinkedHashMap<>();
+		breakdown.put("stores", this.stores);
+		breakdown.put("storeBytes", this.stores.values().stream()
+				.mapToLong(store -> (Long) store.get("bytes"))
+				.sum());
+		breakdown.put("mappedFiles", this.files);
+		final Map<String, Object> process = new LinkedHashMap<>();
+		process.put("heapUsedBytes",
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		for (final BufferPoolMXBean pool
+				: ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			process.put(pool.getName() + "BufferBytes", pool.getMemoryUsed());
+		}
+		process.put("residentBytes", readKilobytes(STATUS_FILE, "VmRSS:"));
+		process.put("anonymousHugePageBytes", readKilobytes(SMAPS_ROLLUP_FILE, "AnonHugePages:"));
+		breakdown.put("process", process);
+		return breakdown;
+	}
+
+	/**
+	 * @return a line per store and field, for the logs
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public String toString() {
+		final StringBuilder lines = new StringBuilder("Memory breakdown");
+		for (final Map.Entry<String, Map<String, Object>> store : this.stores.entrySet()) {
+			final Map<String, Object> breakdown = store.getValue();
+			lines.append("\n  ").append(store.getKey())
+					.append(": ").append(breakdown.get("bytes")).append(" bytes, ")
+					.append(breakdown.get("rows")).append(" rows in ")
+					.append(breakdown.get("allocatedRows")).append(" allocated");
+			for (final Map.Entry<String, Object> field
+					: ((Map<String, Object>) breakdown.get("fields")).entrySet()) {
+				lines.append("\n    ").append(field.getKey()).append(": ").append(field.getValue());
+			}
+		}
+		for (final Map.Entry<String, Long> file : this.files.entrySet()) {
+			lines.append("\n  ").append(file.getKey()).append(": ").append(file.getValue())
+					.append(" bytes mapped");
+		}
+		lines.append("\n  process: ").append(toMap().get("process"));
+		return lines.toString();
+	}
+
+	/**
+	 * @return {@code true} if the values of the field are kept in a dictionary
+	 */
+	private static boolean isDictionarized(final IFieldDescription field) {
+		return getFixedWidth(field.getDataType()) == 0
+				&& VectorPrecision.ofDataType(field.getDataType()) == null;
+	}
+
+	/**
+	 * @return the bytes of a row of the field in the chunks: its value, the index of its value
+	 * 		in the dictionary, or the reference to its vector
+	 */
+	private static int getRowBytes(final IFieldDescription field) {
+		final int width = getFixedWidth(field.getDataType());
+		if (width > 0) {
+			return width;
+		}
+		return VectorPrecision.ofDataType(field.getDataType()) != null ? Long.BYTES : Integer.BYTES;
+	}
+
+	/**
+	 * @return the width of the values of a type stored as primitives, 0 for the other types
+	 */
+	private static int getFixedWidth(final String dataType) {
+		switch (dataType) {
+			case INT:
+			case FLOAT:
+				return 4;
+			case LONG:
+			case DOUBLE:
+				return 8;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * @return the estimated bytes of a value of a dictionary
+	 */
+	private static long estimateBytes(final Object value) {
+		if (value instanceof String) {
+			return OBJECT_BYTES + ((String) value).length() * 2L;
+		}
+		return OBJECT_BYTES;
+	}
+
+	/**
+	 * Reads a size in kB from a file of the proc file system.
+	 *
+	 * @return the size in bytes, -1 if unknown
+	 */
+	private static long readKilobytes(final String file, final String prefix) {
+		try {
+			for (final String line
+					: Files.readAllLines(Paths.get(file), StandardCharsets.US_ASCII)) {
+				if (line.startsWith(prefix)) {
+					final String[] fields = line.trim().split("\\s+");
+					return Long.parseLong(fields[1]) * 1024;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Not on Linux
+		}
+		return -1;
+	}
+
+}
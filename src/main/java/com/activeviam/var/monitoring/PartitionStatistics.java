@@ -0,0 +1,119 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.monitoring;
+
+import com.activeviam.var.cfg.datastore.PartitioningStrategy;
+import com.qfs.store.IDatastore;
+import com.qfs.store.query.ICursor;
+import com.qfs.store.record.IRecordReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the rows of the partitions of a store, from the values of its partitioning fields, and
+ * measures their skew: the largest partition bounds the parallelism of the loads and of the
+ * queries over the store.
+ *
+ * @author ActiveViam
+ */
+public class PartitionStatistics {
+
+	/** Maximum number of partitions listed with their rows */
+	protected static final int MAX_LISTED_PARTITIONS = 1024;
+
+	/** The name of the store */
+	protected final String store;
+	/** The partitioning of the store */
+	protected final PartitioningStrategy partitioning;
+	/** The number of partitions of the modulo and hash terms */
+	protected final int partitionCount;
+	/** The rows of each partition, by name */
+	protected final Map<String, Long> rows = new TreeMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the name of the store
+	 * @param partitioning the partitioning of the store
+	 * @param partitionCount the number of partitions of the modulo and hash terms
+	 */
+	public PartitionStatistics(
+			final String store,
+			final PartitioningStrategy partitioning,
+			final int partitionCount) {
+		this.store = store;
+		this.partitioning = partitioning;
+		this.partitionCount = partitionCount;
+	}
+
+	/**
+	 * Counts the committed rows of the partitions of the store.
+	 *
+	 * @param datastore the datastore
+	 * @return these statistics
+	 */
+	public PartitionStatistics count(final IDatastore datastore) {
+		final ICursor cursor = datastore.getHead().getQueryRunner()
+				.forStore(this.store)
+				.withoutCondition()
+				.selecting(this.partitioning.getFields().toArray(new String[0]))
+				.onCurrentThread()
+				.run();
+		final Object[] values = new Object[this.partitioning.getFields().size()];
+		this.rows.clear();
+		for (final IRecordReader record : cursor) {
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = record.read(i);
+			}
+			final String partition = this.partitioning.partitionOf(values, this.partitionCount);
+			this.rows.merge(partition, 1L, Long::sum);
+		}
+		return this;
+	}
+
+	/**
+	 * @return the statistics: the partitioning, the number of non-empty partitions, the total,
+	 * 		smallest, largest and mean rows, the skew (largest over mean), the coefficient of
+	 * 		variation of the rows and the rows of each partition
+	 */
+	public Map<String, Object> toMap() {
+		final long total = this.rows.values().stream().mapToLong(Long::longValue).sum();
+		final int partitions = this.rows.size();
+		final double mean = partitions == 0 ? 0d : (double) total / partitions;
+		final long min = this.rows.values().stream().mapToLong(Long::longValue).min().orElse(0);
+		final long max = this.rows.values().stream().mapToLong(Long::longValue).max().orElse(0);
+		double variance = 0d;
+		for (final long partitionRows : this.rows.values()) {
+			variance += (partitionRows - mean) * (partitionRows - mean);
+		}
+		variance = partitions == 0 ? 0d : variance / partitions;
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("partitioning", this.partitioning.toDescriptor(this.partitionCount));
+		statistics.put("partitions", partitions);
+		statistics.put("rows", total);
+		statistics.put("minRows", min);
+		statistics.put("maxRows", max);
+		statistics.put("meanRows", mean);
+		statistics.put("skew", mean == 0d ? 0d : max / mean);
+		statistics.put("coefficientOfVariation", mean == 0d ? 0d : Math.sqrt(variance) / mean);
+		if (partitions <= MAX_LISTED_PARTITIONS) {
+			statistics.put("rowsByPartition", new LinkedHashMap<>(this.rows));
+		}
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		final Map<String, Object> statistics = toMap();
+		statistics.remove("rowsByPartition");
+		return this.store + " " + statistics;
+	}
+
+}
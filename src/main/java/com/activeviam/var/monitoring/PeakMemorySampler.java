@@ -0,0 +1,137 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.monitoring;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the memory of the process periodically, and keeps the peaks.
+ * <p>
+ * The datastore chunks live off-heap, out of the reach of the heap and buffer pool beans: besides
+ * the used heap, the sampler reads the resident memory of the process from {@value #STATUS_FILE}
+ * where available, which counts the off-heap chunks.
+ *
+ * @author ActiveViam
+ */
+public class PeakMemorySampler implements AutoCloseable {
+
+	/** The status file of the process, on Linux */
+	protected static final String STATUS_FILE = "/proc/self/status";
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Path statusFile = Paths.get(STATUS_FILE);
+	private final ScheduledExecutorService scheduler;
+
+	private final long initialHeapBytes;
+	private final long initialResidentBytes;
+	private long peakHeapBytes;
+	private long peakResidentBytes;
+
+	/**
+	 * Constructor, starting the sampling.
+	 *
+	 * @param periodMillis the delay between two samples
+	 */
+	public PeakMemorySampler(final long periodMillis) {
+		this.initialHeapBytes = this.memory.getHeapMemoryUsage().getUsed();
+		this.initialResidentBytes = readResidentBytes();
+		this.peakHeapBytes = this.initialHeapBytes;
+		this.peakResidentBytes = this.initialResidentBytes;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "memory-sampler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleAtFixedRate(
+				this::sample,
+				periodMillis,
+				periodMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Takes a sample.
+	 */
+	public synchronized void sample() {
+		this.peakHeapBytes = Math.max(this.peakHeapBytes, this.memory.getHeapMemoryUsage().getUsed());
+		this.peakResidentBytes = Math.max(this.peakResidentBytes, readResidentBytes());
+	}
+
+	/**
+	 * Reads the resident memory of the process.
+	 *
+	 * @return the resident memory, in bytes, or -1 if unknown
+	 */
+	protected long readResidentBytes() {
+		try {
+			for (final String line : Files.readAllLines(this.statusFile, StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmRSS:")) {
+					// VmRSS:    123456 kB
+					final String[] fields = line.trim().split("\\s+");
+					return Long.parseLong(fields[1]) * 1024;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Not on Linux
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the used heap when the sampling started, in bytes
+	 */
+	public long getInitialHeapBytes() {
+		return this.initialHeapBytes;
+	}
+
+	/**
+	 * @return the peak of the used heap, in bytes
+	 */
+	public synchronized long getPeakHeapBytes() {
+		return this.peakHeapBytes;
+	}
+
+	/**
+	 * @return the resident memory when the sampling started, in bytes, or -1 if unknown
+	 */
+	public long getInitialResidentBytes() {
+		return this.initialResidentBytes;
+	}
+
+	/**
+	 * @return the peak of the resident memory, in bytes, or -1 if unknown
+	 */
+	public synchronized long getPeakResidentBytes() {
+		return this.peakResidentBytes;
+	}
+
+	/**
+	 * Stops the sampling, after a last sample.
+	 */
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+		sample();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PeakMemorySampler [peakHeapBytes=" + this.peakHeapBytes
+				+ ", peakResidentBytes=" + this.peakResidentBytes + "]";
+	}
+
+}
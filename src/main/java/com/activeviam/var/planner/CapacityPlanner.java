@@ -0,0 +1,696 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.planner;
+
+import com.activeviam.var.ActivePivotVarApplication;
+import com.activeviam.var.cfg.ChunkAllocatorSettings;
+import com.activeviam.var.cfg.PartitionStatsEndpoint;
+import com.activeviam.var.cfg.datastore.DatastoreDescriptionConfig;
+import com.activeviam.var.cfg.load.DatasetLoader;
+import com.activeviam.var.cfg.load.StoreReports;
+import com.activeviam.var.cfg.pivot.ActivePivotManagerConfig;
+import com.activeviam.var.cfg.security.SecurityConfig;
+import com.activeviam.var.generator.VaRCsvDataGenerator;
+import com.activeviam.var.generator.VaRParquetDataGenerator;
+import com.activeviam.var.generator.VectorPrecision;
+import com.quartetfs.biz.pivot.IActivePivotManager;
+import com.quartetfs.biz.pivot.IMultiVersionActivePivot;
+import com.quartetfs.biz.pivot.query.impl.MDXQuery;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Predicts the memory, the load time and the VaR query latency of a dataset from two calibration
+ * loads of a fraction of its trades.
+ * <p>
+ * Each calibration generates its files with the generators of the application, in a temporary
+ * folder, loads them in the given mode with the application itself, then reads the memory
+ * breakdown of the stores and times VaR queries. The bytes of each field of each store are
+ * extrapolated linearly in the rows of their store, so that the dictionaries of bounded values,
+ * such as the desks, stay flat while the chunks and the vectors grow. The load time, the query
+ * latencies, the memory mapped vectors and the growth of the resident memory are extrapolated
+ * linearly in the trades. The stores hold the same number of risks per trade at all sizes.
+ * <p>
+ * The arguments are {@code key=value} pairs:
+ * <ul>
+ * <li>{@code tradeCount}, {@code productCount}: the size of the dataset to plan for</li>
+ * <li>{@code vectorLength}: the scenarios of the pnl vectors, 260 by default</li>
+ * <li>{@code partitionCount}: the partitions of the stores, the number of cores by default</li>
+ * <li>{@code precision}: double, float or scaled-int, double by default</li>
+ * <li>{@code mode}: generate, csv, parquet-local or parquet-cloud, csv by default. The cloud is
+ * the local simulation of {@code cloud-source.simulation}</li>
+ * <li>{@code calibrationTrades}: the trades of the larger calibration, the other one having
+ * half of them, 100000 by default</li>
+ * <li>{@code queryRuns}: the timed runs of each query, after a warm-up one, 5 by default</li>
+ * <li>{@code report}: a file to write the report into, besides the standard output</li>
+ * <li>{@code compare}: {@code <property>:<value>,<value>...} to compare the values of an
+ * application property instead of planning, each with a calibration of {@code calibrationTrades}
+ * trades on the same generated dataset, for example
+ * {@code compare=datastore.partitioning.risks:modulo(TradeId),value(Desk)|modulo(TradeId)}
+ * with {@code mode=generate --datastore.schema=denormalized}, or
+ * {@code compare=datastore.schema:normalized,denormalized}</li>
+ * </ul>
+ * The other arguments, as {@code --property=value}, are passed to the generators and to the
+ * application, for example {@code --datastore.schema=denormalized}.
+ *
+ * @author ActiveViam
+ */
+public class CapacityPlanner {
+
+	/** The cube queried */
+	protected static final String CUBE = ActivePivotManagerConfig.CUBE;
+
+	/** The timed VaR queries, by name */
+	protected static final Map<String, String> QUERIES = new LinkedHashMap<>();
+
+	static {
+		QUERIES.put("VaR 95 total",
+				"SELECT [Measures].[VaR 95] ON COLUMNS FROM [" + CUBE + "]");
+		QUERIES.put("VaR 95 by desk",
+				"SELECT [Measures].[VaR 95] ON COLUMNS,"
+						+ " NON EMPTY [Booking].[Booking].[Desk].Members ON ROWS"
+						+ " FROM [" + CUBE + "]");
+		QUERIES.put("VaR 95 by book",
+				"SELECT [Measures].[VaR 95] ON COLUMNS,"
+						+ " NON EMPTY [Booking].[Booking].[Book].Members ON ROWS"
+						+ " FROM [" + CUBE + "]");
+		// Filtered on a single desk, whose partitions are the only ones read when the denormalized
+		// risks are partitioned on Desk
+		QUERIES.put("VaR 95 of a desk",
+				"SELECT [Measures].[VaR 95] ON COLUMNS,"
+						+ " Head([Booking].[Booking].[Desk].Members, 1) ON ROWS"
+						+ " FROM [" + CUBE + "]");
+	}
+
+	/** The stores whose rows follow the trades, one row per trade or per risk */
+	protected static final List<String> TRADE_STORES = List.of(
+			DatastoreDescriptionConfig.TRADE_STORE,
+			DatastoreDescriptionConfig.RISK_STORE,
+			DatastoreDescriptionConfig.VECTOR_STORE);
+
+	/** The trades of the dataset */
+	protected final long tradeCount;
+	/** The products of the dataset */
+	protected final int productCount;
+	/** The scenarios of the pnl vectors */
+	protected final int vectorLength;
+	/** The partitions of the stores */
+	protected final int partitionCount;
+	/** The precision of the pnl vectors */
+	protected final VectorPrecision precision;
+	/** The load mode */
+	protected final String mode;
+	/** The trades of the larger calibration */
+	protected final int calibrationTrades;
+	/** The timed runs of each query */
+	protected final int queryRuns;
+	/** The properties passed to the generators and to the application, as --key=value */
+	protected final List<String> properties;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param tradeCount the trades of the dataset
+	 * @param productCount the products of the dataset
+	 * @param vectorLength the scenarios of the pnl vectors
+	 * @param partitionCount the partitions of the stores
+	 * @param precision the precision of the pnl vectors
+	 * @param mode the load mode: generate, csv, parquet-local or parquet-cloud
+	 * @param calibrationTrades the trades of the larger calibration, the other having half of them
+	 * @param queryRuns the timed runs of each query
+	 * @param properties the properties passed to the generators and to the application
+	 */
+	public CapacityPlanner(
+			final long tradeCount,
+			final int productCount,
+			final int vectorLength,
+			final int partitionCount,
+			final VectorPrecision precision,
+			final String mode,
+			final int calibrationTrades,
+			final int queryRuns,
+			final List<String> properties) {
+		if (tradeCount <= 0 || productCount <= 0 || vectorLength <= 0 || partitionCount <= 0) {
+			throw new IllegalArgumentException(
+					"The trades, products, vector length and partitions must be positive");
+		}
+		if (calibrationTrades < 2 || queryRuns <= 0) {
+			throw new IllegalArgumentException(
+					"Expected at least 2 calibration trades and 1 query run");
+		}
+		if (!List.of("generate", "csv", "parquet-local", "parquet-cloud").contains(mode)) {
+			throw new IllegalArgumentException("Unknown mode: " + mode);
+		}
+		this.tradeCount = tradeCount;
+		this.productCount = productCount;
+		this.vectorLength = vectorLength;
+		this.partitionCount = partitionCount;
+		this.precision = precision;
+		this.mode = mode;
+		this.calibrationTrades = (int) Math.min(calibrationTrades, tradeCount);
+		this.queryRuns = queryRuns;
+		this.properties = new ArrayList<>(properties);
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Map<String, String> options = new LinkedHashMap<>();
+		final List<String> properties = new ArrayList<>();
+		for (final String arg : args) {
+			final int equals = arg.indexOf('=');
+			if (arg.startsWith("--")) {
+				properties.add(arg);
+			} else if (equals > 0) {
+				options.put(arg.substring(0, equals), arg.substring(equals + 1));
+			} else {
+				throw new IllegalArgumentException("Expecting key=value or --property=value\nGot: "
+						+ Arrays.toString(args));
+			}
+		}
+		final String report = options.remove("report");
+		final String compare = options.remove("compare");
+		final CapacityPlanner planner = new CapacityPlanner(
+				Long.parseLong(required(options, "tradeCount")),
+				Integer.parseInt(required(options, "productCount")),
+				Integer.parseInt(options.getOrDefault("vectorLength", "260")),
+				Integer.parseInt(options.getOrDefault(
+						"partitionCount",
+						Integer.toString(Runtime.getRuntime().availableProcessors()))),
+				VectorPrecision.of(options.getOrDefault("precision", "double")),
+				options.getOrDefault("mode", "csv"),
+				Integer.parseInt(options.getOrDefault("calibrationTrades", "100000")),
+				Integer.parseInt(options.getOrDefault("queryRuns", "5")),
+				properties);
+		options.keySet().removeAll(List.of(
+				"tradeCount", "productCount", "vectorLength", "partitionCount", "precision", "mode",
+				"calibrationTrades", "queryRuns"));
+		if (!options.isEmpty()) {
+			throw new IllegalArgumentException("Unknown arguments: " + options.keySet());
+		}
+
+		final String text;
+		if (compare == null) {
+			text = planner.plan();
+		} else {
+			final int colon = compare.indexOf(':');
+			if (colon <= 0) {
+				throw new IllegalArgumentException(
+						"Expecting compare=<property>:<value>,<value>...\nGot: " + compare);
+			}
+			text = planner.compare(
+					compare.substring(0, colon),
+					Arrays.asList(compare.substring(colon + 1).split(",")));
+		}
+		System.out.println(text);
+		if (report != null) {
+			Files.write(Paths.get(report), text.getBytes(StandardCharsets.UTF_8));
+			System.out.println("Report written into " + Paths.get(report).toAbsolutePath());
+		}
+		// The datastores leave non daemon threads behind
+		System.exit(0);
+	}
+
+	private static String required(final Map<String, String> options, final String key) {
+		final String value = options.get(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing argument: " + key + "=<value>");
+		}
+		return value;
+	}
+
+	/**
+	 * Runs the two calibrations and extrapolates them to the dataset.
+	 *
+	 * @return the report
+	 */
+	public String plan() {
+		final Calibration small = calibrate(this.calibrationTrades / 2);
+		final Calibration large = calibrate(this.calibrationTrades);
+		return report(small, large);
+	}
+
+	/**
+	 * Runs a calibration for each value of an application property, on the same dataset, and
+	 * reports them side by side: the load, the memory, the partitions and the query latencies.
+	 *
+	 * @param property the application property, such as datastore.partitioning.trades
+	 * @param values the compared values of the property
+	 * @return the report
+	 */
+	public String compare(final String property, final List<String> values) {
+		final Map<String, Calibration> calibrations = new LinkedHashMap<>();
+		for (final String value : values) {
+			calibrations.put(
+					value,
+					calibrate(this.calibrationTrades, List.of("--" + property + "=" + value)));
+		}
+		return reportComparison(property, calibrations);
+	}
+
+	/**
+	 * Generates, loads and queries a calibration dataset, in a temporary folder deleted afterwards.
+	 *
+	 * @param trades the trades of the calibration
+	 * @return the measures of the calibration
+	 */
+	protected Calibration calibrate(final int trades) {
+		return calibrate(trades, Collections.emptyList());
+	}
+
+	/**
+	 * Generates, loads and queries a calibration dataset, in a temporary folder deleted afterwards.
+	 *
+	 * @param trades the trades of the calibration
+	 * @param variant the properties of the compared variant, as --key=value, after the others
+	 * @return the measures of the calibration
+	 */
+	protected Calibration calibrate(final int trades, final List<String> variant) {
+		final int products = Math.min(this.productCount, trades);
+		System.out.println("Calibrating with " + trades + " trades and " + products + " products");
+		final Path folder;
+		try {
+			folder = Files.createTempDirectory("capacity-planner");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create the calibration folder", e);
+		}
+		try {
+			final List<String> args = new ArrayList<>(List.of(
+					"--tradeSource.tradeCount=" + trades,
+					"--tradeSource.productCount=" + products,
+					"--tradeSource.vectorLength=" + this.vectorLength,
+					"--datastore.partitionCount=" + this.partitionCount,
+					"--datastore.vector-precision=" + this.precision.name().toLowerCase(Locale.ROOT)
+							.replace('_', '-'),
+					"--generator.base-dir=" + folder));
+			args.addAll(this.properties);
+			args.addAll(variant);
+			if (!"generate".equals(this.mode)) {
+				generate("csv".equals(this.mode)
+						? VaRCsvDataGenerator.class
+						: VaRParquetDataGenerator.class, args);
+			}
+			return load(trades, products, folder, args);
+		} finally {
+			delete(folder);
+		}
+	}
+
+	/**
+	 * Writes the files of a calibration with a generator.
+	 */
+	private static void generate(
+			final Class<?> generator,
+			final List<String> args) {
+		new SpringApplicationBuilder(generator)
+				.web(WebApplicationType.NONE)
+				.run(args.toArray(new String[0]))
+				.close();
+	}
+
+	/**
+	 * Starts the application on the files of a calibration, then measures its memory and queries.
+	 */
+	private Calibration load(
+			final int trades,
+			final int products,
+			final Path folder,
+			final List<String> generatorArgs) {
+		final Path data = folder.resolve("data");
+		final List<String> args = new ArrayList<>(generatorArgs);
+		args.addAll(List.of(
+				"--server.port=0",
+				"--csvSource.mode=" + this.mode,
+				"--csvSource.data-dir="
+						+ ("csv".equals(this.mode) ? data : data.resolve("parquet")),
+				"--datastore.manifest=",
+				"--datastore.lazy-vectors=false",
+				"--datastore.vector-file=" + folder.resolve("pnl-vectors.bin"),
+				"--ingestion.watch=false",
+				"--load-journal.enabled=false",
+				"--history.enabled=false",
+				"--snapshot.write=false",
+				"--snapshot.restore=false",
+				"--memory.breakdown-after-load=false"));
+		if ("parquet-cloud".equals(this.mode)) {
+			args.addAll(List.of(
+					"--cloud-source.provider=local",
+					"--cloud-source.simulation.root=" + data,
+					"--cloud-source.date-folder=parquet"));
+		}
+
+		System.gc();
+		final long residentBefore = getResidentBytes();
+		final ConfigurableApplicationContext context =
+				new SpringApplicationBuilder(ActivePivotVarApplication.class)
+						.listeners(new ChunkAllocatorSettings())
+						.run(args.toArray(new String[0]));
+		try {
+			final Calibration calibration = new Calibration(trades, products);
+			calibration.loadNanos = context.getBean(DatasetLoader.class).getLastLoadNanos();
+			calibration.memory = context.getBean(StoreReports.class).getMemoryBreakdown().toMap();
+			calibration.residentGrowthBytes = getResidentBytes() - residentBefore;
+			calibration.partitions = context.getBean(PartitionStatsEndpoint.class).partitions();
+			final IMultiVersionActivePivot pivot =
+					context.getBean(IActivePivotManager.class).getActivePivots().get(CUBE);
+			for (final Map.Entry<String, String> query : QUERIES.entrySet()) {
+				calibration.queryNanos.put(query.getKey(), time(pivot, query.getValue()));
+			}
+			return calibration;
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * Runs a query once to warm up, then {@link #queryRuns} times.
+	 *
+	 * @return the median duration of the timed runs, in nanoseconds
+	 */
+	private long time(final IMultiVersionActivePivot pivot, final String mdx) {
+		// The queries are run as the administrator, as the endpoints of the application would
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(
+						"admin",
+						null,
+						List.of(
+								new SimpleGrantedAuthority(SecurityConfig.ROLE_USER),
+								new SimpleGrantedAuthority(SecurityConfig.ROLE_ADMIN))));
+		try {
+			pivot.execute(new MDXQuery(mdx));
+			final long[] durations = new long[this.queryRuns];
+			for (int i = 0; i < durations.length; ++i) {
+				final long start = System.nanoTime();
+				pivot.execute(new MDXQuery(mdx));
+				durations[i] = System.nanoTime() - start;
+			}
+			Arrays.sort(durations);
+			return durations[durations.length / 2];
+		} catch (Exception e) {
+			throw new IllegalStateException("Query failed: " + mdx, e);
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	/**
+	 * Writes the measures of the calibrations and their extrapolation to the dataset.
+	 *
+	 * @param small the smaller calibration
+	 * @param large the larger calibration
+	 * @return the report
+	 */
+	@SuppressWarnings("unchecked")
+	protected String report(final Calibration small, final Calibration large) {
+		final StringBuilder report = new StringBuilder("Capacity plan\n");
+		report.append(String.format(Locale.ROOT,
+				"  dataset: %d trades, %d products, %d scenarios, %d partitions, %s vectors,"
+						+ " %s load%n",
+				this.tradeCount, this.productCount, this.vectorLength, this.partitionCount,
+				this.precision, this.mode));
+		report.append(String.format(Locale.ROOT,
+				"  calibrations: %d trades and %d products, %d trades and %d products%s%n",
+				small.trades, small.products, large.trades, large.products,
+				this.properties.isEmpty() ? "" : ", with " + String.join(" ", this.properties)));
+
+		report.append("\nMemory of the stores\n");
+		final Map<String, Map<String, Object>> smallStores =
+				(Map<String, Map<String, Object>>) small.memory.get("stores");
+		final Map<String, Map<String, Object>> largeStores =
+				(Map<String, Map<String, Object>>) large.memory.get("stores");
+		long totalBytes = 0;
+		for (final Map.Entry<String, Map<String, Object>> store : largeStores.entrySet()) {
+			final Map<String, Object> smallStore = smallStores.get(store.getKey());
+			final long smallRows = (Long) smallStore.get("rows");
+			final long largeRows = (Long) store.getValue().get("rows");
+			final double targetRows = getTargetRows(store.getKey(), large, largeRows);
+			final Map<String, Map<String, Object>> smallFields =
+					(Map<String, Map<String, Object>>) smallStore.get("fields");
+			final StringBuilder fieldLines = new StringBuilder();
+			long storeBytes = 0;
+			for (final Map.Entry<String, Object> field
+					: ((Map<String, Object>) store.getValue().get("fields")).entrySet()) {
+				final long bytes = Math.round(extrapolate(
+						smallRows,
+						(Long) smallFields.get(field.getKey()).get("bytes"),
+						largeRows,
+						(Long) ((Map<String, Object>) field.getValue()).get("bytes"),
+						targetRows));
+				storeBytes += bytes;
+				fieldLines.append(String.format(Locale.ROOT,
+						"    %-24s %12s%n", field.getKey(), formatBytes(bytes)));
+			}
+			totalBytes += storeBytes;
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s for %,.0f rows%n",
+					store.getKey(), formatBytes(storeBytes), targetRows));
+			report.append(fieldLines);
+		}
+		report.append(String.format(
+				Locale.ROOT, "  %-26s %12s%n", "Total", formatBytes(totalBytes)));
+		final Map<String, Long> smallFiles = (Map<String, Long>) small.memory.get("mappedFiles");
+		for (final Map.Entry<String, Long> file
+				: ((Map<String, Long>) large.memory.get("mappedFiles")).entrySet()) {
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s mapped, resident as the page cache allows%n",
+					"Vector file",
+					formatBytes(Math.round(extrapolate(
+							small.trades,
+							smallFiles.getOrDefault(file.getKey(), 0L),
+							large.trades,
+							file.getValue(),
+							this.tradeCount)))));
+		}
+		if (small.residentGrowthBytes > 0 && large.residentGrowthBytes > 0) {
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s measured growth of the process during the load%n",
+					"Resident memory",
+					formatBytes(Math.round(extrapolate(
+							small.trades, small.residentGrowthBytes,
+							large.trades, large.residentGrowthBytes,
+							this.tradeCount)))));
+		}
+
+		report.append("\nTimes\n");
+		report.append(String.format(Locale.ROOT,
+				"  %-26s %12s (%.2f s and %.2f s calibrated)%n",
+				"Load",
+				formatSeconds(extrapolate(
+						small.trades, small.loadNanos, large.trades, large.loadNanos,
+						this.tradeCount) / 1e9),
+				small.loadNanos / 1e9,
+				large.loadNanos / 1e9));
+		for (final String query : QUERIES.keySet()) {
+			final long smallNanos = small.queryNanos.get(query);
+			final long largeNanos = large.queryNanos.get(query);
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s (%.1f ms and %.1f ms calibrated)%n",
+					query,
+					formatSeconds(extrapolate(
+							small.trades, smallNanos, large.trades, largeNanos,
+							this.tradeCount) / 1e9),
+					smallNanos / 1e6,
+					largeNanos / 1e6));
+		}
+		report.append("\nThe figures of the stores are estimates of their layout, the others are"
+				+ " measured on this machine. The query latencies are those of a single query.\n");
+		return report.toString();
+	}
+
+	/**
+	 * Writes the measures of the calibrations of the compared values of a property.
+	 *
+	 * @param property the compared property
+	 * @param calibrations the calibrations, by value of the property
+	 * @return the report
+	 */
+	@SuppressWarnings("unchecked")
+	protected String reportComparison(
+			final String property,
+			final Map<String, Calibration> calibrations) {
+		final StringBuilder report = new StringBuilder("Comparison of " + property + "\n");
+		final Calibration first = calibrations.values().iterator().next();
+		report.append(String.format(Locale.ROOT,
+				"  dataset: %d trades, %d products, %d scenarios, %d partitions, %s vectors,"
+						+ " %s load%s%n",
+				first.trades, first.products, this.vectorLength, this.partitionCount,
+				this.precision, this.mode,
+				this.properties.isEmpty() ? "" : ", with " + String.join(" ", this.properties)));
+		for (final Map.Entry<String, Calibration> entry : calibrations.entrySet()) {
+			final Calibration calibration = entry.getValue();
+			report.append("\n").append(property).append('=').append(entry.getKey()).append('\n');
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s%n", "Load", formatSeconds(calibration.loadNanos / 1e9)));
+			long storeBytes = 0;
+			for (final Object store
+					: ((Map<String, Object>) calibration.memory.get("stores")).values()) {
+				for (final Object field
+						: ((Map<String, Object>) ((Map<String, Object>) store).get("fields"))
+								.values()) {
+					storeBytes += (Long) ((Map<String, Object>) field).get("bytes");
+				}
+			}
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s%n", "Stores", formatBytes(storeBytes)));
+			report.append(String.format(Locale.ROOT,
+					"  %-26s %12s%n",
+					"Resident memory growth",
+					formatBytes(calibration.residentGrowthBytes)));
+			for (final Map.Entry<String, Long> query : calibration.queryNanos.entrySet()) {
+				report.append(String.format(Locale.ROOT,
+						"  %-26s %12s%n", query.getKey(), formatSeconds(query.getValue() / 1e9)));
+			}
+			for (final Map.Entry<String, Object> store : calibration.partitions.entrySet()) {
+				final Map<String, Object> statistics = (Map<String, Object>) store.getValue();
+				report.append(String.format(Locale.ROOT,
+						"  %-26s %12s partitions, skew %.2f%n",
+						store.getKey() + " partitions",
+						statistics.get("partitions"),
+						(Double) statistics.get("skew")));
+			}
+		}
+		report.append("\nThe figures of the stores are estimates of their layout, the others are"
+				+ " measured on this machine. The query latencies are those of a single query.\n");
+		return report.toString();
+	}
+
+	/**
+	 * @return the rows of a store in the dataset
+	 */
+	private double getTargetRows(final String store, final Calibration large, final long rows) {
+		if (DatastoreDescriptionConfig.PRODUCT_STORE.equals(store)) {
+			return this.productCount;
+		}
+		if (TRADE_STORES.contains(store)) {
+			return (double) rows * this.tradeCount / large.trades;
+		}
+		// The scenarios do not depend on the dataset
+		return rows;
+	}
+
+	/**
+	 * Extrapolates linearly through two measures, proportionally if they are taken at the same
+	 * size, never below 0.
+	 *
+	 * @param x1 the size of the first measure
+	 * @param y1 the first measure
+	 * @param x2 the size of the second measure
+	 * @param y2 the second measure
+	 * @param x the size to extrapolate to
+	 * @return the extrapolated measure
+	 */
+	protected static double extrapolate(
+			final double x1,
+			final double y1,
+			final double x2,
+			final double y2,
+			final double x) {
+		if (x1 == x2) {
+			return x2 == 0 ? y2 : Math.max(0, y2 * x / x2);
+		}
+		return Math.max(0, y2 + (y2 - y1) / (x2 - x1) * (x - x2));
+	}
+
+	private static String formatBytes(final long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		final String[] units = {"KiB", "MiB", "GiB", "TiB"};
+		double value = bytes;
+		int unit = -1;
+		while (value >= 1024 && unit < units.length - 1) {
+			value /= 1024;
+			++unit;
+		}
+		return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+	}
+
+	private static String formatSeconds(final double seconds) {
+		return seconds < 1
+				? String.format(Locale.ROOT, "%.1f ms", seconds * 1e3)
+				: String.format(Locale.ROOT, "%.1f s", seconds);
+	}
+
+	/**
+	 * @return the resident memory of the process, or the used heap when not on Linux
+	 */
+	private static long getResidentBytes() {
+		try {
+			for (final String line : Files.readAllLines(
+					Paths.get("/proc/self/status"),
+					StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.trim().split("\\s+")[1]) * 1024;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Not on Linux
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static void delete(final Path folder) {
+		try (Stream<Path> paths = Files.walk(folder)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		} catch (IOException e) {
+			System.out.println("Cannot delete the calibration folder " + folder + ": " + e);
+		}
+	}
+
+	/**
+	 * The measures of a calibration.
+	 */
+	protected static class Calibration {
+
+		/** The trades loaded */
+		protected final int trades;
+		/** The products loaded */
+		protected final int products;
+		/** The duration of the load */
+		protected long loadNanos;
+		/** The memory breakdown of the stores after the load */
+		protected Map<String, Object> memory;
+		/** The growth of the resident memory of the process during the load */
+		protected long residentGrowthBytes;
+		/** The median durations of the queries, by name */
+		protected final Map<String, Long> queryNanos = new LinkedHashMap<>();
+		/** The statistics of the partitions of the partitioned stores, by store */
+		protected Map<String, Object> partitions;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param trades the trades loaded
+		 * @param products the products loaded
+		 */
+		protected Calibration(final int trades, final int products) {
+			this.trades = trades;
+			this.products = products;
+		}
+
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Network conditions simulated by a {@link SimulatedCloudChannel}: request latency, bandwidth per
+ * connection and for the whole link, and transient request failures.
+ * <p>
+ * One instance is shared by all the channels of a load, so that the total bandwidth applies to all
+ * the concurrent fetches.
+ * <p>
+ * A failed request is not retried here: the failure is thrown to the interceptors of the fetch, so
+ * that it goes through the retries of the loader, as a failure of the cloud would.
+ *
+ * @author ActiveViam
+ */
+public class CloudSimulation {
+
+	/** Latency of a request, before the first byte is received, in nanoseconds */
+	protected final long latencyNanos;
+	/** Relative variation of the latency, in [0, 1] */
+	protected final double jitter;
+	/** Bandwidth of a single connection, in bytes per second, or 0 for no limit */
+	protected final double connectionBandwidth;
+	/** Bandwidth of the whole link, in bytes per second, or 0 for no limit */
+	protected final double totalBandwidth;
+	/** Probability for a request to fail */
+	protected final double errorRate;
+
+	/** Time at which the link is free to transfer more bytes, in {@link System#nanoTime()} */
+	private long linkFreeAt;
+
+	/** Number of injected failures */
+	protected final AtomicLong injectedErrors = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param latencyMillis the latency of a request, in milliseconds
+	 * @param jitter the relative variation of the latency, in [0, 1]
+	 * @param connectionBandwidth the bandwidth of a connection, in bytes per second, or 0
+	 * @param totalBandwidth the bandwidth of the whole link, in bytes per second, or 0
+	 * @param errorRate the probability for a request to fail
+	 */
+	public CloudSimulation(
+			final long latencyMillis,
+			final double jitter,
+			final double connectionBandwidth,
+			final double totalBandwidth,
+			final double errorRate) {
+		this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+		this.jitter = Math.max(0, Math.min(1, jitter));
+		this.connectionBandwidth = connectionBandwidth;
+		this.totalBandwidth = totalBandwidth;
+		this.errorRate = errorRate;
+		this.linkFreeAt = System.nanoTime();
+	}
+
+	/**
+	 * Simulates sending a request.
+	 *
+	 * @throws IOException if the request failed
+	 */
+	public void request() throws IOException {
+		final double variation = 1 + this.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+		sleep((long) (this.latencyNanos * variation));
+		if (ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+			throw new IOException("Injected failure #" + this.injectedErrors.incrementAndGet());
+		}
+	}
+
+	/**
+	 * Simulates the transfer of the response of a request.
+	 *
+	 * @param bytes the number of transferred bytes
+	 */
+	public void transfer(final long bytes) throws IOException {
+		final long start = System.nanoTime();
+		long end = start;
+		if (this.connectionBandwidth > 0) {
+			end = start + (long) (bytes * 1e9 / this.connectionBandwidth);
+		}
+		if (this.totalBandwidth > 0) {
+			// Reserve a slot of the link for the bytes
+			final long duration = (long) (bytes * 1e9 / this.totalBandwidth);
+			synchronized (this) {
+				this.linkFreeAt = Math.max(this.linkFreeAt, start) + duration;
+				end = Math.max(end, this.linkFreeAt);
+			}
+		}
+		sleep(end - System.nanoTime());
+	}
+
+	/**
+	 * @return the number of failures injected so far
+	 */
+	public long getInjectedErrors() {
+		return this.injectedErrors.get();
+	}
+
+	private static void sleep(final long nanos) throws IOException {
+		if (nanos <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while simulating the network");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CloudSimulation [latency=" + TimeUnit.NANOSECONDS.toMillis(this.latencyNanos) + "ms"
+				+ ", jitter=" + this.jitter
+				+ ", connectionBandwidth=" + this.connectionBandwidth + "B/s"
+				+ ", totalBandwidth=" + this.totalBandwidth + "B/s"
+				+ ", errorRate=" + this.errorRate + "]";
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Creates the executors running the part fetches of the channels.
+ * <p>
+ * The fetches mostly wait for the network, so they run on virtual threads when the application is
+ * built with the {@code java21} profile, which compiles {@code src/main/java21}, and runs on Java
+ * 21 or later. Otherwise they run on a cached pool of daemon platform threads.
+ *
+ * @author ActiveViam
+ */
+public final class DownloadExecutors {
+
+	private static final Logger LOGGER = Logger.getLogger(DownloadExecutors.class.getSimpleName());
+
+	/** Class of the virtual thread executors, only compiled by the {@code java21} profile */
+	private static final String VIRTUAL_THREAD_EXECUTORS =
+			"com.activeviam.var.source.cloud.VirtualThreadDownloadExecutors";
+
+	private DownloadExecutors() {}
+
+	/**
+	 * Creates an executor for part fetches.
+	 *
+	 * @param virtualThreads {@code true} to run the fetches on virtual threads when available
+	 * @return the executor, to shut down after the load
+	 */
+	public static ExecutorService newDownloadExecutor(final boolean virtualThreads) {
+		if (virtualThreads) {
+			try {
+				final ExecutorService executor = (ExecutorService) Class.forName(VIRTUAL_THREAD_EXECUTORS)
+						.getMethod("newDownloadExecutor")
+						.invoke(null);
+				LOGGER.info("Fetching the parts on virtual threads");
+				return executor;
+			} catch (ReflectiveOperationException | LinkageError e) {
+				LOGGER.warning("Virtual threads are not available (" + e + "), build with -Pjava21"
+						+ " and run on Java 21 or later. Fetching the parts on platform threads");
+			}
+		}
+		return Executors.newCachedThreadPool(new DaemonThreadFactory("download-"));
+	}
+
+	/**
+	 * Factory of named daemon threads, not preventing the shutdown of the application.
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private DaemonThreadFactory(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, this.prefix + this.count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,315 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Tunes the number of parts fetched in parallel and their length from the throughput measured
+ * during a load.
+ * <p>
+ * The tuner intercepts the part fetches of the channels to measure the fetched bytes. Every epoch
+ * of a few parts, the throughput is compared with the best one seen so far, by hill climbing: a
+ * change of the parameters is kept while it improves the throughput by more than {@link
+ * #MIN_GAIN}, otherwise the best parameters are restored and the next change is tried. The
+ * changes are, in turn: doubling then halving the parallelism, doubling then halving the part
+ * length. Tuning stops once none of them improves the throughput.
+ * <p>
+ * The channels take their configuration from {@link #configFor(ICloudEntityPath)} when they are
+ * created, so the new parameters apply to the next files only: the parts of a file being fetched
+ * keep the configuration its channel was opened with, and a load of a single large file is never
+ * tuned. Each configuration is sampled on its own: the parts of the files opened with a previous
+ * configuration are not counted, and the sampling of a new configuration only starts once the
+ * parts of the previous ones are no longer in flight, so that the measured throughput is not
+ * shared with them.
+ *
+ * @author ActiveViam
+ */
+public class FetchAutoTuner implements IFetchInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(FetchAutoTuner.class.getSimpleName());
+
+	/** Minimal relative throughput gain for a change to be kept */
+	protected static final double MIN_GAIN = 0.05;
+
+	/** Bounds of the parallelism */
+	protected static final int MIN_PARALLEL_PARTS = 1;
+	protected static final int MAX_PARALLEL_PARTS = 64;
+	/** Bounds of the part length */
+	protected static final int MIN_PART_LENGTH = 1024 * 1024;
+	protected static final int MAX_PART_LENGTH = 64 * 1024 * 1024;
+
+	/**
+	 * Number of channels whose parts are measured. The parts of the channels opened before the last
+	 * ones are fetched without being measured or counted in flight.
+	 */
+	protected static final int MAX_TRACKED_CHANNELS = 1024;
+
+	/** Maximum number of bytes of the parts held in memory by a channel */
+	protected final long maxTransientBytes;
+
+	private int parallelParts;
+	private int partLength;
+
+	private int bestParallelParts;
+	private int bestPartLength;
+	private double bestThroughput = Double.NaN;
+
+	/** Index of the change being tried, in [0, 4) */
+	private int move;
+	/** Number of changes tried without improvement since the last improvement */
+	private int failedMoves;
+	private boolean converged;
+
+	private long epochStart;
+	private long epochBytes;
+	private int epochParts;
+
+	/** Generation of the parameters, incremented at each change */
+	private int generation;
+	/**
+	 * Generation of the configuration of each channel, by path, for the last
+	 * {@link #MAX_TRACKED_CHANNELS} channels opened before the convergence
+	 */
+	private final Map<ICloudEntityPath<?>, Integer> generations = new LinkedHashMap<>() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<ICloudEntityPath<?>, Integer> eldest) {
+			return size() > MAX_TRACKED_CHANNELS;
+		}
+
+	};
+	/** Number of parts in flight for the current generation */
+	private int currentInFlight;
+	/** Number of parts in flight for the previous generations */
+	private int previousInFlight;
+	/** Whether the parts of the current generation are sampled */
+	private boolean sampling = true;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parallelParts the initial number of parts fetched in parallel
+	 * @param partLength the initial length of the parts, in bytes
+	 * @param maxTransientBytes the maximum number of bytes of the parts held in memory by a channel
+	 */
+	public FetchAutoTuner(
+			final int parallelParts,
+			final int partLength,
+			final long maxTransientBytes) {
+		this.parallelParts = this.bestParallelParts = parallelParts;
+		this.partLength = this.bestPartLength = partLength;
+		this.maxTransientBytes = maxTransientBytes;
+		this.epochStart = System.nanoTime();
+	}
+
+	/**
+	 * Returns the configuration of a new channel, and remembers it to sample the parts of the
+	 * channel with it.
+	 *
+	 * @param path the path of the entity read by the channel
+	 * @return the configuration to use for the channel
+	 */
+	public synchronized CloudFetchingConfig configFor(final ICloudEntityPath<?> path) {
+		if (!this.converged) {
+			this.generations.put(path, this.generation);
+		}
+		return currentConfig();
+	}
+
+	/**
+	 * @return the configuration to use for the next channel
+	 */
+	public synchronized CloudFetchingConfig currentConfig() {
+		final long maxParts = Math.max(
+				this.parallelParts,
+				Math.min(this.parallelParts * 3L, this.maxTransientBytes / this.partLength));
+		return new CloudFetchingConfig(this.parallelParts, (int) maxParts, this.partLength);
+	}
+
+	@Override
+	public void fetch(
+			final ICloudEntityPath<?> path,
+			final long start,
+			final long end,
+			final ByteBuffer destination,
+			final IPartFetcher fetcher) throws IOException {
+		final Integer generation = generationOf(path);
+		if (generation == null) {
+			// Not opened with a configuration of the tuner, forgotten, or after the convergence
+			fetcher.fetch(start, end, destination);
+			return;
+		}
+		final boolean sampled = begin(generation);
+		try {
+			fetcher.fetch(start, end, destination);
+		} finally {
+			end(generation, sampled, end - start);
+		}
+	}
+
+	private synchronized Integer generationOf(final ICloudEntityPath<?> path) {
+		return this.generations.get(path);
+	}
+
+	/**
+	 * Records the start of a part fetch.
+	 *
+	 * @param generation the generation of the configuration of the channel of the part
+	 * @return whether the part is sampled
+	 */
+	protected synchronized boolean begin(final int generation) {
+		if (generation < this.generation) {
+			this.previousInFlight += 1;
+			return false;
+		}
+		this.currentInFlight += 1;
+		return this.sampling;
+	}
+
+	/**
+	 * Records the end of a part fetch.
+	 *
+	 * @param generation the generation of the configuration of the channel of the part
+	 * @param sampled whether the part was sampled when it started
+	 * @param bytes the length of the part
+	 */
+	protected synchronized void end(final int generation, final boolean sampled, final long bytes) {
+		if (generation < this.generation) {
+			this.previousInFlight -= 1;
+			if (this.previousInFlight == 0 && !this.sampling) {
+				// Barrier: only the parts of the current configuration are in flight
+				this.sampling = true;
+				this.epochStart = System.nanoTime();
+			}
+			return;
+		}
+		this.currentInFlight -= 1;
+		if (sampled && this.sampling) {
+			record(bytes);
+		}
+	}
+
+	/**
+	 * Records a fetched part of the current configuration.
+	 *
+	 * @param bytes the length of the part
+	 */
+	protected void record(final long bytes) {
+		if (this.converged) {
+			return;
+		}
+		this.epochBytes += bytes;
+		this.epochParts += 1;
+		if (this.epochParts < Math.max(8, this.parallelParts * 4)) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+		final double throughput = this.epochBytes * 1e9 / Math.max(1, now - this.epochStart);
+		this.epochStart = now;
+		this.epochBytes = 0;
+		this.epochParts = 0;
+		final int parallel = this.parallelParts;
+		final int length = this.partLength;
+		adjust(throughput);
+		if (this.converged) {
+			this.generations.clear();
+		} else if (parallel != this.parallelParts || length != this.partLength) {
+			// The next parts are sampled once those of the previous configuration are done
+			this.generation += 1;
+			this.previousInFlight += this.currentInFlight;
+			this.currentInFlight = 0;
+			this.sampling = this.previousInFlight == 0;
+		}
+	}
+
+	private void adjust(final double throughput) {
+		if (Double.isNaN(this.bestThroughput) || throughput > this.bestThroughput * (1 + MIN_GAIN)) {
+			if (!Double.isNaN(this.bestThroughput)) {
+				LOGGER.info(String.format(
+						"Fetch throughput improved to %.1f MB/s with %d parallel parts of %d bytes",
+						throughput / 1e6, this.parallelParts, this.partLength));
+			}
+			this.bestThroughput = throughput;
+			this.bestParallelParts = this.parallelParts;
+			this.bestPartLength = this.partLength;
+			this.failedMoves = 0;
+		} else {
+			// Restore the best parameters and try the next change
+			this.move = (this.move + 1) % 4;
+			this.failedMoves += 1;
+		}
+
+		// Apply the next change that stays within bounds
+		while (this.failedMoves < 4) {
+			if (tryMove(this.move)) {
+				return;
+			}
+			this.move = (this.move + 1) % 4;
+			this.failedMoves += 1;
+		}
+		this.parallelParts = this.bestParallelParts;
+		this.partLength = this.bestPartLength;
+		this.converged = true;
+		LOGGER.info(String.format(
+				"Fetch tuning converged to %d parallel parts of %d bytes (%.1f MB/s)",
+				this.parallelParts, this.partLength, this.bestThroughput / 1e6));
+	}
+
+	private boolean tryMove(final int move) {
+		int parallel = this.bestParallelParts;
+		int length = this.bestPartLength;
+		switch (move) {
+			case 0:
+				parallel = Math.min(MAX_PARALLEL_PARTS, parallel * 2);
+				break;
+			case 1:
+				parallel = Math.max(MIN_PARALLEL_PARTS, parallel / 2);
+				break;
+			case 2:
+				length = Math.min(MAX_PART_LENGTH, length * 2);
+				break;
+			default:
+				length = Math.max(MIN_PART_LENGTH, length / 2);
+				break;
+		}
+		if ((parallel == this.bestParallelParts && length == this.bestPartLength)
+				|| (long) parallel * length > this.maxTransientBytes) {
+			return false;
+		}
+		this.parallelParts = parallel;
+		this.partLength = length;
+		return true;
+	}
+
+	/**
+	 * @return the best throughput measured so far, in bytes per second
+	 */
+	public synchronized double getBestThroughput() {
+		return this.bestThroughput;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "FetchAutoTuner [parallelParts=" + this.parallelParts
+				+ ", partLength=" + this.partLength
+				+ ", bestThroughput=" + this.bestThroughput
+				+ ", generation=" + this.generation
+				+ ", converged=" + this.converged + "]";
+	}
+
+}
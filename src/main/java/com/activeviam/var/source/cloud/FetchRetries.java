@@ -0,0 +1,131 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Retries the part fetches that fail, with an exponential backoff.
+ * <p>
+ * It is the innermost interceptor of the cloud loads, right above the request of the part, so the
+ * failures of the request, including those injected by a {@link CloudSimulation}, go through it.
+ * A retried fetch restarts from the position the destination had before the failed attempt. The
+ * wait between two attempts is doubled at each retry, up to a maximum.
+ *
+ * @author ActiveViam
+ */
+public class FetchRetries implements IFetchInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(FetchRetries.class.getSimpleName());
+
+	/** Number of times a failed fetch is retried */
+	protected final int maxRetries;
+	/** Wait before the first retry, doubled at each retry, in milliseconds */
+	protected final long backoffMillis;
+	/** Longest wait between two attempts, in milliseconds */
+	protected final long maxBackoffMillis;
+
+	/** Number of retried fetches */
+	protected final AtomicLong retries = new AtomicLong();
+	/** Number of fetches failed after all their retries */
+	protected final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxRetries the number of times a failed fetch is retried
+	 * @param backoffMillis the wait before the first retry, in milliseconds
+	 * @param maxBackoffMillis the longest wait between two attempts, in milliseconds
+	 */
+	public FetchRetries(
+			final int maxRetries,
+			final long backoffMillis,
+			final long maxBackoffMillis) {
+		this.maxRetries = maxRetries;
+		this.backoffMillis = backoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	@Override
+	public void fetch(
+			final ICloudEntityPath<?> path,
+			final long start,
+			final long end,
+			final ByteBuffer destination,
+			final IPartFetcher fetcher) throws IOException {
+		final int position = destination.position();
+		for (int attempt = 0; ; ++attempt) {
+			try {
+				fetcher.fetch(start, end, destination);
+				return;
+			} catch (InterruptedIOException e) {
+				throw e;
+			} catch (IOException e) {
+				if (attempt >= this.maxRetries) {
+					this.failures.incrementAndGet();
+					throw e;
+				}
+				this.retries.incrementAndGet();
+				LOGGER.fine("Retrying [" + start + ", " + end + ") of " + path.getKey()
+						+ " after " + e.getMessage());
+				destination.position(position);
+				sleep(backoff(attempt), path);
+			}
+		}
+	}
+
+	/**
+	 * @param attempt the index of the failed attempt, from 0
+	 * @return the wait before the next attempt, in milliseconds
+	 */
+	protected long backoff(final int attempt) {
+		// Stop doubling before the shift overflows
+		final int shift = Math.min(attempt, Long.numberOfLeadingZeros(this.backoffMillis) - 1);
+		return Math.min(this.backoffMillis << shift, this.maxBackoffMillis);
+	}
+
+	/**
+	 * @return the number of retried fetches
+	 */
+	public long getRetries() {
+		return this.retries.get();
+	}
+
+	/**
+	 * @return the number of fetches failed after all their retries
+	 */
+	public long getFailures() {
+		return this.failures.get();
+	}
+
+	private static void sleep(final long millis, final ICloudEntityPath<?> path)
+			throws IOException {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while retrying " + path.getKey());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FetchRetries [maxRetries=" + this.maxRetries
+				+ ", backoff=" + this.backoffMillis + "ms"
+				+ ", maxBackoff=" + this.maxBackoffMillis + "ms"
+				+ ", retries=" + this.retries
+				+ ", failures=" + this.failures + "]";
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Intercepts the part fetches of the cloud channels, to measure, cache or alter them.
+ *
+ * @author ActiveViam
+ */
+@FunctionalInterface
+public interface IFetchInterceptor {
+
+	/**
+	 * Fetches a part of an entity.
+	 */
+	@FunctionalInterface
+	interface IPartFetcher {
+
+		/**
+		 * Writes the bytes [start, end) of the entity into the destination, from its position.
+		 */
+		void fetch(long start, long end, ByteBuffer destination) throws IOException;
+
+	}
+
+	/** Interceptor that lets all the fetches through */
+	IFetchInterceptor NONE = (path, start, end, destination, fetcher) ->
+			fetcher.fetch(start, end, destination);
+
+	/**
+	 * Fetches the bytes [start, end) of an entity into the destination, from its position.
+	 *
+	 * @param path the path of the entity
+	 * @param start the first byte of the part
+	 * @param end the byte after the last byte of the part
+	 * @param destination the buffer to fill
+	 * @param fetcher the actual fetch of the part
+	 */
+	void fetch(
+			ICloudEntityPath<?> path,
+			long start,
+			long end,
+			ByteBuffer destination,
+			IPartFetcher fetcher) throws IOException;
+
+	/**
+	 * Chains interceptors, the first one being the outermost.
+	 *
+	 * @param interceptors the interceptors, possibly {@code null}
+	 * @return the chained interceptors
+	 */
+	static IFetchInterceptor chain(final List<IFetchInterceptor> interceptors) {
+		IFetchInterceptor chain = NONE;
+		for (int i = interceptors.size() - 1; i >= 0; --i) {
+			final IFetchInterceptor outer = interceptors.get(i);
+			if (outer == null) {
+				continue;
+			}
+			final IFetchInterceptor inner = chain;
+			chain = (path, start, end, destination, fetcher) -> outer.fetch(
+					path,
+					start,
+					end,
+					destination,
+					(s, e, d) -> inner.fetch(path, s, e, d, fetcher));
+		}
+		return chain;
+	}
+
+}
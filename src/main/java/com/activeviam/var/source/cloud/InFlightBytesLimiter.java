@@ -0,0 +1,75 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of bytes fetched concurrently by all the channels of a load.
+ * <p>
+ * With virtual threads, fetching a part no longer costs an OS thread, so the concurrency is bounded
+ * by the bytes being transferred rather than by the size of a thread pool. A fetch waits until the
+ * bytes of its part are available. A part larger than the bound takes the whole bound.
+ *
+ * @author ActiveViam
+ */
+public class InFlightBytesLimiter implements IFetchInterceptor {
+
+	/** Bytes per permit, so that the bound can exceed 2GB */
+	protected static final int PERMIT_BYTES = 1024;
+
+	/** Total number of permits */
+	protected final int maxPermits;
+	/** The available permits */
+	protected final Semaphore permits;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxInFlightBytes the maximum number of bytes fetched concurrently
+	 */
+	public InFlightBytesLimiter(final long maxInFlightBytes) {
+		this.maxPermits =
+				(int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlightBytes / PERMIT_BYTES));
+		this.permits = new Semaphore(this.maxPermits, true);
+	}
+
+	@Override
+	public void fetch(
+			final ICloudEntityPath<?> path,
+			final long start,
+			final long end,
+			final ByteBuffer destination,
+			final IPartFetcher fetcher) throws IOException {
+		final int required = (int) Math.min(
+				this.maxPermits,
+				(end - start + PERMIT_BYTES - 1) / PERMIT_BYTES);
+		try {
+			this.permits.acquire(required);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to fetch " + path.getKey());
+		}
+		try {
+			fetcher.fetch(start, end, destination);
+		} finally {
+			this.permits.release(required);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "InFlightBytesLimiter [maxInFlightBytes=" + (long) this.maxPermits * PERMIT_BYTES
+				+ ", available=" + (long) this.permits.availablePermits() * PERMIT_BYTES + "]";
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.azure.storage.fetch.impl.AzureBlobChannel;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link AzureBlobChannel} whose part downloads go through an {@link IFetchInterceptor}.
+ *
+ * @author ActiveViam
+ */
+public class InterceptedAzureBlobChannel extends AzureBlobChannel {
+
+	/** The path of the downloaded blob */
+	protected final ICloudEntityPath<CloudBlob> path;
+
+	/** The interceptor of the part downloads */
+	protected final IFetchInterceptor interceptor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path the path of the blob to download
+	 * @param config the configuration of the concurrent fetching of the parts
+	 * @param executor the executor downloading the parts
+	 * @param interceptor the interceptor of the part downloads
+	 */
+	public InterceptedAzureBlobChannel(
+			final ICloudEntityPath<CloudBlob> path,
+			final CloudFetchingConfig config,
+			final ExecutorService executor,
+			final IFetchInterceptor interceptor) {
+		super(path, config, executor);
+		this.path = path;
+		this.interceptor = interceptor;
+	}
+
+	@Override
+	protected void fetchBytes(final long start, final long end, final ByteBuffer destination)
+			throws IOException {
+		this.interceptor.fetch(this.path, start, end, destination, super::fetchBytes);
+	}
+
+}
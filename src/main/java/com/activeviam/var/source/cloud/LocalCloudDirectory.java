@@ -0,0 +1,144 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link ICloudDirectory} backed by a folder of the local file system.
+ * <p>
+ * It allows to read local files through the cloud source, and benefit from its concurrent fetching
+ * of file parts.
+ *
+ * @author ActiveViam
+ */
+public class LocalCloudDirectory implements ICloudDirectory<Path> {
+
+	/** The directory acting as the bucket */
+	protected final Path root;
+	/** This directory */
+	protected final Path directory;
+
+	/**
+	 * Creates the directory representing a whole local folder.
+	 *
+	 * @param root the folder
+	 */
+	public LocalCloudDirectory(final Path root) {
+		this(root, root);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param root the directory acting as the bucket
+	 * @param directory the directory, inside {@code root}
+	 */
+	protected LocalCloudDirectory(final Path root, final Path directory) {
+		this.root = root.toAbsolutePath().normalize();
+		this.directory = directory.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Gets the key of a file, i.e. its path relative to the bucket, with '/' separators.
+	 */
+	static String toKey(final Path root, final Path file) {
+		final String relative = root.relativize(file).toString();
+		return relative.replace(file.getFileSystem().getSeparator(), "/");
+	}
+
+	/**
+	 * @return the local folder of this directory
+	 */
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	@Override
+	public String getBucket() {
+		return this.root.toString();
+	}
+
+	@Override
+	public String getPath() {
+		return toKey(this.root, this.directory);
+	}
+
+	@Override
+	public LocalCloudDirectory getSubDirectory(final String name) {
+		return new LocalCloudDirectory(this.root, this.directory.resolve(name));
+	}
+
+	@Override
+	public ICloudEntity<Path> getEntity(final String name) {
+		return new LocalCloudEntity(this.root, this.directory.resolve(name));
+	}
+
+	@Override
+	public ICloudEntityPath<Path> getEntityPath(final String name) {
+		return new LocalCloudEntityPath(this.root, this.directory.resolve(name));
+	}
+
+	@Override
+	public List<ICloudEntity<Path>> listEntities(final boolean recursive) {
+		return listFiles(recursive)
+				.map(file -> new LocalCloudEntity(this.root, file))
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<ICloudEntityPath<Path>> listEntityPaths(final boolean recursive) {
+		return listFiles(recursive)
+				.map(file -> new LocalCloudEntityPath(this.root, file))
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public void delete() {
+		try (final Stream<Path> files = Files.walk(this.directory)) {
+			for (final Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot delete " + this.directory, e);
+		}
+	}
+
+	private Stream<Path> listFiles(final boolean recursive) {
+		if (!Files.isDirectory(this.directory)) {
+			return Stream.empty();
+		}
+		try (final Stream<Path> files = recursive
+				? Files.walk(this.directory)
+				: Files.list(this.directory)) {
+			return files
+					.filter(Files::isRegularFile)
+					.sorted()
+					.collect(Collectors.toList())
+					.stream();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot list " + this.directory, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LocalCloudDirectory[" + this.directory + "]";
+	}
+
+}
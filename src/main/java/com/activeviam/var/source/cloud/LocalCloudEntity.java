@@ -0,0 +1,165 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * {@link ICloudEntity} backed by a file of the local file system.
+ *
+ * @author ActiveViam
+ */
+public class LocalCloudEntity implements ICloudEntity<Path> {
+
+	/** The directory acting as the bucket */
+	protected final Path root;
+	/** The file */
+	protected final Path file;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param root the directory acting as the bucket
+	 * @param file the file
+	 */
+	public LocalCloudEntity(final Path root, final Path file) {
+		this.root = root;
+		this.file = file;
+	}
+
+	@Override
+	public String getBucket() {
+		return this.root.toString();
+	}
+
+	@Override
+	public String getKey() {
+		return LocalCloudDirectory.toKey(this.root, this.file);
+	}
+
+	@Override
+	public Path getInner() {
+		return this.file;
+	}
+
+	@Override
+	public long getLength() {
+		try {
+			return Files.size(this.file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the size of " + this.file, e);
+		}
+	}
+
+	@Override
+	public Date getLastModified() {
+		try {
+			return new Date(Files.getLastModifiedTime(this.file).toMillis());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the modification date of " + this.file, e);
+		}
+	}
+
+	@Override
+	public Map<String, String> getMetadata() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public boolean exists() {
+		return Files.isRegularFile(this.file);
+	}
+
+	@Override
+	public InputStream download(final long start, final long end) throws IOException {
+		final InputStream input = Files.newInputStream(this.file);
+		long skipped = 0;
+		while (skipped < start) {
+			final long n = input.skip(start - skipped);
+			if (n <= 0) {
+				input.close();
+				throw new IOException("Cannot skip to " + start + " in " + this.file);
+			}
+			skipped += n;
+		}
+		return new BoundedInputStream(input, end - start);
+	}
+
+	@Override
+	public void upload(final InputStream stream, final long length) throws IOException {
+		Files.copy(stream, this.file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public boolean delete() {
+		try {
+			return Files.deleteIfExists(this.file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot delete " + this.file, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LocalCloudEntity[" + this.file + "]";
+	}
+
+	/**
+	 * Stream reading at most a given number of bytes of an underlying stream.
+	 */
+	static class BoundedInputStream extends InputStream {
+
+		private final InputStream input;
+		private long remaining;
+
+		BoundedInputStream(final InputStream input, final long length) {
+			this.input = input;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			final int b = this.input.read();
+			if (b >= 0) {
+				--this.remaining;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			final int read = this.input.read(buffer, offset, (int) Math.min(length, this.remaining));
+			if (read > 0) {
+				this.remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.input.close();
+		}
+
+	}
+
+}
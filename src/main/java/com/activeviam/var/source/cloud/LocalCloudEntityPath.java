@@ -0,0 +1,70 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@link ICloudEntityPath} of a file of the local file system.
+ *
+ * @author ActiveViam
+ */
+public class LocalCloudEntityPath implements ICloudEntityPath<Path> {
+
+	/** The directory acting as the bucket */
+	protected final Path root;
+	/** The file */
+	protected final Path file;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param root the directory acting as the bucket
+	 * @param file the file
+	 */
+	public LocalCloudEntityPath(final Path root, final Path file) {
+		this.root = root;
+		this.file = file;
+	}
+
+	/**
+	 * @return the file this path points to
+	 */
+	public Path getFile() {
+		return this.file;
+	}
+
+	@Override
+	public String getBucket() {
+		return this.root.toString();
+	}
+
+	@Override
+	public String getKey() {
+		return LocalCloudDirectory.toKey(this.root, this.file);
+	}
+
+	@Override
+	public ICloudEntity<Path> toEntity() {
+		return new LocalCloudEntity(this.root, this.file);
+	}
+
+	@Override
+	public boolean exists() {
+		return Files.isRegularFile(this.file);
+	}
+
+	@Override
+	public String toString() {
+		return "LocalCloudEntityPath[" + this.file + "]";
+	}
+
+}
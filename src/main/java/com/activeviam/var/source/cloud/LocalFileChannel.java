@@ -0,0 +1,113 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.AConcurrentlyFetchingChannel;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Channel reading a local file by parts fetched concurrently, like the channels of the cloud
+ * sources.
+ * <p>
+ * The parts are read with positional {@link FileChannel} reads, which are safe to run concurrently
+ * on the same file channel, so several parts of a file, typically the column chunks of a Parquet row
+ * group, are prefetched in parallel.
+ * <p>
+ * The parts are not read through a memory mapping: the fetching channel hands its own buffers to
+ * fill, so a mapping would only add a copy and the cost of mapping every part.
+ *
+ * @author ActiveViam
+ */
+public class LocalFileChannel extends AConcurrentlyFetchingChannel<Path> {
+
+	/** The path of the file being read */
+	protected final ICloudEntityPath<Path> path;
+
+	/** The file being read */
+	protected final Path file;
+
+	/** The channel of the file, shared by all the part fetches */
+	protected final FileChannel channel;
+
+	/** The interceptor of the part fetches */
+	protected final IFetchInterceptor interceptor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path the path of the file to read
+	 * @param config the configuration of the concurrent fetching of the parts
+	 * @param executor the executor fetching the parts
+	 * @param interceptor the interceptor of the part fetches
+	 */
+	public LocalFileChannel(
+			final ICloudEntityPath<Path> path,
+			final CloudFetchingConfig config,
+			final ExecutorService executor,
+			final IFetchInterceptor interceptor) {
+		super(path, config, executor);
+		this.path = path;
+		this.file = path.toEntity().getInner();
+		this.interceptor = interceptor;
+		try {
+			this.channel = FileChannel.open(this.file, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot open " + this.file, e);
+		}
+	}
+
+	@Override
+	protected void fetchBytes(final long start, final long end, final ByteBuffer destination)
+			throws IOException {
+		this.interceptor.fetch(this.path, start, end, destination, this::readBytes);
+	}
+
+	/**
+	 * Reads the bytes [start, end) of the file into the destination.
+	 * <p>
+	 * A read making no progress while the destination still has room fails instead of being retried
+	 * forever.
+	 */
+	protected void readBytes(final long start, final long end, final ByteBuffer destination)
+			throws IOException {
+		final int limit = destination.limit();
+		destination.limit(Math.toIntExact(destination.position() + end - start));
+		try {
+			long position = start;
+			while (destination.hasRemaining()) {
+				final int read = this.channel.read(destination, position);
+				if (read < 0) {
+					throw new IOException("Unexpected end of " + this.file + " at " + position);
+				}
+				if (read == 0) {
+					throw new IOException("No progress reading " + this.file + " at " + position);
+				}
+				position += read;
+			}
+		} finally {
+			destination.limit(limit);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+}
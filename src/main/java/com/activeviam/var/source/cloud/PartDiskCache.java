@@ -0,0 +1,369 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local disk cache of the parts fetched from the cloud.
+ * <p>
+ * The entries are content-addressed: their file name is a hash of the bucket, the key and the
+ * version (the ETag for Azure) of the entity, and of the fetched range, so an entity modified in the
+ * cloud is fetched again. Whole entities stored by {@link #prefetch(ICloudDirectory)} serve any
+ * range of the entity.
+ * <p>
+ * The size of the cache is capped, the least recently used entries being evicted first. The last
+ * modification time of the entry files records their last use, so the order survives restarts. Hits
+ * are read through a memory mapping of the entry.
+ * <p>
+ * The cache is best effort: an entry that cannot be read or written is fetched from the cloud.
+ *
+ * @author ActiveViam
+ */
+public class PartDiskCache implements IFetchInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(PartDiskCache.class.getSimpleName());
+
+	/** Extension of the entry files */
+	protected static final String ENTRY_EXTENSION = ".part";
+	/** Extension of the entry files being written */
+	protected static final String TEMP_EXTENSION = ".tmp";
+
+	/** The directory of the entries */
+	protected final Path directory;
+	/** The maximum total size of the entries, in bytes */
+	protected final long maxBytes;
+	/** The function giving the version of an entity */
+	protected final Function<ICloudEntity<?>, String> versionFunction;
+
+	/** Versions of the entities, by bucket and key, read once per entity */
+	protected final Map<String, String> versions = new ConcurrentHashMap<>();
+
+	/** Sizes of the entries by file name, from the least to the most recently used */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Total size of the entries */
+	private long totalBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong hitBytes = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * The entries already in the directory are kept, within the size cap.
+	 *
+	 * @param directory the directory of the entries
+	 * @param maxBytes the maximum total size of the entries, in bytes
+	 * @param versionFunction the function giving the version of an entity, which must change when
+	 * 		the entity is modified
+	 */
+	public PartDiskCache(
+			final Path directory,
+			final long maxBytes,
+			final Function<ICloudEntity<?>, String> versionFunction) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.versionFunction = versionFunction;
+		try {
+			Files.createDirectories(directory);
+			final List<Path> files;
+			try (final Stream<Path> stream = Files.list(directory)) {
+				files = stream.collect(Collectors.toList());
+			}
+			final Map<Path, Long> lastUses = new LinkedHashMap<>();
+			for (final Path file : files) {
+				final String name = file.getFileName().toString();
+				if (name.endsWith(TEMP_EXTENSION)) {
+					// Interrupted write
+					Files.deleteIfExists(file);
+				} else if (name.endsWith(ENTRY_EXTENSION)) {
+					lastUses.put(file, Files.getLastModifiedTime(file).toMillis());
+				}
+			}
+			synchronized (this) {
+				lastUses.entrySet().stream()
+						.sorted(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+						.forEach(e -> addEntry(e.getKey().getFileName().toString(), size(e.getKey())));
+				evict();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the cache " + directory, e);
+		}
+		LOGGER.info("Opened " + this);
+	}
+
+	@Override
+	public void fetch(
+			final ICloudEntityPath<?> path,
+			final long start,
+			final long end,
+			final ByteBuffer destination,
+			final IPartFetcher fetcher) throws IOException {
+		final String version = getVersion(path);
+		final String entity = path.getBucket() + "/" + path.getKey() + "@" + version;
+		final String rangeEntry = entryName(entity + ":" + start + "-" + end);
+		if (serve(rangeEntry, 0, end - start, destination)
+				|| serve(entryName(entity + ":full"), start, end - start, destination)) {
+			this.hits.incrementAndGet();
+			this.hitBytes.addAndGet(end - start);
+			return;
+		}
+
+		this.misses.incrementAndGet();
+		final int position = destination.position();
+		fetcher.fetch(start, end, destination);
+		final ByteBuffer part = destination.duplicate();
+		part.limit(position + (int) (end - start)).position(position);
+		store(rangeEntry, part);
+	}
+
+	/**
+	 * Downloads in the background the whole entities of a directory that are not cached yet, for
+	 * example the next business date to load.
+	 *
+	 * @param cloudDirectory the directory to prefetch, with its sub-directories
+	 * @return the thread downloading the entities
+	 */
+	public Thread prefetch(final ICloudDirectory<?> cloudDirectory) {
+		final Thread thread = new Thread(() -> {
+			final long before = System.nanoTime();
+			long bytes = 0;
+			try {
+				for (final ICloudEntity<?> entity : cloudDirectory.listEntities(true)) {
+					bytes += prefetch(entity);
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Cannot prefetch " + cloudDirectory.getPath(), e);
+				return;
+			}
+			LOGGER.info("Prefetched " + bytes + " bytes of " + cloudDirectory.getPath() + " in "
+					+ (System.nanoTime() - before) / 1000000L + "ms");
+		}, "cache-prefetch");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Downloads a whole entity into the cache if not cached yet.
+	 *
+	 * @return the number of downloaded bytes
+	 */
+	protected long prefetch(final ICloudEntity<?> entity) {
+		final String version = this.versionFunction.apply(entity);
+		this.versions.put(entity.getBucket() + "/" + entity.getKey(), version);
+		final String name = entryName(
+				entity.getBucket() + "/" + entity.getKey() + "@" + version + ":full");
+		final long length = entity.getLength();
+		synchronized (this) {
+			if (this.entries.containsKey(name) || length > this.maxBytes) {
+				return 0;
+			}
+		}
+		final Path temp = tempFile(name);
+		try (final InputStream input = entity.download(0, length)) {
+			Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+			commit(name, temp);
+			return length;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Cannot prefetch " + entity.getKey(), e);
+			deleteQuietly(temp);
+			return 0;
+		}
+	}
+
+	/**
+	 * Copies bytes of an entry into the destination, if the entry exists.
+	 *
+	 * @return {@code true} if the bytes were served from the entry
+	 */
+	protected boolean serve(
+			final String name,
+			final long offset,
+			final long length,
+			final ByteBuffer destination) {
+		synchronized (this) {
+			final Long size = this.entries.get(name);
+			if (size == null || offset + length > size) {
+				return false;
+			}
+		}
+		final Path file = this.directory.resolve(name);
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			destination.put(channel.map(MapMode.READ_ONLY, offset, length));
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return true;
+		} catch (NoSuchFileException e) {
+			// Evicted meanwhile
+			removeEntry(name);
+			return false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot read the cache entry " + file, e);
+			removeEntry(name);
+			deleteQuietly(file);
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the bytes of a part into an entry.
+	 */
+	protected void store(final String name, final ByteBuffer part) {
+		if (part.remaining() > this.maxBytes) {
+			return;
+		}
+		final Path temp = tempFile(name);
+		try (final FileChannel channel = FileChannel.open(
+				temp,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			while (part.hasRemaining()) {
+				channel.write(part);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot write the cache entry " + name, e);
+			deleteQuietly(temp);
+			return;
+		}
+		try {
+			commit(name, temp);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot write the cache entry " + name, e);
+			deleteQuietly(temp);
+		}
+	}
+
+	/**
+	 * Atomically publishes a written entry, then evicts entries above the size cap.
+	 */
+	protected void commit(final String name, final Path temp) throws IOException {
+		final long size = Files.size(temp);
+		Files.move(
+				temp,
+				this.directory.resolve(name),
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		synchronized (this) {
+			addEntry(name, size);
+			evict();
+		}
+	}
+
+	/**
+	 * @return the version of the entity of a path
+	 */
+	protected String getVersion(final ICloudEntityPath<?> path) {
+		return this.versions.computeIfAbsent(
+				path.getBucket() + "/" + path.getKey(),
+				key -> this.versionFunction.apply(path.toEntity()));
+	}
+
+	private void addEntry(final String name, final long size) {
+		final Long previous = this.entries.put(name, size);
+		this.totalBytes += size - (previous == null ? 0 : previous);
+	}
+
+	private synchronized void removeEntry(final String name) {
+		final Long size = this.entries.remove(name);
+		if (size != null) {
+			this.totalBytes -= size;
+		}
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+		while (this.totalBytes > this.maxBytes && iterator.hasNext()) {
+			final Map.Entry<String, Long> entry = iterator.next();
+			iterator.remove();
+			this.totalBytes -= entry.getValue();
+			deleteQuietly(this.directory.resolve(entry.getKey()));
+		}
+	}
+
+	/**
+	 * @return the file into which the current thread writes an entry
+	 */
+	protected Path tempFile(final String name) {
+		return this.directory.resolve(name + "." + Thread.currentThread().getId() + TEMP_EXTENSION);
+	}
+
+	/**
+	 * @return the name of the entry file of a key
+	 */
+	protected static String entryName(final String key) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256")
+					.digest(key.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder name = new StringBuilder(digest.length * 2 + ENTRY_EXTENSION.length());
+			for (final byte b : digest) {
+				name.append(Character.forDigit((b >> 4) & 0xF, 16))
+						.append(Character.forDigit(b & 0xF, 16));
+			}
+			return name.append(ENTRY_EXTENSION).toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static long size(final Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the size of " + file, e);
+		}
+	}
+
+	private static void deleteQuietly(final Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Cannot delete " + file, e);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PartDiskCache [directory=" + this.directory
+				+ ", entries=" + this.entries.size()
+				+ ", bytes=" + this.totalBytes + "/" + this.maxBytes
+				+ ", hits=" + this.hits.get() + " (" + this.hitBytes.get() + " bytes)"
+				+ ", misses=" + this.misses.get() + "]";
+	}
+
+}
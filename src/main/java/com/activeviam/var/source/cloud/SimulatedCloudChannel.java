@@ -0,0 +1,58 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import com.activeviam.cloud.fetch.impl.CloudFetchingConfig;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Channel reading a local file as if it were a blob stored in the cloud.
+ * <p>
+ * Every part fetch goes through the latency, bandwidth and failures of a {@link CloudSimulation},
+ * which allows to exercise and tune the cloud loading path offline, with {@link
+ * LocalCloudDirectory}.
+ *
+ * @author ActiveViam
+ */
+public class SimulatedCloudChannel extends LocalFileChannel {
+
+	/** The simulated network */
+	protected final CloudSimulation simulation;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path the path of the file to read
+	 * @param config the configuration of the concurrent fetching of the parts
+	 * @param executor the executor fetching the parts
+	 * @param simulation the simulated network
+	 * @param interceptor the interceptor of the part fetches
+	 */
+	public SimulatedCloudChannel(
+			final ICloudEntityPath<Path> path,
+			final CloudFetchingConfig config,
+			final ExecutorService executor,
+			final CloudSimulation simulation,
+			final IFetchInterceptor interceptor) {
+		super(path, config, executor, interceptor);
+		this.simulation = simulation;
+	}
+
+	@Override
+	protected void readBytes(final long start, final long end, final ByteBuffer destination)
+			throws IOException {
+		this.simulation.request();
+		super.readBytes(start, end, destination);
+		this.simulation.transfer(end - start);
+	}
+
+}
@@ -0,0 +1,381 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.transaction.ITransactionManager;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link SplitCsvFileTopic} that also reads gzip ({@code .gz}) and zstd ({@code .zst}) compressed
+ * CSV files, without decompressing them to disk.
+ * <p>
+ * Decompression runs on its own executor and is pipelined with parsing: the decompressed bytes are
+ * cut on line ends and handed to the parsing executor as soon as they are available. zstd frames and
+ * BGZF members are located up front and decompressed in parallel. Other gzip files, and the files
+ * with a frame larger than {@link #MAX_FRAME_LENGTH} such as the single frame written by the
+ * {@code zstd} command, form a single stream, decompressed by one task of the decompression
+ * executor.
+ * <p>
+ * The number of decompressed chunks waiting to be parsed is bounded, so that the memory used by the
+ * pipeline does not depend on the size of the files.
+ *
+ * @author ActiveViam
+ */
+public class CompressedCsvFileTopic extends SplitCsvFileTopic {
+
+	/** Length of the chunks read from a gzip stream */
+	protected static final int STREAM_CHUNK_LENGTH = 4 * 1024 * 1024;
+
+	/**
+	 * Largest compressed frame decompressed at once. The files with a larger frame are decompressed
+	 * as a stream, by chunks of {@link #STREAM_CHUNK_LENGTH}.
+	 */
+	protected static final long MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	/** Marker of the end of a stream of decompressed chunks */
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	/** Executor running the decompression tasks */
+	protected final ExecutorService decompressionExecutor;
+
+	/** Maximum number of decompressed chunks in memory at once */
+	protected final int maxChunksInFlight;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the description of the store fed by this topic
+	 * @param columns the CSV columns, in file order
+	 * @param separator the field separator
+	 * @param vectorSeparator the separator of the elements of vector fields
+	 * @param vectorLength the expected length of vector fields
+	 * @param skippedLines the number of header lines to skip
+	 * @param partLength the target length in bytes of the ranges parsed in parallel
+	 * @param decompressionExecutor the executor running the decompression tasks
+	 * @param maxChunksInFlight the maximum number of decompressed chunks in memory at once
+	 */
+	public CompressedCsvFileTopic(
+			final IStoreDescription store,
+			final List<String> columns,
+			final char separator,
+			final char vectorSeparator,
+			final int vectorLength,
+			final int skippedLines,
+			final long partLength,
+			final ExecutorService decompressionExecutor,
+			final int maxChunksInFlight) {
+		super(store, columns, separator, vectorSeparator, vectorLength, skippedLines, partLength);
+		this.decompressionExecutor = decompressionExecutor;
+		this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+	}
+
+	/**
+	 * @param file a file
+	 * @return {@code true} if the file is compressed in a format supported by this topic
+	 */
+	public static boolean isCompressed(final Path file) {
+		final String name = file.getFileName().toString();
+		return name.endsWith(".gz") || name.endsWith(".zst");
+	}
+
+	@Override
+	public long load(final Path file, final ITransactionManager tm, final ExecutorService executor) {
+		if (!isCompressed(file)) {
+			return super.load(file, tm, executor);
+		}
+
+		final long before = System.nanoTime();
+		final Semaphore inFlight = new Semaphore(this.maxChunksInFlight);
+		final AtomicLong recordCount = new AtomicLong();
+		long decompressedBytes = 0;
+		// Once a parse task fails, the next ones are skipped without releasing their permit:
+		// release enough permits for the decompression to reach the next submission, which throws
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				final LoadTasks parseTasks = new LoadTasks(
+						executor,
+						() -> inFlight.release(this.maxChunksInFlight));
+				final Chunks chunks = decompress(file, channel, inFlight)) {
+
+			// Cut the decompressed chunks on line ends and parse them in parallel
+			byte[] partialLine = new byte[0];
+			int linesToSkip = this.skippedLines;
+			while (chunks.hasNext()) {
+				final byte[] chunk = chunks.next();
+				decompressedBytes += chunk.length;
+				int lastLineEnd = chunk.length - 1;
+				while (lastLineEnd >= 0 && chunk[lastLineEnd] != '\n') {
+					--lastLineEnd;
+				}
+				if (lastLineEnd < 0) {
+					partialLine = concat(partialLine, chunk, chunk.length);
+					inFlight.release();
+					continue;
+				}
+
+				final byte[] lines = concat(partialLine, chunk, lastLineEnd + 1);
+				partialLine = Arrays.copyOfRange(chunk, lastLineEnd + 1, chunk.length);
+				int start = 0;
+				for (; linesToSkip > 0 && start < lines.length; --linesToSkip) {
+					while (lines[start++] != '\n') {}
+				}
+				final int offset = start;
+				parseTasks.submit(() -> {
+					try {
+						return recordCount.addAndGet(
+								loadLines(ByteBuffer.wrap(lines, offset, lines.length - offset), tm));
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+			if (partialLine.length > 0 && linesToSkip == 0) {
+				recordCount.addAndGet(loadLines(ByteBuffer.wrap(partialLine), tm));
+			}
+			parseTasks.await();
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read " + file, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Cannot load " + file, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading " + file, e);
+		}
+
+		logParseRate(
+				this.storeName,
+				file,
+				recordCount.get(),
+				decompressedBytes,
+				System.nanoTime() - before);
+		return recordCount.get();
+	}
+
+	/**
+	 * Starts decompressing a file.
+	 * <p>
+	 * A permit of {@code inFlight} is taken before a chunk is decompressed, and must be released once
+	 * the chunk has been consumed.
+	 *
+	 * @return the decompressed chunks, in file order, to close once consumed or on failure
+	 */
+	protected Chunks decompress(
+			final Path file,
+			final FileChannel channel,
+			final Semaphore inFlight) throws IOException {
+		final boolean zstd = file.getFileName().toString().endsWith(".zst");
+		final List<long[]> frames = zstd
+				? CompressedFrames.zstdFrames(channel)
+				: CompressedFrames.bgzfMembers(channel);
+		if (frames != null && frames.stream().allMatch(f -> f[1] - f[0] <= MAX_FRAME_LENGTH)) {
+			return decompressFrames(channel, frames, zstd, inFlight);
+		} else {
+			return decompressStream(file, zstd, inFlight);
+		}
+	}
+
+	/**
+	 * Decompresses independent frames in parallel, keeping at most {@link #maxChunksInFlight} of them
+	 * in memory.
+	 */
+	private Chunks decompressFrames(
+			final FileChannel channel,
+			final List<long[]> frames,
+			final boolean zstd,
+			final Semaphore inFlight) {
+		final Iterator<long[]> remaining = frames.iterator();
+		final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		return new Chunks() {
+
+			@Override
+			public boolean hasNext() {
+				return !pending.isEmpty() || remaining.hasNext();
+			}
+
+			@Override
+			public void close() {
+				for (final Future<byte[]> frame : pending) {
+					frame.cancel(true);
+				}
+				pending.clear();
+			}
+
+			@Override
+			public byte[] next() {
+				// Keep the decompression executor busy while the previous chunks are being parsed
+				while (remaining.hasNext() && inFlight.tryAcquire()) {
+					final long[] frame = remaining.next();
+					pending.add(decompressionExecutor.submit(() -> {
+						final byte[] compressed = read(channel, frame[0], frame[1]);
+						return zstd ? decompressZstd(compressed) : decompressGzip(compressed);
+					}));
+				}
+				if (pending.isEmpty()) {
+					// Every permit is held by chunks being parsed: wait for one of them
+					inFlight.acquireUninterruptibly();
+					inFlight.release();
+					return next();
+				}
+				try {
+					return pending.poll().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while decompressing", e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Cannot decompress frame", e.getCause());
+				}
+			}
+		};
+	}
+
+	/**
+	 * Decompresses a gzip or zstd file sequentially, in a task of the decompression executor.
+	 * <p>
+	 * Closing the chunks interrupts that task if it is still running, and discards the chunks not
+	 * consumed yet.
+	 */
+	private Chunks decompressStream(final Path file, final boolean zstd, final Semaphore inFlight) {
+		final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(this.maxChunksInFlight + 1);
+		final Future<?> task = this.decompressionExecutor.submit(() -> {
+			try (final InputStream input = zstd
+					? new ZstdInputStream(
+							new BufferedInputStream(Files.newInputStream(file), 64 * 1024))
+					: new GZIPInputStream(Files.newInputStream(file), 64 * 1024)) {
+				while (true) {
+					inFlight.acquire();
+					final byte[] chunk = input.readNBytes(STREAM_CHUNK_LENGTH);
+					if (chunk.length == 0) {
+						inFlight.release();
+						break;
+					}
+					chunks.put(chunk);
+				}
+			} finally {
+				chunks.put(END_OF_STREAM);
+			}
+			return null;
+		});
+		return new Chunks() {
+
+			private byte[] next;
+
+			@Override
+			public void close() {
+				task.cancel(true);
+				// The task holds a permit per queued chunk, and never blocks on the end marker
+				chunks.clear();
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (this.next == null) {
+					try {
+						this.next = chunks.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted while decompressing " + file, e);
+					}
+				}
+				if (this.next == END_OF_STREAM) {
+					try {
+						// Surface the decompression errors
+						task.get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted while decompressing " + file, e);
+					} catch (ExecutionException e) {
+						throw new RuntimeException("Cannot decompress " + file, e.getCause());
+					}
+					return false;
+				}
+				return true;
+			}
+
+			@Override
+			public byte[] next() {
+				hasNext();
+				final byte[] chunk = this.next;
+				this.next = null;
+				return chunk;
+			}
+		};
+	}
+
+	private static byte[] read(final FileChannel channel, final long start, final long end)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at " + (start + buffer.position()));
+			}
+		}
+		return buffer.array();
+	}
+
+	private static byte[] decompressZstd(final byte[] frame) throws IOException {
+		final long size = Zstd.decompressedSize(frame);
+		if (size > 0 && size <= Integer.MAX_VALUE) {
+			return Zstd.decompress(frame, (int) size);
+		}
+		// The frame does not record its content size
+		try (final InputStream input = new ZstdInputStream(new ByteArrayInputStream(frame))) {
+			return input.readAllBytes();
+		}
+	}
+
+	private static byte[] decompressGzip(final byte[] member) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(member.length * 4);
+		try (final InputStream input = new GZIPInputStream(new ByteArrayInputStream(member))) {
+			input.transferTo(output);
+		}
+		return output.toByteArray();
+	}
+
+	/** Decompressed chunks of a file, in file order. */
+	protected interface Chunks extends Iterator<byte[]>, AutoCloseable {
+
+		/** Stops the decompression of the chunks not consumed yet. */
+		@Override
+		void close();
+
+	}
+
+	private static byte[] concat(final byte[] head, final byte[] tail, final int tailLength) {
+		if (head.length == 0) {
+			return Arrays.copyOf(tail, tailLength);
+		}
+		final byte[] result = Arrays.copyOf(head, head.length + tailLength);
+		System.arraycopy(tail, 0, result, head.length, tailLength);
+		return result;
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locates the independently compressed frames of gzip and zstd files, without decompressing them.
+ *
+ * @author ActiveViam
+ */
+public final class CompressedFrames {
+
+	/** Magic number of a zstd frame */
+	static final int ZSTD_MAGIC = 0xFD2FB528;
+	/** Mask of the magic numbers of zstd skippable frames */
+	static final int ZSTD_SKIPPABLE_MASK = 0xFFFFFFF0;
+	/** Magic number of zstd skippable frames, once masked */
+	static final int ZSTD_SKIPPABLE_MAGIC = 0x184D2A50;
+
+	private CompressedFrames() {}
+
+	/**
+	 * Lists the frames of a zstd file. Skippable frames are left out.
+	 *
+	 * @param channel the channel of the file
+	 * @return the [start, end) ranges of the frames
+	 * @throws IOException if the file cannot be read or is not a valid zstd file
+	 */
+	public static List<long[]> zstdFrames(final FileChannel channel) throws IOException {
+		final long size = channel.size();
+		final List<long[]> frames = new ArrayList<>();
+		long position = 0;
+		while (position < size) {
+			final int magic = readInt(channel, position);
+			if ((magic & ZSTD_SKIPPABLE_MASK) == ZSTD_SKIPPABLE_MAGIC) {
+				position += 8 + Integer.toUnsignedLong(readInt(channel, position + 4));
+				continue;
+			}
+			if (magic != ZSTD_MAGIC) {
+				throw new IOException("Invalid zstd frame at " + position);
+			}
+
+			final long start = position;
+			final int descriptor = readByte(channel, position + 4);
+			final int contentSizeFlag = descriptor >>> 6;
+			final boolean singleSegment = (descriptor & 0x20) != 0;
+			final boolean checksum = (descriptor & 0x04) != 0;
+			final int dictionaryIdFlag = descriptor & 0x03;
+
+			position += 5;
+			if (!singleSegment) {
+				position += 1; // Window descriptor
+			}
+			position += dictionaryIdFlag == 3 ? 4 : dictionaryIdFlag;
+			position += contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+
+			boolean lastBlock = false;
+			while (!lastBlock) {
+				final int header = readByte(channel, position)
+						| readByte(channel, position + 1) << 8
+						| readByte(channel, position + 2) << 16;
+				lastBlock = (header & 1) != 0;
+				final int blockType = (header >>> 1) & 3;
+				final int blockSize = header >>> 3;
+				switch (blockType) {
+					case 0: // Raw
+					case 2: // Compressed
+						position += 3 + blockSize;
+						break;
+					case 1: // RLE
+						position += 3 + 1;
+						break;
+					default:
+						throw new IOException("Reserved zstd block type at " + position);
+				}
+			}
+			if (checksum) {
+				position += 4;
+			}
+			if (position > size) {
+				throw new IOException("Truncated zstd frame at " + start);
+			}
+			frames.add(new long[] {start, position});
+		}
+		return frames;
+	}
+
+	/**
+	 * Lists the members of a BGZF file, i.e. a multi-member gzip file whose members record their
+	 * compressed size in a {@code BC} extra subfield, as written by {@code bgzip}.
+	 *
+	 * @param channel the channel of the file
+	 * @return the [start, end) ranges of the members, or {@code null} if the file is not a BGZF file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<long[]> bgzfMembers(final FileChannel channel) throws IOException {
+		final long size = channel.size();
+		final List<long[]> members = new ArrayList<>();
+		long position = 0;
+		while (position < size) {
+			final long blockSize = bgzfBlockSize(channel, position);
+			if (blockSize < 0) {
+				return null;
+			}
+			members.add(new long[] {position, position + blockSize});
+			position += blockSize;
+		}
+		return members;
+	}
+
+	/**
+	 * @return the total size of the BGZF member starting at {@code position}, or {@code -1} if it
+	 * 		does not have a {@code BC} subfield
+	 */
+	private static long bgzfBlockSize(final FileChannel channel, final long position)
+			throws IOException {
+		if (readByte(channel, position) != 0x1F
+				|| readByte(channel, position + 1) != 0x8B
+				|| readByte(channel, position + 2) != 8 // Deflate
+				|| (readByte(channel, position + 3) & 0x04) == 0) { // FEXTRA
+			return -1;
+		}
+		final int extraLength = readShort(channel, position + 10);
+		long subfield = position + 12;
+		final long extraEnd = subfield + extraLength;
+		while (subfield + 4 <= extraEnd) {
+			final int subfieldLength = readShort(channel, subfield + 2);
+			if (readByte(channel, subfield) == 'B'
+					&& readByte(channel, subfield + 1) == 'C'
+					&& subfieldLength == 2) {
+				return readShort(channel, subfield + 4) + 1;
+			}
+			subfield += 4 + subfieldLength;
+		}
+		return -1;
+	}
+
+	private static int readByte(final FileChannel channel, final long position) throws IOException {
+		return read(channel, position, 1).get() & 0xFF;
+	}
+
+	private static int readShort(final FileChannel channel, final long position) throws IOException {
+		return read(channel, position, 2).getShort() & 0xFFFF;
+	}
+
+	private static int readInt(final FileChannel channel, final long position) throws IOException {
+		return read(channel, position, 4).getInt();
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long position, final int length)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at " + position);
+			}
+		}
+		return buffer.flip();
+	}
+
+}
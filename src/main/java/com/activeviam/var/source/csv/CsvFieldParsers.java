@@ -0,0 +1,96 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import static com.qfs.literal.ILiteralType.DOUBLE;
+import static com.qfs.literal.ILiteralType.FLOAT;
+import static com.qfs.literal.ILiteralType.INT;
+import static com.qfs.literal.ILiteralType.LOCAL_DATE;
+import static com.qfs.literal.ILiteralType.LONG;
+import static com.qfs.literal.ILiteralType.STRING;
+
+import com.activeviam.var.generator.VectorPrecision;
+import java.time.LocalDate;
+
+/**
+ * Parsers converting a range of characters of a CSV line into the value of a datastore field.
+ *
+ * @author ActiveViam
+ */
+public final class CsvFieldParsers {
+
+	/**
+	 * Parses the characters of a field.
+	 */
+	@FunctionalInterface
+	public interface IRangeParser {
+
+		/**
+		 * @param text the line
+		 * @param start the index of the first character of the field
+		 * @param end the index after the last character of the field
+		 * @return the value of the field
+		 */
+		Object parse(CharSequence text, int start, int end);
+
+	}
+
+	private CsvFieldParsers() {}
+
+	/**
+	 * Gets the parser for a datastore field type.
+	 *
+	 * @param type the type of the datastore field, as found in the store description
+	 * @param vectorSeparator the separator of the elements of vector fields
+	 * @param vectorLength the expected length of vector fields
+	 * @return the parser
+	 */
+	public static IRangeParser forType(
+			final String type,
+			final char vectorSeparator,
+			final int vectorLength) {
+		switch (type) {
+			case INT:
+				return (text, start, end) -> start == end
+						? null
+						: Integer.parseInt(text, start, end, 10);
+			case LONG:
+				return (text, start, end) -> start == end
+						? null
+						: Long.parseLong(text, start, end, 10);
+			case DOUBLE:
+				return (text, start, end) -> start == end
+						? null
+						: FastDoubleParser.parseDouble(text, start, end);
+			case FLOAT:
+				return (text, start, end) -> start == end
+						? null
+						: (float) FastDoubleParser.parseDouble(text, start, end);
+			case STRING:
+				return (text, start, end) -> text.subSequence(start, end).toString();
+			case LOCAL_DATE:
+				return (text, start, end) -> start == end
+						? null
+						: LocalDate.parse(text.subSequence(start, end));
+			case "double[]":
+				final FastDoubleVectorParser vectorParser =
+						new FastDoubleVectorParser(vectorSeparator, vectorLength);
+				return vectorParser::parse;
+			case "float[]":
+			case "int[]":
+				final FastVectorParser narrowingParser = new FastVectorParser(
+						vectorSeparator,
+						vectorLength,
+						VectorPrecision.ofDataType(type));
+				return narrowingParser::parse;
+			default:
+				throw new IllegalArgumentException("Unsupported field type for split CSV files: " + type);
+		}
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import java.math.BigInteger;
+
+/**
+ * Parses decimal doubles directly from a character range, without creating intermediate strings.
+ * <p>
+ * The decimal significand is accumulated into a {@code long} and converted with the Clinger fast
+ * path when it is exact, and with the Eisel-Lemire algorithm otherwise. The few inputs those two
+ * cannot round correctly (more than 18 significant digits, half-way cases, subnormals, NaN or
+ * Infinity) fall back to {@link Double#parseDouble(String)}, so the result is always identical to
+ * the JDK.
+ *
+ * @author ActiveViam
+ */
+public final class FastDoubleParser {
+
+	/** Smallest power of ten of the {@link #POW10_MANTISSAS} table */
+	private static final int MIN_EXP10 = -348;
+	/** Largest power of ten of the {@link #POW10_MANTISSAS} table */
+	private static final int MAX_EXP10 = 347;
+
+	/** Significant digits that always fit in a positive {@code long} */
+	private static final int MAX_DIGITS = 18;
+
+	/** Powers of ten that are exactly represented as doubles */
+	private static final double[] EXACT_POW10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/**
+	 * 128-bit normalized mantissas of the powers of ten, rounded down, as pairs of (high, low) 64-bit
+	 * words.
+	 */
+	private static final long[] POW10_MANTISSAS = computePow10Mantissas();
+
+	private FastDoubleParser() {}
+
+	/**
+	 * Parses the double written in {@code text} between {@code start} (inclusive) and {@code end}
+	 * (exclusive).
+	 *
+	 * @param text the characters to read
+	 * @param start the index of the first character of the number
+	 * @param end the index after the last character of the number
+	 * @return the parsed value
+	 * @throws NumberFormatException if the range is not a valid number
+	 */
+	public static double parseDouble(final CharSequence text, final int start, final int end) {
+		int i = start;
+		if (i >= end) {
+			throw new NumberFormatException("Empty number at index " + start);
+		}
+
+		boolean negative = false;
+		char c = text.charAt(i);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			if (++i >= end) {
+				return slowParse(text, start, end);
+			}
+		}
+
+		long significand = 0;
+		int digits = 0;
+		int exp10 = 0;
+		boolean seenDigit = false;
+
+		// Integer part
+		for (; i < end && isDigit(c = text.charAt(i)); ++i) {
+			seenDigit = true;
+			if (significand != 0 || c != '0') {
+				if (digits == MAX_DIGITS) {
+					return slowParse(text, start, end);
+				}
+				significand = significand * 10 + (c - '0');
+				++digits;
+			}
+		}
+		// Fractional part
+		if (i < end && text.charAt(i) == '.') {
+			for (++i; i < end && isDigit(c = text.charAt(i)); ++i) {
+				seenDigit = true;
+				if (significand != 0 || c != '0') {
+					if (digits == MAX_DIGITS) {
+						return slowParse(text, start, end);
+					}
+					significand = significand * 10 + (c - '0');
+					++digits;
+				}
+				--exp10;
+			}
+		}
+		if (!seenDigit) {
+			// NaN, Infinity or garbage: let the JDK decide
+			return slowParse(text, start, end);
+		}
+		// Exponent part
+		if (i < end && ((c = text.charAt(i)) == 'e' || c == 'E')) {
+			if (++i >= end) {
+				return slowParse(text, start, end);
+			}
+			boolean negativeExponent = false;
+			c = text.charAt(i);
+			if (c == '-' || c == '+') {
+				negativeExponent = c == '-';
+				++i;
+			}
+			if (i >= end) {
+				return slowParse(text, start, end);
+			}
+			int exponent = 0;
+			for (; i < end && isDigit(c = text.charAt(i)); ++i) {
+				if (exponent < 100_000) {
+					exponent = exponent * 10 + (c - '0');
+				}
+			}
+			exp10 += negativeExponent ? -exponent : exponent;
+		}
+		if (i != end) {
+			return slowParse(text, start, end);
+		}
+
+		if (significand == 0) {
+			return negative ? -0d : 0d;
+		}
+		// Clinger fast path: both operands are exact so IEEE division/multiplication rounds correctly
+		if (exp10 >= -22 && exp10 <= 22 && significand <= (1L << 53)) {
+			final double value = exp10 < 0
+					? significand / EXACT_POW10[-exp10]
+					: significand * EXACT_POW10[exp10];
+			return negative ? -value : value;
+		}
+		final long bits = eiselLemire(significand, exp10);
+		if (bits < 0) {
+			return slowParse(text, start, end);
+		}
+		return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static double slowParse(final CharSequence text, final int start, final int end) {
+		return Double.parseDouble(text.subSequence(start, end).toString());
+	}
+
+	/**
+	 * Eisel-Lemire conversion of {@code significand * 10^exp10} into the bits of a positive double.
+	 *
+	 * @return the raw bits of the double, or {@code -1} when the result cannot be decided
+	 */
+	private static long eiselLemire(long significand, final int exp10) {
+		if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10) {
+			return -1;
+		}
+		final int lz = Long.numberOfLeadingZeros(significand);
+		significand <<= lz;
+		long exp2 = ((217706L * exp10) >> 16) + 64 + 1023 - lz;
+
+		final int index = (exp10 - MIN_EXP10) << 1;
+		long hi = unsignedMultiplyHigh(significand, POW10_MANTISSAS[index]);
+		long lo = significand * POW10_MANTISSAS[index];
+		if ((hi & 0x1FF) == 0x1FF && Long.compareUnsigned(lo + significand, significand) < 0) {
+			// Not enough precision with 64 bits of the power of ten, use the full 128 bits
+			final long yHi = unsignedMultiplyHigh(significand, POW10_MANTISSAS[index + 1]);
+			final long yLo = significand * POW10_MANTISSAS[index + 1];
+			long mergedHi = hi;
+			final long mergedLo = lo + yHi;
+			if (Long.compareUnsigned(mergedLo, lo) < 0) {
+				++mergedHi;
+			}
+			if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0
+					&& Long.compareUnsigned(yLo + significand, significand) < 0) {
+				return -1;
+			}
+			hi = mergedHi;
+			lo = mergedLo;
+		}
+
+		final long msb = hi >>> 63;
+		long mantissa = hi >>> (msb + 9);
+		exp2 -= 1 ^ msb;
+		if (lo == 0 && (hi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+			// Half-way between two doubles
+			return -1;
+		}
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if ((mantissa >>> 53) > 0) {
+			mantissa >>>= 1;
+			++exp2;
+		}
+		if (exp2 <= 0 || exp2 >= 0x7FF) {
+			// Subnormal or overflow
+			return -1;
+		}
+		return (exp2 << 52) | (mantissa & 0x000F_FFFF_FFFF_FFFFL);
+	}
+
+	private static long unsignedMultiplyHigh(final long x, final long y) {
+		return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+
+	private static long[] computePow10Mantissas() {
+		final long[] table = new long[(MAX_EXP10 - MIN_EXP10 + 1) * 2];
+		final BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		for (int e = MIN_EXP10; e <= MAX_EXP10; ++e) {
+			final BigInteger mantissa;
+			if (e >= 0) {
+				final BigInteger pow = BigInteger.TEN.pow(e);
+				final int shift = pow.bitLength() - 128;
+				mantissa = shift > 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+			} else {
+				final BigInteger pow = BigInteger.TEN.pow(-e);
+				mantissa = BigInteger.ONE.shiftLeft(127 + pow.bitLength()).divide(pow);
+			}
+			final int index = (e - MIN_EXP10) << 1;
+			table[index] = mantissa.shiftRight(64).longValue();
+			table[index + 1] = mantissa.and(mask).longValue();
+		}
+		return table;
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import com.quartetfs.fwk.format.IParser;
+import java.util.Arrays;
+
+/**
+ * Field parser for the pnl vectors of the CSV risk files.
+ * <p>
+ * The generic {@code double[]} parser splits the field into one substring per scenario before
+ * parsing each of them. This parser scans the field once, parsing every element in place with
+ * {@link FastDoubleParser}, and writes them directly into an array sized after the expected vector
+ * length.
+ * <p>
+ * Only the {@link SplitCsvFileTopic split topics} call {@link #parse(CharSequence, int, int)} on
+ * the raw bytes of the file. Through the CSV source, the field is still handed over as a
+ * {@code String} by {@link #parse(String)}: list the Risks in {@code csvSource.split-topics} to
+ * parse the vectors without these strings.
+ *
+ * @author ActiveViam
+ */
+public class FastDoubleVectorParser implements IParser<double[]> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Plugin key of this parser */
+	public static final String KEY = "fastDoubleVector";
+
+	/** Separator between two elements of the vector */
+	protected final char separator;
+
+	/** Expected length of the parsed vectors, used to size the arrays up front */
+	protected final int expectedLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param separator the separator between two elements of the vector
+	 * @param expectedLength the expected length of the vectors
+	 */
+	public FastDoubleVectorParser(final char separator, final int expectedLength) {
+		this.separator = separator;
+		this.expectedLength = expectedLength;
+	}
+
+	@Override
+	public double[] parse(final String text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses the vector written between {@code start} (inclusive) and {@code end} (exclusive).
+	 *
+	 * @param text the characters to read
+	 * @param start the index of the first character of the vector
+	 * @param end the index after the last character of the vector
+	 * @return the parsed vector, or {@code null} if the range is empty
+	 */
+	public double[] parse(final CharSequence text, final int start, final int end) {
+		if (start >= end) {
+			return null;
+		}
+
+		double[] vector = new double[Math.max(1, this.expectedLength)];
+		int size = 0;
+		int elementStart = start;
+		for (int i = start; i <= end; ++i) {
+			if (i == end || text.charAt(i) == this.separator) {
+				if (size == vector.length) {
+					vector = Arrays.copyOf(vector, vector.length * 2);
+				}
+				vector[size++] = FastDoubleParser.parseDouble(text, elementStart, i);
+				elementStart = i + 1;
+			}
+		}
+
+		return size == vector.length ? vector : Arrays.copyOf(vector, size);
+	}
+
+	@Override
+	public String key() {
+		return KEY;
+	}
+
+	@Override
+	public String description() {
+		return "Parses vectors of doubles separated by '" + this.separator + "' in a single pass";
+	}
+
+}
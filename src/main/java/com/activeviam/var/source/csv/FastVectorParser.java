@@ -0,0 +1,76 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import com.activeviam.var.generator.VectorPrecision;
+import com.quartetfs.fwk.format.IParser;
+
+/**
+ * Field parser for the pnl vectors of the CSV risk files written in a {@link VectorPrecision}.
+ * <p>
+ * The elements are parsed in a single pass by {@link FastDoubleVectorParser}, then narrowed into
+ * the {@code float[]} or {@code int[]} vector of the field.
+ *
+ * @author ActiveViam
+ */
+public class FastVectorParser implements IParser<Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Plugin key of this parser */
+	public static final String KEY = "fastVector";
+
+	/** The parser of the elements */
+	protected final FastDoubleVectorParser elementParser;
+
+	/** The precision of the parsed vectors */
+	protected final VectorPrecision precision;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param separator the separator between two elements of the vector
+	 * @param expectedLength the expected length of the vectors
+	 * @param precision the precision of the vectors
+	 */
+	public FastVectorParser(
+			final char separator,
+			final int expectedLength,
+			final VectorPrecision precision) {
+		this.elementParser = new FastDoubleVectorParser(separator, expectedLength);
+		this.precision = precision;
+	}
+
+	@Override
+	public Object parse(final String text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses the vector written between {@code start} (inclusive) and {@code end} (exclusive).
+	 *
+	 * @param text the characters to read
+	 * @param start the index of the first character of the vector
+	 * @param end the index after the last character of the vector
+	 * @return the parsed vector, or {@code null} if the range is empty
+	 */
+	public Object parse(final CharSequence text, final int start, final int end) {
+		return this.precision.fromElements(this.elementParser.parse(text, start, end));
+	}
+
+	@Override
+	public String key() {
+		return KEY;
+	}
+
+	@Override
+	public String description() {
+		return "Parses vectors of " + this.precision.getDataType() + " in a single pass";
+	}
+
+}
@@ -0,0 +1,186 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The parallel tasks loading the parts of a file into the same transaction.
+ * <p>
+ * As soon as one of them fails, the others are cancelled: the tasks not started yet never run,
+ * the running ones are interrupted, and the failure is only rethrown once all of them have
+ * stopped, so that none keeps adding records to a transaction about to be rolled back. Closing
+ * them cancels them the same way, for the failures outside of the tasks.
+ *
+ * @author ActiveViam
+ */
+public class LoadTasks implements AutoCloseable {
+
+	/** The executor running the tasks */
+	protected final ExecutorService executor;
+	/** Called once, on the first failure of a task */
+	protected final Runnable onFailure;
+	/** The futures of the submitted tasks */
+	protected final List<Future<?>> futures = new ArrayList<>();
+
+	/** Whether the tasks were cancelled, guarded by {@code this} */
+	protected boolean cancelled;
+	/** Number of submitted tasks not completed yet, guarded by {@code this} */
+	protected int pending;
+	/** Number of tasks currently running, guarded by {@code this} */
+	protected int running;
+	/** The first failure of a task, guarded by {@code this} */
+	protected Throwable failure;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor the executor running the tasks
+	 */
+	public LoadTasks(final ExecutorService executor) {
+		this(executor, () -> {});
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor the executor running the tasks
+	 * @param onFailure called once, on the first failure of a task, for instance to release the
+	 * 		resources that the skipped tasks would have released
+	 */
+	public LoadTasks(final ExecutorService executor, final Runnable onFailure) {
+		this.executor = executor;
+		this.onFailure = onFailure;
+	}
+
+	/**
+	 * Submits a task.
+	 *
+	 * @param task the task
+	 * @throws ExecutionException if a task already failed, once all the tasks have stopped
+	 */
+	public void submit(final Callable<?> task) throws ExecutionException {
+		synchronized (this) {
+			if (this.failure == null) {
+				++this.pending;
+			}
+		}
+		checkFailure();
+
+		final Future<?> future;
+		try {
+			future = this.executor.submit(() -> run(task));
+		} catch (RejectedExecutionException e) {
+			synchronized (this) {
+				--this.pending;
+			}
+			throw e;
+		}
+		this.futures.add(future);
+	}
+
+	private Object run(final Callable<?> task) throws Exception {
+		synchronized (this) {
+			if (this.cancelled || this.failure != null) {
+				--this.pending;
+				notifyAll();
+				return null;
+			}
+			++this.running;
+		}
+		try {
+			return task.call();
+		} catch (Throwable t) {
+			final boolean first;
+			synchronized (this) {
+				first = this.failure == null;
+				if (first) {
+					this.failure = t;
+				}
+			}
+			if (first) {
+				this.onFailure.run();
+			}
+			throw t;
+		} finally {
+			synchronized (this) {
+				--this.running;
+				--this.pending;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the completion of all the submitted tasks, or for the first failure.
+	 *
+	 * @throws ExecutionException if a task failed, once all the tasks have stopped
+	 * @throws InterruptedException if interrupted, once all the tasks have stopped
+	 */
+	public void await() throws ExecutionException, InterruptedException {
+		try {
+			synchronized (this) {
+				while (this.pending > 0 && this.failure == null) {
+					wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel();
+			throw e;
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() throws ExecutionException {
+		final Throwable failure;
+		synchronized (this) {
+			failure = this.failure;
+		}
+		if (failure != null) {
+			cancel();
+			throw new ExecutionException(failure);
+		}
+	}
+
+	/** Cancels the tasks not completed yet, and waits for the running ones to stop. */
+	@Override
+	public void close() {
+		cancel();
+	}
+
+	/** Cancels the tasks, and waits for the running ones to stop. */
+	public void cancel() {
+		synchronized (this) {
+			this.cancelled = true;
+		}
+		for (final Future<?> future : this.futures) {
+			future.cancel(true);
+		}
+
+		boolean interrupted = false;
+		synchronized (this) {
+			while (this.running > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
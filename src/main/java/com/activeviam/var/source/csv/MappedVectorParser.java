@@ -0,0 +1,76 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.quartetfs.fwk.format.IParser;
+
+/**
+ * Field parser writing the pnl vectors of the CSV risk files into a {@link MappedVectorFile}, the
+ * field holding their offset in the file.
+ *
+ * @author ActiveViam
+ */
+public class MappedVectorParser implements IParser<Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Plugin key of this parser */
+	public static final String KEY = "mappedVector";
+
+	/** The parser of the vectors, in the precision of the file */
+	protected final FastVectorParser vectorParser;
+
+	/** The file the vectors are written to */
+	protected final transient MappedVectorFile vectorFile;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param separator the separator between two elements of the vector
+	 * @param expectedLength the expected length of the vectors
+	 * @param vectorFile the file the vectors are written to
+	 */
+	public MappedVectorParser(
+			final char separator,
+			final int expectedLength,
+			final MappedVectorFile vectorFile) {
+		this.vectorParser =
+				new FastVectorParser(separator, expectedLength, vectorFile.getPrecision());
+		this.vectorFile = vectorFile;
+	}
+
+	@Override
+	public Object parse(final String text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses the vector written between {@code start} (inclusive) and {@code end} (exclusive), and
+	 * writes it into the file.
+	 *
+	 * @param text the characters to read
+	 * @param start the index of the first character of the vector
+	 * @param end the index after the last character of the vector
+	 * @return the offset of the vector in the file, or {@code null} if the range is empty
+	 */
+	public Object parse(final CharSequence text, final int start, final int end) {
+		return this.vectorFile.write(this.vectorParser.parse(text, start, end));
+	}
+
+	@Override
+	public String key() {
+		return KEY;
+	}
+
+	@Override
+	public String description() {
+		return "Writes the parsed vectors into " + this.vectorFile;
+	}
+
+}
@@ -0,0 +1,394 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import com.activeviam.var.source.csv.CsvFieldParsers.IRangeParser;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.transaction.ITransactionManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * CSV topic reading a single large file in parallel.
+ * <p>
+ * The file is cut into byte ranges aligned on line ends. Each range is memory-mapped and parsed by
+ * its own task, and the records are added to the current transaction by batches. The first
+ * {@code skippedLines} lines of the file are ignored, as with
+ * {@link com.qfs.msg.csv.ICSVParserConfiguration#setNumberSkippedLines(int)}.
+ * <p>
+ * Lines must be UTF-8 encoded and the separator must be an ASCII character.
+ * <p>
+ * The columns that do not feed a field of the store are not parsed, and the columns following the
+ * last one feeding a field are not even scanned.
+ *
+ * @author ActiveViam
+ */
+public class SplitCsvFileTopic {
+
+	private static final Logger LOGGER = Logger.getLogger(SplitCsvFileTopic.class.getSimpleName());
+
+	/** Number of records added to the transaction at once */
+	protected static final int BATCH_SIZE = 1024;
+
+	/** Largest byte range handled by a single task, bounded by the size of a mapping */
+	protected static final long MAX_PART_LENGTH = Integer.MAX_VALUE;
+
+	/** Name of the store fed by this topic */
+	protected final String storeName;
+	/** The CSV columns, in file order */
+	protected final List<String> columns;
+	/** The field separator */
+	protected final char separator;
+	/** Number of header lines to skip at the start of the file */
+	protected final int skippedLines;
+	/** Target length of the byte ranges */
+	protected final long partLength;
+
+	/** For each CSV column, index of the store field it feeds, or {@code -1} */
+	protected final int[] fieldIndexes;
+	/** For each CSV column, the parser of its values */
+	protected final IRangeParser[] parsers;
+	/** Number of fields of the store records */
+	protected final int recordLength;
+	/** Index of the last CSV column feeding a store field */
+	protected final int lastColumn;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the description of the store fed by this topic
+	 * @param columns the CSV columns, in file order
+	 * @param separator the field separator
+	 * @param vectorSeparator the separator of the elements of vector fields
+	 * @param vectorLength the expected length of vector fields
+	 * @param skippedLines the number of header lines to skip
+	 * @param partLength the target length in bytes of the ranges parsed in parallel
+	 */
+	public SplitCsvFileTopic(
+			final IStoreDescription store,
+			final List<String> columns,
+			final char separator,
+			final char vectorSeparator,
+			final int vectorLength,
+			final int skippedLines,
+			final long partLength) {
+		if (separator > 0x7F) {
+			throw new IllegalArgumentException("The separator must be an ASCII character: " + separator);
+		}
+		this.storeName = store.getName();
+		this.columns = columns;
+		this.separator = separator;
+		this.skippedLines = skippedLines;
+		this.partLength = Math.max(1, Math.min(partLength, MAX_PART_LENGTH));
+
+		final List<? extends IFieldDescription> fields = store.getFields();
+		this.recordLength = fields.size();
+		this.fieldIndexes = new int[columns.size()];
+		this.parsers = new IRangeParser[columns.size()];
+		int lastColumn = -1;
+		for (int c = 0; c < columns.size(); ++c) {
+			this.fieldIndexes[c] = -1;
+			for (int f = 0; f < fields.size(); ++f) {
+				if (fields.get(f).getName().equals(columns.get(c))) {
+					this.fieldIndexes[c] = f;
+					this.parsers[c] = CsvFieldParsers.forType(
+							fields.get(f).getDataType(),
+							vectorSeparator,
+							vectorLength);
+					lastColumn = c;
+					break;
+				}
+			}
+		}
+		this.lastColumn = lastColumn;
+	}
+
+	/**
+	 * Replaces the parser of a column feeding a store field.
+	 *
+	 * @param column the CSV column
+	 * @param parser the parser of the values of the column
+	 */
+	public void overrideParser(final String column, final IRangeParser parser) {
+		final int c = this.columns.indexOf(column);
+		if (c < 0 || this.fieldIndexes[c] < 0) {
+			throw new IllegalArgumentException("The column " + column + " feeds no field of "
+					+ this.storeName);
+		}
+		this.parsers[c] = parser;
+	}
+
+	/**
+	 * Loads a file into the store, within the current transaction.
+	 * <p>
+	 * If the load of a range fails, the other ranges are cancelled and the failure is only thrown
+	 * once none of them is adding records to the transaction anymore.
+	 *
+	 * @param file the CSV file to load
+	 * @param tm the transaction manager, with a started transaction
+	 * @param executor the executor parsing the byte ranges
+	 * @return the number of loaded records
+	 */
+	public long load(final Path file, final ITransactionManager tm, final ExecutorService executor) {
+		final long before = System.nanoTime();
+		final AtomicLong recordCount = new AtomicLong();
+		final long size;
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				final LoadTasks tasks = new LoadTasks(executor)) {
+			size = channel.size();
+			for (final long[] range : split(channel)) {
+				tasks.submit(() -> {
+					recordCount.addAndGet(loadRange(channel, range[0], range[1], tm));
+					return null;
+				});
+			}
+			tasks.await();
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read " + file, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Cannot load " + file, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading " + file, e);
+		}
+
+		final long elapsed = System.nanoTime() - before;
+		logParseRate(this.storeName, file, recordCount.get(), size, elapsed);
+		return recordCount.get();
+	}
+
+	/**
+	 * Logs the end-to-end parse rate of a file: read, parsed and added to the transaction.
+	 *
+	 * @param store the name of the store fed by the file
+	 * @param file the file
+	 * @param records the number of loaded records
+	 * @param bytes the size of the file
+	 * @param nanos the duration of the load
+	 */
+	protected static void logParseRate(
+			final String store,
+			final Path file,
+			final long records,
+			final long bytes,
+			final long nanos) {
+		final double seconds = Math.max(nanos, 1L) / 1e9;
+		LOGGER.info(String.format(
+				"Loaded %d records (%.1fMB) from %s into %s in %dms: %.0f records/s, %.1fMB/s",
+				records,
+				bytes / 1e6,
+				file,
+				store,
+				nanos / 1000000L,
+				records / seconds,
+				bytes / 1e6 / seconds));
+	}
+
+	/**
+	 * Cuts the file into ranges of about {@link #partLength} bytes, each ending right after a line
+	 * end. The first range starts after the skipped header lines.
+	 *
+	 * @param channel the channel of the file
+	 * @return the list of [start, end) ranges
+	 */
+	protected List<long[]> split(final FileChannel channel) throws IOException {
+		final long size = channel.size();
+		long start = 0;
+		for (int l = 0; l < this.skippedLines && start < size; ++l) {
+			start = nextLineStart(channel, start, size);
+		}
+
+		final List<long[]> ranges = new ArrayList<>();
+		while (start < size) {
+			final long end = start + this.partLength >= size
+					? size
+					: nextLineStart(channel, start + this.partLength - 1, size);
+			if (end - start > MAX_PART_LENGTH) {
+				throw new IllegalStateException("Line longer than " + MAX_PART_LENGTH + " bytes");
+			}
+			ranges.add(new long[] {start, end});
+			start = end;
+		}
+		return ranges;
+	}
+
+	/**
+	 * @return the position following the first line end at or after {@code position}, or
+	 * 		{@code size} if there is none
+	 */
+	private static long nextLineStart(
+			final FileChannel channel,
+			long position,
+			final long size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (position < size) {
+			buffer.clear();
+			final int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; ++i) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private long loadRange(
+			final FileChannel channel,
+			final long start,
+			final long end,
+			final ITransactionManager tm) throws IOException {
+		return loadLines(channel.map(MapMode.READ_ONLY, start, end - start), tm);
+	}
+
+	/**
+	 * Parses the lines between the position and the limit of a buffer, and adds their records to the
+	 * current transaction. Stops between two batches if the thread is interrupted.
+	 *
+	 * @param buffer the buffer, starting at the beginning of a line
+	 * @param tm the transaction manager, with a started transaction
+	 * @return the number of loaded records
+	 */
+	protected long loadLines(final ByteBuffer buffer, final ITransactionManager tm) {
+		final ByteLine line = new ByteLine(buffer);
+		final int[] fieldEnds = new int[this.columns.size()];
+
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		long count = 0;
+		int lineStart = buffer.position();
+		final int limit = buffer.limit();
+		while (lineStart < limit) {
+			int lineEnd = lineStart;
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+				++lineEnd;
+			}
+			final int next = lineEnd + 1;
+			if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+				--lineEnd;
+			}
+			if (lineEnd > lineStart) {
+				line.reset(lineStart, lineEnd);
+				batch.add(parseLine(line, fieldEnds));
+				if (batch.size() == BATCH_SIZE) {
+					checkNotInterrupted();
+					tm.addAll(this.storeName, batch);
+					count += batch.size();
+					batch = new ArrayList<>(BATCH_SIZE);
+				}
+			}
+			lineStart = next;
+		}
+		if (!batch.isEmpty()) {
+			checkNotInterrupted();
+			tm.addAll(this.storeName, batch);
+			count += batch.size();
+		}
+		return count;
+	}
+
+	private void checkNotInterrupted() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("Interrupted while loading into " + this.storeName);
+		}
+	}
+
+	private Object[] parseLine(final ByteLine line, final int[] fieldEnds) {
+		// Locate the fields of the line in one pass, up to the last used column
+		final int length = line.length();
+		final boolean lastIsUsed = this.lastColumn == fieldEnds.length - 1;
+		final int separators = lastIsUsed ? this.lastColumn : this.lastColumn + 1;
+		int column = 0;
+		for (int i = 0; i < length && column < separators; ++i) {
+			if (line.charAt(i) == this.separator) {
+				fieldEnds[column++] = i;
+			}
+		}
+		if (column != separators) {
+			throw new IllegalArgumentException("Expected " + fieldEnds.length + " columns in line "
+					+ line.toString());
+		}
+		if (lastIsUsed) {
+			fieldEnds[column] = length;
+		}
+
+		final Object[] record = new Object[this.recordLength];
+		int fieldStart = 0;
+		for (int c = 0; c <= this.lastColumn; ++c) {
+			if (this.fieldIndexes[c] >= 0) {
+				record[this.fieldIndexes[c]] = this.parsers[c].parse(line, fieldStart, fieldEnds[c]);
+			}
+			fieldStart = fieldEnds[c] + 1;
+		}
+		return record;
+	}
+
+	/**
+	 * View of a line of a mapped buffer as characters.
+	 * <p>
+	 * ASCII bytes are exposed as is, which is all the number parsers need, and {@link
+	 * #subSequence(int, int)} decodes the bytes as UTF-8.
+	 */
+	static class ByteLine implements CharSequence {
+
+		private final ByteBuffer buffer;
+		private int offset;
+		private int length;
+
+		ByteLine(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void reset(final int start, final int end) {
+			this.offset = start;
+			this.length = end - start;
+		}
+
+		@Override
+		public int length() {
+			return this.length;
+		}
+
+		@Override
+		public char charAt(final int index) {
+			return (char) (this.buffer.get(this.offset + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+			final byte[] bytes = new byte[end - start];
+			for (int i = 0; i < bytes.length; ++i) {
+				bytes[i] = this.buffer.get(this.offset + start + i);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, this.length).toString();
+		}
+
+	}
+
+}
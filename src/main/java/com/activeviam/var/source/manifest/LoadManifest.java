@@ -0,0 +1,241 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.manifest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Row counts of the stores of a generated data set, written next to the files by the generators
+ * so that the loader can size the stores before loading them.
+ * <p>
+ * For each store, the manifest holds the number of rows of each partition, the rows being
+ * partitioned by their key modulo the number of partitions, the partitioning these counts follow,
+ * and the estimated numbers of distinct values of some fields, computed by {@link HyperLogLog}. It
+ * is stored as a properties file:
+ *
+ * <pre>
+ * Trades.partitioning=modulo(Id)
+ * Trades.partitions=8
+ * Trades.partition.0=12500
+ * Trades.distinct.Trader=1500
+ * </pre>
+ *
+ * The counts of the partitions only describe a datastore partitioned the same way, into the same
+ * number of partitions.
+ *
+ * A manifest being built is not thread-safe.
+ *
+ * @author ActiveViam
+ */
+public class LoadManifest {
+
+	/** Name of the manifest file, ignored by the loaders of the data files */
+	public static final String FILE_NAME = "_MANIFEST.properties";
+
+	/** Rows of each partition, by store */
+	protected final Map<String, long[]> partitionRows = new LinkedHashMap<>();
+	/** Partitioning of the counted rows, such as {@code modulo(Id)}, by store */
+	protected final Map<String, String> partitionings = new LinkedHashMap<>();
+	/** Fields whose distinct values are counted, by store */
+	protected final Map<String, String[]> distinctFields = new LinkedHashMap<>();
+	/** Sketches of the distinct values of the fields, by store */
+	protected final Map<String, HyperLogLog[]> sketches = new LinkedHashMap<>();
+	/** Estimated distinct values read from a file, by {@code <Store>.<Field>} */
+	protected final Map<String, Long> distinctCounts = new LinkedHashMap<>();
+
+	/**
+	 * Declares a store.
+	 *
+	 * @param store the name of the store
+	 * @param partitions the number of partitions of the store
+	 * @param keyField the field of the key the rows are partitioned by, modulo the number of
+	 * 		partitions
+	 * @param fields the fields whose distinct values are counted, in the order of the values given
+	 * 		to {@link #addRow(String, long, Object...)}
+	 */
+	public void declare(
+			final String store,
+			final int partitions,
+			final String keyField,
+			final String... fields) {
+		this.partitionRows.put(store, new long[partitions]);
+		this.partitionings.put(store, "modulo(" + keyField + ")");
+		this.distinctFields.put(store, fields);
+		final HyperLogLog[] storeSketches = new HyperLogLog[fields.length];
+		for (int f = 0; f < fields.length; ++f) {
+			storeSketches[f] = new HyperLogLog();
+		}
+		this.sketches.put(store, storeSketches);
+	}
+
+	/**
+	 * Counts a row of a store.
+	 *
+	 * @param store the name of the store
+	 * @param key the partitioning key of the row
+	 * @param values the values of the fields declared for the store
+	 */
+	public void addRow(final String store, final long key, final Object... values) {
+		final long[] rows = this.partitionRows.get(store);
+		rows[(int) Math.floorMod(key, (long) rows.length)] += 1;
+		final HyperLogLog[] storeSketches = this.sketches.get(store);
+		for (int f = 0; f < storeSketches.length; ++f) {
+			storeSketches[f].add(values[f]);
+		}
+	}
+
+	/**
+	 * @return the names of the stores of the manifest
+	 */
+	public Set<String> getStores() {
+		return this.partitionRows.keySet();
+	}
+
+	/**
+	 * @param store the name of the store
+	 * @return the number of rows of the store, 0 if it is not in the manifest
+	 */
+	public long getRows(final String store) {
+		final long[] rows = this.partitionRows.get(store);
+		return rows == null ? 0 : Arrays.stream(rows).sum();
+	}
+
+	/**
+	 * @param store the name of the store
+	 * @return the number of rows of each partition of the store, empty if it is not in the manifest
+	 */
+	public long[] getPartitionRows(final String store) {
+		return this.partitionRows.getOrDefault(store, new long[0]).clone();
+	}
+
+	/**
+	 * @param store the name of the store
+	 * @return the partitioning of the counted rows of the store, such as {@code modulo(Id)},
+	 * 		{@code null} if unknown
+	 */
+	public String getPartitioning(final String store) {
+		return this.partitionings.get(store);
+	}
+
+	/**
+	 * @param store the name of the store
+	 * @param field the name of the field
+	 * @return the estimated number of distinct values of the field, -1 if unknown
+	 */
+	public long getDistinctCount(final String store, final String field) {
+		final String[] fields = this.distinctFields.get(store);
+		if (fields != null) {
+			for (int f = 0; f < fields.length; ++f) {
+				if (fields[f].equals(field)) {
+					return this.sketches.get(store)[f].estimate();
+				}
+			}
+		}
+		return this.distinctCounts.getOrDefault(store + "." + field, -1L);
+	}
+
+	/**
+	 * Writes the manifest, replacing the file atomically.
+	 *
+	 * @param file the manifest file
+	 */
+	public void write(final Path file) {
+		// Sorted key=value lines, the store and field names needing no escaping
+		final Map<String, String> properties = new TreeMap<>();
+		for (final Map.Entry<String, long[]> entry : this.partitionRows.entrySet()) {
+			final String store = entry.getKey();
+			properties.put(store + ".rows", Long.toString(getRows(store)));
+			properties.put(store + ".partitions", Integer.toString(entry.getValue().length));
+			properties.put(store + ".partitioning", this.partitionings.get(store));
+			for (int p = 0; p < entry.getValue().length; ++p) {
+				properties.put(store + ".partition." + p, Long.toString(entry.getValue()[p]));
+			}
+			for (final String field : this.distinctFields.get(store)) {
+				properties.put(
+						store + ".distinct." + field,
+						Long.toString(getDistinctCount(store, field)));
+			}
+		}
+		final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			try (final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				writer.write("# Rows and distinct values of the generated data\n");
+				for (final Map.Entry<String, String> property : properties.entrySet()) {
+					writer.write(property.getKey() + "=" + property.getValue() + "\n");
+				}
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the manifest " + file, e);
+		}
+	}
+
+	/**
+	 * Reads a manifest.
+	 *
+	 * @param file the manifest file
+	 * @return the manifest
+	 */
+	public static LoadManifest read(final Path file) {
+		final Properties properties = new Properties();
+		try (final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the manifest " + file, e);
+		}
+
+		final LoadManifest manifest = new LoadManifest();
+		for (final String name : new TreeSet<>(properties.stringPropertyNames())) {
+			final String[] parts = name.split("\\.", 3);
+			if (parts.length == 2 && parts[1].equals("partitions")) {
+				final long[] rows = new long[Integer.parseInt(properties.getProperty(name))];
+				for (int p = 0; p < rows.length; ++p) {
+					rows[p] = Long.parseLong(
+							properties.getProperty(parts[0] + ".partition." + p, "0"));
+				}
+				manifest.partitionRows.put(parts[0], rows);
+				final String partitioning = properties.getProperty(parts[0] + ".partitioning");
+				if (partitioning != null) {
+					manifest.partitionings.put(parts[0], partitioning);
+				}
+			} else if (parts.length == 3 && parts[1].equals("distinct")) {
+				manifest.distinctCounts.put(
+						parts[0] + "." + parts[2],
+						Long.parseLong(properties.getProperty(name)));
+			}
+		}
+		return manifest;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("LoadManifest [");
+		for (final String store : getStores()) {
+			if (builder.length() > "LoadManifest [".length()) {
+				builder.append(", ");
+			}
+			builder.append(store).append('=').append(getRows(store));
+		}
+		return builder.append(']').toString();
+	}
+
+}
@@ -0,0 +1,415 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.mmap;
+
+import com.activeviam.var.generator.VectorPrecision;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File of pnl vectors, memory mapped, holding the vectors of a store whose field only keeps their
+ * offset in the file.
+ * <p>
+ * The vectors are written during the load, and read through the mapping when aggregating them:
+ * the page cache of the OS decides which of them stay resident, so that the vectors can take
+ * more than the memory of the server. The file is mapped by segments of {@value #SEGMENT_BYTES}
+ * bytes, page aligned, that no vector crosses. The first page holds the header, then each vector
+ * is its length followed by its elements in the {@link VectorPrecision precision} of the file, in
+ * little endian, aligned on {@value #ALIGNMENT} bytes. The header records the end of the written
+ * vectors when they are {@link #force() forced} to the disk, so that a reopened file appends
+ * after them.
+ * <pre>
+ * MAGIC precision generation end (padding to PAGE_BYTES)
+ * (length padding element*)*
+ * </pre>
+ * <p>
+ * {@link #clear() Clearing} the file starts a new generation in a new file, the offsets carrying
+ * their generation: the versions of the store still read by older epochs keep reading the
+ * vectors of the previous generations, whose files stay mapped until closed.
+ *
+ * @author ActiveViam
+ */
+public class MappedVectorFile implements Closeable {
+
+	/** Marks the start of the vector files */
+	public static final byte[] MAGIC = "AVVECT02".getBytes(StandardCharsets.US_ASCII);
+
+	/** Size of the header, a page */
+	public static final int PAGE_BYTES = 4096;
+	/** Size of the mapped segments, that no vector crosses */
+	public static final long SEGMENT_BYTES = 1L << 30;
+	/** Alignment of the vectors, a cache line */
+	public static final int ALIGNMENT = 64;
+	/** Size of the length written before the elements of a vector, padded to 8 bytes */
+	protected static final int LENGTH_BYTES = 8;
+	/** Position of the generation in the offsets, above the positions in the file */
+	protected static final int GENERATION_SHIFT = 48;
+	/** Mask of the position in the offsets */
+	protected static final long POSITION_MASK = (1L << GENERATION_SHIFT) - 1;
+	/** Position of the end of the written vectors in the header */
+	protected static final int END_POSITION = MAGIC.length + 2 * Integer.BYTES;
+
+	/** The file */
+	protected final Path file;
+	/** The precision of the elements */
+	protected final VectorPrecision precision;
+
+	/** The generations the offsets of the store may still refer to, by number */
+	private final Map<Integer, Generation> generations = new ConcurrentHashMap<>();
+	/** The generation the vectors are written to */
+	private volatile Generation current;
+
+	/**
+	 * Opens a vector file, creating it if it does not exist.
+	 *
+	 * @param file the file, on a local disk
+	 * @param precision the precision of the vectors
+	 * @return the vector file, holding the vectors of an existing file written with the same
+	 * 		precision
+	 */
+	public static MappedVectorFile open(final Path file, final VectorPrecision precision) {
+		return new MappedVectorFile(file, precision);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the file, on a local disk
+	 * @param precision the precision of the vectors
+	 */
+	protected MappedVectorFile(final Path file, final VectorPrecision precision) {
+		this.file = file;
+		this.precision = precision;
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			final FileChannel channel = FileChannel.open(
+					file,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			final ByteBuffer header = ByteBuffer.allocate(END_POSITION + Long.BYTES);
+			if (channel.size() >= PAGE_BYTES) {
+				channel.read(header, 0);
+				header.flip();
+				final byte[] magic = new byte[MAGIC.length];
+				header.get(magic);
+				final int filePrecision = header.getInt();
+				final int generation = header.getInt();
+				final long end = header.getLong();
+				if (Arrays.equals(MAGIC, magic)
+						&& filePrecision == precision.ordinal()
+						&& end >= PAGE_BYTES
+						&& end <= channel.size()) {
+					start(new Generation(generation, channel, end));
+					return;
+				}
+			}
+			start(Generation.create(channel, 0, precision));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the vector file " + file, e);
+		}
+	}
+
+	private void start(final Generation generation) {
+		this.generations.put(generation.number, generation);
+		this.current = generation;
+	}
+
+	/**
+	 * Removes all the vectors, starting a new generation in a new file: the offsets given before
+	 * stay readable until the file is closed, the previous file being unlinked.
+	 */
+	public synchronized void clear() {
+		final Generation previous = this.current;
+		try {
+			Files.delete(this.file);
+			final FileChannel channel = FileChannel.open(
+					this.file,
+					StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			start(Generation.create(channel, previous.number + 1, this.precision));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot clear the vector file " + this.file, e);
+		}
+	}
+
+	/**
+	 * @return the file
+	 */
+	public Path getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @return the precision of the vectors
+	 */
+	public VectorPrecision getPrecision() {
+		return this.precision;
+	}
+
+	/**
+	 * @return the number of bytes of the file holding vectors
+	 */
+	public synchronized long getSize() {
+		return this.current.end;
+	}
+
+	/**
+	 * @return the number of the generation the vectors are written to
+	 */
+	public int getGeneration() {
+		return this.current.number;
+	}
+
+	/**
+	 * Writes a vector at the end of the file.
+	 *
+	 * @param vector the {@code double[]}, {@code float[]} or {@code int[]} vector, in the
+	 * 		precision of the file
+	 * @return the offset of the vector, {@code null} for a {@code null} vector
+	 */
+	public Long write(final Object vector) {
+		if (vector == null) {
+			return null;
+		}
+		final int length = Array.getLength(vector);
+		final long offset = reserve(LENGTH_BYTES + length * this.precision.getElementBytes());
+		final ByteBuffer buffer = slice(offset);
+		buffer.putInt(length).position(LENGTH_BYTES);
+		switch (this.precision) {
+			case FLOAT:
+				buffer.asFloatBuffer().put((float[]) vector);
+				break;
+			case SCALED_INT:
+				buffer.asIntBuffer().put((int[]) vector);
+				break;
+			default:
+				buffer.asDoubleBuffer().put((double[]) vector);
+				break;
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads the length of a vector.
+	 *
+	 * @param offset the offset of the vector
+	 * @return the number of elements of the vector
+	 */
+	public int getLength(final long offset) {
+		return slice(offset).getInt();
+	}
+
+	/**
+	 * Adds the elements of a vector to sums, through the mapping.
+	 *
+	 * @param offset the offset of the vector
+	 * @param sums the sums, of the length of the vector
+	 * @param removal {@code true} to subtract the elements instead
+	 */
+	public void addTo(final long offset, final double[] sums, final boolean removal) {
+		final ByteBuffer buffer = slice(offset);
+		final int length = Math.min(buffer.getInt(), sums.length);
+		buffer.position(LENGTH_BYTES);
+		final double sign = removal ? -1d : 1d;
+		switch (this.precision) {
+			case FLOAT: {
+				final var elements = buffer.asFloatBuffer();
+				for (int i = 0; i < length; ++i) {
+					sums[i] += sign * elements.get(i);
+				}
+				break;
+			}
+			case SCALED_INT: {
+				final var elements = buffer.asIntBuffer();
+				for (int i = 0; i < length; ++i) {
+					sums[i] += sign * elements.get(i);
+				}
+				break;
+			}
+			default: {
+				final var elements = buffer.asDoubleBuffer();
+				for (int i = 0; i < length; ++i) {
+					sums[i] += sign * elements.get(i);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reserves the space of a vector in the current generation, in the segment of the previous
+	 * one if it fits.
+	 *
+	 * @return the offset of the vector, tagged with the generation
+	 */
+	private synchronized long reserve(final int bytes) {
+		if (bytes > SEGMENT_BYTES) {
+			throw new IllegalArgumentException(
+					"Vector of " + bytes + " bytes too large to be mapped");
+		}
+		final Generation generation = this.current;
+		long position = generation.end;
+		if (position / SEGMENT_BYTES != (position + bytes - 1) / SEGMENT_BYTES) {
+			position = (position / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+		}
+		generation.end = (position + bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+		generation.map((int) ((generation.end - 1) / SEGMENT_BYTES), this.file);
+		return (long) generation.number << GENERATION_SHIFT | position;
+	}
+
+	/**
+	 * Gets a buffer starting at an offset, in the file of its generation, in little endian.
+	 */
+	private ByteBuffer slice(final long offset) {
+		final int number = (int) (offset >>> GENERATION_SHIFT);
+		final Generation generation = this.generations.get(number);
+		if (generation == null) {
+			throw new IllegalStateException(
+					"No generation " + number + " of the vector file " + this.file);
+		}
+		final long position = offset & POSITION_MASK;
+		final int segment = (int) (position / SEGMENT_BYTES);
+		MappedByteBuffer[] segments = generation.segments;
+		if (segment >= segments.length) {
+			generation.map(segment, this.file);
+			segments = generation.segments;
+		}
+		return segments[segment]
+				.duplicate()
+				.position((int) (position % SEGMENT_BYTES))
+				.slice()
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Writes the vectors of the current generation to the disk, then records their end in the
+	 * header, so that the file reopened after a restart appends after them.
+	 */
+	public synchronized void force() {
+		try {
+			this.current.force();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot force the vector file " + this.file, e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		final Generation generation = this.current;
+		generation.force();
+		// The segments extend the file to their size: only keep the written vectors
+		generation.channel.truncate(generation.end);
+		for (final Generation open : this.generations.values()) {
+			open.channel.close();
+		}
+		this.generations.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "MappedVectorFile [file=" + this.file + ", precision=" + this.precision
+				+ ", generation=" + getGeneration() + ", size=" + getSize() + "]";
+	}
+
+	/**
+	 * A generation of the file: the vectors written since the file was created or cleared.
+	 */
+	private static class Generation {
+
+		/** The number of the generation, tagging the offsets of its vectors */
+		final int number;
+		/** The channel of the file of the generation */
+		final FileChannel channel;
+		/** The mapped segments, grown when writing */
+		volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+		/** The position of the next vector */
+		long end;
+
+		Generation(final int number, final FileChannel channel, final long end) {
+			if (number < 0 || number >= 1 << (Long.SIZE - 1 - GENERATION_SHIFT)) {
+				throw new IllegalStateException("Too many generations of the vector file");
+			}
+			this.number = number;
+			this.channel = channel;
+			this.end = end;
+		}
+
+		/**
+		 * Creates a generation in an empty file, writing its header.
+		 */
+		static Generation create(
+				final FileChannel channel,
+				final int number,
+				final VectorPrecision precision) throws IOException {
+			final Generation generation = new Generation(number, channel, PAGE_BYTES);
+			channel.truncate(0);
+			final ByteBuffer header = ByteBuffer.allocate(PAGE_BYTES);
+			header.put(MAGIC)
+					.putInt(precision.ordinal())
+					.putInt(number)
+					.putLong(PAGE_BYTES)
+					.position(0);
+			channel.write(header, 0);
+			return generation;
+		}
+
+		/**
+		 * Maps the segments up to the given one, extending the file.
+		 */
+		synchronized void map(final int segment, final Path file) {
+			final MappedByteBuffer[] mapped = this.segments;
+			if (segment < mapped.length) {
+				return;
+			}
+			final MappedByteBuffer[] grown = Arrays.copyOf(mapped, segment + 1);
+			try {
+				for (int i = mapped.length; i <= segment; ++i) {
+					grown[i] = this.channel.map(
+							MapMode.READ_WRITE,
+							i * SEGMENT_BYTES,
+							SEGMENT_BYTES);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot map the vector file " + file, e);
+			}
+			this.segments = grown;
+		}
+
+		/**
+		 * Forces the segments to the disk, then the end of the vectors into the header.
+		 */
+		void force() throws IOException {
+			for (final MappedByteBuffer segment : this.segments) {
+				segment.force();
+			}
+			final ByteBuffer end = ByteBuffer.allocate(Long.BYTES).putLong(0, this.end);
+			this.channel.write(end, END_POSITION);
+			this.channel.force(false);
+		}
+
+	}
+
+}
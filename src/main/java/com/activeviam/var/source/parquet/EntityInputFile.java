@@ -0,0 +1,178 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+
+/**
+ * Parquet {@link InputFile} reading a local or cloud entity by ranges.
+ * <p>
+ * The Parquet reader reads the footer, then the column chunks of the row groups it keeps. Each
+ * range is downloaded with a read-ahead of {@link #READ_AHEAD} bytes, so that the skipped row
+ * groups are never downloaded.
+ *
+ * @author ActiveViam
+ */
+public class EntityInputFile implements InputFile {
+
+	/** Minimal length of a downloaded range */
+	protected static final int READ_AHEAD = 1024 * 1024;
+
+	/** The read entity */
+	protected final ICloudEntity<?> entity;
+	/** The length of the entity */
+	protected final long length;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entity the entity to read
+	 */
+	public EntityInputFile(final ICloudEntity<?> entity) {
+		this.entity = entity;
+		this.length = entity.getLength();
+	}
+
+	@Override
+	public long getLength() {
+		return this.length;
+	}
+
+	@Override
+	public SeekableInputStream newStream() {
+		return new EntityInputStream();
+	}
+
+	@Override
+	public String toString() {
+		return this.entity.getKey();
+	}
+
+	/**
+	 * Stream downloading the ranges of the entity into a buffer.
+	 */
+	protected class EntityInputStream extends SeekableInputStream {
+
+		/** The position of the stream in the entity */
+		private long position;
+		/** The downloaded bytes, from {@link #bufferStart} */
+		private byte[] buffer = new byte[0];
+		private long bufferStart;
+
+		@Override
+		public long getPos() {
+			return this.position;
+		}
+
+		@Override
+		public void seek(final long newPosition) {
+			this.position = newPosition;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.position >= EntityInputFile.this.length) {
+				return -1;
+			}
+			fill(1);
+			return this.buffer[(int) (this.position++ - this.bufferStart)] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+			if (this.position >= EntityInputFile.this.length) {
+				return -1;
+			}
+			final int read = (int) Math.min(count, EntityInputFile.this.length - this.position);
+			readFully(bytes, offset, read);
+			return read;
+		}
+
+		@Override
+		public void readFully(final byte[] bytes) throws IOException {
+			readFully(bytes, 0, bytes.length);
+		}
+
+		@Override
+		public void readFully(final byte[] bytes, final int offset, final int count) throws IOException {
+			if (this.position + count > EntityInputFile.this.length) {
+				throw new EOFException("Cannot read " + count + " bytes at " + this.position
+						+ " of " + EntityInputFile.this.entity.getKey());
+			}
+			fill(count);
+			System.arraycopy(
+					this.buffer,
+					(int) (this.position - this.bufferStart),
+					bytes,
+					offset,
+					count);
+			this.position += count;
+		}
+
+		@Override
+		public int read(final ByteBuffer destination) throws IOException {
+			if (this.position >= EntityInputFile.this.length) {
+				return -1;
+			}
+			final int read = (int) Math.min(
+					destination.remaining(),
+					EntityInputFile.this.length - this.position);
+			readFully(destination, read);
+			return read;
+		}
+
+		@Override
+		public void readFully(final ByteBuffer destination) throws IOException {
+			if (this.position + destination.remaining() > EntityInputFile.this.length) {
+				throw new EOFException("Cannot read " + destination.remaining() + " bytes at "
+						+ this.position + " of " + EntityInputFile.this.entity.getKey());
+			}
+			readFully(destination, destination.remaining());
+		}
+
+		private void readFully(final ByteBuffer destination, final int count) throws IOException {
+			fill(count);
+			destination.put(this.buffer, (int) (this.position - this.bufferStart), count);
+			this.position += count;
+		}
+
+		/**
+		 * Ensures that the buffer holds the next bytes of the stream.
+		 */
+		private void fill(final int count) throws IOException {
+			if (this.position >= this.bufferStart
+					&& this.position + count <= this.bufferStart + this.buffer.length) {
+				return;
+			}
+			final long end = Math.min(
+					EntityInputFile.this.length,
+					this.position + Math.max(count, READ_AHEAD));
+			final byte[] downloaded = new byte[(int) (end - this.position)];
+			try (final InputStream input = EntityInputFile.this.entity.download(this.position, end)) {
+				int offset = 0;
+				while (offset < downloaded.length) {
+					final int read = input.read(downloaded, offset, downloaded.length - offset);
+					if (read < 0) {
+						throw new EOFException("Unexpected end of " + EntityInputFile.this.entity.getKey());
+					}
+					offset += read;
+				}
+			}
+			this.buffer = downloaded;
+			this.bufferStart = this.position;
+		}
+
+	}
+
+}
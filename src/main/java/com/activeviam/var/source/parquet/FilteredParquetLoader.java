@@ -0,0 +1,355 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import static com.qfs.literal.ILiteralType.LOCAL_DATE;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.var.generator.Trade;
+import com.activeviam.var.generator.VectorPrecision;
+import com.activeviam.var.source.mmap.MappedVectorFile;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.transaction.ITransactionManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroReadSupport;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+/**
+ * Loads the rows of Parquet files matching a predicate into a store.
+ * <p>
+ * The Parquet reader first evaluates the predicate against the min/max statistics and the
+ * dictionaries of the row groups, and skips the row groups that cannot match without downloading
+ * them. The rows of the other row groups are then filtered one by one while they are read.
+ * <p>
+ * Only the columns of the store fields are read: the column chunks of the other columns, such as
+ * the columns of the fields excluded from the schema, are never downloaded.
+ * <p>
+ * The loader can also collect the values of a long field of the loaded rows, such as the ids of the
+ * loaded trades, to filter the rows of another store referencing them, and set fields that are not
+ * in the files to constants, such as the business date of the files.
+ *
+ * @author ActiveViam
+ */
+public class FilteredParquetLoader {
+
+	private static final Logger LOGGER = Logger.getLogger(FilteredParquetLoader.class.getSimpleName());
+
+	/** Number of rows added to the store at once */
+	protected static final int BATCH_SIZE = 1024;
+
+	/** The description of the store */
+	protected final IStoreDescription store;
+	/** The predicate of the loaded rows, or {@code null} to load all the rows */
+	protected final FilterPredicate predicate;
+	/** The long field whose values are collected, or {@code null} */
+	protected final String keyField;
+	/** Collects the values of the key field, or {@code null} */
+	protected final KeyCollector keys;
+	/** The values of the fields set to constants, by field */
+	protected final Map<String, Object> constantFields;
+	/** The file the vectors of the offset fields are written to, or {@code null} */
+	protected final MappedVectorFile vectorFile;
+
+	private final String[] fields;
+	private final Set<String> fieldNames;
+	private final boolean[] dates;
+	/** The precision of each vector field, {@code null} for the other fields */
+	private final VectorPrecision[] vectors;
+	/** The constant of each field, {@code null} for the fields read from the files */
+	private final Object[] constants;
+	private final int keyIndex;
+
+	private final AtomicLong loadedRows = new AtomicLong();
+	private final AtomicLong rowGroups = new AtomicLong();
+	private final AtomicLong skippedRowGroups = new AtomicLong();
+	private final AtomicLong skippedColumnBytes = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the description of the store
+	 * @param predicate the predicate of the loaded rows, or {@code null} to load all the rows
+	 * @param keyField the long field whose values are collected, or {@code null}
+	 * @param keys collects the values of the key field, or {@code null}
+	 */
+	public FilteredParquetLoader(
+			final IStoreDescription store,
+			final FilterPredicate predicate,
+			final String keyField,
+			final KeyCollector keys) {
+		this(store, predicate, keyField, keys, Collections.emptyMap());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the description of the store
+	 * @param predicate the predicate of the loaded rows, or {@code null} to load all the rows
+	 * @param keyField the long field whose values are collected, or {@code null}
+	 * @param keys collects the values of the key field, or {@code null}
+	 * @param constantFields the values of the fields set to constants instead of being read, by
+	 * 		field, the fields absent from the store being ignored
+	 */
+	public FilteredParquetLoader(
+			final IStoreDescription store,
+			final FilterPredicate predicate,
+			final String keyField,
+			final KeyCollector keys,
+			final Map<String, Object> constantFields) {
+		this(store, predicate, keyField, keys, constantFields, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the description of the store
+	 * @param predicate the predicate of the loaded rows, or {@code null} to load all the rows
+	 * @param keyField the long field whose values are collected, or {@code null}
+	 * @param keys collects the values of the key field, or {@code null}
+	 * @param constantFields the values of the fields set to constants instead of being read, by
+	 * 		field, the fields absent from the store being ignored
+	 * @param vectorFile the file the vectors read for the fields that are not vectors are written
+	 * 		to, the fields holding their offset, or {@code null}
+	 */
+	public FilteredParquetLoader(
+			final IStoreDescription store,
+			final FilterPredicate predicate,
+			final String keyField,
+			final KeyCollector keys,
+			final Map<String, Object> constantFields,
+			final MappedVectorFile vectorFile) {
+		this.store = store;
+		this.predicate = predicate;
+		this.keyField = keyField;
+		this.keys = keys;
+		this.constantFields = constantFields;
+		this.vectorFile = vectorFile;
+
+		final List<? extends IFieldDescription> storeFields = store.getFields();
+		this.fields = new String[storeFields.size()];
+		this.dates = new boolean[storeFields.size()];
+		this.vectors = new VectorPrecision[storeFields.size()];
+		this.constants = new Object[storeFields.size()];
+		int keyIndex = -1;
+		for (int i = 0; i < this.fields.length; ++i) {
+			this.fields[i] = storeFields.get(i).getName();
+			this.dates[i] = LOCAL_DATE.equals(storeFields.get(i).getDataType());
+			this.vectors[i] = VectorPrecision.ofDataType(storeFields.get(i).getDataType());
+			this.constants[i] = constantFields.get(this.fields[i]);
+			if (this.fields[i].equals(keyField)) {
+				keyIndex = i;
+			}
+		}
+		if (keys != null && keyIndex < 0) {
+			throw new IllegalArgumentException("No field " + keyField + " in store " + store.getName());
+		}
+		this.keyIndex = keyIndex;
+		this.fieldNames = Set.of(this.fields);
+	}
+
+	/**
+	 * Loads files in parallel, within the current transaction.
+	 *
+	 * @param tm the transaction manager, with a started transaction
+	 * @param files the files to load
+	 * @param executor the executor loading the files
+	 */
+	public void load(
+			final ITransactionManager tm,
+			final Collection<? extends ICloudEntity<?>> files,
+			final ExecutorService executor) {
+		final List<Future<?>> futures = new ArrayList<>();
+		for (final ICloudEntity<?> file : files) {
+			futures.add(executor.submit(() -> {
+				try {
+					loadFile(tm, file);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Cannot load " + file.getKey(), e);
+				}
+			}));
+		}
+		try {
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading " + this.store.getName(), e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Cannot load " + this.store.getName(), e.getCause());
+		}
+		LOGGER.info(this.toString());
+	}
+
+	/**
+	 * Loads the matching rows of a file.
+	 *
+	 * @param tm the transaction manager, with a started transaction
+	 * @param file the file
+	 */
+	protected void loadFile(final ITransactionManager tm, final ICloudEntity<?> file)
+			throws IOException {
+		final EntityInputFile input = new EntityInputFile(file);
+		final FilterCompat.Filter filter = this.predicate != null
+				? FilterCompat.get(this.predicate)
+				: FilterCompat.NOOP;
+
+		// Evaluate the predicate against the statistics first, to skip the file when possible
+		final Configuration configuration = new Configuration(false);
+		try (final ParquetFileReader reader = ParquetFileReader.open(
+				input,
+				ParquetReadOptions.builder().withRecordFilter(filter).build())) {
+			final int total = reader.getFooter().getBlocks().size();
+			final List<BlockMetaData> kept = reader.getRowGroups();
+			this.rowGroups.addAndGet(total);
+			this.skippedRowGroups.addAndGet(total - kept.size());
+			if (kept.isEmpty()) {
+				return;
+			}
+			AvroReadSupport.setRequestedProjection(
+					configuration,
+					project(reader.getFooter().getFileMetaData().getSchema(), kept));
+		}
+
+		final List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		final long[] batchKeys = new long[BATCH_SIZE];
+		try (final ParquetReader<GenericRecord> reader = AvroParquetReader
+				.<GenericRecord>builder(input)
+				.withDataModel(GenericData.get())
+				.withConf(configuration)
+				.withFilter(filter)
+				.build()) {
+			for (GenericRecord record = reader.read(); record != null; record = reader.read()) {
+				final Object[] tuple = toTuple(record);
+				if (this.keys != null) {
+					batchKeys[batch.size()] = (Long) tuple[this.keyIndex];
+				}
+				batch.add(tuple);
+				if (batch.size() == BATCH_SIZE) {
+					flush(tm, batch, batchKeys);
+				}
+			}
+		}
+		flush(tm, batch, batchKeys);
+	}
+
+	/**
+	 * Computes the schema of the columns of the store fields.
+	 *
+	 * @param fileSchema the schema of the file
+	 * @param rowGroups the read row groups
+	 * @return the Avro schema of the read columns
+	 */
+	protected Schema project(final MessageType fileSchema, final List<BlockMetaData> rowGroups) {
+		final List<Type> columns = new ArrayList<>();
+		for (final Type column : fileSchema.getFields()) {
+			if (this.fieldNames.contains(column.getName())) {
+				columns.add(column);
+			}
+		}
+		for (final BlockMetaData rowGroup : rowGroups) {
+			for (final ColumnChunkMetaData chunk : rowGroup.getColumns()) {
+				if (!this.fieldNames.contains(chunk.getPath().toArray()[0])) {
+					this.skippedColumnBytes.addAndGet(chunk.getTotalSize());
+				}
+			}
+		}
+		return new AvroSchemaConverter().convert(new MessageType(fileSchema.getName(), columns));
+	}
+
+	private void flush(
+			final ITransactionManager tm,
+			final List<Object[]> batch,
+			final long[] batchKeys) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		tm.addAll(this.store.getName(), batch);
+		if (this.keys != null) {
+			this.keys.addAll(batchKeys, batch.size());
+		}
+		this.loadedRows.addAndGet(batch.size());
+		batch.clear();
+	}
+
+	/**
+	 * Converts a Parquet record into a tuple of the store.
+	 */
+	protected Object[] toTuple(final GenericRecord record) {
+		final Object[] tuple = new Object[this.fields.length];
+		for (int i = 0; i < tuple.length; ++i) {
+			if (this.constants[i] != null) {
+				tuple[i] = this.constants[i];
+				continue;
+			}
+			final Object value = record.get(this.fields[i]);
+			if (value instanceof CharSequence) {
+				tuple[i] = value.toString();
+			} else if (this.dates[i] && value instanceof Integer) {
+				tuple[i] = Trade.decodeLocalDate((Integer) value);
+			} else if (value instanceof List && this.vectors[i] == null
+					&& this.vectorFile != null) {
+				// Written to the file, the field holding the offset
+				tuple[i] = this.vectorFile.write(
+						this.vectorFile.getPrecision().fromElements((List<?>) value));
+			} else if (value instanceof List) {
+				// The files hold the vectors in the precision of the field
+				final VectorPrecision precision = this.vectors[i];
+				tuple[i] = (precision == null ? VectorPrecision.DOUBLE : precision)
+						.fromElements((List<?>) value);
+			} else {
+				tuple[i] = value;
+			}
+		}
+		return tuple;
+	}
+
+	/**
+	 * @return the number of loaded rows
+	 */
+	public long getLoadedRows() {
+		return this.loadedRows.get();
+	}
+
+	@Override
+	public String toString() {
+		return "FilteredParquetLoader [store=" + this.store.getName()
+				+ ", predicate=" + this.predicate
+				+ ", loadedRows=" + this.loadedRows
+				+ ", skippedRowGroups=" + this.skippedRowGroups + "/" + this.rowGroups
+				+ ", skippedColumnBytes=" + this.skippedColumnBytes + "]";
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import java.util.Arrays;
+
+/**
+ * Collects the long keys of the loaded rows, for example the ids of the loaded trades, in a compact
+ * array.
+ *
+ * @author ActiveViam
+ */
+public class KeyCollector {
+
+	private long[] keys;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param expectedKeys the expected number of keys
+	 */
+	public KeyCollector(final int expectedKeys) {
+		this.keys = new long[Math.max(16, expectedKeys)];
+	}
+
+	/**
+	 * Constructor for an unknown number of keys.
+	 */
+	public KeyCollector() {
+		this(1024);
+	}
+
+	/**
+	 * Adds keys.
+	 *
+	 * @param added the keys
+	 * @param count the number of keys to add from the start of the array
+	 */
+	public synchronized void addAll(final long[] added, final int count) {
+		if (this.size + count > this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, Math.max(this.size + count, this.keys.length * 2));
+		}
+		System.arraycopy(added, 0, this.keys, this.size, count);
+		this.size += count;
+	}
+
+	/**
+	 * @return the sorted collected keys, without duplicates
+	 */
+	public synchronized long[] toSortedKeys() {
+		final long[] sorted = Arrays.copyOf(this.keys, this.size);
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; ++i) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, distinct);
+	}
+
+	/**
+	 * @return the number of collected keys, with duplicates
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+}
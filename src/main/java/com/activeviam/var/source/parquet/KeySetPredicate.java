@@ -0,0 +1,68 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import org.apache.parquet.filter2.predicate.Statistics;
+import org.apache.parquet.filter2.predicate.UserDefinedPredicate;
+
+/**
+ * Parquet predicate keeping the rows whose long column is in a set of keys, typically the risks of
+ * the loaded trades.
+ * <p>
+ * A row group is skipped when none of the keys is within the min/max statistics of the column.
+ *
+ * @author ActiveViam
+ */
+public class KeySetPredicate extends UserDefinedPredicate<Long> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The sorted keys */
+	protected final long[] keys;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keys the sorted keys, without duplicates
+	 */
+	public KeySetPredicate(final long[] keys) {
+		this.keys = keys;
+	}
+
+	@Override
+	public boolean keep(final Long value) {
+		return value != null && Arrays.binarySearch(this.keys, value) >= 0;
+	}
+
+	@Override
+	public boolean canDrop(final Statistics<Long> statistics) {
+		// Drop when no key is in [min, max]
+		final int index = Arrays.binarySearch(this.keys, statistics.getMin());
+		if (index >= 0) {
+			return false;
+		}
+		final int next = -index - 1;
+		return next >= this.keys.length || this.keys[next] > statistics.getMax();
+	}
+
+	@Override
+	public boolean inverseCanDrop(final Statistics<Long> statistics) {
+		// Drop the negation when the whole range is made of keys
+		final int min = Arrays.binarySearch(this.keys, statistics.getMin());
+		final int max = Arrays.binarySearch(this.keys, statistics.getMax());
+		return min >= 0 && max >= 0 && max - min == statistics.getMax() - statistics.getMin();
+	}
+
+	@Override
+	public String toString() {
+		return "KeySetPredicate [" + this.keys.length + " keys]";
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import static com.qfs.literal.ILiteralType.DOUBLE;
+import static com.qfs.literal.ILiteralType.INT;
+import static com.qfs.literal.ILiteralType.LOCAL_DATE;
+import static com.qfs.literal.ILiteralType.LONG;
+import static com.qfs.literal.ILiteralType.STRING;
+
+import com.activeviam.var.generator.Trade;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.filter2.predicate.Operators.Column;
+import org.apache.parquet.filter2.predicate.Operators.SupportsLtGt;
+import org.apache.parquet.io.api.Binary;
+
+/**
+ * Condition on a store field, deciding which rows of the Parquet files are loaded.
+ * <p>
+ * The conditions are written {@code <Store>.<Field> <operator> <value>}, with the operators {@code
+ * =, !=, <, <=, >, >=} and {@code in (<value>, <value>...)}, for example {@code Trades.Date >=
+ * 2020-05-01} or {@code Trades.Desk in (DeskA, DeskB)}. Values may be quoted.
+ * <p>
+ * A condition becomes a Parquet {@link FilterPredicate}, which the Parquet reader evaluates against
+ * the statistics and dictionaries of the row groups to skip them, then against the rows.
+ *
+ * @author ActiveViam
+ */
+public class LoadFilter {
+
+	private static final Pattern EXPRESSION = Pattern.compile(
+			"\\s*(\\w+)\\.(\\w+)\\s*(<=|>=|!=|=|<|>|(?i:in))\\s*(.+?)\\s*");
+
+	/** The operators of the conditions */
+	public enum Operator {
+		EQ, NE, LT, LE, GT, GE, IN
+	}
+
+	/** The name of the filtered store */
+	protected final String store;
+	/** The name of the filtered field */
+	protected final String field;
+	/** The operator */
+	protected final Operator operator;
+	/** The values compared to the field, as written */
+	protected final List<String> values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the name of the filtered store
+	 * @param field the name of the filtered field
+	 * @param operator the operator
+	 * @param values the values compared to the field, as written
+	 */
+	public LoadFilter(
+			final String store,
+			final String field,
+			final Operator operator,
+			final List<String> values) {
+		this.store = store;
+		this.field = field;
+		this.operator = operator;
+		this.values = values;
+	}
+
+	/**
+	 * Parses a condition.
+	 *
+	 * @param expression the condition, as {@code <Store>.<Field> <operator> <value>}
+	 * @return the condition
+	 */
+	public static LoadFilter parse(final String expression) {
+		final Matcher matcher = EXPRESSION.matcher(expression);
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("Invalid load filter: " + expression);
+		}
+		final Operator operator = toOperator(matcher.group(3));
+		String value = matcher.group(4);
+		final List<String> values;
+		if (operator == Operator.IN) {
+			if (!value.startsWith("(") || !value.endsWith(")")) {
+				throw new IllegalArgumentException(
+						"Expected (<value>, ...) in load filter: " + expression);
+			}
+			value = value.substring(1, value.length() - 1);
+			values = Arrays.stream(value.split(","))
+					.map(LoadFilter::unquote)
+					.collect(Collectors.toList());
+		} else {
+			values = List.of(unquote(value));
+		}
+		return new LoadFilter(matcher.group(1), matcher.group(2), operator, values);
+	}
+
+	private static Operator toOperator(final String operator) {
+		switch (operator.toLowerCase(Locale.ROOT)) {
+			case "=":
+				return Operator.EQ;
+			case "!=":
+				return Operator.NE;
+			case "<":
+				return Operator.LT;
+			case "<=":
+				return Operator.LE;
+			case ">":
+				return Operator.GT;
+			case ">=":
+				return Operator.GE;
+			default:
+				return Operator.IN;
+		}
+	}
+
+	private static String unquote(final String value) {
+		final String trimmed = value.trim();
+		if (trimmed.length() >= 2
+				&& (trimmed.startsWith("'") && trimmed.endsWith("'")
+						|| trimmed.startsWith("\"") && trimmed.endsWith("\""))) {
+			return trimmed.substring(1, trimmed.length() - 1);
+		}
+		return trimmed;
+	}
+
+	/**
+	 * @return the name of the filtered store
+	 */
+	public String getStore() {
+		return this.store;
+	}
+
+	/**
+	 * @return the name of the filtered field
+	 */
+	public String getField() {
+		return this.field;
+	}
+
+	/**
+	 * Converts this condition into a Parquet predicate.
+	 *
+	 * @param dataType the type of the store field, the local dates being stored as integers encoded
+	 * 		by {@link Trade#encodeLocalDate(LocalDate)}
+	 * @return the predicate
+	 */
+	public FilterPredicate toPredicate(final String dataType) {
+		switch (dataType) {
+			case INT:
+				return compare(FilterApi.intColumn(this.field), Integer::valueOf);
+			case LONG:
+				return compare(FilterApi.longColumn(this.field), Long::valueOf);
+			case DOUBLE:
+				return compare(FilterApi.doubleColumn(this.field), Double::valueOf);
+			case STRING:
+				return compare(FilterApi.binaryColumn(this.field), Binary::fromString);
+			case LOCAL_DATE:
+				return compare(
+						FilterApi.intColumn(this.field),
+						value -> Trade.encodeLocalDate(LocalDate.parse(value)));
+			default:
+				throw new IllegalArgumentException("Cannot filter " + this + " of type " + dataType);
+		}
+	}
+
+	private <T extends Comparable<T>, C extends Column<T> & SupportsLtGt> FilterPredicate compare(
+			final C column,
+			final Function<String, T> parser) {
+		final T value = parser.apply(this.values.get(0));
+		switch (this.operator) {
+			case EQ:
+				return FilterApi.eq(column, value);
+			case NE:
+				return FilterApi.notEq(column, value);
+			case LT:
+				return FilterApi.lt(column, value);
+			case LE:
+				return FilterApi.ltEq(column, value);
+			case GT:
+				return FilterApi.gt(column, value);
+			case GE:
+				return FilterApi.gtEq(column, value);
+			default:
+				final List<FilterPredicate> equalities = new ArrayList<>();
+				for (final String element : this.values) {
+					equalities.add(FilterApi.eq(column, parser.apply(element)));
+				}
+				return equalities.stream().reduce(FilterApi::or).orElseThrow();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.store + "." + this.field + " " + this.operator + " " + this.values;
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.snapshot;
+
+import com.qfs.desc.IFieldDescription;
+import com.qfs.desc.IStoreDescription;
+import com.qfs.store.IDatastore;
+import com.qfs.store.IDatastoreVersion;
+import com.qfs.store.query.ICursor;
+import com.qfs.store.record.IRecordReader;
+import com.qfs.vector.IVector;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the records of the stores of a datastore, one {@link StoreSnapshotWriter snapshot
+ * file} per store in a directory.
+ * <p>
+ * Restoring the stores from the snapshot avoids fetching and parsing the source files: the blocks
+ * of records are memory mapped and decoded in parallel, then added to the stores in a single
+ * transaction. A snapshot is only restored if it was taken from the same dataset, as told by the
+ * fingerprint given when taking it, and with the same fields.
+ *
+ * @author ActiveViam
+ */
+public class DatastoreSnapshot {
+
+	private static final Logger LOGGER = Logger.getLogger(DatastoreSnapshot.class.getSimpleName());
+
+	/** Extension of the snapshot files */
+	public static final String FILE_EXTENSION = ".snapshot";
+
+	/** The datastore */
+	protected final IDatastore datastore;
+	/** The directory of the snapshot files */
+	protected final Path directory;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param datastore the datastore
+	 * @param directory the directory of the snapshot files
+	 */
+	public DatastoreSnapshot(final IDatastore datastore, final Path directory) {
+		this.datastore = datastore;
+		this.directory = directory;
+	}
+
+	/**
+	 * Writes the committed records of stores, all from the same version of the datastore.
+	 *
+	 * @param stores the descriptions of the stores
+	 * @param fingerprint the fingerprint of the dataset of the stores
+	 */
+	public void write(final Collection<IStoreDescription> stores, final String fingerprint) {
+		final long before = System.nanoTime();
+		final IDatastoreVersion version = this.datastore.getHead();
+		long bytes = 0;
+		for (final IStoreDescription store : stores) {
+			final Path file = getFile(store.getName());
+			final List<String> fields = getFieldNames(store);
+			final List<String> types = getFieldTypes(store);
+			final ICursor cursor = version.getQueryRunner()
+					.forStore(store.getName())
+					.withoutCondition()
+					.selecting(fields.toArray(new String[0]))
+					.onCurrentThread()
+					.run();
+			try (final StoreSnapshotWriter writer = new StoreSnapshotWriter(
+					file,
+					fingerprint,
+					store.getName(),
+					fields,
+					types)) {
+				for (final IRecordReader record : cursor) {
+					final Object[] values = new Object[fields.size()];
+					for (int i = 0; i < values.length; ++i) {
+						final Object value = record.read(i);
+						values[i] = value instanceof IVector
+								? toArray((IVector) value, types.get(i))
+								: value;
+					}
+					writer.add(values);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot write the snapshot " + file, e);
+			}
+			try {
+				bytes += Files.size(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read the snapshot " + file, e);
+			}
+		}
+		LOGGER.info("Snapshot of " + stores.size() + " stores written to " + this.directory
+				+ " in " + (System.nanoTime() - before) / 1000000L + "ms (" + bytes + " bytes)");
+	}
+
+	/**
+	 * Checks whether the snapshot holds the stores of a dataset.
+	 *
+	 * @param stores the descriptions of the stores
+	 * @param fingerprint the fingerprint of the dataset
+	 * @return {@code true} if the snapshot can be restored
+	 */
+	public boolean matches(final Collection<IStoreDescription> stores, final String fingerprint) {
+		for (final IStoreDescription store : stores) {
+			final Path file = getFile(store.getName());
+			if (!Files.isRegularFile(file)) {
+				LOGGER.info("No snapshot " + file);
+				return false;
+			}
+			try (final StoreSnapshotReader reader = new StoreSnapshotReader(file)) {
+				if (!reader.getFingerprint().equals(fingerprint)) {
+					LOGGER.info("The snapshot " + file + " was taken from another dataset");
+					return false;
+				}
+				if (!reader.getFields().equals(getFieldNames(store))
+						|| !reader.getTypes().equals(getFieldTypes(store))) {
+					LOGGER.info("The snapshot " + file + " was taken with other fields");
+					return false;
+				}
+			} catch (IOException | UncheckedIOException e) {
+				LOGGER.log(Level.WARNING, "Cannot read the snapshot " + file, e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Restores the records of stores, in a single transaction.
+	 *
+	 * @param stores the descriptions of the stores
+	 * @param executor the executor decoding the blocks of records
+	 * @return the number of restored records
+	 */
+	public long restore(final Collection<IStoreDescription> stores, final ExecutorService executor) {
+		final long before = System.nanoTime();
+		final AtomicLong rows = new AtomicLong();
+		final List<StoreSnapshotReader> readers = stores.stream()
+				.map(store -> new StoreSnapshotReader(getFile(store.getName())))
+				.collect(Collectors.toList());
+		try {
+			this.datastore.edit(tm -> {
+				for (final StoreSnapshotReader reader : readers) {
+					reader.read(executor, records -> {
+						tm.addAll(reader.getStore(), records);
+						rows.addAndGet(records.size());
+					});
+				}
+				tm.forceCommit();
+			});
+		} finally {
+			for (final StoreSnapshotReader reader : readers) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Cannot close " + reader, e);
+				}
+			}
+		}
+		LOGGER.info("Restored " + rows + " records from " + this.directory + " in "
+				+ (System.nanoTime() - before) / 1000000L + "ms");
+		return rows.get();
+	}
+
+	private static Object toArray(final IVector vector, final String type) {
+		switch (type) {
+			case StoreSnapshotWriter.FLOAT_VECTOR:
+				return vector.toFloatArray();
+			case StoreSnapshotWriter.INT_VECTOR:
+				return vector.toIntArray();
+			default:
+				return vector.toDoubleArray();
+		}
+	}
+
+	private Path getFile(final String store) {
+		return this.directory.resolve(store + FILE_EXTENSION);
+	}
+
+	private static List<String> getFieldNames(final IStoreDescription store) {
+		final List<String> names = new ArrayList<>();
+		for (final IFieldDescription field : store.getFields()) {
+			names.add(field.getName());
+		}
+		return names;
+	}
+
+	private static List<String> getFieldTypes(final IStoreDescription store) {
+		final List<String> types = new ArrayList<>();
+		for (final IFieldDescription field : store.getFields()) {
+			types.add(field.getDataType());
+		}
+		return types;
+	}
+
+}
@@ -0,0 +1,307 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.snapshot;
+
+import static com.activeviam.var.source.snapshot.StoreSnapshotWriter.FLOAT_VECTOR;
+import static com.activeviam.var.source.snapshot.StoreSnapshotWriter.INT_VECTOR;
+import static com.activeviam.var.source.snapshot.StoreSnapshotWriter.MAGIC;
+import static com.qfs.literal.ILiteralType.DOUBLE;
+import static com.qfs.literal.ILiteralType.INT;
+import static com.qfs.literal.ILiteralType.LOCAL_DATE;
+import static com.qfs.literal.ILiteralType.LONG;
+import static com.qfs.literal.ILiteralType.STRING;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a snapshot file written by {@link StoreSnapshotWriter}.
+ * <p>
+ * The header and the footer are read when the reader is opened. The blocks of records are then
+ * memory mapped and decoded independently, possibly in parallel.
+ *
+ * @author ActiveViam
+ */
+public class StoreSnapshotReader implements Closeable {
+
+	/** The snapshot file */
+	protected final Path file;
+
+	private final FileChannel channel;
+	private final String fingerprint;
+	private final String store;
+	private final List<String> fields;
+	private final String[] types;
+	private final String[][] dictionaries;
+	private final long[] blockOffsets;
+	private final long rows;
+
+	/**
+	 * Opens a snapshot file.
+	 *
+	 * @param file the snapshot file
+	 */
+	public StoreSnapshotReader(final Path file) {
+		this.file = file;
+		try {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			final long size = this.channel.size();
+			final DataInputStream header = new DataInputStream(
+					new BufferedInputStream(Channels.newInputStream(this.channel.position(0))));
+			checkMagic(header);
+			this.fingerprint = header.readUTF();
+			this.store = header.readUTF();
+			final int fieldCount = header.readInt();
+			final List<String> fields = new ArrayList<>();
+			this.types = new String[fieldCount];
+			for (int i = 0; i < fieldCount; ++i) {
+				fields.add(header.readUTF());
+				this.types[i] = header.readUTF();
+			}
+			this.fields = Collections.unmodifiableList(fields);
+
+			final ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES + MAGIC.length);
+			this.channel.read(trailer, size - trailer.capacity());
+			trailer.flip();
+			final long footerOffset = trailer.getLong();
+			final byte[] endMagic = new byte[MAGIC.length];
+			trailer.get(endMagic);
+			if (!Arrays.equals(MAGIC, endMagic)) {
+				throw new IOException("Truncated snapshot");
+			}
+
+			final ByteBuffer footer = this.channel.map(
+					MapMode.READ_ONLY,
+					footerOffset,
+					size - trailer.capacity() - footerOffset);
+			this.dictionaries = new String[fieldCount][];
+			for (int i = 0; i < fieldCount; ++i) {
+				final String[] values = new String[footer.getInt()];
+				for (int j = 0; j < values.length; ++j) {
+					final byte[] utf8 = new byte[footer.getInt()];
+					footer.get(utf8);
+					values[j] = new String(utf8, StandardCharsets.UTF_8);
+				}
+				this.dictionaries[i] = values;
+			}
+			this.blockOffsets = new long[footer.getInt() + 1];
+			for (int i = 0; i < this.blockOffsets.length - 1; ++i) {
+				this.blockOffsets[i] = footer.getLong();
+			}
+			this.blockOffsets[this.blockOffsets.length - 1] = footerOffset;
+			this.rows = footer.getLong();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the snapshot " + file, e);
+		}
+	}
+
+	private static void checkMagic(final DataInputStream input) throws IOException {
+		final byte[] magic = new byte[MAGIC.length];
+		input.readFully(magic);
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new IOException("Not a snapshot");
+		}
+	}
+
+	/**
+	 * @return the fingerprint of the dataset of the records
+	 */
+	public String getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/**
+	 * @return the name of the store
+	 */
+	public String getStore() {
+		return this.store;
+	}
+
+	/**
+	 * @return the names of the fields of the records
+	 */
+	public List<String> getFields() {
+		return this.fields;
+	}
+
+	/**
+	 * @return the types of the fields
+	 */
+	public List<String> getTypes() {
+		return Arrays.asList(this.types);
+	}
+
+	/**
+	 * @return the number of records
+	 */
+	public long getRows() {
+		return this.rows;
+	}
+
+	/**
+	 * Reads the records, by blocks.
+	 *
+	 * @param executor the executor decoding the blocks in parallel, or {@code null} to decode them
+	 * 		on the current thread
+	 * @param consumer receives the records of each block, possibly from several threads at once
+	 */
+	public void read(final ExecutorService executor, final Consumer<List<Object[]>> consumer) {
+		final int blocks = this.blockOffsets.length - 1;
+		if (executor == null) {
+			for (int i = 0; i < blocks; ++i) {
+				consumer.accept(readBlock(i));
+			}
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < blocks; ++i) {
+			final int block = i;
+			futures.add(executor.submit(() -> consumer.accept(readBlock(block))));
+		}
+		try {
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while reading " + this.file, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Cannot read " + this.file, e.getCause());
+		}
+	}
+
+	/**
+	 * Decodes a block of records.
+	 *
+	 * @param block the index of the block
+	 * @return the records of the block
+	 */
+	protected List<Object[]> readBlock(final int block) {
+		final ByteBuffer buffer;
+		try {
+			buffer = this.channel
+					.map(
+							MapMode.READ_ONLY,
+							this.blockOffsets[block],
+							this.blockOffsets[block + 1] - this.blockOffsets[block])
+					.order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the snapshot " + this.file, e);
+		}
+		final Object[][] records = new Object[buffer.getInt()][this.types.length];
+		for (int field = 0; field < this.types.length; ++field) {
+			readColumn(buffer, field, records);
+		}
+		return Arrays.asList(records);
+	}
+
+	private void readColumn(final ByteBuffer buffer, final int field, final Object[][] records) {
+		switch (this.types[field]) {
+			case INT:
+				for (final Object[] record : records) {
+					record[field] = buffer.getInt();
+				}
+				break;
+			case LONG:
+				for (final Object[] record : records) {
+					record[field] = buffer.getLong();
+				}
+				break;
+			case DOUBLE:
+				for (final Object[] record : records) {
+					record[field] = buffer.getDouble();
+				}
+				break;
+			case LOCAL_DATE:
+				for (final Object[] record : records) {
+					final int epochDay = buffer.getInt();
+					record[field] = epochDay == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+				}
+				break;
+			case STRING: {
+				final String[] dictionary = this.dictionaries[field];
+				for (final Object[] record : records) {
+					final int code = buffer.getInt();
+					record[field] = code < 0 ? null : dictionary[code];
+				}
+				break;
+			}
+			case FLOAT_VECTOR:
+				for (final Object[] record : records) {
+					final int length = buffer.getInt();
+					if (length < 0) {
+						record[field] = null;
+						continue;
+					}
+					final float[] vector = new float[length];
+					buffer.asFloatBuffer().get(vector);
+					buffer.position(buffer.position() + length * Float.BYTES);
+					record[field] = vector;
+				}
+				break;
+			case INT_VECTOR:
+				for (final Object[] record : records) {
+					final int length = buffer.getInt();
+					if (length < 0) {
+						record[field] = null;
+						continue;
+					}
+					final int[] vector = new int[length];
+					buffer.asIntBuffer().get(vector);
+					buffer.position(buffer.position() + length * Integer.BYTES);
+					record[field] = vector;
+				}
+				break;
+			default:
+				for (final Object[] record : records) {
+					final int length = buffer.getInt();
+					if (length < 0) {
+						record[field] = null;
+						continue;
+					}
+					final double[] vector = new double[length];
+					buffer.asDoubleBuffer().get(vector);
+					buffer.position(buffer.position() + length * Double.BYTES);
+					record[field] = vector;
+				}
+				break;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "StoreSnapshotReader [file=" + this.file + ", store=" + this.store
+				+ ", rows=" + this.rows + ", blocks=" + (this.blockOffsets.length - 1) + "]";
+	}
+
+}
@@ -0,0 +1,341 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.snapshot;
+
+import static com.qfs.literal.ILiteralType.DOUBLE;
+import static com.qfs.literal.ILiteralType.INT;
+import static com.qfs.literal.ILiteralType.LOCAL_DATE;
+import static com.qfs.literal.ILiteralType.LONG;
+import static com.qfs.literal.ILiteralType.STRING;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the records of a store into a snapshot file, read back by {@link StoreSnapshotReader}.
+ * <p>
+ * The file starts with a header giving the fingerprint of the dataset, the store and its fields.
+ * The records follow by blocks, each block holding its columns one after the other, in little
+ * endian: the numbers and dates as arrays, the strings as codes into the dictionary of their
+ * field, and the vectors as their length followed by their values. The dictionaries and the
+ * offsets of the blocks are in the footer, so that the blocks can be decoded in parallel.
+ * <pre>
+ * MAGIC fingerprint store fieldCount (name type)*
+ * (rows column*)*
+ * (dictionarySize string*)* blockCount blockOffset* rows
+ * footerOffset MAGIC
+ * </pre>
+ * The file is written next to its final location, then moved there once complete.
+ *
+ * @author ActiveViam
+ */
+public class StoreSnapshotWriter implements Closeable {
+
+	/** Marks the start and the end of the snapshot files */
+	public static final byte[] MAGIC = "AVSNAP01".getBytes(StandardCharsets.US_ASCII);
+
+	/** Types of the vector fields */
+	public static final String DOUBLE_VECTOR = "double[]";
+	public static final String FLOAT_VECTOR = "float[]";
+	public static final String INT_VECTOR = "int[]";
+
+	/** Maximum number of records of a block */
+	protected static final int BLOCK_ROWS = 1 << 16;
+	/** Size of a block above which it is written, before holding {@link #BLOCK_ROWS} records */
+	protected static final int BLOCK_BYTES = 16 * 1024 * 1024;
+
+	/** The snapshot file */
+	protected final Path file;
+	/** The file being written */
+	protected final Path temporaryFile;
+	/** The types of the fields */
+	protected final String[] types;
+
+	private final FileChannel channel;
+	private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+	private final List<List<String>> dictionaryValues = new ArrayList<>();
+	private final List<Object[]> block = new ArrayList<>();
+	private final List<Long> blockOffsets = new ArrayList<>();
+	private long blockBytes;
+	private long rows;
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the snapshot file
+	 * @param fingerprint the fingerprint of the dataset of the records
+	 * @param store the name of the store
+	 * @param fields the names of the fields of the records
+	 * @param types the types of the fields
+	 */
+	public StoreSnapshotWriter(
+			final Path file,
+			final String fingerprint,
+			final String store,
+			final List<String> fields,
+			final List<String> types) {
+		this.file = file;
+		this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		this.types = types.toArray(new String[0]);
+		for (final String type : this.types) {
+			checkType(type);
+			this.dictionaries.add(STRING.equals(type) ? new HashMap<>() : null);
+			this.dictionaryValues.add(STRING.equals(type) ? new ArrayList<>() : null);
+		}
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			this.channel = FileChannel.open(
+					this.temporaryFile,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream header = new DataOutputStream(bytes);
+			header.write(MAGIC);
+			header.writeUTF(fingerprint);
+			header.writeUTF(store);
+			header.writeInt(fields.size());
+			for (int i = 0; i < fields.size(); ++i) {
+				header.writeUTF(fields.get(i));
+				header.writeUTF(this.types[i]);
+			}
+			writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the snapshot " + file, e);
+		}
+	}
+
+	private static void checkType(final String type) {
+		switch (type) {
+			case INT:
+			case LONG:
+			case DOUBLE:
+			case STRING:
+			case LOCAL_DATE:
+			case DOUBLE_VECTOR:
+			case FLOAT_VECTOR:
+			case INT_VECTOR:
+				return;
+			default:
+				throw new IllegalArgumentException("Cannot snapshot the fields of type " + type);
+		}
+	}
+
+	/**
+	 * Adds a record.
+	 *
+	 * @param record the values of the fields
+	 */
+	public void add(final Object[] record) {
+		this.block.add(record);
+		for (int i = 0; i < this.types.length; ++i) {
+			this.blockBytes += getBytes(this.types[i], record[i]);
+		}
+		if (this.block.size() == BLOCK_ROWS || this.blockBytes >= BLOCK_BYTES) {
+			writeBlock();
+		}
+	}
+
+	private static long getBytes(final String type, final Object value) {
+		switch (type) {
+			case LONG:
+			case DOUBLE:
+				return Long.BYTES;
+			case DOUBLE_VECTOR:
+				return Integer.BYTES
+						+ (value == null ? 0 : ((double[]) value).length * Double.BYTES);
+			case FLOAT_VECTOR:
+				return Integer.BYTES
+						+ (value == null ? 0 : ((float[]) value).length * Float.BYTES);
+			case INT_VECTOR:
+				return Integer.BYTES
+						+ (value == null ? 0 : ((int[]) value).length * Integer.BYTES);
+			default:
+				return Integer.BYTES;
+		}
+	}
+
+	private void writeBlock() {
+		if (this.block.isEmpty()) {
+			return;
+		}
+		final int size = (int) (Integer.BYTES + this.blockBytes);
+		if (this.buffer.capacity() < size) {
+			this.buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		final ByteBuffer buffer = this.buffer;
+		buffer.clear();
+		buffer.putInt(this.block.size());
+		for (int i = 0; i < this.types.length; ++i) {
+			writeColumn(buffer, i);
+		}
+		buffer.flip();
+		try {
+			this.blockOffsets.add(this.channel.position());
+			writeFully(buffer);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the snapshot " + this.file, e);
+		}
+		this.rows += this.block.size();
+		this.block.clear();
+		this.blockBytes = 0;
+	}
+
+	private void writeColumn(final ByteBuffer buffer, final int field) {
+		switch (this.types[field]) {
+			case INT:
+				for (final Object[] record : this.block) {
+					buffer.putInt(record[field] == null ? 0 : (Integer) record[field]);
+				}
+				break;
+			case LONG:
+				for (final Object[] record : this.block) {
+					buffer.putLong(record[field] == null ? 0L : (Long) record[field]);
+				}
+				break;
+			case DOUBLE:
+				for (final Object[] record : this.block) {
+					buffer.putDouble(record[field] == null ? 0d : (Double) record[field]);
+				}
+				break;
+			case LOCAL_DATE:
+				for (final Object[] record : this.block) {
+					buffer.putInt(record[field] == null
+							? Integer.MIN_VALUE
+							: (int) ((LocalDate) record[field]).toEpochDay());
+				}
+				break;
+			case STRING: {
+				final Map<String, Integer> dictionary = this.dictionaries.get(field);
+				final List<String> values = this.dictionaryValues.get(field);
+				for (final Object[] record : this.block) {
+					if (record[field] == null) {
+						buffer.putInt(-1);
+						continue;
+					}
+					final String value = record[field].toString();
+					Integer code = dictionary.get(value);
+					if (code == null) {
+						code = values.size();
+						dictionary.put(value, code);
+						values.add(value);
+					}
+					buffer.putInt(code);
+				}
+				break;
+			}
+			case FLOAT_VECTOR:
+				for (final Object[] record : this.block) {
+					final float[] vector = (float[]) record[field];
+					if (vector == null) {
+						buffer.putInt(-1);
+						continue;
+					}
+					buffer.putInt(vector.length);
+					buffer.asFloatBuffer().put(vector);
+					buffer.position(buffer.position() + vector.length * Float.BYTES);
+				}
+				break;
+			case INT_VECTOR:
+				for (final Object[] record : this.block) {
+					final int[] vector = (int[]) record[field];
+					if (vector == null) {
+						buffer.putInt(-1);
+						continue;
+					}
+					buffer.putInt(vector.length);
+					buffer.asIntBuffer().put(vector);
+					buffer.position(buffer.position() + vector.length * Integer.BYTES);
+				}
+				break;
+			default:
+				for (final Object[] record : this.block) {
+					final double[] vector = (double[]) record[field];
+					if (vector == null) {
+						buffer.putInt(-1);
+						continue;
+					}
+					buffer.putInt(vector.length);
+					buffer.asDoubleBuffer().put(vector);
+					buffer.position(buffer.position() + vector.length * Double.BYTES);
+				}
+				break;
+		}
+	}
+
+	private void writeFully(final ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			this.channel.write(bytes);
+		}
+	}
+
+	/**
+	 * @return the number of records written so far
+	 */
+	public long getRows() {
+		return this.rows + this.block.size();
+	}
+
+	/**
+	 * Writes the last block and the footer, and moves the file to its location.
+	 */
+	@Override
+	public void close() throws IOException {
+		writeBlock();
+		final long footerOffset = this.channel.position();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream footer = new DataOutputStream(bytes);
+		for (final List<String> values : this.dictionaryValues) {
+			if (values == null) {
+				footer.writeInt(0);
+				continue;
+			}
+			footer.writeInt(values.size());
+			for (final String value : values) {
+				final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+				footer.writeInt(utf8.length);
+				footer.write(utf8);
+			}
+		}
+		footer.writeInt(this.blockOffsets.size());
+		for (final long offset : this.blockOffsets) {
+			footer.writeLong(offset);
+		}
+		footer.writeLong(this.rows);
+		footer.writeLong(footerOffset);
+		footer.write(MAGIC);
+		writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+		this.channel.force(false);
+		this.channel.close();
+		Files.move(
+				this.temporaryFile,
+				this.file,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
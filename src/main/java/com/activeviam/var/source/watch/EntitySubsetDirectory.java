@@ -0,0 +1,98 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.watch;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.cloud.entity.ICloudEntityPath;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * View of some entities of a {@link ICloudDirectory}.
+ * <p>
+ * It allows to parse only some files of a directory with the parsers taking a whole directory. The
+ * listings only return the visible entities, the other operations go to the underlying directory.
+ *
+ * @param <E> the type of the entities
+ * @author ActiveViam
+ */
+public class EntitySubsetDirectory<E> implements ICloudDirectory<E> {
+
+	/** The underlying directory */
+	protected final ICloudDirectory<E> directory;
+	/** The keys of the visible entities */
+	protected final Set<String> keys;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory the underlying directory
+	 * @param keys the keys of the visible entities
+	 */
+	public EntitySubsetDirectory(final ICloudDirectory<E> directory, final Collection<String> keys) {
+		this.directory = directory;
+		this.keys = new HashSet<>(keys);
+	}
+
+	@Override
+	public String getBucket() {
+		return this.directory.getBucket();
+	}
+
+	@Override
+	public String getPath() {
+		return this.directory.getPath();
+	}
+
+	@Override
+	public ICloudDirectory<E> getSubDirectory(final String name) {
+		return new EntitySubsetDirectory<>(this.directory.getSubDirectory(name), this.keys);
+	}
+
+	@Override
+	public ICloudEntity<E> getEntity(final String name) {
+		return this.directory.getEntity(name);
+	}
+
+	@Override
+	public ICloudEntityPath<E> getEntityPath(final String name) {
+		return this.directory.getEntityPath(name);
+	}
+
+	@Override
+	public List<ICloudEntity<E>> listEntities(final boolean recursive) {
+		return this.directory.listEntities(recursive).stream()
+				.filter(entity -> this.keys.contains(entity.getKey()))
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<ICloudEntityPath<E>> listEntityPaths(final boolean recursive) {
+		return this.directory.listEntityPaths(recursive).stream()
+				.filter(path -> this.keys.contains(path.getKey()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Deletes the underlying directory, including the entities that are not visible in this view.
+	 */
+	@Override
+	public void delete() {
+		this.directory.delete();
+	}
+
+	@Override
+	public String toString() {
+		return "EntitySubsetDirectory[" + this.directory + ", " + this.keys.size() + " entities]";
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.watch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import com.activeviam.cloud.entity.ICloudDirectory;
+import com.activeviam.cloud.entity.ICloudEntity;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Continuously loads the new files of a directory.
+ * <p>
+ * Every scan lists the files of the directory and loads the complete files that were not loaded
+ * yet, each one in its own transaction. A file is complete when its folder contains a {@value
+ * #SUCCESS_MARKER} marker, as written by the generators once a folder is full. When the markers are
+ * not required, a file is also complete once its size and date did not change for a quiet period.
+ * Files whose name starts with '_' or '.' are never loaded.
+ * <p>
+ * A file is loaded once: a loaded file that is later modified is not loaded again, since its new
+ * content would be added to the rows already loaded from it. The change is only logged. New data
+ * must come in new files.
+ * <p>
+ * With a {@link LoadJournal}, the loaded files are recorded in the journal, and the files it
+ * records as committed are not loaded again.
+ * <p>
+ * Scans run on a single thread, periodically with {@link #startPolling(long)}, suited to the cloud
+ * directories, or when a local folder changes with {@link #startWatching(Path)}.
+ *
+ * @param <E> the type of the entities of the directory
+ * @author ActiveViam
+ */
+public class IncrementalLoader<E> implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(IncrementalLoader.class.getSimpleName());
+
+	/** Name of the marker of the complete folders */
+	public static final String SUCCESS_MARKER = "_SUCCESS";
+
+	/**
+	 * Loads a file into the datastore.
+	 */
+	@FunctionalInterface
+	public interface IFileLoader<E> {
+
+		/**
+		 * Loads a file, in its own transaction.
+		 *
+		 * @param file the file to load
+		 */
+		void load(ICloudEntity<E> file) throws Exception;
+
+	}
+
+	/** The watched directory */
+	protected final ICloudDirectory<E> directory;
+	/** Keeps the keys of the files to load, among the files of the directory */
+	protected final Predicate<String> filter;
+	/** The loader of the files */
+	protected final IFileLoader<E> loader;
+	/** Whether a file is only complete when its folder has a marker */
+	protected final boolean requireMarker;
+	/** Time without change after which a file is complete, when the markers are not required */
+	protected final long quietPeriodMillis;
+	/** The journal of the committed files, or {@code null} */
+	protected final LoadJournal journal;
+
+	/** Lengths of the loaded files, by key */
+	protected final Map<String, Long> loaded = new LinkedHashMap<>();
+	/** Lengths of the files that failed to load, by key, retried when they change */
+	protected final Map<String, Long> failed = new HashMap<>();
+	/** Length and date of the incomplete files at the last scan, by key */
+	protected final Map<String, long[]> pending = new HashMap<>();
+	/** Keys of the loaded files whose modification was already logged */
+	protected final Set<String> modified = new HashSet<>();
+
+	/** The thread running the scans */
+	protected final ScheduledExecutorService scheduler;
+	/** The service watching the local folder, if any */
+	protected WatchService watchService;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name the name of the loader, for its threads
+	 * @param directory the directory to watch
+	 * @param filter keeps the keys of the files to load
+	 * @param loader the loader of the files
+	 * @param requireMarker whether a file is only complete when its folder has a marker
+	 * @param quietPeriodMillis the time without change after which a file is complete, when the
+	 * 		markers are not required
+	 * @param journal the journal of the committed files, or {@code null}
+	 */
+	public IncrementalLoader(
+			final String name,
+			final ICloudDirectory<E> directory,
+			final Predicate<String> filter,
+			final IFileLoader<E> loader,
+			final boolean requireMarker,
+			final long quietPeriodMillis,
+			final LoadJournal journal) {
+		this.directory = directory;
+		this.filter = filter;
+		this.loader = loader;
+		this.requireMarker = requireMarker;
+		this.quietPeriodMillis = quietPeriodMillis;
+		this.journal = journal;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, name + "-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Loads the complete files that were not loaded yet.
+	 *
+	 * @return the number of loaded files
+	 */
+	public synchronized int scan() {
+		final List<ICloudEntity<E>> files = this.directory.listEntities(true);
+		final Set<String> completeFolders = new HashSet<>();
+		for (final ICloudEntity<E> file : files) {
+			if (getName(file.getKey()).equals(SUCCESS_MARKER)) {
+				completeFolders.add(getFolder(file.getKey()));
+			}
+		}
+
+		final long now = System.currentTimeMillis();
+		final List<ICloudEntity<E>> ready = new ArrayList<>();
+		for (final ICloudEntity<E> file : files) {
+			final String key = file.getKey();
+			final String name = getName(key);
+			if (name.startsWith("_") || name.startsWith(".") || !this.filter.test(key)) {
+				continue;
+			}
+			final long length = file.getLength();
+			final Long loadedLength = this.loaded.get(key);
+			if (loadedLength != null) {
+				if (loadedLength != length && this.modified.add(key)) {
+					LOGGER.warning(key + " was modified after its load, the change is not loaded");
+				}
+				continue;
+			}
+			final Long failedLength = this.failed.get(key);
+			if (failedLength != null && failedLength == length) {
+				continue;
+			}
+			if (completeFolders.contains(getFolder(key)) || isQuiet(key, length, file, now)) {
+				ready.add(file);
+			}
+		}
+		ready.sort(Comparator.comparing(ICloudEntity::getKey));
+
+		int count = 0;
+		for (final ICloudEntity<E> file : ready) {
+			if (this.journal != null && this.journal.isCommitted(file)) {
+				this.loaded.put(file.getKey(), file.getLength());
+				continue;
+			}
+			final long before = System.nanoTime();
+			try {
+				this.loader.load(file);
+				if (this.journal != null) {
+					this.journal.recordCommitted(Collections.singletonList(file));
+				}
+			} catch (Exception e) {
+				LOGGER.log(
+						Level.WARNING,
+						"Cannot load " + file.getKey() + ", skipped until it changes",
+						e);
+				this.failed.put(file.getKey(), file.getLength());
+				continue;
+			}
+			this.failed.remove(file.getKey());
+			this.pending.remove(file.getKey());
+			this.loaded.put(file.getKey(), file.getLength());
+			count += 1;
+			LOGGER.info("Loaded " + file.getKey() + " in "
+					+ (System.nanoTime() - before) / 1000000L + "ms");
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether a file did not change for the quiet period, when the markers are not required.
+	 */
+	private boolean isQuiet(
+			final String key,
+			final long length,
+			final ICloudEntity<E> file,
+			final long now) {
+		if (this.requireMarker) {
+			return false;
+		}
+		final long lastModified = file.getLastModified().getTime();
+		final long[] previous = this.pending.get(key);
+		if (previous == null || previous[0] != length || previous[1] != lastModified) {
+			this.pending.put(key, new long[] {length, lastModified});
+			return false;
+		}
+		return now - lastModified >= this.quietPeriodMillis;
+	}
+
+	/**
+	 * Scans the directory periodically, starting now.
+	 *
+	 * @param periodMillis the delay between the end of a scan and the start of the next one
+	 */
+	public void startPolling(final long periodMillis) {
+		this.scheduler.scheduleWithFixedDelay(this::safeScan, 0, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Scans the directory now, then whenever a file is created or modified in a local folder and
+	 * its sub-folders.
+	 * <p>
+	 * When the markers are not required, the directory is also scanned periodically, to load the
+	 * files once they are quiet.
+	 *
+	 * @param folder the local folder of the directory
+	 */
+	public void startWatching(final Path folder) {
+		try {
+			this.watchService = FileSystems.getDefault().newWatchService();
+			register(folder);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot watch " + folder, e);
+		}
+		final Thread watcher = new Thread(this::watch, "watcher-" + folder.getFileName());
+		watcher.setDaemon(true);
+		watcher.start();
+		this.scheduler.execute(this::safeScan);
+		if (!this.requireMarker) {
+			this.scheduler.scheduleWithFixedDelay(
+					this::safeScan,
+					this.quietPeriodMillis,
+					this.quietPeriodMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				final WatchKey key = this.watchService.take();
+				for (final WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == ENTRY_CREATE) {
+						final Path created = ((Path) key.watchable()).resolve((Path) event.context());
+						if (Files.isDirectory(created)) {
+							register(created);
+						}
+					}
+				}
+				key.reset();
+				// Group the events of a burst of files into a single scan
+				this.scheduler.schedule(this::safeScan, 100, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// Closed
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Stopped watching " + this.directory, e);
+		}
+	}
+
+	private void register(final Path folder) throws IOException {
+		try (final Stream<Path> folders = Files.walk(folder)) {
+			for (final Path subFolder : (Iterable<Path>) folders.filter(Files::isDirectory)::iterator) {
+				subFolder.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY);
+			}
+		}
+	}
+
+	private void safeScan() {
+		try {
+			scan();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Cannot scan " + this.directory, e);
+		}
+	}
+
+	/**
+	 * @return the lengths of the loaded files, by key
+	 */
+	public synchronized Map<String, Long> getLoadedFiles() {
+		return new LinkedHashMap<>(this.loaded);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.scheduler.shutdownNow();
+		if (this.watchService != null) {
+			this.watchService.close();
+		}
+	}
+
+	private static String getName(final String key) {
+		return key.substring(key.lastIndexOf('/') + 1);
+	}
+
+	private static String getFolder(final String key) {
+		final int separator = key.lastIndexOf('/');
+		return separator < 0 ? "" : key.substring(0, separator);
+	}
+
+}
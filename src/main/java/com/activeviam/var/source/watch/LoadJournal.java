@@ -0,0 +1,284 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.watch;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal of the files committed into the datastore, with their length and checksum.
+ * <p>
+ * The loaders record the files of each transaction once it is committed, and skip the files already
+ * committed, so a load that failed resumes from its last commit instead of starting over. The
+ * journal is an append-only text file, starting with a {@code #datastore<TAB>id} line naming the
+ * datastore the files were committed into, then one {@code key<TAB>length<TAB>checksum} line per
+ * file, flushed to disk after each commit. A truncated last line, from a crash while writing it,
+ * is dropped.
+ * <p>
+ * A file is only skipped if its length and checksum did not change since it was committed. The
+ * journal is only meaningful as long as the datastore holds the recorded files: the journal of
+ * another datastore, such as the one of a previous process, is started over. A datastore restored
+ * from a snapshot holds the files recorded up to a checkpoint, the {@link #getLength() length} of
+ * the journal when the snapshot was taken: reopened at that checkpoint, the journal resumes after
+ * the files of the snapshot. The checksum of a file is computed once per version of the file,
+ * identified by its length and modification time.
+ *
+ * @author ActiveViam
+ */
+public class LoadJournal implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(LoadJournal.class.getSimpleName());
+
+	/** Size of the blocks mapped to compute the checksum of a local file */
+	private static final long CHECKSUM_BLOCK = 64L * 1024 * 1024;
+	/** Start of the first line of the journal, followed by the id of the datastore */
+	private static final String DATASTORE_HEADER = "#datastore\t";
+
+	/** The journal file */
+	protected final Path file;
+	/** The id of the datastore the files are committed into */
+	protected final String datastore;
+	/** Computes the checksum of a file */
+	protected final Function<ICloudEntity<?>, String> checksumFunction;
+
+	/** Length and checksum of the committed files, by key */
+	protected final Map<String, String[]> committed = new HashMap<>();
+	/** Version and checksum of the files whose checksum was computed, by key */
+	protected final Map<String, String[]> checksums = new HashMap<>();
+
+	/** The channel appending to the journal */
+	protected final FileChannel channel;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the journal file
+	 * @param datastore the id of the datastore the files are committed into: the files recorded
+	 * 		by the journal of the same datastore are kept, the journal of another one is started
+	 * 		over
+	 * @param checksumFunction computes the checksum of a file
+	 */
+	public LoadJournal(
+			final Path file,
+			final String datastore,
+			final Function<ICloudEntity<?>, String> checksumFunction) {
+		this(file, datastore, Long.MAX_VALUE, checksumFunction);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file the journal file
+	 * @param datastore the id of the datastore the files are committed into: the files recorded
+	 * 		by the journal of the same datastore are kept, the journal of another one is started
+	 * 		over
+	 * @param checkpoint the length of the journal whose files the datastore holds, such as the one
+	 * 		recorded with the snapshot it was restored from: the files recorded after it are
+	 * 		dropped. {@link Long#MAX_VALUE} keeps all of them
+	 * @param checksumFunction computes the checksum of a file
+	 */
+	public LoadJournal(
+			final Path file,
+			final String datastore,
+			final long checkpoint,
+			final Function<ICloudEntity<?>, String> checksumFunction) {
+		this.file = file;
+		this.datastore = datastore;
+		this.checksumFunction = checksumFunction;
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			final String header = DATASTORE_HEADER + datastore + '\n';
+			long validLength = 0;
+			if (Files.exists(file)) {
+				final byte[] bytes = Files.readAllBytes(file);
+				final String content = new String(
+						bytes,
+						0,
+						(int) Math.min(bytes.length, checkpoint),
+						StandardCharsets.UTF_8);
+				if (content.startsWith(header)) {
+					// Only keep the complete lines
+					final int end = content.lastIndexOf('\n') + 1;
+					for (final String line : content.substring(header.length(), end).split("\n")) {
+						final String[] fields = line.split("\t");
+						if (fields.length == 3) {
+							this.committed.put(fields[0], new String[] {fields[1], fields[2]});
+						}
+					}
+					validLength = content.substring(0, end).getBytes(StandardCharsets.UTF_8).length;
+					LOGGER.info("Resuming from " + this.committed.size() + " files committed in "
+							+ file);
+				} else {
+					LOGGER.info("Starting over " + file + ", written for another datastore");
+				}
+			}
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			this.channel.truncate(validLength);
+			this.channel.position(validLength);
+			if (validLength == 0) {
+				write(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the load journal " + file, e);
+		}
+	}
+
+	/**
+	 * Checks whether a file was committed, and did not change since.
+	 *
+	 * @param entity the file
+	 * @return {@code true} if the file can be skipped
+	 */
+	public boolean isCommitted(final ICloudEntity<?> entity) {
+		final String[] recorded;
+		synchronized (this) {
+			recorded = this.committed.get(entity.getKey());
+		}
+		if (recorded == null || !recorded[0].equals(Long.toString(entity.getLength()))) {
+			return false;
+		}
+		if (recorded[1].equals(getChecksum(entity))) {
+			return true;
+		}
+		LOGGER.warning(entity.getKey() + " changed since it was committed, loading it again");
+		return false;
+	}
+
+	/**
+	 * Records files whose transaction is committed.
+	 *
+	 * @param entities the committed files
+	 */
+	public void recordCommitted(final Collection<? extends ICloudEntity<?>> entities) {
+		final StringBuilder lines = new StringBuilder();
+		final Map<String, String[]> records = new HashMap<>();
+		for (final ICloudEntity<?> entity : entities) {
+			final String[] record = {
+					Long.toString(entity.getLength()),
+					getChecksum(entity)};
+			records.put(entity.getKey(), record);
+			lines.append(entity.getKey()).append('\t')
+					.append(record[0]).append('\t')
+					.append(record[1]).append('\n');
+		}
+		final ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+		synchronized (this) {
+			try {
+				write(bytes);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot write the load journal " + this.file, e);
+			}
+			this.committed.putAll(records);
+		}
+	}
+
+	private void write(final ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			this.channel.write(bytes);
+		}
+		this.channel.force(false);
+	}
+
+	/**
+	 * Gets the checksum of a file, only computed again once the file changed.
+	 *
+	 * @param entity the file
+	 * @return the checksum of the file
+	 */
+	protected String getChecksum(final ICloudEntity<?> entity) {
+		final String version = entity.getLength() + "-" + entity.getLastModified().getTime();
+		final String[] cached;
+		synchronized (this) {
+			cached = this.checksums.get(entity.getKey());
+		}
+		if (cached != null && cached[0].equals(version)) {
+			return cached[1];
+		}
+		final String checksum = this.checksumFunction.apply(entity);
+		synchronized (this) {
+			this.checksums.put(entity.getKey(), new String[] {version, checksum});
+		}
+		return checksum;
+	}
+
+	/**
+	 * @return the id of the datastore the files are committed into
+	 */
+	public String getDatastore() {
+		return this.datastore;
+	}
+
+	/**
+	 * @return the length of the journal, in bytes: the checkpoint at which to reopen it for a
+	 * 		datastore holding the files committed so far
+	 */
+	public synchronized long getLength() {
+		try {
+			return this.channel.position();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the load journal " + this.file, e);
+		}
+	}
+
+	/**
+	 * @return the number of committed files
+	 */
+	public synchronized int size() {
+		return this.committed.size();
+	}
+
+	/**
+	 * Computes the CRC32C checksum of a local file.
+	 *
+	 * @param file the file
+	 * @return the checksum, in hexadecimal
+	 */
+	public static String crc32c(final Path file) {
+		final CRC32C crc = new CRC32C();
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long position = 0; position < size; position += CHECKSUM_BLOCK) {
+				crc.update(channel.map(
+						MapMode.READ_ONLY,
+						position,
+						Math.min(CHECKSUM_BLOCK, size - position)));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot compute the checksum of " + file, e);
+		}
+		return Long.toHexString(crc.getValue());
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LoadJournal [file=" + this.file + ", committed=" + this.committed.size() + "]";
+	}
+
+}
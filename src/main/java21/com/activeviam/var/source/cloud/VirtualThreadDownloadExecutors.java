@@ -0,0 +1,30 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors of part fetches running on virtual threads, compiled by the {@code java21} profile and
+ * loaded by {@link DownloadExecutors}.
+ *
+ * @author ActiveViam
+ */
+public final class VirtualThreadDownloadExecutors {
+
+	private VirtualThreadDownloadExecutors() {}
+
+	/**
+	 * @return an executor starting a virtual thread per part fetch
+	 */
+	public static ExecutorService newDownloadExecutor() {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("download-", 0).factory());
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.cfg.datastore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link PartitioningStrategy}.
+ *
+ * @author ActiveViam
+ */
+public class PartitioningStrategyTest {
+
+	@Test
+	public void testWritesTheDescriptorOfTheDatastore() {
+		final PartitioningStrategy strategy =
+				PartitioningStrategy.parse(" Value(Desk) | modulo( Id )");
+		assertThat(strategy.getFields()).containsExactly("Desk", "Id");
+		assertThat(strategy.toDescriptor(8)).isEqualTo("value(Desk)|modulo8(Id)");
+		assertThat(strategy).hasToString("value(Desk)|modulo(Id)");
+		assertThat(PartitioningStrategy.parse("hash(TradeId)").toDescriptor(4))
+				.isEqualTo("hash4(TradeId)");
+	}
+
+	@Test
+	public void testRejectsTheInvalidTerms() {
+		assertThatThrownBy(() -> PartitioningStrategy.parse("modulo(Id)|Desk"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> PartitioningStrategy.parse("range(Id)"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("range(Id)");
+	}
+
+	@Test
+	public void testNamesThePartitionsOfTheRecords() {
+		final PartitioningStrategy strategy = PartitioningStrategy.parse("value(Desk)|modulo(Id)");
+		assertThat(strategy.partitionOf(new Object[] {"DeskA", 13L}, 8)).isEqualTo("DeskA|5");
+		assertThat(strategy.partitionOf(new Object[] {"DeskB", -3}, 8)).isEqualTo("DeskB|5");
+		assertThat(PartitioningStrategy.parse("hash(Desk)").partitionOf(new Object[] {null}, 4))
+				.isEqualTo("0");
+	}
+
+	@Test
+	public void testChecksTheReferencedPartitions() {
+		final Map<String, String> riskToTrade = Map.of("TradeId", "Id");
+		final PartitioningStrategy trades = PartitioningStrategy.parse("modulo(Id)");
+		assertThat(PartitioningStrategy.parse("value(Desk)|modulo(TradeId)")
+				.canReference(trades, riskToTrade)).isTrue();
+		assertThat(PartitioningStrategy.parse("modulo(TradeId)")
+				.canReference(trades, riskToTrade)).isTrue();
+		assertThat(PartitioningStrategy.parse("value(Desk)")
+				.canReference(trades, riskToTrade)).isFalse();
+		assertThat(PartitioningStrategy.parse("hash(TradeId)")
+				.canReference(trades, riskToTrade)).isFalse();
+		assertThat(PartitioningStrategy.parse("modulo(TradeId)")
+				.canReference(PartitioningStrategy.parse("value(Desk)|modulo(Id)"), riskToTrade))
+				.isFalse();
+	}
+
+}
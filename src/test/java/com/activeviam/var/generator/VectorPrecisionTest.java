@@ -0,0 +1,74 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.generator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link VectorPrecision}.
+ *
+ * @author ActiveViam
+ */
+public class VectorPrecisionTest {
+
+	@Test
+	public void testParsesTheNamesOfTheConfiguration() {
+		assertThat(VectorPrecision.of("double")).isEqualTo(VectorPrecision.DOUBLE);
+		assertThat(VectorPrecision.of(" Float ")).isEqualTo(VectorPrecision.FLOAT);
+		assertThat(VectorPrecision.of("scaled-int")).isEqualTo(VectorPrecision.SCALED_INT);
+		assertThatThrownBy(() -> VectorPrecision.of("half"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testMapsTheDataTypes() {
+		for (final VectorPrecision precision : VectorPrecision.values()) {
+			assertThat(VectorPrecision.ofDataType(precision.getDataType())).isEqualTo(precision);
+		}
+		assertThat(VectorPrecision.ofDataType("long[]")).isNull();
+	}
+
+	@Test
+	public void testEncodesTheScaledIntegers() {
+		final double[] values = {1.234, -0.006, 0};
+		final int[] units = (int[]) VectorPrecision.SCALED_INT.encode(values, 0.01);
+		assertThat(units).containsExactly(123, -1, 0);
+		for (int i = 0; i < units.length; ++i) {
+			assertThat(VectorPrecision.SCALED_INT.decode(units[i], 0.01))
+					.isEqualTo(VectorPrecision.SCALED_INT.round(values.clone(), 0.01)[i]);
+		}
+		assertThatThrownBy(() -> VectorPrecision.SCALED_INT.encode(new double[] {1e10}, 0.01))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testEncodesTheFloats() {
+		final double[] values = {0.1, 1e-3};
+		assertThat((float[]) VectorPrecision.FLOAT.encode(values, 1d)).containsExactly(0.1f, 1e-3f);
+		assertThat(VectorPrecision.FLOAT.round(values, 1d)).containsExactly((float) 0.1, 1e-3f);
+		assertThat(VectorPrecision.DOUBLE.decode(0.1, 0.01)).isEqualTo(0.1);
+	}
+
+	@Test
+	public void testConvertsTheElementsOfTheFiles() {
+		assertThat((int[]) VectorPrecision.SCALED_INT.fromElements(new double[] {12, -3}))
+				.containsExactly(12, -3);
+		assertThat((int[]) VectorPrecision.SCALED_INT.fromElements(List.of(12, -3L)))
+				.containsExactly(12, -3);
+		assertThat((float[]) VectorPrecision.FLOAT.fromElements(List.of(0.5f, 2d)))
+				.containsExactly(0.5f, 2f);
+		assertThat((double[]) VectorPrecision.DOUBLE.fromElements(List.of(0.5, 2)))
+				.containsExactly(0.5, 2);
+		assertThat(VectorPrecision.DOUBLE.fromElements((double[]) null)).isNull();
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.planner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the extrapolation of the {@link CapacityPlanner}.
+ *
+ * @author ActiveViam
+ */
+public class CapacityPlannerTest {
+
+	@Test
+	public void testExtrapolatesThroughTheTwoMeasures() {
+		// 100 bytes per trade, plus 1000 bytes of fixed cost
+		assertThat(CapacityPlanner.extrapolate(10, 2_000, 20, 3_000, 1_000_000))
+				.isCloseTo(100_001_000, within(1e-3));
+		// Interpolates between the measures as well
+		assertThat(CapacityPlanner.extrapolate(10, 2_000, 20, 3_000, 15))
+				.isCloseTo(2_500, within(1e-9));
+	}
+
+	@Test
+	public void testExtrapolatesProportionallyTheMeasuresOfTheSameSize() {
+		assertThat(CapacityPlanner.extrapolate(10, 2_000, 10, 3_000, 100))
+				.isCloseTo(30_000, within(1e-9));
+		assertThat(CapacityPlanner.extrapolate(0, 2_000, 0, 3_000, 100)).isEqualTo(3_000);
+	}
+
+	@Test
+	public void testNeverExtrapolatesBelowZero() {
+		// A decreasing measure, such as the noise of a small latency
+		assertThat(CapacityPlanner.extrapolate(10, 3_000, 20, 2_000, 1_000)).isZero();
+		assertThat(CapacityPlanner.extrapolate(10, -5, 10, -5, 100)).isZero();
+	}
+
+}
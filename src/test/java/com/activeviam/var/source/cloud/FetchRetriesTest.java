@@ -0,0 +1,39 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.cloud;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the backoff of the {@link FetchRetries}.
+ *
+ * @author ActiveViam
+ */
+public class FetchRetriesTest {
+
+	@Test
+	public void testDoublesTheBackoffUpToTheMaximum() {
+		final FetchRetries retries = new FetchRetries(100, 100, 30_000);
+		assertThat(retries.backoff(0)).isEqualTo(100);
+		assertThat(retries.backoff(3)).isEqualTo(800);
+		assertThat(retries.backoff(8)).isEqualTo(25_600);
+		assertThat(retries.backoff(9)).isEqualTo(30_000);
+	}
+
+	@Test
+	public void testNeverOverflows() {
+		final FetchRetries retries = new FetchRetries(1000, 100, Long.MAX_VALUE);
+		for (final int attempt : new int[] {57, 58, 63, 64, 999}) {
+			assertThat(retries.backoff(attempt)).isPositive();
+		}
+		assertThat(new FetchRetries(100, 0, 30_000).backoff(99)).isZero();
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link CompressedFrames}, on zstd and BGZF files written by hand.
+ *
+ * @author ActiveViam
+ */
+public class CompressedFramesTest {
+
+	@TempDir
+	protected Path directory;
+
+	@Test
+	public void testListsTheZstdFramesWithoutTheSkippableOnes() throws IOException {
+		final byte[] first = zstdFrame("AsOfDate,TradeId\n");
+		final byte[] skippable = ByteBuffer.allocate(8 + 3)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.putInt(CompressedFrames.ZSTD_SKIPPABLE_MAGIC | 0x7)
+				.putInt(3)
+				.put(new byte[3])
+				.array();
+		final byte[] second = zstdFrame("2020-01-01,1\n");
+		final Path file = write("risks.csv.zst", first, skippable, second);
+
+		try (final FileChannel channel = FileChannel.open(file)) {
+			final List<long[]> frames = CompressedFrames.zstdFrames(channel);
+			assertThat(frames).hasSize(2);
+			assertThat(frames.get(0)).containsExactly(0, first.length);
+			final long secondStart = first.length + skippable.length;
+			assertThat(frames.get(1)).containsExactly(secondStart, secondStart + second.length);
+		}
+	}
+
+	@Test
+	public void testRejectsInvalidZstdFiles() throws IOException {
+		final byte[] frame = zstdFrame("AsOfDate,TradeId\n");
+		final Path garbage =
+				write("garbage.zst", "not a zstd file".getBytes(StandardCharsets.UTF_8));
+		final Path truncated = write("truncated.zst", Arrays.copyOf(frame, frame.length - 1));
+
+		try (final FileChannel channel = FileChannel.open(garbage)) {
+			assertThatThrownBy(() -> CompressedFrames.zstdFrames(channel))
+					.isInstanceOf(IOException.class);
+		}
+		try (final FileChannel channel = FileChannel.open(truncated)) {
+			assertThatThrownBy(() -> CompressedFrames.zstdFrames(channel))
+					.isInstanceOf(IOException.class);
+		}
+	}
+
+	@Test
+	public void testListsTheBgzfMembers() throws IOException {
+		final byte[] first = bgzfMember("AsOfDate,TradeId\n");
+		final byte[] second = bgzfMember("2020-01-01,1\n2020-01-01,2\n");
+		final Path file = write("risks.csv.gz", first, second);
+
+		try (final FileChannel channel = FileChannel.open(file)) {
+			final List<long[]> members = CompressedFrames.bgzfMembers(channel);
+			assertThat(members).hasSize(2);
+			assertThat(members.get(0)).containsExactly(0, first.length);
+			assertThat(members.get(1))
+					.containsExactly(first.length, first.length + second.length);
+		}
+		// Each member is a gzip file of its own
+		try (final GZIPInputStream input =
+				new GZIPInputStream(new ByteArrayInputStream(second))) {
+			assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8))
+					.isEqualTo("2020-01-01,1\n2020-01-01,2\n");
+		}
+	}
+
+	@Test
+	public void testDoesNotSplitPlainGzipFiles() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final GZIPOutputStream output = new GZIPOutputStream(bytes)) {
+			output.write("AsOfDate,TradeId\n".getBytes(StandardCharsets.UTF_8));
+		}
+		final Path file = write("risks.csv.gz", bytes.toByteArray());
+
+		try (final FileChannel channel = FileChannel.open(file)) {
+			assertThat(CompressedFrames.bgzfMembers(channel)).isNull();
+		}
+	}
+
+	/**
+	 * @return a zstd frame of a single raw block holding the text
+	 */
+	private static byte[] zstdFrame(final String text) {
+		final byte[] content = text.getBytes(StandardCharsets.UTF_8);
+		final int blockHeader = 1 | content.length << 3; // Last raw block
+		return ByteBuffer.allocate(4 + 1 + 1 + 3 + content.length)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.putInt(CompressedFrames.ZSTD_MAGIC)
+				.put((byte) 0x20) // Single segment, 1-byte content size
+				.put((byte) content.length)
+				.put((byte) blockHeader)
+				.put((byte) (blockHeader >>> 8))
+				.put((byte) (blockHeader >>> 16))
+				.put(content)
+				.array();
+	}
+
+	/**
+	 * @return a BGZF member holding the text, as written by {@code bgzip}
+	 */
+	private static byte[] bgzfMember(final String text) {
+		final byte[] content = text.getBytes(StandardCharsets.UTF_8);
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(content);
+		deflater.finish();
+		final byte[] deflated = new byte[content.length + 64];
+		final int deflatedLength = deflater.deflate(deflated);
+		deflater.end();
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+
+		final int size = 18 + deflatedLength + 8;
+		return ByteBuffer.allocate(size)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.put(new byte[] {0x1F, (byte) 0x8B, 8, 0x04}) // Deflate, FEXTRA
+				.putInt(0) // MTIME
+				.put((byte) 0) // XFL
+				.put((byte) 0xFF) // OS
+				.putShort((short) 6) // XLEN
+				.put(new byte[] {'B', 'C'})
+				.putShort((short) 2)
+				.putShort((short) (size - 1))
+				.put(deflated, 0, deflatedLength)
+				.putInt((int) crc.getValue())
+				.putInt(content.length)
+				.array();
+	}
+
+	private Path write(final String name, final byte[]... parts) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (final byte[] part : parts) {
+			bytes.write(part);
+		}
+		return Files.write(this.directory.resolve(name), bytes.toByteArray());
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link FastDoubleParser}, whose results must be identical to the JDK.
+ *
+ * @author ActiveViam
+ */
+public class FastDoubleParserTest {
+
+	@Test
+	public void testParsesLikeTheJdk() {
+		final String[] numbers = {
+				"0", "-0", "+0", "0.0", "1", "-1", "42", "3.14159", "-2.5", ".5", "5.",
+				"1e10", "1E-10", "-1.5e+300", "2.2250738585072014E-308", "4.9e-324",
+				"1.7976931348623157e308", "0.1", "0.3", "123456789012345678",
+				"1234567890123456789012", "9007199254740993", "1e23", "8.41e21",
+				"0.000000000000000000000000001", "1e-400", "1e400", "NaN", "-Infinity"};
+		for (final String number : numbers) {
+			assertThat(FastDoubleParser.parseDouble(number, 0, number.length()))
+					.as(number)
+					.isEqualTo(Double.parseDouble(number));
+		}
+	}
+
+	@Test
+	public void testParsesRandomDoublesLikeTheJdk() {
+		final Random random = new Random(7);
+		for (int i = 0; i < 100_000; i++) {
+			final double value =
+					(random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+			final String number = i % 2 == 0
+					? Double.toString(value)
+					: String.format(Locale.ROOT, "%.6f", value);
+			assertThat(FastDoubleParser.parseDouble(number, 0, number.length()))
+					.as(number)
+					.isEqualTo(Double.parseDouble(number));
+		}
+	}
+
+	@Test
+	public void testParsesARange() {
+		final String line = "trade-1;-12.75;3e2;";
+		assertThat(FastDoubleParser.parseDouble(line, 8, 14)).isEqualTo(-12.75);
+		assertThat(FastDoubleParser.parseDouble(line, 15, 18)).isEqualTo(300d);
+	}
+
+	@Test
+	public void testRejectsInvalidNumbers() {
+		for (final String number : new String[] {"", "-", "1e", "1.2.3", "abc", "12x"}) {
+			assertThatThrownBy(() -> FastDoubleParser.parseDouble(number, 0, number.length()))
+					.as(number)
+					.isInstanceOf(NumberFormatException.class);
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.var.generator.VectorPrecision;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link FastVectorParser}.
+ *
+ * @author ActiveViam
+ */
+public class FastVectorParserTest {
+
+	@Test
+	public void testParsesTheVectorsOfEachPrecision() {
+		assertThat((double[]) new FastVectorParser(';', 3, VectorPrecision.DOUBLE)
+				.parse("0.25;-1.5;3"))
+				.containsExactly(0.25, -1.5, 3);
+		assertThat((float[]) new FastVectorParser(';', 3, VectorPrecision.FLOAT)
+				.parse("0.1;-1.5;3"))
+				.containsExactly(0.1f, -1.5f, 3f);
+		assertThat((int[]) new FastVectorParser(';', 3, VectorPrecision.SCALED_INT)
+				.parse("125;-3;0"))
+				.containsExactly(125, -3, 0);
+	}
+
+	@Test
+	public void testParsesARange() {
+		final String line = "2020-01-01,42,1|2|3,Desk";
+		assertThat((int[]) new FastVectorParser('|', 3, VectorPrecision.SCALED_INT)
+				.parse(line, 14, 19))
+				.containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void testParsesTheEmptyVectorsAsNull() {
+		assertThat(new FastVectorParser(';', 3, VectorPrecision.FLOAT).parse("")).isNull();
+	}
+
+}
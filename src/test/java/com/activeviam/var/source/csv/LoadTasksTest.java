@@ -0,0 +1,98 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the cancellation of the {@link LoadTasks}.
+ *
+ * @author ActiveViam
+ */
+public class LoadTasksTest {
+
+	protected final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	@AfterEach
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void testStopsTheOtherTasksBeforeThrowingTheFailure() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch submitted = new CountDownLatch(1);
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicInteger queuedRuns = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final LoadTasks tasks = new LoadTasks(this.executor, failures::incrementAndGet);
+		tasks.submit(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} finally {
+				Thread.sleep(50);
+				stopped.set(true);
+			}
+			return null;
+		});
+		started.await();
+		tasks.submit(() -> {
+			submitted.await();
+			throw new IllegalStateException("Invalid line");
+		});
+		tasks.submit(queuedRuns::incrementAndGet);
+		submitted.countDown();
+
+		assertThatThrownBy(tasks::await)
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(stopped).isTrue();
+		assertThat(queuedRuns).hasValue(0);
+		assertThat(failures).hasValue(1);
+	}
+
+	@Test
+	public void testRejectsTheTasksSubmittedAfterAFailure() throws Exception {
+		final LoadTasks tasks = new LoadTasks(this.executor);
+		tasks.submit(() -> {
+			throw new IllegalStateException("Invalid line");
+		});
+		while (!tasks.futures.get(0).isDone()) {
+			Thread.sleep(1);
+		}
+		assertThatThrownBy(() -> tasks.submit(() -> null))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(tasks.futures).hasSize(1);
+	}
+
+	@Test
+	public void testWaitsForAllTheTasks() throws Exception {
+		final AtomicInteger runs = new AtomicInteger();
+		try (final LoadTasks tasks = new LoadTasks(this.executor)) {
+			for (int i = 0; i < 10; ++i) {
+				tasks.submit(runs::incrementAndGet);
+			}
+			tasks.await();
+		}
+		assertThat(runs).hasValue(10);
+	}
+
+}
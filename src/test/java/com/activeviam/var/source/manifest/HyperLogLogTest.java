@@ -0,0 +1,79 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.manifest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link HyperLogLog}.
+ *
+ * @author ActiveViam
+ */
+public class HyperLogLogTest {
+
+	@Test
+	public void testEstimatesSmallCardinalitiesExactly() {
+		final HyperLogLog sketch = new HyperLogLog();
+		assertThat(sketch.estimate()).isZero();
+		for (int i = 0; i < 3; i++) {
+			sketch.add("DeskA");
+			sketch.add("DeskB");
+			sketch.add(null);
+		}
+		assertThat(sketch.estimate()).isEqualTo(2);
+	}
+
+	@Test
+	public void testEstimatesLargeCardinalities() {
+		final HyperLogLog longs = new HyperLogLog();
+		final HyperLogLog strings = new HyperLogLog();
+		for (long i = 0; i < 1_000_000; i++) {
+			longs.add(i);
+			longs.add(i);
+			strings.add("trade-" + i);
+		}
+		// Four standard errors of the default precision
+		assertThat((double) longs.estimate()).isCloseTo(1_000_000, withinPercentage(3.2));
+		assertThat((double) strings.estimate()).isCloseTo(1_000_000, withinPercentage(3.2));
+	}
+
+	@Test
+	public void testHashesTheIntegersAsLongs() {
+		assertThat(HyperLogLog.hash(42)).isEqualTo(HyperLogLog.hash(42L));
+		assertThat(HyperLogLog.hash("42")).isNotEqualTo(HyperLogLog.hash(42L));
+	}
+
+	@Test
+	public void testMergesTheSketches() {
+		final HyperLogLog first = new HyperLogLog(12);
+		final HyperLogLog second = new HyperLogLog(12);
+		for (long i = 0; i < 200_000; i++) {
+			(i % 2 == 0 ? first : second).add(i);
+			// A quarter of the values are added to both sketches
+			if (i % 4 == 0) {
+				second.add(i);
+			}
+		}
+		first.merge(second);
+		assertThat((double) first.estimate()).isCloseTo(200_000, withinPercentage(6.5));
+
+		assertThatThrownBy(() -> first.merge(new HyperLogLog(14)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testRejectsTheInvalidPrecisions() {
+		assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new HyperLogLog(19)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
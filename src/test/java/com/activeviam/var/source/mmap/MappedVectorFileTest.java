@@ -0,0 +1,122 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.mmap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.var.generator.VectorPrecision;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link MappedVectorFile}.
+ *
+ * @author ActiveViam
+ */
+public class MappedVectorFileTest {
+
+	@TempDir
+	protected Path directory;
+
+	@Test
+	public void testSumsTheWrittenVectors() throws IOException {
+		try (final MappedVectorFile vectors = MappedVectorFile.open(
+				this.directory.resolve("pnl.vectors"),
+				VectorPrecision.DOUBLE)) {
+			final long first = vectors.write(new double[] {1, 2, 3});
+			final long second = vectors.write(new double[] {0.5, 0.5, 0.5});
+			assertThat(vectors.write(null)).isNull();
+			assertThat(first % MappedVectorFile.ALIGNMENT).isZero();
+			assertThat(second % MappedVectorFile.ALIGNMENT).isZero();
+			assertThat(vectors.getLength(first)).isEqualTo(3);
+
+			final double[] sums = new double[3];
+			vectors.addTo(first, sums, false);
+			vectors.addTo(second, sums, false);
+			assertThat(sums).containsExactly(1.5, 2.5, 3.5);
+			vectors.addTo(first, sums, true);
+			assertThat(sums).containsExactly(0.5, 0.5, 0.5);
+		}
+	}
+
+	@Test
+	public void testSumsTheScaledVectorsInUnits() throws IOException {
+		try (final MappedVectorFile vectors = MappedVectorFile.open(
+				this.directory.resolve("pnl.vectors"),
+				VectorPrecision.SCALED_INT)) {
+			final double[] sums = new double[2];
+			vectors.addTo(vectors.write(new int[] {125, -3}), sums, false);
+			vectors.addTo(vectors.write(new int[] {1, 1}), sums, false);
+			assertThat(sums).containsExactly(126, -2);
+		}
+	}
+
+	@Test
+	public void testKeepsTheVectorsOfTheReopenedFile() throws IOException {
+		final Path file = this.directory.resolve("pnl.vectors");
+		final long offset;
+		final long size;
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.FLOAT)) {
+			offset = vectors.write(new float[] {1.5f, -2f});
+			vectors.force();
+			size = vectors.getSize();
+		}
+		assertThat(Files.size(file)).isEqualTo(size);
+
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.FLOAT)) {
+			assertThat(vectors.getSize()).isEqualTo(size);
+			final double[] sums = new double[2];
+			vectors.addTo(offset, sums, false);
+			assertThat(sums).containsExactly(1.5, -2);
+			// The new vectors are appended after the previous ones
+			assertThat(vectors.write(new float[] {1f})).isEqualTo(size);
+		}
+	}
+
+	@Test
+	public void testStartsOverTheFileOfAnotherPrecision() throws IOException {
+		final Path file = this.directory.resolve("pnl.vectors");
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.FLOAT)) {
+			vectors.write(new float[] {1.5f, -2f});
+		}
+
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.DOUBLE)) {
+			assertThat(vectors.getSize()).isEqualTo(MappedVectorFile.PAGE_BYTES);
+		}
+	}
+
+	@Test
+	public void testClearStartsANewGenerationKeepingTheOldVectorsReadable() throws IOException {
+		final Path file = this.directory.resolve("pnl.vectors");
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.DOUBLE)) {
+			final long old = vectors.write(new double[] {1, 2});
+			assertThat(vectors.getGeneration()).isZero();
+
+			vectors.clear();
+			assertThat(vectors.getGeneration()).isEqualTo(1);
+			assertThat(vectors.getSize()).isEqualTo(MappedVectorFile.PAGE_BYTES);
+			final long current = vectors.write(new double[] {10, 20});
+			assertThat(current).isNotEqualTo(old);
+
+			final double[] sums = new double[2];
+			vectors.addTo(old, sums, false);
+			vectors.addTo(current, sums, false);
+			assertThat(sums).containsExactly(11, 22);
+			vectors.force();
+		}
+
+		// Only the new generation is in the file
+		try (final MappedVectorFile vectors = MappedVectorFile.open(file, VectorPrecision.DOUBLE)) {
+			assertThat(vectors.getGeneration()).isEqualTo(1);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Comparator;
+import org.apache.parquet.filter2.predicate.Statistics;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link KeySetPredicate}.
+ *
+ * @author ActiveViam
+ */
+public class KeySetPredicateTest {
+
+	private final KeySetPredicate predicate = new KeySetPredicate(new long[] {3, 4, 5, 10, 20});
+
+	@Test
+	public void testKeepsTheKeys() {
+		assertThat(this.predicate.keep(3L)).isTrue();
+		assertThat(this.predicate.keep(20L)).isTrue();
+		assertThat(this.predicate.keep(6L)).isFalse();
+		assertThat(this.predicate.keep(null)).isFalse();
+	}
+
+	@Test
+	public void testDropsTheRowGroupsWithoutKeys() {
+		assertThat(this.predicate.canDrop(statistics(0, 2))).isTrue();
+		assertThat(this.predicate.canDrop(statistics(6, 9))).isTrue();
+		assertThat(this.predicate.canDrop(statistics(21, 30))).isTrue();
+		assertThat(this.predicate.canDrop(statistics(0, 3))).isFalse();
+		assertThat(this.predicate.canDrop(statistics(4, 4))).isFalse();
+		assertThat(this.predicate.canDrop(statistics(6, 10))).isFalse();
+		assertThat(this.predicate.canDrop(statistics(11, 100))).isFalse();
+	}
+
+	@Test
+	public void testDropsTheNegationOfTheRowGroupsOfKeysOnly() {
+		assertThat(this.predicate.inverseCanDrop(statistics(3, 5))).isTrue();
+		assertThat(this.predicate.inverseCanDrop(statistics(10, 10))).isTrue();
+		assertThat(this.predicate.inverseCanDrop(statistics(3, 10))).isFalse();
+		assertThat(this.predicate.inverseCanDrop(statistics(2, 5))).isFalse();
+	}
+
+	private static Statistics<Long> statistics(final long min, final long max) {
+		return new Statistics<>(min, max, Comparator.naturalOrder());
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.parquet;
+
+import static org.apache.parquet.filter2.predicate.FilterApi.binaryColumn;
+import static org.apache.parquet.filter2.predicate.FilterApi.doubleColumn;
+import static org.apache.parquet.filter2.predicate.FilterApi.eq;
+import static org.apache.parquet.filter2.predicate.FilterApi.gtEq;
+import static org.apache.parquet.filter2.predicate.FilterApi.intColumn;
+import static org.apache.parquet.filter2.predicate.FilterApi.longColumn;
+import static org.apache.parquet.filter2.predicate.FilterApi.lt;
+import static org.apache.parquet.filter2.predicate.FilterApi.notEq;
+import static org.apache.parquet.filter2.predicate.FilterApi.or;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.var.generator.Trade;
+import com.qfs.literal.ILiteralType;
+import java.time.LocalDate;
+import org.apache.parquet.io.api.Binary;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link LoadFilter}.
+ *
+ * @author ActiveViam
+ */
+public class LoadFilterTest {
+
+	@Test
+	public void testParsesTheComparisons() {
+		final LoadFilter filter = LoadFilter.parse(" Trades.Date >= 2020-05-01 ");
+		assertThat(filter.getStore()).isEqualTo("Trades");
+		assertThat(filter.getField()).isEqualTo("Date");
+		assertThat(filter.toPredicate(ILiteralType.LOCAL_DATE)).isEqualTo(gtEq(
+				intColumn("Date"),
+				Trade.encodeLocalDate(LocalDate.of(2020, 5, 1))));
+
+		assertThat(LoadFilter.parse("Risks.Pnl<0.5").toPredicate(ILiteralType.DOUBLE))
+				.isEqualTo(lt(doubleColumn("Pnl"), 0.5));
+		assertThat(LoadFilter.parse("Risks.TradeId != 7").toPredicate(ILiteralType.LONG))
+				.isEqualTo(notEq(longColumn("TradeId"), 7L));
+	}
+
+	@Test
+	public void testParsesTheQuotedValues() {
+		assertThat(LoadFilter.parse("Trades.Desk = 'Desk A'").toPredicate(ILiteralType.STRING))
+				.isEqualTo(eq(binaryColumn("Desk"), Binary.fromString("Desk A")));
+	}
+
+	@Test
+	public void testParsesTheSets() {
+		final LoadFilter filter = LoadFilter.parse("Trades.Desk IN (DeskA, \"DeskB\", DeskC)");
+		assertThat(filter.toPredicate(ILiteralType.STRING)).isEqualTo(or(
+				or(
+						eq(binaryColumn("Desk"), Binary.fromString("DeskA")),
+						eq(binaryColumn("Desk"), Binary.fromString("DeskB"))),
+				eq(binaryColumn("Desk"), Binary.fromString("DeskC"))));
+	}
+
+	@Test
+	public void testRejectsInvalidFilters() {
+		assertThatThrownBy(() -> LoadFilter.parse("Desk = DeskA"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LoadFilter.parse("Trades.Desk in DeskA"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LoadFilter.parse("Trades.Desk = DeskA").toPredicate("Object"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.snapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.qfs.literal.ILiteralType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link StoreSnapshotWriter} and {@link StoreSnapshotReader}.
+ *
+ * @author ActiveViam
+ */
+public class StoreSnapshotTest {
+
+	private static final List<String> FIELDS = List.of(
+			"RiskId",
+			"Scenario",
+			"Pnl",
+			"Desk",
+			"AsOfDate",
+			"PnlVector",
+			"FloatVector",
+			"IntVector");
+	private static final List<String> TYPES = List.of(
+			ILiteralType.LONG,
+			ILiteralType.INT,
+			ILiteralType.DOUBLE,
+			ILiteralType.STRING,
+			ILiteralType.LOCAL_DATE,
+			StoreSnapshotWriter.DOUBLE_VECTOR,
+			StoreSnapshotWriter.FLOAT_VECTOR,
+			StoreSnapshotWriter.INT_VECTOR);
+
+	@TempDir
+	protected Path directory;
+
+	@Test
+	public void testReadsBackTheRecordsOfSeveralBlocks() throws IOException {
+		final Path file = this.directory.resolve("snapshot").resolve("Risks.snap");
+		final int rows = StoreSnapshotWriter.BLOCK_ROWS + 1000;
+		try (final StoreSnapshotWriter writer =
+				new StoreSnapshotWriter(file, "fingerprint-1", "Risks", FIELDS, TYPES)) {
+			for (int i = 0; i < rows; ++i) {
+				writer.add(record(i));
+			}
+			assertThat(writer.getRows()).isEqualTo(rows);
+		}
+		assertThat(file.resolveSibling("Risks.snap.tmp")).doesNotExist();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (final StoreSnapshotReader reader = new StoreSnapshotReader(file)) {
+			assertThat(reader.getFingerprint()).isEqualTo("fingerprint-1");
+			assertThat(reader.getStore()).isEqualTo("Risks");
+			assertThat(reader.getFields()).isEqualTo(FIELDS);
+			assertThat(reader.getTypes()).isEqualTo(TYPES);
+			assertThat(reader.getRows()).isEqualTo(rows);
+
+			final List<Object[]> records = Collections.synchronizedList(new ArrayList<>());
+			reader.read(executor, records::addAll);
+			records.sort(Comparator.comparing(record -> (Long) record[0]));
+			assertThat(records).hasSize(rows);
+			for (int i = 0; i < rows; ++i) {
+				assertThat(records.get(i)).isEqualTo(record(i));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testReadsBackTheNulls() throws IOException {
+		final Path file = this.directory.resolve("Risks.snap");
+		final Object[] nulls = new Object[FIELDS.size()];
+		try (final StoreSnapshotWriter writer =
+				new StoreSnapshotWriter(file, "fingerprint-1", "Risks", FIELDS, TYPES)) {
+			writer.add(nulls);
+		}
+
+		final List<Object[]> records = new ArrayList<>();
+		try (final StoreSnapshotReader reader = new StoreSnapshotReader(file)) {
+			reader.read(null, records::addAll);
+		}
+		// The numbers are read back as zeros
+		assertThat(records).hasSize(1);
+		assertThat(records.get(0)).containsExactly(0L, 0, 0d, null, null, null, null, null);
+	}
+
+	@Test
+	public void testRejectsTheTruncatedSnapshots() throws IOException {
+		final Path file = this.directory.resolve("Risks.snap");
+		try (final StoreSnapshotWriter writer =
+				new StoreSnapshotWriter(file, "fingerprint-1", "Risks", FIELDS, TYPES)) {
+			writer.add(record(0));
+		}
+		final byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+		assertThatThrownBy(() -> new StoreSnapshotReader(file))
+				.isInstanceOf(UncheckedIOException.class);
+	}
+
+	@Test
+	public void testRejectsTheUnsupportedTypes() {
+		assertThatThrownBy(() -> new StoreSnapshotWriter(
+				this.directory.resolve("Risks.snap"),
+				"fingerprint-1",
+				"Risks",
+				List.of("Pnl"),
+				List.of(ILiteralType.FLOAT)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static Object[] record(final int i) {
+		return new Object[] {
+				(long) i,
+				i % 260,
+				i * 0.5,
+				"Desk" + i % 7,
+				LocalDate.of(2020, 1, 1).plusDays(i % 20),
+				new double[] {i, -i, i / 3d},
+				new float[] {i / 2f},
+				new int[] {i, i + 1}};
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.var.source.watch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.cloud.entity.ICloudEntity;
+import com.activeviam.var.source.cloud.LocalCloudEntity;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link LoadJournal}, on local files.
+ *
+ * @author ActiveViam
+ */
+public class LoadJournalTest {
+
+	@TempDir
+	protected Path directory;
+
+	/** The journal file */
+	protected Path journalFile;
+	/** Number of checksums computed */
+	protected final AtomicInteger checksumCount = new AtomicInteger();
+	/** Computes the checksums of the local files, counting them */
+	protected final Function<ICloudEntity<?>, String> checksumFunction = (entity) -> {
+		this.checksumCount.incrementAndGet();
+		return LoadJournal.crc32c((Path) entity.getInner());
+	};
+
+	@BeforeEach
+	public void createJournalFile() {
+		this.journalFile = this.directory.resolve("journal").resolve("load.journal");
+	}
+
+	@Test
+	public void testResumesTheJournalOfTheSameDatastore() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		final ICloudEntity<Path> trades = createFile("trades.csv", "TradeId\n");
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			assertThat(journal.isCommitted(risks)).isFalse();
+			journal.recordCommitted(List.of(risks, trades));
+			assertThat(journal.isCommitted(risks)).isTrue();
+		}
+
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			assertThat(journal.size()).isEqualTo(2);
+			assertThat(journal.isCommitted(risks)).isTrue();
+			assertThat(journal.isCommitted(trades)).isTrue();
+		}
+	}
+
+	@Test
+	public void testStartsOverTheJournalOfAnotherDatastore() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			journal.recordCommitted(List.of(risks));
+		}
+
+		try (final LoadJournal journal = newJournal("datastore-2")) {
+			assertThat(journal.size()).isZero();
+			assertThat(journal.isCommitted(risks)).isFalse();
+		}
+		assertThat(Files.readAllLines(this.journalFile)).containsExactly("#datastore\tdatastore-2");
+	}
+
+	@Test
+	public void testResumesFromACheckpoint() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		final ICloudEntity<Path> trades = createFile("trades.csv", "TradeId\n");
+		final long checkpoint;
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			journal.recordCommitted(List.of(risks));
+			checkpoint = journal.getLength();
+			journal.recordCommitted(List.of(trades));
+		}
+
+		// The datastore restored from the snapshot of the checkpoint only holds the risks
+		try (final LoadJournal journal = new LoadJournal(
+				this.journalFile,
+				"datastore-1",
+				checkpoint,
+				this.checksumFunction)) {
+			assertThat(journal.getDatastore()).isEqualTo("datastore-1");
+			assertThat(journal.getLength()).isEqualTo(checkpoint);
+			assertThat(journal.isCommitted(risks)).isTrue();
+			assertThat(journal.isCommitted(trades)).isFalse();
+			journal.recordCommitted(List.of(trades));
+		}
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			assertThat(journal.size()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void testDropsTheTruncatedLastLine() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			journal.recordCommitted(List.of(risks));
+		}
+		Files.write(
+				this.journalFile,
+				"trades.csv\t8".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			assertThat(journal.size()).isEqualTo(1);
+			assertThat(journal.isCommitted(risks)).isTrue();
+		}
+	}
+
+	@Test
+	public void testLoadsAgainTheChangedFiles() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			journal.recordCommitted(List.of(risks));
+			// Same length, another content
+			Files.write(risks.getInner(), "AsOfDate,TradeIx\n".getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(
+					risks.getInner(),
+					FileTime.fromMillis(risks.getLastModified().getTime() + 1000));
+			assertThat(journal.isCommitted(risks)).isFalse();
+		}
+	}
+
+	@Test
+	public void testComputesTheChecksumOncePerVersion() throws IOException {
+		final ICloudEntity<Path> risks = createFile("risks.csv", "AsOfDate,TradeId\n");
+		try (final LoadJournal journal = newJournal("datastore-1")) {
+			journal.recordCommitted(List.of(risks));
+			assertThat(journal.isCommitted(risks)).isTrue();
+			assertThat(journal.isCommitted(risks)).isTrue();
+			assertThat(this.checksumCount).hasValue(1);
+
+			Files.setLastModifiedTime(
+					risks.getInner(),
+					FileTime.fromMillis(risks.getLastModified().getTime() + 1000));
+			assertThat(journal.isCommitted(risks)).isTrue();
+			assertThat(this.checksumCount).hasValue(2);
+		}
+	}
+
+	private LoadJournal newJournal(final String datastore) {
+		return new LoadJournal(this.journalFile, datastore, this.checksumFunction);
+	}
+
+	private ICloudEntity<Path> createFile(final String name, final String content)
+			throws IOException {
+		final Path file = Files.write(
+				this.directory.resolve(name),
+				content.getBytes(StandardCharsets.UTF_8));
+		return new LocalCloudEntity(this.directory, file);
+	}
+
+}